@@ -1,16 +1,33 @@
 package com.couriertracking.cache;
 
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.SessionCallback;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 
+/**
+ * Redis cache of courier total distances. Each write is a single SET with TTL.
+ * With write coalescing on, writes only mark the courier dirty with its latest total, and dirty
+ * entries are flushed every few hundred milliseconds in one pipelined batch; reads see the
+ * pending value first.
+ */
 @Component
-@RequiredArgsConstructor
 @Slf4j
 public class CourierDistanceCache {
 
@@ -18,11 +35,32 @@ public class CourierDistanceCache {
     private static final String DISTANCE_KEY_PREFIX = "courier:distance:";
     private static final long CACHE_TTL_HOURS = 24; // Cache expiry time in hours
 
+    // Latest unflushed total per courier
+    private final Map<UUID, Double> dirty = new ConcurrentHashMap<>();
+
+    private final Counter commandsSaved;
+    private final Counter flushedEntries;
+    private final Timer flushTimer;
+
+    @Value("${courier-tracking.cache.write-coalescing.enabled:false}")
+    private boolean coalescingEnabled;
+
+    public CourierDistanceCache(StringRedisTemplate redis, MeterRegistry meterRegistry) {
+        this.redis = redis;
+        this.commandsSaved = meterRegistry.counter("courier.cache.commands.saved");
+        this.flushedEntries = meterRegistry.counter("courier.cache.flush.entries");
+        this.flushTimer = meterRegistry.timer("courier.cache.flush");
+    }
+
     private String key(UUID courierId) {
         return DISTANCE_KEY_PREFIX + courierId.toString();
     }
 
     public Optional<Double> getFromCache(UUID courierId) {
+        Double pending = dirty.get(courierId);
+        if (pending != null) {
+            return Optional.of(pending);
+        }
         try {
             String v = redis.opsForValue().get(key(courierId));
             return v == null ? Optional.empty() : Optional.of(Double.parseDouble(v));
@@ -33,15 +71,22 @@ public class CourierDistanceCache {
     }
 
     public void saveToCache(UUID courierId, Double distance) {
+        if (coalescingEnabled) {
+            if (dirty.put(courierId, distance) != null) {
+                // Overwrote a total that was never sent
+                commandsSaved.increment();
+            }
+            return;
+        }
         try {
-            redis.opsForValue().set(key(courierId), distance.toString());
-            redis.expire(key(courierId), java.time.Duration.ofHours(CACHE_TTL_HOURS));
+            redis.opsForValue().set(key(courierId), distance.toString(), Duration.ofHours(CACHE_TTL_HOURS));
         } catch (Exception e) {
             log.error("Error saving distance to cache for courier {}: {}", courierId, e.getMessage());
         }
     }
 
     public void evictFromCache(UUID courierId) {
+        dirty.remove(courierId);
         try {
             redis.delete(key(courierId));
         } catch (Exception e) {
@@ -49,4 +94,43 @@ public class CourierDistanceCache {
         }
     }
 
+    /**
+     * Send every dirty total in one pipelined batch
+     * @return number of entries flushed
+     */
+    @Scheduled(fixedDelayString = "${courier-tracking.cache.write-coalescing.flush-interval-millis:250}")
+    public int flush() {
+        if (dirty.isEmpty()) {
+            return 0;
+        }
+        Map<UUID, Double> batch = new HashMap<>(dirty);
+        try {
+            flushTimer.record(() -> redis.executePipelined(new SessionCallback<Object>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public Object execute(RedisOperations operations) throws DataAccessException {
+                    batch.forEach((courierId, distance) -> operations.opsForValue()
+                        .set(key(courierId), distance.toString(), Duration.ofHours(CACHE_TTL_HOURS)));
+                    return null;
+                }
+            }));
+        } catch (Exception e) {
+            // Entries stay dirty and are retried on the next flush
+            log.error("Error flushing {} distances to cache: {}", batch.size(), e.getMessage());
+            return 0;
+        }
+        // Keep entries that were overwritten while the batch was in flight
+        batch.forEach(dirty::remove);
+        flushedEntries.increment(batch.size());
+        return batch.size();
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    public int dirtyCount() {
+        return dirty.size();
+    }
 }
@@ -0,0 +1,96 @@
+package com.couriertracking.cache;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Protects the database behind total-distance reads. Concurrent cache misses for one courier share
+ * a single load, and courier IDs found not to exist are remembered for a short TTL.
+ */
+@Component
+public class CourierDistanceReadGuard {
+
+    private final Map<UUID, CompletableFuture<Double>> inFlight = new ConcurrentHashMap<>();
+    // Unknown courier ID -> System.nanoTime() at which the entry expires
+    private final Map<UUID, Long> unknownCouriers = new ConcurrentHashMap<>();
+
+    private final Counter coalescedLoads;
+    private final Counter negativeHits;
+
+    @Value("${courier-tracking.distance.read.negative-ttl-seconds:30}")
+    private long negativeTtlSeconds;
+
+    @Value("${courier-tracking.distance.read.max-negative-entries:10000}")
+    private int maxNegativeEntries;
+
+    public CourierDistanceReadGuard(MeterRegistry meterRegistry) {
+        this.coalescedLoads = meterRegistry.counter("courier.distance.read.coalesced");
+        this.negativeHits = meterRegistry.counter("courier.distance.read.negative.hits");
+    }
+
+    /**
+     * Run the loader, or wait for the one already running for this courier and share its result
+     */
+    public double load(UUID courierId, Supplier<Double> loader) {
+        CompletableFuture<Double> mine = new CompletableFuture<>();
+        CompletableFuture<Double> running = inFlight.putIfAbsent(courierId, mine);
+        if (running != null) {
+            coalescedLoads.increment();
+            try {
+                return running.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                }
+                throw e;
+            }
+        }
+
+        try {
+            double value = loader.get();
+            mine.complete(value);
+            return value;
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(courierId, mine);
+        }
+    }
+
+    public boolean isKnownUnknown(UUID courierId) {
+        Long expiresAt = unknownCouriers.get(courierId);
+        if (expiresAt == null) {
+            return false;
+        }
+        if (System.nanoTime() - expiresAt >= 0) {
+            unknownCouriers.remove(courierId, expiresAt);
+            return false;
+        }
+        negativeHits.increment();
+        return true;
+    }
+
+    public void rememberUnknown(UUID courierId) {
+        if (unknownCouriers.size() >= maxNegativeEntries) {
+            long now = System.nanoTime();
+            unknownCouriers.values().removeIf(expiresAt -> now - expiresAt >= 0);
+            if (unknownCouriers.size() >= maxNegativeEntries) {
+                // Flooded with random IDs; start over rather than grow without bound
+                unknownCouriers.clear();
+            }
+        }
+        unknownCouriers.put(courierId, System.nanoTime() + TimeUnit.SECONDS.toNanos(negativeTtlSeconds));
+    }
+}
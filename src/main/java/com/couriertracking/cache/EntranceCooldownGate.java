@@ -0,0 +1,112 @@
+package com.couriertracking.cache;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Cluster-wide entrance cooldown. One {@code SET key NX PX cooldown} per courier and store decides
+ * whether an entrance is logged, so fixes for the same courier landing on different nodes cannot
+ * both log it, and the common in-cooldown case needs no database query.
+ */
+@Component
+@Slf4j
+public class EntranceCooldownGate {
+
+    private static final String COOLDOWN_KEY_PREFIX = "courier:entrance:cooldown:";
+
+    private final StringRedisTemplate redis;
+    private final Counter acquired;
+    private final Counter held;
+    private final Counter unavailable;
+
+    @Value("${courier-tracking.store.cooldown-gate.enabled:false}")
+    private boolean enabled;
+
+    @Value("${courier-tracking.store.entrance-cooldown-minutes:1}")
+    private int entranceCooldownMinutes;
+
+    public enum Decision {
+        /** This caller owns the cooldown and should log the entrance */
+        ACQUIRED,
+        /** Another fix already logged an entrance within the cooldown */
+        HELD,
+        /** Redis could not decide; the caller checks the database instead */
+        UNAVAILABLE
+    }
+
+    public EntranceCooldownGate(StringRedisTemplate redis, MeterRegistry meterRegistry) {
+        this.redis = redis;
+        this.acquired = meterRegistry.counter("courier.store.entrance.cooldown", "result", "acquired");
+        this.held = meterRegistry.counter("courier.store.entrance.cooldown", "result", "held");
+        this.unavailable = meterRegistry.counter("courier.store.entrance.cooldown", "result", "unavailable");
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    private String key(UUID courierId, UUID storeId) {
+        return COOLDOWN_KEY_PREFIX + courierId + ":" + storeId;
+    }
+
+    /**
+     * Try to start the courier's cooldown at the store. If the surrounding transaction rolls back,
+     * the cooldown is released again so the entrance can be logged by the next fix.
+     */
+    public Decision tryAcquire(UUID courierId, UUID storeId, LocalDateTime entranceTime) {
+        String key = key(courierId, storeId);
+        Boolean set;
+        try {
+            set = redis.opsForValue().setIfAbsent(
+                key, entranceTime.toString(), Duration.ofMinutes(entranceCooldownMinutes));
+        } catch (Exception e) {
+            log.error("Error acquiring entrance cooldown for courier {} at store {}: {}", courierId, storeId, e.getMessage());
+            set = null;
+        }
+
+        if (set == null) {
+            unavailable.increment();
+            return Decision.UNAVAILABLE;
+        }
+        if (!set) {
+            held.increment();
+            return Decision.HELD;
+        }
+        acquired.increment();
+        releaseOnRollback(key);
+        return Decision.ACQUIRED;
+    }
+
+    private void releaseOnRollback(String key) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    release(key);
+                }
+            }
+        });
+    }
+
+    private void release(String key) {
+        try {
+            redis.delete(key);
+        } catch (Exception e) {
+            log.error("Error releasing entrance cooldown {}: {}", key, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package com.couriertracking.cache;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scripting.support.ResourceScriptSource;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.couriertracking.model.Location;
+import com.couriertracking.state.TrackPoint;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Hot per-courier state kept in Redis so ingest nodes hold none of it. One hash per courier stores
+ * the last fix and the running total; a Lua script advances it and returns the new total in one
+ * round trip, so any node can take any courier's next fix without reading its track from the database.
+ * <p>
+ * The hash must never run ahead of the table: it is dropped when the ingest transaction that
+ * advanced it rolls back, and a courier whose fix was handled by the database while Redis was
+ * unreachable has its hash dropped before Redis is used for it again.
+ */
+@Component
+@Slf4j
+public class RedisCourierState {
+
+    private static final String STATE_KEY_PREFIX = "courier:state:";
+
+    private final StringRedisTemplate redis;
+    private final DefaultRedisScript<List> advanceScript;
+    private final Counter fallbacks;
+    private final Counter seeds;
+    // Couriers whose hash may be stale but could not be dropped yet
+    private final Set<UUID> staleCouriers = ConcurrentHashMap.newKeySet();
+
+    @Value("${courier-tracking.distance.redis-state.enabled:false}")
+    private boolean enabled;
+
+    @Value("${courier-tracking.distance.redis-state.ttl-hours:24}")
+    private long ttlHours;
+
+    @Value("${courier-tracking.distance.calculation-algorithm:euclidean}")
+    private String algorithm;
+
+    public enum Status { FIRST, MOVED, LATE, MISSING }
+
+    /**
+     * Result of one advance: the courier's new total and the segment this fix added, both in kilometers
+     */
+    public record Advance(Status status, double totalKilometers, double segmentKilometers) {
+    }
+
+    /**
+     * Database state used to rebuild a missing hash; previous is null when the courier has no earlier fix
+     */
+    public record Seed(double totalKilometers, TrackPoint previous) {
+    }
+
+    public RedisCourierState(StringRedisTemplate redis, MeterRegistry meterRegistry) {
+        this.redis = redis;
+        this.advanceScript = new DefaultRedisScript<>();
+        this.advanceScript.setScriptSource(
+            new ResourceScriptSource(new ClassPathResource("scripts/advance-courier-state.lua")));
+        this.advanceScript.setResultType(List.class);
+        this.fallbacks = meterRegistry.counter("courier.distance.redis.fallbacks");
+        this.seeds = meterRegistry.counter("courier.distance.redis.seeds");
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    private String key(UUID courierId) {
+        return STATE_KEY_PREFIX + courierId.toString();
+    }
+
+    /**
+     * Fold the fix into the courier's hash. Without a seed, a missing hash is reported as MISSING and
+     * left untouched; with one, the hash is rebuilt from it first.
+     * @return empty when Redis could not be reached, so the caller falls back to the database
+     */
+    public Optional<Advance> advance(UUID courierId, Location location, Seed seed) {
+        if (staleCouriers.contains(courierId) && !evict(courierId)) {
+            fallbacks.increment();
+            return Optional.empty();
+        }
+        List<String> args = new ArrayList<>(9);
+        args.add(Double.toString(location.getLatitude()));
+        args.add(Double.toString(location.getLongitude()));
+        args.add(Long.toString(epochMillis(location.getTimestamp())));
+        args.add(algorithm.toLowerCase(Locale.ROOT));
+        args.add(Long.toString(Duration.ofHours(ttlHours).toMillis()));
+        if (seed != null) {
+            seeds.increment();
+            args.add(Double.toString(seed.totalKilometers()));
+            if (seed.previous() != null) {
+                args.add(Double.toString(seed.previous().latitude()));
+                args.add(Double.toString(seed.previous().longitude()));
+                args.add(Long.toString(epochMillis(seed.previous().timestamp())));
+            }
+        }
+
+        try {
+            List<?> reply = redis.execute(advanceScript, List.of(key(courierId)), args.toArray());
+            Advance advance = new Advance(
+                Status.valueOf(reply.get(0).toString().toUpperCase(Locale.ROOT)),
+                Double.parseDouble(reply.get(1).toString()),
+                Double.parseDouble(reply.get(2).toString()));
+            if (advance.status() != Status.MISSING) {
+                evictOnRollback(courierId);
+            }
+            return Optional.of(advance);
+        } catch (Exception e) {
+            fallbacks.increment();
+            log.error("Error advancing Redis state for courier {}: {}", courierId, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Drop the hash so the next fix rebuilds it from the database. If Redis cannot be reached, the
+     * courier is remembered and the hash is dropped once it answers again.
+     * @return whether the hash is gone
+     */
+    public boolean evict(UUID courierId) {
+        staleCouriers.add(courierId);
+        try {
+            redis.delete(key(courierId));
+            staleCouriers.remove(courierId);
+            return true;
+        } catch (Exception e) {
+            log.error("Error evicting Redis state for courier {}: {}", courierId, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Retry dropping the hashes that could not be dropped while Redis was unreachable
+     */
+    @Scheduled(fixedDelayString = "${courier-tracking.distance.redis-state.evict-retry-millis:5000}")
+    public void evictStale() {
+        if (!enabled || staleCouriers.isEmpty()) {
+            return;
+        }
+        List<UUID> stale = List.copyOf(staleCouriers);
+        try {
+            redis.delete(stale.stream().map(this::key).toList());
+            stale.forEach(staleCouriers::remove);
+            log.info("Dropped the Redis state of {} couriers handled while Redis was unreachable", stale.size());
+        } catch (Exception e) {
+            log.debug("Redis still unreachable; {} courier states left to drop", stale.size());
+        }
+    }
+
+    private void evictOnRollback(UUID courierId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        // The fix is not in the table, so the hash is ahead of it; rebuild it from the table
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    evict(courierId);
+                }
+            }
+        });
+    }
+
+    private static long epochMillis(LocalDateTime timestamp) {
+        return timestamp.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+}
@@ -0,0 +1,122 @@
+package com.couriertracking.cluster;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClient;
+import org.springframework.web.client.RestClientException;
+
+import com.couriertracking.dto.CourierHandoff;
+import com.couriertracking.dto.LocationUpdateRequest;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * HTTP calls between cluster members: forwarding location updates to the courier's owner and
+ * handing courier state over after a membership change.
+ */
+@Component
+@Slf4j
+public class ClusterClient {
+
+    /** Set on forwarded requests, which the receiver always handles itself so they never bounce */
+    public static final String FORWARDED_BY_HEADER = "X-Courier-Forwarded-By";
+
+    private static final List<String> RELAYED_HEADERS =
+        List.of(HttpHeaders.CONTENT_TYPE, HttpHeaders.LOCATION, "Preference-Applied");
+
+    private final RestClient restClient;
+    private final ClusterMembership clusterMembership;
+    private final Counter forwarded;
+    private final Counter forwardFailures;
+
+    @Value("${courier-tracking.api.key}")
+    private String apiKey;
+
+    @Value("${courier-tracking.api.header-name:X-API-Key}")
+    private String apiKeyHeaderName;
+
+    public ClusterClient(RestClient.Builder restClientBuilder,
+                         ClusterMembership clusterMembership,
+                         @Value("${courier-tracking.cluster.forward-timeout-millis:2000}") long timeoutMillis,
+                         MeterRegistry meterRegistry) {
+        SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+        requestFactory.setConnectTimeout(Duration.ofMillis(timeoutMillis));
+        requestFactory.setReadTimeout(Duration.ofMillis(timeoutMillis));
+        this.restClient = restClientBuilder.requestFactory(requestFactory).build();
+        this.clusterMembership = clusterMembership;
+        this.forwarded = meterRegistry.counter("courier.cluster.forwarded");
+        this.forwardFailures = meterRegistry.counter("courier.cluster.forward.failures");
+    }
+
+    /**
+     * Send the update to the instance owning the courier and relay its response as is
+     * @return empty if the owner could not be reached
+     */
+    public Optional<ResponseEntity<String>> forwardLocation(String owner, LocationUpdateRequest request,
+                                                            String prefer, String idempotencyKey) {
+        try {
+            ResponseEntity<String> response = restClient.post()
+                .uri(owner + "/locations")
+                .contentType(MediaType.APPLICATION_JSON)
+                .headers(headers -> {
+                    headers.set(apiKeyHeaderName, apiKey);
+                    headers.set(FORWARDED_BY_HEADER, clusterMembership.self());
+                    if (prefer != null) {
+                        headers.set("Prefer", prefer);
+                    }
+                    if (idempotencyKey != null) {
+                        headers.set("Idempotency-Key", idempotencyKey);
+                    }
+                })
+                .body(request)
+                .exchange((clientRequest, clientResponse) -> {
+                    HttpHeaders relayed = new HttpHeaders();
+                    RELAYED_HEADERS.forEach(name -> {
+                        List<String> values = clientResponse.getHeaders().get(name);
+                        if (values != null) {
+                            relayed.put(name, values);
+                        }
+                    });
+                    String body = new String(clientResponse.getBody().readAllBytes(), StandardCharsets.UTF_8);
+                    return ResponseEntity.status(clientResponse.getStatusCode()).headers(relayed).body(body);
+                });
+            forwarded.increment();
+            return Optional.of(response);
+        } catch (RestClientException e) {
+            forwardFailures.increment();
+            log.warn("Failed to forward location of courier {} to {}: {}", request.getCourierId(), owner, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Hand the couriers' in-memory state to their new owner
+     * @return whether the owner accepted it
+     */
+    public boolean sendHandoff(String owner, List<CourierHandoff> handoffs) {
+        try {
+            restClient.post()
+                .uri(owner + "/cluster/handoff")
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(apiKeyHeaderName, apiKey)
+                .body(handoffs)
+                .retrieve()
+                .toBodilessEntity();
+            return true;
+        } catch (RestClientException e) {
+            log.warn("Failed to hand {} couriers over to {}: {}", handoffs.size(), owner, e.getMessage());
+            return false;
+        }
+    }
+}
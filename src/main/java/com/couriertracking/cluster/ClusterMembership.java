@@ -0,0 +1,112 @@
+package com.couriertracking.cluster;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Service instances sharing the courier population, identified by their base URL (e.g.
+ * {@code http://localhost:8081/api}). Members come from a static list, or from a file with one
+ * URL per line that is re-read by {@link CourierRebalancer}. This instance is always a member.
+ */
+@Component
+@Slf4j
+public class ClusterMembership {
+
+    @Value("${courier-tracking.cluster.enabled:false}")
+    private boolean enabled;
+
+    @Value("${courier-tracking.cluster.self:http://localhost:8080/api}")
+    private String self;
+
+    @Value("${courier-tracking.cluster.members:}")
+    private String members;
+
+    @Value("${courier-tracking.cluster.members-file:}")
+    private String membersFile;
+
+    @Value("${courier-tracking.cluster.virtual-nodes:128}")
+    private int virtualNodes;
+
+    private volatile ConsistentHashRing ring = new ConsistentHashRing(List.of(), 0);
+
+    @PostConstruct
+    public void init() {
+        if (enabled) {
+            reload();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public String self() {
+        return normalize(self);
+    }
+
+    public List<String> members() {
+        return ring.members();
+    }
+
+    public String ownerOf(UUID courierId) {
+        String owner = ring.owner(courierId);
+        return owner != null ? owner : self();
+    }
+
+    public boolean isLocal(UUID courierId) {
+        return !enabled || ownerOf(courierId).equals(self());
+    }
+
+    /**
+     * Re-read the member list and rebuild the ring if it changed
+     * @return whether the membership changed
+     */
+    public synchronized boolean reload() {
+        TreeSet<String> current = new TreeSet<>(readMembers());
+        current.add(self());
+        if (current.equals(new TreeSet<>(ring.members()))) {
+            return false;
+        }
+        ring = new ConsistentHashRing(current, virtualNodes);
+        log.info("Cluster membership changed: {} ({} virtual nodes each)", current, virtualNodes);
+        return true;
+    }
+
+    private List<String> readMembers() {
+        if (membersFile == null || membersFile.isBlank()) {
+            return parse(Arrays.stream(members.split(",")));
+        }
+        try (Stream<String> lines = Files.lines(Path.of(membersFile))) {
+            return parse(lines);
+        } catch (IOException e) {
+            // Keep the current ring rather than shrinking to this instance alone
+            log.warn("Failed to read cluster members from {}: {}", membersFile, e.getMessage());
+            return ring.members();
+        }
+    }
+
+    private static List<String> parse(Stream<String> entries) {
+        return entries
+            .map(String::trim)
+            .filter(entry -> !entry.isEmpty() && !entry.startsWith("#"))
+            .map(ClusterMembership::normalize)
+            .toList();
+    }
+
+    private static String normalize(String url) {
+        String trimmed = url.trim();
+        return trimmed.endsWith("/") ? trimmed.substring(0, trimmed.length() - 1) : trimmed;
+    }
+}
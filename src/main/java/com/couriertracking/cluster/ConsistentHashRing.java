@@ -0,0 +1,63 @@
+package com.couriertracking.cluster;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.UUID;
+
+/**
+ * Immutable consistent-hash ring of service instances. Each member is placed at many virtual
+ * positions so couriers spread evenly, and adding or removing a member only moves the couriers
+ * between it and its neighbours.
+ */
+public final class ConsistentHashRing {
+
+    private final NavigableMap<Long, String> positions = new TreeMap<>();
+    private final List<String> members;
+
+    public ConsistentHashRing(Collection<String> members, int virtualNodes) {
+        this.members = List.copyOf(members);
+        for (String member : this.members) {
+            for (int i = 0; i < virtualNodes; i++) {
+                positions.put(hash(member + "#" + i), member);
+            }
+        }
+    }
+
+    public List<String> members() {
+        return members;
+    }
+
+    /**
+     * Member owning the courier, or null if the ring is empty
+     */
+    public String owner(UUID courierId) {
+        if (positions.isEmpty()) {
+            return null;
+        }
+        Map.Entry<Long, String> entry = positions.ceilingEntry(hash(courierId.toString()));
+        return entry != null ? entry.getValue() : positions.firstEntry().getValue();
+    }
+
+    private static long hash(String value) {
+        byte[] digest = md5().digest(value.getBytes(StandardCharsets.UTF_8));
+        long hash = 0;
+        for (int i = 0; i < Long.BYTES; i++) {
+            hash = (hash << 8) | (digest[i] & 0xFF);
+        }
+        return hash;
+    }
+
+    private static MessageDigest md5() {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("MD5 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.couriertracking.cluster;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.couriertracking.dto.CourierHandoff;
+import com.couriertracking.ingest.ShardedCourierExecutor;
+import com.couriertracking.service.DistanceWriteBehindService;
+import com.couriertracking.service.StoreEntranceService;
+import com.couriertracking.state.CourierMotion;
+import com.couriertracking.state.CourierState;
+import com.couriertracking.state.CourierStateRegistry;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Moves courier state when cluster membership changes. Couriers this instance no longer owns have
+ * their distance flushed and their in-memory state captured on their ingest shard, after every
+ * update queued before the change, and sent to the new owner. Open store visits are closed at
+ * the last fix seen here. Anything not handed over is rebuilt by the owner from the database.
+ */
+@Component
+@Slf4j
+public class CourierRebalancer {
+
+    private final ClusterMembership clusterMembership;
+    private final ClusterClient clusterClient;
+    private final CourierStateRegistry courierStateRegistry;
+    private final ShardedCourierExecutor shardedCourierExecutor;
+    private final DistanceWriteBehindService distanceWriteBehindService;
+    private final StoreEntranceService storeEntranceService;
+
+    private final Counter handoffsSent;
+    private final Counter handoffsReceived;
+
+    public CourierRebalancer(ClusterMembership clusterMembership,
+                             ClusterClient clusterClient,
+                             CourierStateRegistry courierStateRegistry,
+                             ShardedCourierExecutor shardedCourierExecutor,
+                             DistanceWriteBehindService distanceWriteBehindService,
+                             StoreEntranceService storeEntranceService,
+                             MeterRegistry meterRegistry) {
+        this.clusterMembership = clusterMembership;
+        this.clusterClient = clusterClient;
+        this.courierStateRegistry = courierStateRegistry;
+        this.shardedCourierExecutor = shardedCourierExecutor;
+        this.distanceWriteBehindService = distanceWriteBehindService;
+        this.storeEntranceService = storeEntranceService;
+        this.handoffsSent = meterRegistry.counter("courier.cluster.handoff.sent");
+        this.handoffsReceived = meterRegistry.counter("courier.cluster.handoff.received");
+    }
+
+    @Scheduled(fixedDelayString = "${courier-tracking.cluster.refresh-interval-millis:5000}")
+    public void refresh() {
+        if (clusterMembership.isEnabled() && clusterMembership.reload()) {
+            handOffForeignCouriers();
+        }
+    }
+
+    /**
+     * Hand every courier held here but owned elsewhere to its owner
+     * @return number of couriers handed over
+     */
+    public int handOffForeignCouriers() {
+        Map<String, List<UUID>> byOwner = new LinkedHashMap<>();
+        courierStateRegistry.forEach(state -> {
+            String owner = clusterMembership.ownerOf(state.getCourierId());
+            if (!owner.equals(clusterMembership.self())) {
+                byOwner.computeIfAbsent(owner, key -> new ArrayList<>()).add(state.getCourierId());
+            }
+        });
+
+        int sent = 0;
+        for (Map.Entry<String, List<UUID>> entry : byOwner.entrySet()) {
+            List<CompletableFuture<CourierHandoff>> captures = entry.getValue().stream()
+                .map(courierId -> shardedCourierExecutor.submit(courierId, () -> capture(courierId)))
+                .toList();
+            List<CourierHandoff> handoffs = captures.stream()
+                .map(CompletableFuture::join)
+                .filter(Objects::nonNull)
+                .toList();
+            if (!handoffs.isEmpty() && clusterClient.sendHandoff(entry.getKey(), handoffs)) {
+                sent += handoffs.size();
+            }
+        }
+        handoffsSent.increment(sent);
+        if (!byOwner.isEmpty()) {
+            log.info("Handed {} couriers over to {} other instances", sent, byOwner.size());
+        }
+        return sent;
+    }
+
+    /**
+     * Adopt state handed over by the couriers' previous owner
+     */
+    public void accept(List<CourierHandoff> handoffs) {
+        for (CourierHandoff handoff : handoffs) {
+            UUID courierId = handoff.getCourierId();
+            if (courierId == null || handoff.getLastTimestamp() == null || handoff.getLastLatitude() == null
+                    || handoff.getLastLongitude() == null || !clusterMembership.isLocal(courierId)) {
+                continue;
+            }
+            handoffsReceived.increment();
+            shardedCourierExecutor.execute(courierId, () -> courierStateRegistry.getOrCreate(courierId).getMotion()
+                .restore(handoff.getLastTimestamp(), handoff.getLastLatitude(), handoff.getLastLongitude(),
+                    handoff.getSpeedMetersPerSecond() != null ? handoff.getSpeedMetersPerSecond() : Double.NaN));
+        }
+    }
+
+    private CourierHandoff capture(UUID courierId) {
+        if (clusterMembership.isLocal(courierId)) {
+            // Ownership came back before the shard got here
+            return null;
+        }
+        if (!distanceWriteBehindService.flushCourier(courierId)) {
+            log.warn("Courier {} handed over with an unflushed distance; its owner replays it from locations", courierId);
+        }
+        // The new owner cannot continue the visit; write it ending at the last fix seen here
+        storeEntranceService.closeOpenVisit(courierId);
+        CourierState state = courierStateRegistry.find(courierId).orElse(null);
+        courierStateRegistry.remove(courierId);
+        if (state == null || !state.getMotion().hasFix()) {
+            return null;
+        }
+
+        CourierMotion motion = state.getMotion();
+        return new CourierHandoff(courierId, motion.getLastTimestamp(), motion.getLastLatitude(),
+            motion.getLastLongitude(), motion.isSpeedKnown() ? motion.getSpeedMetersPerSecond() : null);
+    }
+}
@@ -0,0 +1,33 @@
+package com.couriertracking.controller;
+
+import com.couriertracking.cluster.ClusterMembership;
+import com.couriertracking.cluster.CourierRebalancer;
+import com.couriertracking.dto.CourierHandoff;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/cluster")
+@RequiredArgsConstructor
+@Slf4j
+public class ClusterController {
+
+    private final ClusterMembership clusterMembership;
+    private final CourierRebalancer courierRebalancer;
+
+    @GetMapping("/members")
+    public ResponseEntity<List<String>> getMembers() {
+        return ResponseEntity.ok(clusterMembership.members());
+    }
+
+    @PostMapping("/handoff")
+    public ResponseEntity<Void> acceptHandoff(@RequestBody List<CourierHandoff> handoffs) {
+        log.info("Received state for {} couriers from another instance", handoffs.size());
+        courierRebalancer.accept(handoffs);
+        return ResponseEntity.noContent().build();
+    }
+}
@@ -3,16 +3,28 @@ package com.couriertracking.controller;
 import com.couriertracking.dto.CourierCreateRequest;
 import com.couriertracking.dto.CourierResponse;
 import com.couriertracking.dto.DistanceResponse;
+import com.couriertracking.dto.TripPageResponse;
 import com.couriertracking.service.CourierService;
 import com.couriertracking.service.DistanceCalculationService;
+import com.couriertracking.service.TrackExportService;
+import com.couriertracking.service.TripService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
 import java.util.UUID;
+import java.util.zip.GZIPOutputStream;
 
 @RestController
 @RequestMapping("/couriers")
@@ -20,8 +32,12 @@ import java.util.UUID;
 @Slf4j
 public class CourierController {
     
+    private static final int MAX_TRIP_PAGE_SIZE = 100;
+    
     private final DistanceCalculationService distanceCalculationService;
     private final CourierService courierService;
+    private final TrackExportService trackExportService;
+    private final TripService tripService;
     
     @PostMapping
     public ResponseEntity<CourierResponse> createCourier(
@@ -45,4 +61,56 @@ public class CourierController {
         
         return ResponseEntity.ok(response);
     }
-}
\ No newline at end of file
+    
+    // Newest trips first; out-of-range page parameters are clamped, as Spring Data does for pageable arguments
+    @GetMapping("/{courierId}/trips")
+    public ResponseEntity<TripPageResponse> getTrips(
+            @PathVariable UUID courierId,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size) {
+        
+        courierService.getCourierById(courierId);
+        TripPageResponse trips = tripService.getTrips(courierId, Math.max(page, 0), Math.min(Math.max(size, 1), MAX_TRIP_PAGE_SIZE));
+        return ResponseEntity.ok(trips);
+    }
+    
+    // Streams the track as it is read; defaults to today's track, every point, as an encoded polyline
+    @GetMapping("/{courierId}/track")
+    public ResponseEntity<StreamingResponseBody> exportTrack(
+            @PathVariable UUID courierId,
+            @RequestParam(defaultValue = "polyline") String format,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(defaultValue = "0") double tolerance,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        
+        courierService.getCourierById(courierId);
+        TrackExportService.Format trackFormat = TrackExportService.Format.from(format);
+        LocalDateTime start = from != null ? from : LocalDate.now().atStartOfDay();
+        LocalDateTime end = to != null ? to : start.plusDays(1);
+        trackExportService.validate(start, end, tolerance);
+        boolean gzip = acceptsGzip(acceptEncoding);
+        
+        StreamingResponseBody body = out -> {
+            OutputStream stream = gzip ? new GZIPOutputStream(out, 8192) : out;
+            trackExportService.export(courierId, start, end, trackFormat, tolerance, stream);
+            if (stream instanceof GZIPOutputStream gzipStream) {
+                gzipStream.finish();
+            }
+        };
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+            .contentType(MediaType.parseMediaType(trackFormat.getContentType() + ";charset=UTF-8"))
+            .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return response.body(body);
+    }
+    
+    private static boolean acceptsGzip(String acceptEncoding) {
+        return acceptEncoding != null && Arrays.stream(acceptEncoding.split(","))
+            .map(coding -> coding.trim().toLowerCase())
+            .anyMatch(coding -> (coding.equals("gzip") || coding.startsWith("gzip;"))
+                && !coding.replace(" ", "").matches(".*;q=0(\\.0*)?$"));
+    }
+}
@@ -1,13 +1,23 @@
 package com.couriertracking.controller;
 
+import com.couriertracking.cluster.ClusterClient;
+import com.couriertracking.cluster.ClusterMembership;
+import com.couriertracking.dto.IngestReceiptResponse;
 import com.couriertracking.dto.LocationUpdateRequest;
 import com.couriertracking.dto.LocationUpdateResponse;
-import com.couriertracking.service.LocationTrackingService;
+import com.couriertracking.exception.OwnerUnavailableException;
+import com.couriertracking.service.LocationIngestService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+import java.net.URI;
+import java.util.Optional;
+import java.util.UUID;
 
 @RestController
 @RequestMapping("/locations")
@@ -15,13 +25,59 @@ import org.springframework.web.bind.annotation.*;
 @Slf4j
 public class LocationController {
     
-    private final LocationTrackingService locationTrackingService;
+    private static final String PREFER_HEADER = "Prefer";
+    private static final String RESPOND_ASYNC = "respond-async";
+    private static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    
+    private final LocationIngestService locationIngestService;
+    private final ClusterMembership clusterMembership;
+    private final ClusterClient clusterClient;
+    
+    @Value("${courier-tracking.ingest.mode:sync}")
+    private String ingestMode;
     
     @PostMapping
-    public ResponseEntity<LocationUpdateResponse> updateLocation(
-            @Valid @RequestBody LocationUpdateRequest request) {
+    public ResponseEntity<?> updateLocation(
+            @Valid @RequestBody LocationUpdateRequest request,
+            @RequestHeader(value = PREFER_HEADER, required = false) String prefer,
+            @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
+            @RequestHeader(value = ClusterClient.FORWARDED_BY_HEADER, required = false) String forwardedBy) {
+        
+        if (forwardedBy == null && !clusterMembership.isLocal(request.getCourierId())) {
+            String owner = clusterMembership.ownerOf(request.getCourierId());
+            Optional<ResponseEntity<String>> forwarded =
+                clusterClient.forwardLocation(owner, request, prefer, idempotencyKey);
+            if (forwarded.isPresent()) {
+                return forwarded.get();
+            }
+            // The owner may still have applied the fix (e.g. on a read timeout), and handling it here
+            // would build a second copy of the courier's state; the client retries with its Idempotency-Key
+            throw new OwnerUnavailableException("Owner of courier " + request.getCourierId() + " is unreachable: " + owner);
+        }
+        
+        if (isAsync(prefer)) {
+            IngestReceiptResponse receipt = locationIngestService.accept(request, idempotencyKey);
+            URI receiptUri = ServletUriComponentsBuilder.fromCurrentContextPath()
+                .path("/locations/receipts/{receiptId}")
+                .buildAndExpand(receipt.getReceiptId())
+                .toUri();
+            return ResponseEntity.accepted()
+                .location(receiptUri)
+                .header("Preference-Applied", RESPOND_ASYNC)
+                .body(receipt);
+        }
                 
-        LocationUpdateResponse response = locationTrackingService.updateCourierLocation(request);
+        LocationUpdateResponse response = locationIngestService.ingest(request, idempotencyKey);
         return ResponseEntity.ok(response);
     }
-}
\ No newline at end of file
+    
+    @GetMapping("/receipts/{receiptId}")
+    public ResponseEntity<IngestReceiptResponse> getReceipt(@PathVariable UUID receiptId) {
+        return ResponseEntity.ok(locationIngestService.getReceipt(receiptId));
+    }
+    
+    private boolean isAsync(String prefer) {
+        return "async".equalsIgnoreCase(ingestMode)
+            || (prefer != null && prefer.toLowerCase().contains(RESPOND_ASYNC));
+    }
+}
@@ -0,0 +1,52 @@
+package com.couriertracking.controller;
+
+import com.couriertracking.dto.StoreBulkRequest;
+import com.couriertracking.dto.StoreLoadReport;
+import com.couriertracking.dto.StoreRequest;
+import com.couriertracking.dto.StoreResponse;
+import com.couriertracking.service.StoreService;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.UUID;
+
+@RestController
+@RequestMapping("/stores")
+@RequiredArgsConstructor
+@Slf4j
+public class StoreController {
+
+    private final StoreService storeService;
+
+    @PostMapping
+    public ResponseEntity<StoreResponse> createStore(@Valid @RequestBody StoreRequest request) {
+        StoreResponse response = storeService.createStore(request);
+        return ResponseEntity.status(HttpStatus.CREATED).body(response);
+    }
+
+    @GetMapping("/{storeId}")
+    public ResponseEntity<StoreResponse> getStoreById(@PathVariable UUID storeId) {
+        return ResponseEntity.ok(storeService.getStoreById(storeId));
+    }
+
+    @PutMapping("/{storeId}")
+    public ResponseEntity<StoreResponse> updateStore(@PathVariable UUID storeId,
+                                                     @Valid @RequestBody StoreRequest request) {
+        return ResponseEntity.ok(storeService.updateStore(storeId, request));
+    }
+
+    @DeleteMapping("/{storeId}")
+    public ResponseEntity<Void> deleteStore(@PathVariable UUID storeId) {
+        storeService.deleteStore(storeId);
+        return ResponseEntity.noContent().build();
+    }
+
+    @PostMapping("/bulk")
+    public ResponseEntity<StoreLoadReport> upsertStores(@Valid @RequestBody StoreBulkRequest request) {
+        return ResponseEntity.ok(storeService.upsertStores(request.getStores()));
+    }
+}
@@ -0,0 +1,115 @@
+package com.couriertracking.datasource;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernateProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernateSettings;
+import org.springframework.boot.autoconfigure.orm.jpa.JpaProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.couriertracking.model.Location;
+import com.couriertracking.model.StoreEntrance;
+import com.couriertracking.repository.LocationRepository;
+import com.couriertracking.repository.StoreEntranceRepository;
+import com.zaxxer.hikari.HikariDataSource;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Location sharding. Locations and store entrances are spread over several databases by courier
+ * ID; the repositories injected into services route each call to the right shard. Couriers,
+ * stores and distances stay in the main database.
+ */
+@Configuration
+@ConditionalOnProperty(name = "courier-tracking.storage.sharding.enabled", havingValue = "true")
+public class LocationShardConfig {
+
+    static final String SHARD_SCHEMA = "scripts/location-shard-schema.sql";
+    static final String SHARD_MAPPING = "META-INF/location-shard-orm.xml";
+
+    @Bean
+    public LocationShards locationShards(
+            @Value("${courier-tracking.storage.sharding.urls}") String urls,
+            @Value("${courier-tracking.storage.sharding.username:}") String username,
+            @Value("${courier-tracking.storage.sharding.password:}") String password,
+            @Value("${courier-tracking.storage.sharding.maximum-pool-size:10}") int maximumPoolSize,
+            JpaProperties jpaProperties,
+            HibernateProperties hibernateProperties) {
+        List<String> shardUrls = Arrays.stream(urls.split(","))
+            .map(String::trim)
+            .filter(url -> !url.isEmpty())
+            .toList();
+        Map<String, Object> vendorProperties =
+            hibernateProperties.determineHibernateProperties(jpaProperties.getProperties(), new HibernateSettings());
+
+        List<LocationShards.Shard> shards = new ArrayList<>();
+        for (int index = 0; index < shardUrls.size(); index++) {
+            HikariDataSource dataSource = DataSourceBuilder.create()
+                .type(HikariDataSource.class)
+                .url(shardUrls.get(index))
+                .username(username)
+                .password(password)
+                .build();
+            dataSource.setPoolName("location-shard-" + index);
+            dataSource.setMaximumPoolSize(maximumPoolSize);
+            shards.add(shard(index, dataSource, vendorProperties));
+        }
+        return new LocationShards(shards);
+    }
+
+    @Bean
+    @Primary
+    public LocationRepository shardedLocationRepository(LocationShards locationShards, MeterRegistry meterRegistry) {
+        return locationShards.repository(LocationRepository.class, Location.class,
+            location -> location.getCourier().getId(), meterRegistry);
+    }
+
+    @Bean
+    @Primary
+    public StoreEntranceRepository shardedStoreEntranceRepository(LocationShards locationShards,
+                                                                  MeterRegistry meterRegistry) {
+        return locationShards.repository(StoreEntranceRepository.class, StoreEntrance.class,
+            entrance -> entrance.getCourier().getId(), meterRegistry);
+    }
+
+    /**
+     * Create the shard's tables if missing and open a persistence unit on it, mapping only locations
+     * and store entrances, with couriers and stores as plain ID columns
+     * @param vendorProperties Hibernate settings shared with the main persistence unit
+     */
+    static LocationShards.Shard shard(int index, DataSource dataSource, Map<String, Object> vendorProperties) {
+        new ResourceDatabasePopulator(new ClassPathResource(SHARD_SCHEMA)).execute(dataSource);
+
+        Map<String, Object> properties = new HashMap<>(vendorProperties);
+        properties.put("hibernate.hbm2ddl.auto", "none");
+        LocalContainerEntityManagerFactoryBean factory = new LocalContainerEntityManagerFactoryBean();
+        factory.setPersistenceUnitName("location-shard-" + index);
+        factory.setDataSource(dataSource);
+        // Only the shard's own tables; the main unit's entities would map tables the shard does not have
+        factory.setMappingResources(SHARD_MAPPING);
+        factory.setJpaVendorAdapter(new HibernateJpaVendorAdapter());
+        factory.setJpaPropertyMap(properties);
+        factory.afterPropertiesSet();
+
+        JpaTransactionManager transactionManager = new JpaTransactionManager(factory.getObject());
+        return new LocationShards.Shard(index, dataSource, factory.getObject(),
+            new TransactionTemplate(transactionManager));
+    }
+}
@@ -0,0 +1,118 @@
+package com.couriertracking.datasource;
+
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.stream.IntStream;
+
+import javax.sql.DataSource;
+
+import org.springframework.data.jpa.repository.support.JpaRepositoryFactory;
+import org.springframework.orm.jpa.SharedEntityManagerCreator;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * The databases holding locations and store entrances. A courier's rows live on the shard picked
+ * by hashing its ID, so the shard count must not change once rows are written. Fleet-wide queries
+ * run on every shard in parallel.
+ */
+public class LocationShards implements AutoCloseable {
+
+    public record Shard(int index, DataSource dataSource, EntityManagerFactory entityManagerFactory,
+                        TransactionTemplate transactionTemplate) {
+    }
+
+    private final List<Shard> shards;
+    private final ExecutorService scatterExecutor;
+
+    public LocationShards(List<Shard> shards) {
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("At least one location shard is required");
+        }
+        this.shards = List.copyOf(shards);
+        AtomicInteger threads = new AtomicInteger();
+        this.scatterExecutor = Executors.newFixedThreadPool(shards.size(), runnable -> {
+            Thread thread = new Thread(runnable, "location-shard-query-" + threads.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public int size() {
+        return shards.size();
+    }
+
+    public Shard get(int index) {
+        return shards.get(index);
+    }
+
+    public List<DataSource> dataSources() {
+        return shards.stream().map(Shard::dataSource).toList();
+    }
+
+    public int shardFor(UUID courierId) {
+        return Math.floorMod(courierId.hashCode(), shards.size());
+    }
+
+    /**
+     * Repository of the given type whose calls are routed to the owning courier's shard, or
+     * scattered to all shards when a call is not scoped to one courier
+     * @param courierOf courier ID of an entity handled by the repository
+     */
+    @SuppressWarnings("unchecked")
+    public <R, T> R repository(Class<R> repositoryType, Class<T> entityType, Function<T, UUID> courierOf,
+                               MeterRegistry meterRegistry) {
+        List<Object> perShard = shards.stream()
+            .map(shard -> (Object) new JpaRepositoryFactory(
+                    SharedEntityManagerCreator.createSharedEntityManager(shard.entityManagerFactory()))
+                .getRepository(repositoryType))
+            .toList();
+        return (R) Proxy.newProxyInstance(repositoryType.getClassLoader(),
+            new Class<?>[] { repositoryType },
+            new ShardedRepositoryHandler<>(repositoryType.getSimpleName(), this, perShard, entityType, courierOf,
+                meterRegistry));
+    }
+
+    /**
+     * Run the work on every shard in parallel
+     * @return results in shard order
+     */
+    <V> List<V> scatter(IntFunction<V> work) {
+        List<CompletableFuture<V>> futures = IntStream.range(0, shards.size())
+            .mapToObj(index -> CompletableFuture.supplyAsync(() -> work.apply(index), scatterExecutor))
+            .toList();
+        try {
+            return futures.stream().map(CompletableFuture::join).toList();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public void close() {
+        scatterExecutor.shutdown();
+        for (Shard shard : shards) {
+            shard.entityManagerFactory().close();
+            if (shard.dataSource() instanceof AutoCloseable closeable) {
+                try {
+                    closeable.close();
+                } catch (Exception ignored) {
+                    // Shutting down anyway
+                }
+            }
+        }
+    }
+}
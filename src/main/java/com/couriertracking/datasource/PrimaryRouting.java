@@ -0,0 +1,38 @@
+package com.couriertracking.datasource;
+
+import java.util.function.Supplier;
+
+/**
+ * Pins the current thread's database work to the primary. Spring Data finders run in read-only
+ * transactions, so a write path that reads before it writes (and is not already inside a
+ * read-write transaction) wraps those reads here to see its own and other instances' latest writes.
+ * Has no effect on a connection already bound to a surrounding transaction.
+ */
+public final class PrimaryRouting {
+
+    private static final ThreadLocal<int[]> DEPTH = ThreadLocal.withInitial(() -> new int[1]);
+
+    private PrimaryRouting() {
+    }
+
+    public static <T> T call(Supplier<T> work) {
+        int[] depth = DEPTH.get();
+        depth[0]++;
+        try {
+            return work.get();
+        } finally {
+            depth[0]--;
+        }
+    }
+
+    public static void run(Runnable work) {
+        call(() -> {
+            work.run();
+            return null;
+        });
+    }
+
+    public static boolean isActive() {
+        return DEPTH.get()[0] > 0;
+    }
+}
@@ -0,0 +1,106 @@
+package com.couriertracking.datasource;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Measures how far the read replica is behind the primary. Each instance bumps its own heartbeat
+ * row on the primary to its local time; the replica's copy of that row shows how old the
+ * replica's data is, measured against this instance's clock only, so neither another
+ * instance's beats nor clock skew between instances affect it. The replica is used only while
+ * it is within the allowed lag; a negative limit turns the check off.
+ */
+@Slf4j
+public class ReplicaLagMonitor {
+
+    static final String HEARTBEAT_TABLE = "replication_heartbeats";
+    // Rows of instances that stopped beating this long ago are deleted
+    private static final long ABANDONED_MILLIS = 24 * 60 * 60 * 1000L;
+
+    private final JdbcTemplate primary;
+    private final JdbcTemplate replica;
+    private final long maxLagMillis;
+    private final String instanceId = UUID.randomUUID().toString();
+
+    private volatile long lastBeatMillis = -1;
+    // Replica lag in millis, or -1 while unknown (replica unreachable or heartbeat not replicated yet)
+    private final AtomicLong lagMillis = new AtomicLong(-1);
+
+    public ReplicaLagMonitor(DataSource primaryDataSource, DataSource replicaDataSource, long maxLagMillis,
+                             MeterRegistry meterRegistry) {
+        this.primary = new JdbcTemplate(primaryDataSource);
+        this.replica = new JdbcTemplate(replicaDataSource);
+        this.maxLagMillis = maxLagMillis;
+        Gauge.builder("courier.datasource.replica.lag", lagMillis, AtomicLong::get)
+            .baseUnit("milliseconds")
+            .register(meterRegistry);
+    }
+
+    public boolean isReplicaUsable() {
+        if (maxLagMillis < 0) {
+            return true;
+        }
+        long lag = lagMillis.get();
+        return lag >= 0 && lag <= maxLagMillis;
+    }
+
+    public long getLagMillis() {
+        return lagMillis.get();
+    }
+
+    String getInstanceId() {
+        return instanceId;
+    }
+
+    @Scheduled(fixedDelayString = "${courier-tracking.datasource.replica.heartbeat-interval-millis:1000}")
+    public void check() {
+        if (maxLagMillis < 0) {
+            return;
+        }
+        beat();
+        measure();
+    }
+
+    private void beat() {
+        long now = System.currentTimeMillis();
+        try {
+            if (lastBeatMillis < 0) {
+                primary.execute("CREATE TABLE IF NOT EXISTS " + HEARTBEAT_TABLE
+                    + " (instance_id VARCHAR(36) PRIMARY KEY, beat_millis BIGINT NOT NULL)");
+                primary.update("DELETE FROM " + HEARTBEAT_TABLE + " WHERE beat_millis < ?", now - ABANDONED_MILLIS);
+            }
+            if (primary.update("UPDATE " + HEARTBEAT_TABLE + " SET beat_millis = ? WHERE instance_id = ?", now, instanceId) == 0) {
+                primary.update("INSERT INTO " + HEARTBEAT_TABLE + " (instance_id, beat_millis) VALUES (?, ?)", instanceId, now);
+            }
+            lastBeatMillis = now;
+        } catch (RuntimeException e) {
+            log.warn("Failed to write replication heartbeat: {}", e.getMessage());
+        }
+    }
+
+    private void measure() {
+        try {
+            Long replicated = replica.query("SELECT beat_millis FROM " + HEARTBEAT_TABLE + " WHERE instance_id = ?",
+                rs -> rs.next() ? rs.getLong(1) : null, instanceId);
+            long lag = replicated != null && lastBeatMillis >= 0 ? Math.max(0, lastBeatMillis - replicated) : -1;
+            long previous = lagMillis.getAndSet(lag);
+            boolean wasUsable = previous >= 0 && previous <= maxLagMillis;
+            if (wasUsable != isReplicaUsable()) {
+                log.info("Read replica {} (lag {} ms)", isReplicaUsable() ? "back in use" : "bypassed", lag);
+            }
+        } catch (RuntimeException e) {
+            if (lagMillis.getAndSet(-1) >= 0) {
+                log.warn("Read replica bypassed: {}", e.getMessage());
+            }
+        }
+    }
+}
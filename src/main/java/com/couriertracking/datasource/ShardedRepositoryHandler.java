@@ -0,0 +1,214 @@
+package com.couriertracking.datasource;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.function.Function;
+
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.orm.jpa.EntityManagerFactoryUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.couriertracking.model.Courier;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.PersistenceUnitUtil;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Routes repository calls across location shards. Calls on an entity, or derived queries by
+ * courier ({@code ...ByCourier...}), go to the courier's shard; anything else is scattered to all
+ * shards in parallel and the results merged. Each call runs in a transaction on its shard; rows
+ * saved during an application transaction are deleted again if that transaction rolls back.
+ */
+@Slf4j
+final class ShardedRepositoryHandler<T> implements InvocationHandler {
+
+    private final String name;
+    private final LocationShards shards;
+    private final List<Object> repositories;
+    private final Class<T> entityType;
+    private final Function<T, UUID> courierOf;
+    private final Counter singleShardCalls;
+    private final Counter scatterCalls;
+    private final Counter rolledBackRows;
+
+    ShardedRepositoryHandler(String name, LocationShards shards, List<Object> repositories, Class<T> entityType,
+                             Function<T, UUID> courierOf, MeterRegistry meterRegistry) {
+        this.name = name;
+        this.shards = shards;
+        this.repositories = repositories;
+        this.entityType = entityType;
+        this.courierOf = courierOf;
+        this.singleShardCalls = meterRegistry.counter("courier.storage.shard.calls", "repository", name, "scope", "single");
+        this.scatterCalls = meterRegistry.counter("courier.storage.shard.calls", "repository", name, "scope", "scatter");
+        this.rolledBackRows = meterRegistry.counter("courier.storage.shard.rolled.back", "repository", name);
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) {
+        if (method.getDeclaringClass() == Object.class) {
+            return switch (method.getName()) {
+                case "equals" -> proxy == args[0];
+                case "hashCode" -> System.identityHashCode(proxy);
+                default -> name + " over " + shards.size() + " location shards";
+            };
+        }
+        Object[] arguments = args != null ? args : new Object[0];
+        Object first = arguments.length > 0 ? arguments[0] : null;
+
+        if (entityType.isInstance(first)) {
+            singleShardCalls.increment();
+            return call(shards.shardFor(courierOf.apply(entityType.cast(first))), method, arguments);
+        }
+        if (first instanceof Iterable<?> items && containsOnlyEntities(items)) {
+            return callGrouped(method, arguments, items);
+        }
+        if (method.getName().contains("ByCourier")) {
+            singleShardCalls.increment();
+            return call(shards.shardFor(courierKey(first)), method, arguments);
+        }
+        return scatter(method, arguments);
+    }
+
+    private Object callGrouped(Method method, Object[] arguments, Iterable<?> items) {
+        Map<Integer, List<T>> byShard = new TreeMap<>();
+        for (Object item : items) {
+            T entity = entityType.cast(item);
+            byShard.computeIfAbsent(shards.shardFor(courierOf.apply(entity)), shard -> new ArrayList<>()).add(entity);
+        }
+        singleShardCalls.increment(byShard.size());
+        List<Object> results = new ArrayList<>();
+        byShard.forEach((shard, entities) -> {
+            Object[] shardArguments = arguments.clone();
+            shardArguments[0] = entities;
+            results.add(call(shard, method, shardArguments));
+        });
+        return merge(method, results);
+    }
+
+    private Object scatter(Method method, Object[] arguments) {
+        for (Object argument : arguments) {
+            if (argument instanceof Pageable || argument instanceof Sort) {
+                throw new UnsupportedOperationException(
+                    name + "." + method.getName() + " cannot sort or page across location shards");
+            }
+        }
+        scatterCalls.increment();
+        return merge(method, shards.scatter(shard -> call(shard, method, arguments)));
+    }
+
+    private Object call(int shard, Method method, Object[] arguments) {
+        Object result = execute(shard, method, arguments);
+        if (method.getName().startsWith("save") && TransactionSynchronizationManager.isSynchronizationActive()) {
+            deleteOnRollback(shard, result);
+        }
+        return result;
+    }
+
+    /**
+     * The shard commits on its own, so undo the save if the caller's transaction rolls back;
+     * otherwise the rows would outlive the ingest that wrote them and be replayed or duplicated
+     */
+    private void deleteOnRollback(int shard, Object saved) {
+        PersistenceUnitUtil persistenceUnit = shards.get(shard).entityManagerFactory().getPersistenceUnitUtil();
+        List<Object> ids = new ArrayList<>();
+        if (saved instanceof Iterable<?> entities) {
+            entities.forEach(entity -> ids.add(persistenceUnit.getIdentifier(entity)));
+        } else if (saved != null) {
+            ids.add(persistenceUnit.getIdentifier(saved));
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) {
+                    return;
+                }
+                try {
+                    @SuppressWarnings("unchecked")
+                    CrudRepository<?, Object> repository = (CrudRepository<?, Object>) repositories.get(shard);
+                    shards.get(shard).transactionTemplate().executeWithoutResult(tx -> repository.deleteAllById(ids));
+                    rolledBackRows.increment(ids.size());
+                } catch (RuntimeException e) {
+                    log.warn("Could not delete {} rolled-back {} rows from location shard {}", ids.size(), name, shard, e);
+                }
+            }
+        });
+    }
+
+    private Object execute(int shard, Method method, Object[] arguments) {
+        return shards.get(shard).transactionTemplate().execute(status -> {
+            try {
+                return method.invoke(repositories.get(shard), arguments);
+            } catch (InvocationTargetException e) {
+                if (e.getCause() instanceof RuntimeException cause) {
+                    DataAccessException translated = EntityManagerFactoryUtils.convertJpaAccessExceptionIfPossible(cause);
+                    throw translated != null ? translated : cause;
+                }
+                throw new UndeclaredThrowableException(e.getCause());
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+
+    private Object merge(Method method, List<Object> results) {
+        Class<?> type = method.getReturnType();
+        if (type == void.class) {
+            return null;
+        }
+        if (type == boolean.class || type == Boolean.class) {
+            return results.stream().anyMatch(Boolean.TRUE::equals);
+        }
+        if (type == long.class || type == Long.class) {
+            return results.stream().mapToLong(result -> (Long) result).sum();
+        }
+        if (type == Optional.class) {
+            return results.stream()
+                .map(result -> (Optional<?>) result)
+                .filter(Optional::isPresent)
+                .findFirst()
+                .orElse(Optional.empty());
+        }
+        if (type.isAssignableFrom(List.class)) {
+            List<Object> merged = new ArrayList<>();
+            results.forEach(result -> ((Iterable<?>) result).forEach(merged::add));
+            return merged;
+        }
+        throw new UnsupportedOperationException(
+            name + "." + method.getName() + " cannot merge " + type.getSimpleName() + " results across location shards");
+    }
+
+    private boolean containsOnlyEntities(Iterable<?> items) {
+        boolean any = false;
+        for (Object item : items) {
+            if (!entityType.isInstance(item)) {
+                return false;
+            }
+            any = true;
+        }
+        return any;
+    }
+
+    private static UUID courierKey(Object argument) {
+        if (argument instanceof UUID courierId) {
+            return courierId;
+        }
+        if (argument instanceof Courier courier && courier.getId() != null) {
+            return courier.getId();
+        }
+        throw new IllegalArgumentException("Courier-scoped query needs a courier or courier ID first, got " + argument);
+    }
+}
@@ -0,0 +1,29 @@
+package com.couriertracking.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ArchiveReport {
+
+    private int daysArchived;
+    private int blocksWritten;
+    private long pointsArchived;
+    // Row-form size of the archived points (RetentionReport.LOCATION_ROW_BYTES each) against the encoded blocks
+    private long rawBytes;
+    private long encodedBytes;
+    // Time spent decoding the written blocks back for verification
+    private long decodeNanos;
+    private long durationMillis;
+
+    public double getCompressionRatio() {
+        return encodedBytes == 0 ? 0 : (double) rawBytes / encodedBytes;
+    }
+
+    public double getDecodePointsPerSecond() {
+        return decodeNanos == 0 ? 0 : pointsArchived * 1_000_000_000.0 / decodeNanos;
+    }
+}
@@ -0,0 +1,28 @@
+package com.couriertracking.dto;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * In-memory courier state sent to the courier's new owner when cluster membership changes.
+ * Everything else is rebuilt by the owner from the database.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CourierHandoff {
+
+    private UUID courierId;
+
+    private LocalDateTime lastTimestamp;
+
+    private Double lastLatitude;
+
+    private Double lastLongitude;
+
+    private Double speedMetersPerSecond;
+}
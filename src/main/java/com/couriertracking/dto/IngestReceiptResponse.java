@@ -0,0 +1,24 @@
+package com.couriertracking.dto;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import com.couriertracking.ingest.IngestReceiptStatus;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class IngestReceiptResponse {
+
+    private UUID receiptId;
+    private UUID courierId;
+    private IngestReceiptStatus status;
+    private LocalDateTime acceptedAt;
+    private LocalDateTime completedAt;
+    private UUID locationId;
+    private String message;
+}
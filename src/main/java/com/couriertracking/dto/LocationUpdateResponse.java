@@ -19,4 +19,12 @@ public class LocationUpdateResponse {
     private Double longitude;
     private LocalDateTime timestamp;
     private String message;
+
+    // Seconds the device should wait before sending its next fix; null when no hint is given
+    private Integer nextReportAfterSeconds;
+
+    public LocationUpdateResponse(UUID locationId, UUID courierId, Double latitude, Double longitude,
+                                  LocalDateTime timestamp, String message) {
+        this(locationId, courierId, latitude, longitude, timestamp, message, null);
+    }
 }
@@ -0,0 +1,36 @@
+package com.couriertracking.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RetentionReport {
+
+    // Approximate payload per row from column widths (UUIDs, doubles, timestamps); indexes and page overhead excluded
+    public static final int LOCATION_ROW_BYTES = 64;
+    public static final int HISTORY_ROW_BYTES = 40;
+
+    private int daysCompacted;
+    private long locationRowsRemoved;
+    private long historyRowsWritten;
+    // Archived days past the full-resolution window: blocks deleted and their encoded size
+    private long archiveBlocksRemoved;
+    private long archiveBytesRemoved;
+    private int partitionsDropped;
+    private long historyRowsDropped;
+    private long durationMillis;
+
+    public long getRowsReclaimed() {
+        return locationRowsRemoved + archiveBlocksRemoved - historyRowsWritten + historyRowsDropped;
+    }
+
+    public long getBytesReclaimed() {
+        return locationRowsRemoved * LOCATION_ROW_BYTES
+            + archiveBytesRemoved
+            - historyRowsWritten * HISTORY_ROW_BYTES
+            + historyRowsDropped * HISTORY_ROW_BYTES;
+    }
+}
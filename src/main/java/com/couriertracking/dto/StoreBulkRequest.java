@@ -0,0 +1,18 @@
+package com.couriertracking.dto;
+
+import java.util.List;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StoreBulkRequest {
+
+    @NotEmpty(message = "At least one store is required")
+    private List<@Valid StoreRequest> stores;
+}
@@ -1,5 +1,7 @@
 package com.couriertracking.dto;
 
+import java.util.List;
+
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -9,7 +11,11 @@ import lombok.NoArgsConstructor;
 @AllArgsConstructor
 public class StoreDto {
    
+   // Optional; defaults to the store name
+   private String externalId;
    private String name;
    private Double lat;
    private Double lng;
+   // Optional polygon geofence as [lat, lng] pairs
+   private List<List<Double>> geofence;
 }
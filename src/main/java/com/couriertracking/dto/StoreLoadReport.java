@@ -0,0 +1,20 @@
+package com.couriertracking.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StoreLoadReport {
+
+    private int inserted;
+    private int updated;
+    private int unchanged;
+    private long durationMillis;
+
+    public int getTotal() {
+        return inserted + updated + unchanged;
+    }
+}
@@ -0,0 +1,38 @@
+package com.couriertracking.dto;
+
+import java.util.List;
+
+import jakarta.validation.constraints.DecimalMax;
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StoreRequest {
+
+    // Optional; defaults to the store name
+    private String externalId;
+
+    @NotBlank(message = "Store name is required")
+    private String name;
+
+    @NotNull(message = "Latitude is required")
+    @DecimalMin(value = "-90.0", message = "Latitude must be >= -90.0")
+    @DecimalMax(value = "90.0", message = "Latitude must be <= 90.0")
+    private Double latitude;
+
+    @NotNull(message = "Longitude is required")
+    @DecimalMin(value = "-180.0", message = "Longitude must be >= -180.0")
+    @DecimalMax(value = "180.0", message = "Longitude must be <= 180.0")
+    private Double longitude;
+
+    // Optional polygon geofence as [lat, lng] pairs
+    @Size(min = 3, message = "Geofence needs at least 3 vertices")
+    private List<@NotNull @Size(min = 2, max = 2, message = "Geofence vertices must be [lat, lng] pairs") List<@NotNull Double>> geofence;
+}
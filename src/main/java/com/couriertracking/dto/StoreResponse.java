@@ -0,0 +1,21 @@
+package com.couriertracking.dto;
+
+import java.util.List;
+import java.util.UUID;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StoreResponse {
+
+    private UUID id;
+    private String externalId;
+    private String name;
+    private Double latitude;
+    private Double longitude;
+    private List<List<Double>> geofence;
+}
@@ -0,0 +1,19 @@
+package com.couriertracking.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TripPageResponse {
+
+    private List<TripResponse> trips;
+    private int page;
+    private int size;
+    private long totalElements;
+    private int totalPages;
+}
@@ -0,0 +1,46 @@
+package com.couriertracking.dto;
+
+import com.couriertracking.model.Trip;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TripResponse {
+
+    private UUID id;
+    private UUID courierId;
+    private LocalDateTime startedAt;
+    private LocalDateTime endedAt;
+    private Double startLatitude;
+    private Double startLongitude;
+    private Double endLatitude;
+    private Double endLongitude;
+    private Double distance;
+    private String unit;
+    private Integer pointCount;
+    // OPEN, or the reason the trip was closed
+    private String status;
+
+    public static TripResponse from(UUID courierId, Trip trip) {
+        return new TripResponse(
+            trip.getId(),
+            courierId,
+            trip.getStartedAt(),
+            trip.getEndedAt(),
+            trip.getStartLatitude(),
+            trip.getStartLongitude(),
+            trip.getEndLatitude(),
+            trip.getEndLongitude(),
+            trip.getDistance(),
+            "km",
+            trip.getPointCount(),
+            trip.isOpen() ? "OPEN" : trip.getEndReason().name()
+        );
+    }
+}
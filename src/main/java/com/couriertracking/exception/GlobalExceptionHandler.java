@@ -2,6 +2,7 @@ package com.couriertracking.exception;
 
 import com.couriertracking.dto.ErrorResponse;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.FieldError;
@@ -35,6 +36,54 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(HttpStatus.NOT_FOUND).body(errorResponse);
     }
     
+    @ExceptionHandler(ReceiptNotFoundException.class)
+    public ResponseEntity<ErrorResponse> handleReceiptNotFound(
+            ReceiptNotFoundException ex, HttpServletRequest request) {
+        
+        log.error("Receipt not found: {}", ex.getMessage());
+        
+        ErrorResponse errorResponse = new ErrorResponse(
+            "RECEIPT_NOT_FOUND",
+            HttpStatus.NOT_FOUND.value(),
+            ex.getMessage(),
+            LocalDateTime.now()
+        );
+        
+        return ResponseEntity.status(HttpStatus.NOT_FOUND).body(errorResponse);
+    }
+    
+    @ExceptionHandler(StoreNotFoundException.class)
+    public ResponseEntity<ErrorResponse> handleStoreNotFound(
+            StoreNotFoundException ex, HttpServletRequest request) {
+        
+        log.error("Store not found: {}", ex.getMessage());
+        
+        ErrorResponse errorResponse = new ErrorResponse(
+            "STORE_NOT_FOUND",
+            HttpStatus.NOT_FOUND.value(),
+            ex.getMessage(),
+            LocalDateTime.now()
+        );
+        
+        return ResponseEntity.status(HttpStatus.NOT_FOUND).body(errorResponse);
+    }
+    
+    @ExceptionHandler(StoreConflictException.class)
+    public ResponseEntity<ErrorResponse> handleStoreConflict(
+            StoreConflictException ex, HttpServletRequest request) {
+        
+        log.error("Store conflict: {}", ex.getMessage());
+        
+        ErrorResponse errorResponse = new ErrorResponse(
+            "STORE_CONFLICT",
+            HttpStatus.CONFLICT.value(),
+            ex.getMessage(),
+            LocalDateTime.now()
+        );
+        
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(errorResponse);
+    }
+    
     @ExceptionHandler(InvalidLocationException.class)
     public ResponseEntity<ErrorResponse> handleInvalidLocation(
             InvalidLocationException ex, HttpServletRequest request) {
@@ -51,6 +100,58 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(errorResponse);
     }
     
+    @ExceptionHandler(InvalidExportRequestException.class)
+    public ResponseEntity<ErrorResponse> handleInvalidExportRequest(
+            InvalidExportRequestException ex, HttpServletRequest request) {
+        
+        log.error("Invalid export request: {}", ex.getMessage());
+        
+        ErrorResponse errorResponse = new ErrorResponse(
+            "INVALID_EXPORT_REQUEST",
+            HttpStatus.BAD_REQUEST.value(),
+            ex.getMessage(),
+            LocalDateTime.now()
+        );
+        
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(errorResponse);
+    }
+    
+    @ExceptionHandler(OwnerUnavailableException.class)
+    public ResponseEntity<ErrorResponse> handleOwnerUnavailable(
+            OwnerUnavailableException ex, HttpServletRequest request) {
+        
+        log.warn("Owner unavailable: {}", ex.getMessage());
+        
+        ErrorResponse errorResponse = new ErrorResponse(
+            "OWNER_UNAVAILABLE",
+            HttpStatus.SERVICE_UNAVAILABLE.value(),
+            ex.getMessage(),
+            LocalDateTime.now()
+        );
+        
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+            .header(HttpHeaders.RETRY_AFTER, "1")
+            .body(errorResponse);
+    }
+    
+    @ExceptionHandler(ReceiptCapacityExceededException.class)
+    public ResponseEntity<ErrorResponse> handleReceiptCapacityExceeded(
+            ReceiptCapacityExceededException ex, HttpServletRequest request) {
+        
+        log.warn("Receipt capacity exceeded: {}", ex.getMessage());
+        
+        ErrorResponse errorResponse = new ErrorResponse(
+            "RECEIPT_CAPACITY_EXCEEDED",
+            HttpStatus.SERVICE_UNAVAILABLE.value(),
+            ex.getMessage(),
+            LocalDateTime.now()
+        );
+        
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+            .header(HttpHeaders.RETRY_AFTER, "1")
+            .body(errorResponse);
+    }
+    
     @ExceptionHandler(LocationTrackingException.class)
     public ResponseEntity<ErrorResponse> handleLocationTracking(
             LocationTrackingException ex, HttpServletRequest request) {
@@ -0,0 +1,8 @@
+package com.couriertracking.exception;
+
+// Custom exception for track export parameters that cannot be served, such as an unknown format
+public class InvalidExportRequestException extends RuntimeException {
+    public InvalidExportRequestException(String message) {
+        super(message);
+    }
+}
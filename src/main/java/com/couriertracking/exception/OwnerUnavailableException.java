@@ -0,0 +1,7 @@
+package com.couriertracking.exception;
+
+public class OwnerUnavailableException extends RuntimeException {
+    public OwnerUnavailableException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package com.couriertracking.exception;
+
+public class ReceiptCapacityExceededException extends RuntimeException {
+    public ReceiptCapacityExceededException(String message) {
+        super(message);
+    }
+}
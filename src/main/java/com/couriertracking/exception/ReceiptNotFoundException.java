@@ -0,0 +1,7 @@
+package com.couriertracking.exception;
+
+public class ReceiptNotFoundException extends RuntimeException {
+    public ReceiptNotFoundException(String message) {
+        super(message);
+    }
+}
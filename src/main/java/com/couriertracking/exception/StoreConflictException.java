@@ -0,0 +1,7 @@
+package com.couriertracking.exception;
+
+public class StoreConflictException extends RuntimeException {
+    public StoreConflictException(String message) {
+        super(message);
+    }
+}
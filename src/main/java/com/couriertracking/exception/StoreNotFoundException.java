@@ -0,0 +1,7 @@
+package com.couriertracking.exception;
+
+public class StoreNotFoundException extends RuntimeException {
+    public StoreNotFoundException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,48 @@
+package com.couriertracking.geo;
+
+/**
+ * Planar geometry on a local equirectangular projection, accurate to well under a meter over the
+ * few kilometres between two fixes.
+ */
+public final class GeoSegments {
+
+    public static final double METERS_PER_DEGREE_LATITUDE = 111320.0;
+
+    private GeoSegments() {
+    }
+
+    public static double metersPerDegreeLongitude(double latitude) {
+        return METERS_PER_DEGREE_LATITUDE * Math.cos(Math.toRadians(latitude));
+    }
+
+    /**
+     * Fraction of the way along the segment from (fromLat, fromLon) to (toLat, toLon) at which it
+     * first enters the circle around (centerLat, centerLon), or NaN if it never does.
+     * Returns 0 when the segment starts inside the circle.
+     */
+    public static double entryFraction(double fromLat, double fromLon, double toLat, double toLon,
+                                       double centerLat, double centerLon, double radiusMeters) {
+        double metersPerDegreeLongitude = metersPerDegreeLongitude(centerLat);
+        double ax = (fromLon - centerLon) * metersPerDegreeLongitude;
+        double ay = (fromLat - centerLat) * METERS_PER_DEGREE_LATITUDE;
+        double dx = (toLon - fromLon) * metersPerDegreeLongitude;
+        double dy = (toLat - fromLat) * METERS_PER_DEGREE_LATITUDE;
+
+        // Solve |A + tD| = r for the smallest t in [0, 1]
+        double c = ax * ax + ay * ay - radiusMeters * radiusMeters;
+        if (c <= 0) {
+            return 0.0;
+        }
+        double a = dx * dx + dy * dy;
+        if (a == 0) {
+            return Double.NaN;
+        }
+        double b = 2 * (ax * dx + ay * dy);
+        double discriminant = b * b - 4 * a * c;
+        if (discriminant < 0) {
+            return Double.NaN;
+        }
+        double t = (-b - Math.sqrt(discriminant)) / (2 * a);
+        return t >= 0 && t <= 1 ? t : Double.NaN;
+    }
+}
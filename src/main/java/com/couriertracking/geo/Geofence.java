@@ -0,0 +1,142 @@
+package com.couriertracking.geo;
+
+import java.util.List;
+
+import com.couriertracking.model.GeoPoint;
+
+/**
+ * Polygon geofence with a precomputed edge table for fast point-in-polygon and segment-crossing
+ * tests. Coordinates stay in degrees: over a single mall the projection is linear, so inside tests
+ * and crossing fractions are unaffected.
+ */
+public final class Geofence {
+
+    private final int edgeCount;
+    private final double[] startLat;
+    private final double[] startLon;
+    private final double[] deltaLat;
+    private final double[] deltaLon;
+    // Longitude change per degree of latitude along each edge, for the ray-casting crossing point
+    private final double[] lonPerLat;
+
+    private final double minLat;
+    private final double maxLat;
+    private final double minLon;
+    private final double maxLon;
+    private final double reachMeters;
+
+    private Geofence(List<GeoPoint> vertices, double reachMeters) {
+        this.edgeCount = vertices.size();
+        this.startLat = new double[edgeCount];
+        this.startLon = new double[edgeCount];
+        this.deltaLat = new double[edgeCount];
+        this.deltaLon = new double[edgeCount];
+        this.lonPerLat = new double[edgeCount];
+
+        double lowLat = Double.MAX_VALUE;
+        double highLat = -Double.MAX_VALUE;
+        double lowLon = Double.MAX_VALUE;
+        double highLon = -Double.MAX_VALUE;
+        for (int i = 0; i < edgeCount; i++) {
+            GeoPoint from = vertices.get(i);
+            GeoPoint to = vertices.get((i + 1) % edgeCount);
+            startLat[i] = from.getLatitude();
+            startLon[i] = from.getLongitude();
+            deltaLat[i] = to.getLatitude() - from.getLatitude();
+            deltaLon[i] = to.getLongitude() - from.getLongitude();
+            lonPerLat[i] = deltaLat[i] == 0 ? 0 : deltaLon[i] / deltaLat[i];
+
+            lowLat = Math.min(lowLat, from.getLatitude());
+            highLat = Math.max(highLat, from.getLatitude());
+            lowLon = Math.min(lowLon, from.getLongitude());
+            highLon = Math.max(highLon, from.getLongitude());
+        }
+        this.minLat = lowLat;
+        this.maxLat = highLat;
+        this.minLon = lowLon;
+        this.maxLon = highLon;
+        this.reachMeters = reachMeters;
+    }
+
+    /**
+     * @param reachMeters distance from the store's own position to its farthest vertex
+     */
+    public static Geofence of(List<GeoPoint> vertices, double reachMeters) {
+        if (vertices.size() < 3) {
+            throw new IllegalArgumentException("A geofence needs at least 3 vertices");
+        }
+        return new Geofence(vertices, reachMeters);
+    }
+
+    public double getReachMeters() {
+        return reachMeters;
+    }
+
+    public boolean intersectsBox(double boxMinLat, double boxMinLon, double boxMaxLat, double boxMaxLon) {
+        return minLat <= boxMaxLat && maxLat >= boxMinLat && minLon <= boxMaxLon && maxLon >= boxMinLon;
+    }
+
+    public double getMinLat() {
+        return minLat;
+    }
+
+    public double getMaxLat() {
+        return maxLat;
+    }
+
+    public double getMinLon() {
+        return minLon;
+    }
+
+    public double getMaxLon() {
+        return maxLon;
+    }
+
+    public boolean contains(double latitude, double longitude) {
+        if (latitude < minLat || latitude > maxLat || longitude < minLon || longitude > maxLon) {
+            return false;
+        }
+        boolean inside = false;
+        for (int i = 0; i < edgeCount; i++) {
+            double edgeStartLat = startLat[i];
+            double edgeEndLat = edgeStartLat + deltaLat[i];
+            if ((edgeStartLat > latitude) != (edgeEndLat > latitude)
+                    && longitude < startLon[i] + (latitude - edgeStartLat) * lonPerLat[i]) {
+                inside = !inside;
+            }
+        }
+        return inside;
+    }
+
+    /**
+     * Fraction of the way along the segment at which it first enters the polygon, or NaN if it
+     * never does. Returns 0 when the segment starts inside.
+     */
+    public double entryFraction(double fromLat, double fromLon, double toLat, double toLon) {
+        if (!intersectsBox(Math.min(fromLat, toLat), Math.min(fromLon, toLon),
+                Math.max(fromLat, toLat), Math.max(fromLon, toLon))) {
+            return Double.NaN;
+        }
+        if (contains(fromLat, fromLon)) {
+            return 0.0;
+        }
+
+        double segmentLat = toLat - fromLat;
+        double segmentLon = toLon - fromLon;
+        double first = Double.NaN;
+        for (int i = 0; i < edgeCount; i++) {
+            double denominator = segmentLat * deltaLon[i] - segmentLon * deltaLat[i];
+            if (denominator == 0) {
+                continue; // parallel
+            }
+            double offsetLat = startLat[i] - fromLat;
+            double offsetLon = startLon[i] - fromLon;
+            double t = (offsetLat * deltaLon[i] - offsetLon * deltaLat[i]) / denominator;
+            double u = (offsetLat * segmentLon - offsetLon * segmentLat) / denominator;
+            if (t >= 0 && t <= 1 && u >= 0 && u <= 1 && (Double.isNaN(first) || t < first)) {
+                first = t;
+            }
+        }
+        return first;
+    }
+}
@@ -0,0 +1,364 @@
+package com.couriertracking.geo;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
+
+import org.springframework.stereotype.Component;
+
+import com.couriertracking.datasource.PrimaryRouting;
+import com.couriertracking.model.GeoPoint;
+import com.couriertracking.model.Store;
+import com.couriertracking.repository.StoreRepository;
+import com.couriertracking.util.DistanceUtils;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * In-memory snapshot of all stores for per-fix proximity queries, so the ingest path does not hit
+ * the stores table. Stores are bucketed into a uniform lat/lon grid for bounding-box queries; a
+ * store with a polygon geofence is bucketed into every cell its bounding box covers.
+ * The snapshot is immutable and swapped as a whole on {@link #refresh()} or {@link #apply}, so
+ * readers never lock; writers are serialized.
+ */
+@Component
+@Slf4j
+public class StoreIndex {
+
+    // ~1.1 km of latitude per cell
+    private static final double CELL_DEGREES = 0.01;
+
+    private final StoreRepository storeRepository;
+    private final DistanceUtils distanceUtils;
+
+    private final Timer fullRebuilds;
+    private final Timer incrementalRebuilds;
+
+    private volatile Snapshot snapshot;
+    private volatile long generation;
+
+    public StoreIndex(StoreRepository storeRepository, DistanceUtils distanceUtils, MeterRegistry meterRegistry) {
+        this.storeRepository = storeRepository;
+        this.distanceUtils = distanceUtils;
+        this.fullRebuilds = meterRegistry.timer("courier.store.index.rebuild", "kind", "full");
+        this.incrementalRebuilds = meterRegistry.timer("courier.store.index.rebuild", "kind", "incremental");
+    }
+
+    /**
+     * Reload the snapshot from the database
+     */
+    public synchronized void refresh() {
+        long start = System.nanoTime();
+        // Runs right after catalogue writes, which a lagging replica may not have yet
+        List<Store> stores = PrimaryRouting.call(storeRepository::findAll);
+        Map<UUID, Geofence> geofences = new HashMap<>();
+        for (Store store : stores) {
+            if (store.hasGeofence()) {
+                geofences.put(store.getId(), buildGeofence(store));
+            }
+        }
+        swap(Snapshot.of(stores, geofences));
+        fullRebuilds.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        log.info("Store index loaded with {} stores ({} geofenced) in {} grid cells",
+            stores.size(), geofences.size(), snapshot.cells().size());
+    }
+
+    /**
+     * Apply created, updated and deleted stores to a copy of the current snapshot and swap it in.
+     * Only the grid cells the changed stores occupy are copied, and only their geofences rebuilt.
+     */
+    public synchronized void apply(Collection<Store> upserted, Collection<UUID> removed) {
+        if (upserted.isEmpty() && removed.isEmpty()) {
+            return;
+        }
+        long start = System.nanoTime();
+        Snapshot current = snapshot();
+
+        Map<UUID, Store> stores = new LinkedHashMap<>();
+        for (Store store : current.stores()) {
+            stores.put(store.getId(), store);
+        }
+        Map<UUID, Geofence> geofences = new HashMap<>(current.geofences());
+        Map<Long, List<Store>> cells = new HashMap<>(current.cells());
+        Map<Long, List<Store>> copiedCells = new HashMap<>();
+
+        List<UUID> changedIds = new ArrayList<>(removed);
+        upserted.forEach(store -> changedIds.add(store.getId()));
+        for (UUID id : changedIds) {
+            Store previous = stores.remove(id);
+            if (previous != null) {
+                Snapshot.forEachCell(previous, geofences.remove(id), key ->
+                    copiedCell(cells, copiedCells, key).removeIf(store -> store == previous));
+            }
+        }
+        for (Store store : upserted) {
+            stores.put(store.getId(), store);
+            Geofence geofence = store.hasGeofence() ? buildGeofence(store) : null;
+            if (geofence != null) {
+                geofences.put(store.getId(), geofence);
+            }
+            Snapshot.forEachCell(store, geofence, key -> copiedCell(cells, copiedCells, key).add(store));
+        }
+        copiedCells.forEach((key, bucket) -> {
+            if (bucket.isEmpty()) {
+                cells.remove(key);
+            } else {
+                cells.put(key, List.copyOf(bucket));
+            }
+        });
+
+        swap(new Snapshot(List.copyOf(stores.values()), Map.copyOf(geofences), Collections.unmodifiableMap(cells)));
+        incrementalRebuilds.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        log.info("Store index updated with {} upserted and {} removed stores, now {} stores",
+            upserted.size(), removed.size(), stores.size());
+    }
+
+    private static List<Store> copiedCell(Map<Long, List<Store>> cells, Map<Long, List<Store>> copiedCells, long key) {
+        return copiedCells.computeIfAbsent(key, k -> new ArrayList<>(cells.getOrDefault(k, List.of())));
+    }
+
+    /**
+     * Incremented on every snapshot swap. Read it before a query to tell later whether an answer
+     * derived from that query may be stale.
+     */
+    public long generation() {
+        return generation;
+    }
+
+    public List<Store> getStores() {
+        return snapshot().stores();
+    }
+
+    public Optional<Geofence> geofence(Store store) {
+        return Optional.ofNullable(snapshot().geofences().get(store.getId()));
+    }
+
+    /**
+     * Lower bound on the distance from a point to the nearest store's entrance area: the entrance
+     * radius for plain stores, the polygon for geofenced ones. Zero or negative means the point may
+     * be inside one. Searches outward from the point's grid cell one ring at a time and stops once
+     * no store outside the searched square can be closer than the best found.
+     */
+    public double clearanceMeters(double latitude, double longitude, double entranceRadiusMeters) {
+        Snapshot current = snapshot();
+        long latCell = Snapshot.cell(latitude);
+        long lonCell = Snapshot.cell(longitude);
+        double clearance = Double.MAX_VALUE;
+        for (long ring = 0; (2 * ring + 1) * (2 * ring + 1) <= current.cells().size(); ring++) {
+            for (Store store : current.ring(latCell, lonCell, ring)) {
+                clearance = Math.min(clearance, clearance(current, store, latitude, longitude, entranceRadiusMeters));
+            }
+            // A store not yet seen lies outside the square, so its position is at least this far
+            // away and its radius or polygon can reach no closer
+            double outsideMeters = Math.min(
+                Snapshot.distanceToSquareEdge(latitude, longitude, latCell, lonCell, ring),
+                measuredDistanceToSquareEdge(latitude, longitude, latCell, lonCell, ring)) - entranceRadiusMeters;
+            if (clearance <= outsideMeters) {
+                return clearance;
+            }
+        }
+        // Sparse grid: the square now spans more cells than are occupied, a plain scan is cheaper
+        for (Store store : current.stores()) {
+            clearance = Math.min(clearance, clearance(current, store, latitude, longitude, entranceRadiusMeters));
+        }
+        return clearance;
+    }
+
+    /**
+     * Distance from a point straight out to each edge of the searched square, in the configured
+     * metric that {@link #clearance} uses. The euclidean metric's fixed degree lengths can be
+     * shorter than true ones, so the edge distance in true meters alone may overestimate.
+     */
+    private double measuredDistanceToSquareEdge(double latitude, double longitude, long latCell, long lonCell, long ring) {
+        double south = (latCell - ring) * CELL_DEGREES;
+        double north = (latCell + ring + 1) * CELL_DEGREES;
+        double west = (lonCell - ring) * CELL_DEGREES;
+        double east = (lonCell + ring + 1) * CELL_DEGREES;
+        return Math.min(
+            Math.min(distanceUtils.calculateDistanceInMeters(latitude, longitude, south, longitude),
+                distanceUtils.calculateDistanceInMeters(latitude, longitude, north, longitude)),
+            Math.min(distanceUtils.calculateDistanceInMeters(latitude, longitude, latitude, west),
+                distanceUtils.calculateDistanceInMeters(latitude, longitude, latitude, east)));
+    }
+
+    private double clearance(Snapshot current, Store store, double latitude, double longitude,
+                             double entranceRadiusMeters) {
+        double distanceMeters = distanceUtils.calculateDistanceInMeters(
+            latitude, longitude, store.getLatitude(), store.getLongitude());
+        Geofence geofence = current.geofences().get(store.getId());
+        double reachMeters = geofence != null ? geofence.getReachMeters() : entranceRadiusMeters;
+        return distanceMeters - reachMeters;
+    }
+
+    /**
+     * Stores whose position or geofence lies within the bounding box of the segment from one point
+     * to another, widened by a margin. Pass the same point twice for a single-point query.
+     */
+    public List<Store> storesAlong(double fromLat, double fromLon, double toLat, double toLon, double marginMeters) {
+        double marginLat = marginMeters / GeoSegments.METERS_PER_DEGREE_LATITUDE;
+        double marginLon = marginMeters / GeoSegments.metersPerDegreeLongitude(Math.max(Math.abs(fromLat), Math.abs(toLat)));
+        return snapshot().query(
+            Math.min(fromLat, toLat) - marginLat, Math.min(fromLon, toLon) - marginLon,
+            Math.max(fromLat, toLat) + marginLat, Math.max(fromLon, toLon) + marginLon);
+    }
+
+    private Geofence buildGeofence(Store store) {
+        double reachMeters = 0;
+        for (GeoPoint vertex : store.getGeofence()) {
+            reachMeters = Math.max(reachMeters, distanceUtils.calculateDistanceInMeters(
+                store.getLatitude(), store.getLongitude(), vertex.getLatitude(), vertex.getLongitude()));
+        }
+        return Geofence.of(store.getGeofence(), reachMeters);
+    }
+
+    /**
+     * Install a snapshot restored from a {@link StoreSnapshotFile}
+     */
+    synchronized void install(Snapshot restored) {
+        swap(restored);
+        log.info("Store index restored with {} stores ({} geofenced) in {} grid cells",
+            restored.stores().size(), restored.geofences().size(), restored.cells().size());
+    }
+
+    private void swap(Snapshot next) {
+        snapshot = next;
+        // After the swap, so a reader that sees the new generation also sees the new snapshot
+        generation++;
+    }
+
+    Snapshot snapshot() {
+        Snapshot current = snapshot;
+        if (current == null) {
+            refresh();
+            current = snapshot;
+        }
+        return current;
+    }
+
+    record Snapshot(List<Store> stores, Map<UUID, Geofence> geofences, Map<Long, List<Store>> cells) {
+
+        static Snapshot of(List<Store> stores, Map<UUID, Geofence> geofences) {
+            Map<Long, List<Store>> cells = new HashMap<>();
+            for (Store store : stores) {
+                forEachCell(store, geofences.get(store.getId()),
+                    key -> cells.computeIfAbsent(key, k -> new ArrayList<>()).add(store));
+            }
+            cells.replaceAll((key, bucket) -> List.copyOf(bucket));
+            return new Snapshot(List.copyOf(stores), Map.copyOf(geofences), Map.copyOf(cells));
+        }
+
+        /**
+         * Visit the key of every grid cell a store occupies: one for a plain store, every cell its
+         * bounding box covers for a geofenced one
+         */
+        static void forEachCell(Store store, Geofence geofence, LongConsumer action) {
+            double minLat = geofence != null ? geofence.getMinLat() : store.getLatitude();
+            double maxLat = geofence != null ? geofence.getMaxLat() : store.getLatitude();
+            double minLon = geofence != null ? geofence.getMinLon() : store.getLongitude();
+            double maxLon = geofence != null ? geofence.getMaxLon() : store.getLongitude();
+            for (long latCell = cell(minLat); latCell <= cell(maxLat); latCell++) {
+                for (long lonCell = cell(minLon); lonCell <= cell(maxLon); lonCell++) {
+                    action.accept(cellKey(latCell, lonCell));
+                }
+            }
+        }
+
+        List<Store> query(double minLat, double minLon, double maxLat, double maxLon) {
+            long minLatCell = cell(minLat);
+            long maxLatCell = cell(maxLat);
+            long minLonCell = cell(minLon);
+            long maxLonCell = cell(maxLon);
+
+            if ((maxLatCell - minLatCell + 1) * (maxLonCell - minLonCell + 1) > cells.size()) {
+                // Box spans more cells than are occupied; a plain scan is cheaper
+                List<Store> result = new ArrayList<>();
+                for (Store store : stores) {
+                    if (overlaps(store, minLat, minLon, maxLat, maxLon)) {
+                        result.add(store);
+                    }
+                }
+                return result;
+            }
+
+            List<Store> result = new ArrayList<>();
+            // Geofenced stores can sit in several cells
+            Set<Store> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+            for (long latCell = minLatCell; latCell <= maxLatCell; latCell++) {
+                for (long lonCell = minLonCell; lonCell <= maxLonCell; lonCell++) {
+                    for (Store store : cells.getOrDefault(cellKey(latCell, lonCell), List.of())) {
+                        if (overlaps(store, minLat, minLon, maxLat, maxLon) && seen.add(store)) {
+                            result.add(store);
+                        }
+                    }
+                }
+            }
+            return result;
+        }
+
+        /**
+         * Stores in the cells exactly {@code ring} cells away from the given cell, the cell itself
+         * for ring 0. Geofenced stores may be returned more than once.
+         */
+        List<Store> ring(long latCell, long lonCell, long ring) {
+            if (ring == 0) {
+                return cells.getOrDefault(cellKey(latCell, lonCell), List.of());
+            }
+            List<Store> result = new ArrayList<>();
+            for (long offset = -ring; offset <= ring; offset++) {
+                result.addAll(cells.getOrDefault(cellKey(latCell - ring, lonCell + offset), List.of()));
+                result.addAll(cells.getOrDefault(cellKey(latCell + ring, lonCell + offset), List.of()));
+                if (offset != -ring && offset != ring) {
+                    result.addAll(cells.getOrDefault(cellKey(latCell + offset, lonCell - ring), List.of()));
+                    result.addAll(cells.getOrDefault(cellKey(latCell + offset, lonCell + ring), List.of()));
+                }
+            }
+            return result;
+        }
+
+        /**
+         * Meters from a point to the nearest edge of the square of cells up to {@code ring} cells
+         * around its own, measured where longitude degrees are shortest so it never overestimates
+         */
+        static double distanceToSquareEdge(double latitude, double longitude, long latCell, long lonCell, long ring) {
+            double south = (latCell - ring) * CELL_DEGREES;
+            double north = (latCell + ring + 1) * CELL_DEGREES;
+            double west = (lonCell - ring) * CELL_DEGREES;
+            double east = (lonCell + ring + 1) * CELL_DEGREES;
+            double latMeters = Math.min(latitude - south, north - latitude) * GeoSegments.METERS_PER_DEGREE_LATITUDE;
+            double lonMeters = Math.min(longitude - west, east - longitude)
+                * GeoSegments.metersPerDegreeLongitude(Math.max(Math.abs(south), Math.abs(north)));
+            return Math.min(latMeters, lonMeters);
+        }
+
+        private boolean overlaps(Store store, double minLat, double minLon, double maxLat, double maxLon) {
+            Geofence geofence = geofences.get(store.getId());
+            if (geofence != null) {
+                return geofence.intersectsBox(minLat, minLon, maxLat, maxLon);
+            }
+            return store.getLatitude() >= minLat && store.getLatitude() <= maxLat
+                && store.getLongitude() >= minLon && store.getLongitude() <= maxLon;
+        }
+
+        static long cell(double degrees) {
+            return (long) Math.floor(degrees / CELL_DEGREES);
+        }
+
+        private static long cellKey(long latCell, long lonCell) {
+            // Multiplying by an odd constant is a bijection, so keys stay unique, and it spreads
+            // Long.hashCode, which would otherwise collapse to latCell ^ lonCell
+            return ((latCell << 32) | (lonCell & 0xffffffffL)) * 0x9E3779B97F4A7C15L;
+        }
+    }
+}
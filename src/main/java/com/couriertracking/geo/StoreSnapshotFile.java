@@ -0,0 +1,313 @@
+package com.couriertracking.geo;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.CRC32;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.couriertracking.model.GeoPoint;
+import com.couriertracking.model.Store;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Binary snapshot of the store table and its {@link StoreIndex} grid, written after a catalogue
+ * load and memory-mapped on the next start so the JSON parse and index build can be skipped.
+ *
+ * <p>Layout (big-endian): a 40-byte header of magic, format version, source checksum, store count,
+ * cell count, payload CRC32 and the newest store update, then one record per store (id, external
+ * ID, name, position, update time, geofence reach and vertices), then the grid cells as key plus
+ * store ordinals.
+ *
+ * <p>The snapshot is only used while the store table still has the same store count and newest
+ * update time, so edits made by another instance since it was written are not hidden. With an
+ * in-memory database the table is empty at every start and the snapshot never applies.
+ */
+@Component
+@Slf4j
+public class StoreSnapshotFile {
+
+    private static final int MAGIC = 0x43545353; // "CTSS"
+    static final int VERSION = 2;
+    private static final int HEADER_BYTES = 40;
+    private static final long NO_TIME = Long.MIN_VALUE;
+
+    private final StoreIndex storeIndex;
+    private final Path path;
+    private final AtomicBoolean rewritePending = new AtomicBoolean();
+
+    // Checksum of the data file the current snapshot was built from, once one is loaded or written
+    private volatile Long sourceChecksum;
+
+    public StoreSnapshotFile(StoreIndex storeIndex,
+                             @Value("${courier-tracking.store.snapshot.path:${java.io.tmpdir}/courier-tracking/stores.snapshot}") String path) {
+        this.storeIndex = storeIndex;
+        this.path = Path.of(path);
+    }
+
+    /**
+     * Restore the store index from the snapshot if it was built from the same source file and
+     * still matches the database.
+     * @param storeCount stores in the table
+     * @param lastUpdatedAt newest store update in the table, null if none
+     * @return false if the snapshot is missing, stale or corrupt
+     */
+    public boolean restore(long sourceChecksum, long storeCount, LocalDateTime lastUpdatedAt) {
+        if (!Files.isRegularFile(path)) {
+            log.info("No store snapshot at {}", path);
+            return false;
+        }
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            String staleReason = validate(buffer, sourceChecksum, storeCount, lastUpdatedAt);
+            if (staleReason != null) {
+                log.info("Store snapshot at {} is stale: {}", path, staleReason);
+                return false;
+            }
+            storeIndex.install(read(buffer));
+            this.sourceChecksum = sourceChecksum;
+            return true;
+        } catch (IOException | RuntimeException e) {
+            log.warn("Failed to read store snapshot at {}: {}", path, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Write the current store index, replacing any previous snapshot atomically
+     */
+    public synchronized void write(long sourceChecksum) {
+        StoreIndex.Snapshot snapshot = storeIndex.snapshot();
+        try {
+            Files.createDirectories(path.toAbsolutePath().getParent());
+            ByteBuffer payload = encodePayload(snapshot);
+
+            CRC32 crc = new CRC32();
+            crc.update(payload.duplicate());
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES)
+                .putInt(MAGIC)
+                .putInt(VERSION)
+                .putLong(sourceChecksum)
+                .putInt(snapshot.stores().size())
+                .putInt(snapshot.cells().size())
+                .putLong(crc.getValue())
+                .putLong(lastUpdatedAt(snapshot))
+                .flip();
+
+            Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                while (header.hasRemaining()) {
+                    channel.write(header);
+                }
+                while (payload.hasRemaining()) {
+                    channel.write(payload);
+                }
+            }
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            this.sourceChecksum = sourceChecksum;
+            log.info("Wrote store snapshot with {} stores to {}", snapshot.stores().size(), path);
+        } catch (IOException e) {
+            // The snapshot is only an accelerator; the next start falls back to JSON
+            log.warn("Failed to write store snapshot to {}: {}", path, e.getMessage());
+        }
+    }
+
+    /**
+     * Rewrite the snapshot after stores changed at runtime, keeping the source checksum of the
+     * last load, so the next start restores the changed stores instead of reloading the data file.
+     * The write happens in the background, once for any number of changes in between; does
+     * nothing if no snapshot has been loaded or written.
+     */
+    public void rewrite() {
+        rewritePending.set(true);
+    }
+
+    @Scheduled(fixedDelayString = "${courier-tracking.store.snapshot.rewrite-delay-millis:2000}")
+    @PreDestroy
+    public void writePending() {
+        Long current = sourceChecksum;
+        if (current != null && rewritePending.getAndSet(false)) {
+            write(current);
+        }
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    private String validate(ByteBuffer buffer, long sourceChecksum, long storeCount, LocalDateTime lastUpdatedAt) {
+        if (buffer.limit() < HEADER_BYTES || buffer.getInt(0) != MAGIC) {
+            return "not a store snapshot";
+        }
+        if (buffer.getInt(4) != VERSION) {
+            return "format version " + buffer.getInt(4) + ", expected " + VERSION;
+        }
+        if (buffer.getLong(8) != sourceChecksum) {
+            return "store data file changed";
+        }
+        if (buffer.getInt(16) != storeCount) {
+            return "snapshot has " + buffer.getInt(16) + " stores, database has " + storeCount;
+        }
+        if (buffer.getLong(32) != toMicros(lastUpdatedAt)) {
+            return "stores were changed since the snapshot was written";
+        }
+        CRC32 crc = new CRC32();
+        crc.update(buffer.slice(HEADER_BYTES, buffer.limit() - HEADER_BYTES));
+        if (crc.getValue() != buffer.getLong(24)) {
+            return "checksum mismatch";
+        }
+        return null;
+    }
+
+    private ByteBuffer encodePayload(StoreIndex.Snapshot snapshot) {
+        Map<Store, Integer> ordinals = new IdentityHashMap<>();
+        List<byte[]> externalIds = new ArrayList<>();
+        List<byte[]> names = new ArrayList<>();
+        int size = 0;
+        for (Store store : snapshot.stores()) {
+            ordinals.put(store, ordinals.size());
+            byte[] externalId = store.getExternalId() != null ? store.getExternalId().getBytes(StandardCharsets.UTF_8) : null;
+            byte[] name = store.getName().getBytes(StandardCharsets.UTF_8);
+            externalIds.add(externalId);
+            names.add(name);
+            size += 16 + 4 + (externalId != null ? externalId.length : 0) + 4 + name.length + 8 * 4 + 4
+                + store.getGeofence().size() * 16;
+        }
+        for (List<Store> bucket : snapshot.cells().values()) {
+            size += 8 + 4 + bucket.size() * 4;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        for (int i = 0; i < snapshot.stores().size(); i++) {
+            Store store = snapshot.stores().get(i);
+            Geofence geofence = snapshot.geofences().get(store.getId());
+            buffer.putLong(store.getId().getMostSignificantBits());
+            buffer.putLong(store.getId().getLeastSignificantBits());
+            putBytes(buffer, externalIds.get(i));
+            putBytes(buffer, names.get(i));
+            buffer.putDouble(store.getLatitude());
+            buffer.putDouble(store.getLongitude());
+            buffer.putLong(toMicros(store.getUpdatedAt()));
+            buffer.putDouble(geofence != null ? geofence.getReachMeters() : 0);
+            buffer.putInt(store.getGeofence().size());
+            for (GeoPoint vertex : store.getGeofence()) {
+                buffer.putDouble(vertex.getLatitude());
+                buffer.putDouble(vertex.getLongitude());
+            }
+        }
+        for (Map.Entry<Long, List<Store>> cell : snapshot.cells().entrySet()) {
+            buffer.putLong(cell.getKey());
+            buffer.putInt(cell.getValue().size());
+            for (Store store : cell.getValue()) {
+                buffer.putInt(ordinals.get(store));
+            }
+        }
+        return buffer.flip();
+    }
+
+    private StoreIndex.Snapshot read(ByteBuffer buffer) {
+        int storeCount = buffer.getInt(16);
+        int cellCount = buffer.getInt(20);
+        buffer.position(HEADER_BYTES);
+
+        List<Store> stores = new ArrayList<>(storeCount);
+        Map<UUID, Geofence> geofences = new HashMap<>();
+        for (int i = 0; i < storeCount; i++) {
+            Store store = new Store();
+            store.setId(new UUID(buffer.getLong(), buffer.getLong()));
+            store.setExternalId(getString(buffer));
+            store.setName(getString(buffer));
+            store.setLatitude(buffer.getDouble());
+            store.setLongitude(buffer.getDouble());
+            LocalDateTime updatedAt = fromMicros(buffer.getLong());
+            double reachMeters = buffer.getDouble();
+            int vertexCount = buffer.getInt();
+            List<GeoPoint> vertices = new ArrayList<>(vertexCount);
+            for (int v = 0; v < vertexCount; v++) {
+                vertices.add(new GeoPoint(buffer.getDouble(), buffer.getDouble()));
+            }
+            store.setGeofence(vertices);
+            store.setUpdatedAt(updatedAt);
+            if (store.hasGeofence()) {
+                geofences.put(store.getId(), Geofence.of(vertices, reachMeters));
+            }
+            stores.add(store);
+        }
+
+        Map<Long, List<Store>> cells = new HashMap<>(cellCount * 2);
+        for (int i = 0; i < cellCount; i++) {
+            long key = buffer.getLong();
+            Store[] bucket = new Store[buffer.getInt()];
+            for (int j = 0; j < bucket.length; j++) {
+                bucket[j] = stores.get(buffer.getInt());
+            }
+            cells.put(key, List.of(bucket));
+        }
+        return new StoreIndex.Snapshot(List.copyOf(stores), Map.copyOf(geofences), Map.copyOf(cells));
+    }
+
+    private static long lastUpdatedAt(StoreIndex.Snapshot snapshot) {
+        long newest = NO_TIME;
+        for (Store store : snapshot.stores()) {
+            newest = Math.max(newest, toMicros(store.getUpdatedAt()));
+        }
+        return newest;
+    }
+
+    private static long toMicros(LocalDateTime time) {
+        if (time == null) {
+            return NO_TIME;
+        }
+        return time.toEpochSecond(ZoneOffset.UTC) * 1_000_000 + time.getNano() / 1_000;
+    }
+
+    private static LocalDateTime fromMicros(long micros) {
+        if (micros == NO_TIME) {
+            return null;
+        }
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000),
+            (int) Math.floorMod(micros, 1_000_000) * 1_000, ZoneOffset.UTC);
+    }
+
+    private static void putBytes(ByteBuffer buffer, byte[] bytes) {
+        if (bytes == null) {
+            buffer.putInt(-1);
+            return;
+        }
+        buffer.putInt(bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,104 @@
+package com.couriertracking.ingest;
+
+import java.util.Optional;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.couriertracking.dto.LocationUpdateRequest;
+import com.couriertracking.dto.LocationUpdateResponse;
+import com.couriertracking.state.CourierStateRegistry;
+import com.couriertracking.state.RecentFixes;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Drops retried location updates before they reach the database.
+ * A retry is either a repeated client idempotency key or an identical
+ * (courierId, timestamp, latitude, longitude) fix seen recently.
+ */
+@Component
+@Slf4j
+public class IngestDeduplicator {
+
+    private static final String DUPLICATE_MESSAGE = "Duplicate location update ignored";
+
+    private final CourierStateRegistry courierStateRegistry;
+    private final Counter fingerprintDuplicates;
+    private final Counter idempotencyKeyDuplicates;
+
+    @Value("${courier-tracking.ingest.dedup.enabled:true}")
+    private boolean enabled;
+
+    public IngestDeduplicator(CourierStateRegistry courierStateRegistry, MeterRegistry meterRegistry) {
+        this.courierStateRegistry = courierStateRegistry;
+        this.fingerprintDuplicates = meterRegistry.counter("courier.ingest.duplicates.suppressed", "reason", "fingerprint");
+        this.idempotencyKeyDuplicates = meterRegistry.counter("courier.ingest.duplicates.suppressed", "reason", "idempotency-key");
+    }
+
+    /**
+     * Reserve the update, or return the response to send back if it duplicates an earlier one.
+     */
+    public Optional<LocationUpdateResponse> reserve(LocationUpdateRequest request, String idempotencyKey) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+
+        LocationUpdateResponse prior = recentFixes(request)
+            .reserve(fingerprint(request), request.getTimestamp(), idempotencyKey);
+        if (prior == null) {
+            return Optional.empty();
+        }
+
+        log.debug("Suppressed duplicate location update for courier {} at {}", request.getCourierId(), request.getTimestamp());
+        if (idempotencyKey != null && prior != RecentFixes.PENDING) {
+            // Replay the original response for a repeated idempotency key
+            idempotencyKeyDuplicates.increment();
+            return Optional.of(prior);
+        }
+        fingerprintDuplicates.increment();
+        return Optional.of(new LocationUpdateResponse(
+            prior.getLocationId(),
+            request.getCourierId(),
+            request.getLatitude(),
+            request.getLongitude(),
+            request.getTimestamp(),
+            DUPLICATE_MESSAGE
+        ));
+    }
+
+    public void complete(LocationUpdateRequest request, String idempotencyKey, LocationUpdateResponse response) {
+        if (enabled) {
+            recentFixes(request).complete(fingerprint(request), idempotencyKey, response);
+        }
+    }
+
+    public void release(LocationUpdateRequest request, String idempotencyKey) {
+        if (enabled) {
+            recentFixes(request).release(fingerprint(request), idempotencyKey);
+        }
+    }
+
+    /**
+     * Release the update of a courier that does not exist, dropping the state its reservation
+     * created, so unknown courier IDs cannot pile up in the registry.
+     */
+    public void forgetUnknownCourier(LocationUpdateRequest request, String idempotencyKey) {
+        release(request, idempotencyKey);
+        courierStateRegistry.remove(request.getCourierId());
+    }
+
+    private RecentFixes recentFixes(LocationUpdateRequest request) {
+        return courierStateRegistry.getOrCreate(request.getCourierId()).getRecentFixes();
+    }
+
+    static long fingerprint(LocationUpdateRequest request) {
+        // The courier is implied by the per-courier map, so only the fix itself is hashed
+        long hash = request.getTimestamp().hashCode();
+        hash = 31 * hash + Double.doubleToLongBits(request.getLatitude());
+        hash = 31 * hash + Double.doubleToLongBits(request.getLongitude());
+        return hash ^ (hash >>> 29);
+    }
+}
@@ -0,0 +1,52 @@
+package com.couriertracking.ingest;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import lombok.Getter;
+
+/**
+ * Tracks the lifecycle of a location update accepted in async mode.
+ * Written by the courier's executor lane, read by pollers, hence the volatile fields.
+ */
+@Getter
+public class IngestReceipt {
+
+    private final UUID receiptId;
+    private final UUID courierId;
+    private final LocalDateTime acceptedAt;
+    private final long acceptedNanos;
+
+    private volatile IngestReceiptStatus status = IngestReceiptStatus.ACCEPTED;
+    private volatile LocalDateTime completedAt;
+    private volatile UUID locationId;
+    private volatile String message;
+
+    public IngestReceipt(UUID courierId) {
+        this.receiptId = UUID.randomUUID();
+        this.courierId = courierId;
+        this.acceptedAt = LocalDateTime.now();
+        this.acceptedNanos = System.nanoTime();
+    }
+
+    public void markProcessing() {
+        this.status = IngestReceiptStatus.PROCESSING;
+    }
+
+    public void complete(UUID locationId, String message) {
+        this.locationId = locationId;
+        this.message = message;
+        this.completedAt = LocalDateTime.now();
+        this.status = IngestReceiptStatus.COMPLETED;
+    }
+
+    public void fail(String message) {
+        this.message = message;
+        this.completedAt = LocalDateTime.now();
+        this.status = IngestReceiptStatus.FAILED;
+    }
+
+    public boolean isFinished() {
+        return status == IngestReceiptStatus.COMPLETED || status == IngestReceiptStatus.FAILED;
+    }
+}
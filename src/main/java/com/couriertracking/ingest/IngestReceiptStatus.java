@@ -0,0 +1,8 @@
+package com.couriertracking.ingest;
+
+public enum IngestReceiptStatus {
+    ACCEPTED,
+    PROCESSING,
+    COMPLETED,
+    FAILED
+}
@@ -0,0 +1,95 @@
+package com.couriertracking.ingest;
+
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.couriertracking.exception.ReceiptCapacityExceededException;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * In-memory registry of async ingest receipts.
+ * Finished receipts are kept for the configured retention so devices can poll them, then purged
+ * on a schedule. The store never holds more than max-receipts: at the cap the oldest finished
+ * receipt is evicted early, and if every receipt is still pending the new one is rejected.
+ */
+@Component
+@Slf4j
+public class IngestReceiptStore {
+
+    private final Map<UUID, IngestReceipt> receipts = new ConcurrentHashMap<>();
+    // Registration order, oldest first; guarded by this, lookups go through the map only
+    private final Deque<IngestReceipt> order = new ArrayDeque<>();
+
+    @Value("${courier-tracking.ingest.receipt-retention-minutes:10}")
+    private int receiptRetentionMinutes;
+
+    @Value("${courier-tracking.ingest.max-receipts:100000}")
+    private int maxReceipts;
+
+    public synchronized IngestReceipt register(UUID courierId) {
+        if (receipts.size() >= maxReceipts && !evictOldestFinished()) {
+            throw new ReceiptCapacityExceededException(
+                "All " + maxReceipts + " ingest receipts are still pending; retry later");
+        }
+        IngestReceipt receipt = new IngestReceipt(courierId);
+        receipts.put(receipt.getReceiptId(), receipt);
+        order.addLast(receipt);
+        return receipt;
+    }
+
+    public Optional<IngestReceipt> find(UUID receiptId) {
+        return Optional.ofNullable(receipts.get(receiptId));
+    }
+
+    public int size() {
+        return receipts.size();
+    }
+
+    /**
+     * Purge finished receipts past retention. Receipts are walked oldest first, stopping at the
+     * first one accepted within retention, so a pass costs the expired and pending receipts only.
+     */
+    @Scheduled(fixedDelayString = "${courier-tracking.ingest.receipt-purge-interval-millis:30000}")
+    public synchronized void purgeExpired() {
+        LocalDateTime threshold = LocalDateTime.now().minusMinutes(receiptRetentionMinutes);
+        int purged = 0;
+        for (Iterator<IngestReceipt> it = order.iterator(); it.hasNext(); ) {
+            IngestReceipt receipt = it.next();
+            if (!receipt.getAcceptedAt().isBefore(threshold)) {
+                break;
+            }
+            if (receipt.isFinished() && receipt.getCompletedAt().isBefore(threshold)) {
+                it.remove();
+                receipts.remove(receipt.getReceiptId());
+                purged++;
+            }
+        }
+        log.debug("Purged {} expired ingest receipts", purged);
+    }
+
+    /**
+     * Evict the oldest finished receipt, skipping the pending ones ahead of it
+     */
+    private boolean evictOldestFinished() {
+        for (Iterator<IngestReceipt> it = order.iterator(); it.hasNext(); ) {
+            IngestReceipt receipt = it.next();
+            if (receipt.isFinished()) {
+                it.remove();
+                receipts.remove(receipt.getReceiptId());
+                return true;
+            }
+        }
+        return false;
+    }
+}
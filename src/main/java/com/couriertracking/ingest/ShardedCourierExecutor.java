@@ -0,0 +1,162 @@
+package com.couriertracking.ingest;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Single-writer execution model for location updates.
+ * Couriers are hashed onto a fixed set of shards; each shard is a lock-free queue drained by
+ * exactly one worker thread, so queued work for one courier runs in submission order. Work can
+ * also run inline on the caller's thread with {@link #call}. Either way it holds the courier's
+ * lock, one of a fixed set of striped locks, so work for one courier never runs concurrently and
+ * per-courier state needs no locking of its own, while different couriers run in parallel.
+ */
+@Component
+@Slf4j
+public class ShardedCourierExecutor {
+
+    private static final int LOCK_STRIPES = 1024;
+
+    private final Shard[] shards;
+    private final ReentrantLock[] courierLocks = new ReentrantLock[LOCK_STRIPES];
+
+    public ShardedCourierExecutor(@Value("${courier-tracking.ingest.shards:4}") int shardCount) {
+        this.shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard("ingest-shard-" + i);
+        }
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            courierLocks[i] = new ReentrantLock();
+        }
+        log.info("Sharded courier executor initialized with {} shards", shardCount);
+    }
+
+    public void execute(UUID courierId, Runnable task) {
+        shards[shardFor(courierId)].enqueue(() -> {
+            ReentrantLock lock = lockFor(courierId);
+            lock.lock();
+            try {
+                task.run();
+            } finally {
+                lock.unlock();
+            }
+        });
+    }
+
+    /**
+     * Run on the calling thread, excluding the courier's queued work and other inline calls.
+     * Skips the hand-off to the shard, so callers that wait for the result anyway keep their
+     * own thread busy instead of parking it on a future.
+     */
+    public <T> T call(UUID courierId, Supplier<T> task) {
+        ReentrantLock lock = lockFor(courierId);
+        lock.lock();
+        try {
+            return task.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public <T> CompletableFuture<T> submit(UUID courierId, Supplier<T> task) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        execute(courierId, () -> {
+            try {
+                future.complete(task.get());
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+
+    public int getQueueDepth() {
+        int depth = 0;
+        for (Shard shard : shards) {
+            depth += shard.size.get();
+        }
+        return depth;
+    }
+
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    public int shardFor(UUID courierId) {
+        return Math.floorMod(courierId.hashCode(), shards.length);
+    }
+
+    private ReentrantLock lockFor(UUID courierId) {
+        return courierLocks[Math.floorMod(courierId.hashCode(), LOCK_STRIPES)];
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        for (Shard shard : shards) {
+            shard.stop();
+        }
+        for (Shard shard : shards) {
+            shard.worker.join(TimeUnit.SECONDS.toMillis(10));
+        }
+    }
+
+    private static final class Shard implements Runnable {
+
+        // Multi-producer, single-consumer: request threads offer, the shard worker polls
+        private final ConcurrentLinkedQueue<Runnable> queue = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger size = new AtomicInteger();
+        private final Thread worker;
+        private volatile boolean running = true;
+
+        Shard(String name) {
+            this.worker = new Thread(this, name);
+            this.worker.setDaemon(true);
+            this.worker.start();
+        }
+
+        void enqueue(Runnable task) {
+            if (!running) {
+                throw new RejectedExecutionException("Ingest shard " + worker.getName() + " is shut down");
+            }
+            queue.offer(task);
+            size.incrementAndGet();
+            LockSupport.unpark(worker);
+        }
+
+        void stop() {
+            running = false;
+            LockSupport.unpark(worker);
+        }
+
+        @Override
+        public void run() {
+            while (running || !queue.isEmpty()) {
+                Runnable task = queue.poll();
+                if (task == null) {
+                    // An unpark issued between poll() and park() leaves a permit, so no wake-up is lost
+                    LockSupport.park(this);
+                    continue;
+                }
+                size.decrementAndGet();
+                try {
+                    task.run();
+                } catch (Throwable e) {
+                    log.error("Unhandled error in {}: {}", worker.getName(), e.getMessage(), e);
+                }
+            }
+        }
+    }
+}
@@ -31,12 +31,14 @@ public class CourierDistance {
     @Column(name = "total_distance", nullable = false)
     private Double totalDistance = 0.0;
 
+    // Covers every location received up to this time; later ones are replayed on recovery
     @Column(name = "updated_at", nullable = false)
     private LocalDateTime updatedAt;
 
     @PrePersist
-    @PreUpdate
-    protected void onUpdate() {
-        updatedAt = LocalDateTime.now();
+    protected void onCreate() {
+        if (updatedAt == null) {
+            updatedAt = LocalDateTime.now();
+        }
     }
 }
\ No newline at end of file
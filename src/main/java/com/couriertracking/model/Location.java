@@ -12,6 +12,7 @@ import jakarta.persistence.Id;
 import jakarta.persistence.Index;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
+import jakarta.persistence.PrePersist;
 import jakarta.persistence.Table;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -22,6 +23,8 @@ import lombok.NoArgsConstructor;
        indexes = {
            @Index(name = "idx_courier_timestamp", columnList = "courier_id, timestamp"),
            @Index(name = "idx_courier_id", columnList = "courier_id"),
+           @Index(name = "idx_courier_received_at", columnList = "courier_id, received_at"),
+           @Index(name = "idx_location_timestamp", columnList = "timestamp"),
        })
 @Data
 @NoArgsConstructor
@@ -45,4 +48,15 @@ public class Location {
 
     @Column(nullable = false)
     private LocalDateTime timestamp;
+
+    // Server receive time; locations received after a coalesced distance flush are replayed on recovery
+    @Column(name = "received_at", nullable = false)
+    private LocalDateTime receivedAt;
+
+    @PrePersist
+    protected void onCreate() {
+        if (receivedAt == null) {
+            receivedAt = LocalDateTime.now();
+        }
+    }
 }
@@ -1,19 +1,34 @@
 package com.couriertracking.model;
 
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
 
 import org.hibernate.annotations.UuidGenerator;
 
+import jakarta.persistence.CollectionTable;
 import jakarta.persistence.Column;
+import jakarta.persistence.ElementCollection;
 import jakarta.persistence.Entity;
+import jakarta.persistence.FetchType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.JoinColumn;
+import jakarta.persistence.OrderColumn;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
 import jakarta.persistence.Table;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
 @Entity
-@Table(name = "stores")
+@Table(name = "stores",
+       indexes = {
+           @Index(name = "idx_store_external_id", columnList = "externalId", unique = true),
+       })
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -24,6 +39,9 @@ public class Store {
     @Column(columnDefinition = "UUID", updatable = false, nullable = false)
     private UUID id;
 
+    // Stable catalogue key used to upsert stores from the data file
+    private String externalId;
+
     @Column(nullable = false)
     private String name;
 
@@ -32,4 +50,35 @@ public class Store {
 
     @Column(nullable = false)
     private Double longitude;
+
+    // Optional polygon geofence; when present it replaces the entrance radius
+    @ElementCollection(fetch = FetchType.EAGER)
+    @CollectionTable(name = "store_geofence_vertices", joinColumns = @JoinColumn(name = "store_id"))
+    @OrderColumn(name = "vertex_index")
+    private List<GeoPoint> geofence = new ArrayList<>();
+
+    // Last insert or update; with the store count, tells whether a store snapshot still matches the table
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    public Store(UUID id, String name, Double latitude, Double longitude) {
+        this(id, null, name, latitude, longitude, new ArrayList<>(), null);
+    }
+
+    public void setGeofence(List<GeoPoint> geofence) {
+        this.geofence = geofence;
+        // A change to the collection alone does not fire @PreUpdate; changing the column does
+        this.updatedAt = null;
+    }
+
+    @PrePersist
+    @PreUpdate
+    protected void onWrite() {
+        // Microseconds, as stored, so a snapshot taken from saved entities matches the table
+        updatedAt = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+    }
+
+    public boolean hasGeofence() {
+        return geofence != null && geofence.size() >= 3;
+    }
 }
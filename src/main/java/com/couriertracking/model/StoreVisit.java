@@ -0,0 +1,56 @@
+package com.couriertracking.model;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import org.hibernate.annotations.UuidGenerator;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.FetchType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.JoinColumn;
+import jakarta.persistence.ManyToOne;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One completed stay of a courier at a store, written once when the courier leaves, so dwell
+ * time is read directly instead of derived from entrance rows.
+ */
+@Entity
+@Table(name = "store_visits",
+       indexes = {
+           @Index(name = "idx_store_visit_store_entered_at", columnList = "store_id, entered_at"),
+           @Index(name = "idx_store_visit_courier_entered_at", columnList = "courier_id, entered_at"),
+       })
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StoreVisit {
+
+    @Id
+    @UuidGenerator
+    @Column(columnDefinition = "UUID", updatable = false, nullable = false)
+    private UUID id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "courier_id", nullable = false)
+    private Courier courier;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "store_id", nullable = false)
+    private Store store;
+
+    @Column(name = "entered_at", nullable = false)
+    private LocalDateTime enteredAt;
+
+    @Column(name = "exited_at", nullable = false)
+    private LocalDateTime exitedAt;
+
+    @Column(nullable = false)
+    private Long durationSeconds;
+}
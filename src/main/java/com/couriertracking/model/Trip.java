@@ -0,0 +1,89 @@
+package com.couriertracking.model;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import org.hibernate.annotations.UuidGenerator;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.FetchType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.JoinColumn;
+import jakarta.persistence.ManyToOne;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One stretch of a courier's track between boundaries (idle gaps, store entrances, dwells).
+ * Updated in place with every fix while open, so its distance never needs recomputing.
+ */
+@Entity
+@Table(name = "trips",
+       indexes = {
+           @Index(name = "idx_trip_courier_started_at", columnList = "courier_id, started_at"),
+           @Index(name = "idx_trip_courier_end_reason", columnList = "courier_id, end_reason"),
+       })
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class Trip {
+
+    @Id
+    @UuidGenerator
+    @Column(columnDefinition = "UUID", updatable = false, nullable = false)
+    private UUID id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "courier_id", nullable = false)
+    private Courier courier;
+
+    @Column(name = "started_at", nullable = false)
+    private LocalDateTime startedAt;
+
+    // Timestamp of the newest fix so far
+    @Column(name = "ended_at", nullable = false)
+    private LocalDateTime endedAt;
+
+    @Column(nullable = false)
+    private Double startLatitude;
+
+    @Column(nullable = false)
+    private Double startLongitude;
+
+    @Column(nullable = false)
+    private Double endLatitude;
+
+    @Column(nullable = false)
+    private Double endLongitude;
+
+    // Kilometers, as added to the courier's total distance
+    @Column(nullable = false)
+    private Double distance = 0.0;
+
+    @Column(nullable = false)
+    private Integer pointCount = 0;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "end_reason", length = 20)
+    private TripEndReason endReason;
+
+    // Where and since when the courier has stayed within the dwell radius
+    @Column(nullable = false)
+    private Double anchorLatitude;
+
+    @Column(nullable = false)
+    private Double anchorLongitude;
+
+    @Column(nullable = false)
+    private LocalDateTime anchorAt;
+
+    public boolean isOpen() {
+        return endReason == null;
+    }
+}
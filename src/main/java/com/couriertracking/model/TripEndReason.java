@@ -0,0 +1,13 @@
+package com.couriertracking.model;
+
+// Why a trip was closed; open trips have none
+public enum TripEndReason {
+    // No fix for longer than the idle gap; the trip ends at its last fix
+    IDLE_GAP,
+    // The courier entered a store; the next trip starts at the same fix
+    STORE_ENTRANCE,
+    // The courier stayed within the dwell radius for the dwell time
+    DWELL,
+    // Another open trip of the courier was found; only the newest stays open
+    SUPERSEDED
+}
@@ -2,8 +2,14 @@ package com.couriertracking.repository;
 
 import com.couriertracking.model.CourierDistance;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -11,4 +17,18 @@ import java.util.UUID;
 public interface CourierDistanceRepository extends JpaRepository<CourierDistance, UUID> {
     
     Optional<CourierDistance> findByCourierId(UUID courierId);
-}
\ No newline at end of file
+
+    List<CourierDistance> findByCourierIdIn(Collection<UUID> courierIds);
+
+    boolean existsByCourierId(UUID courierId);
+
+    /**
+     * Store a total computed elsewhere, never moving it backwards
+     * @return number of rows updated (0 if the row is missing or already holds a larger total)
+     */
+    @Modifying
+    @Query("UPDATE CourierDistance d SET d.totalDistance = :total, d.updatedAt = :updatedAt "
+        + "WHERE d.courier.id = :courierId AND d.totalDistance < :total")
+    int raiseTotalDistance(@Param("courierId") UUID courierId, @Param("total") double total,
+                           @Param("updatedAt") LocalDateTime updatedAt);
+}
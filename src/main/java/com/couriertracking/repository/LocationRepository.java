@@ -1,17 +1,43 @@
 package com.couriertracking.repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
 import com.couriertracking.model.Location;
 
+// Courier-scoped queries filter on the courier_id column directly; derived queries on courier.id would
+// join couriers, which location shards do not hold
 public interface LocationRepository extends JpaRepository<Location, UUID> {
 
     // Custom query to fetch the last two locations for a given courier
     @Query("SELECT l FROM Location l WHERE l.courier.id = :courierId ORDER BY l.timestamp DESC LIMIT 2")
     List<Location> findTop2ByCourierIdOrderByTimestampDesc(@Param("courierId") UUID courierId);
+
+    // Most recent locations for a courier, newest first; used to warm the reorder buffer
+    @Query("SELECT l FROM Location l WHERE l.courier.id = :courierId ORDER BY l.timestamp DESC")
+    List<Location> findByCourierIdOrderByTimestampDesc(@Param("courierId") UUID courierId, Pageable pageable);
+
+    // Used to replay locations not yet covered by a coalesced distance flush
+    @Query("SELECT l FROM Location l WHERE l.courier.id = :courierId AND l.receivedAt > :receivedAt")
+    List<Location> findByCourierIdAndReceivedAtAfter(@Param("courierId") UUID courierId,
+                                                     @Param("receivedAt") LocalDateTime receivedAt);
+
+    @Query("SELECT l FROM Location l WHERE l.courier.id = :courierId ORDER BY l.timestamp ASC")
+    List<Location> findByCourierIdOrderByTimestampAsc(@Param("courierId") UUID courierId);
+
+    @Query("SELECT l FROM Location l WHERE l.courier.id = :courierId AND l.timestamp < :timestamp "
+        + "ORDER BY l.timestamp DESC LIMIT 1")
+    Optional<Location> findFirstByCourierIdAndTimestampBeforeOrderByTimestampDesc(@Param("courierId") UUID courierId,
+                                                                                  @Param("timestamp") LocalDateTime timestamp);
+
+    @Query("SELECT l FROM Location l WHERE l.courier.id = :courierId AND l.timestamp >= :timestamp ORDER BY l.timestamp ASC")
+    List<Location> findByCourierIdAndTimestampGreaterThanEqualOrderByTimestampAsc(@Param("courierId") UUID courierId,
+                                                                                  @Param("timestamp") LocalDateTime timestamp);
 }
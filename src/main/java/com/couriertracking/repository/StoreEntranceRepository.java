@@ -19,4 +19,6 @@ public interface StoreEntranceRepository extends JpaRepository<StoreEntrance, UU
         Store store, 
         LocalDateTime timeThreshold
     );
+
+     boolean existsByStore(Store store);
 }
@@ -1,10 +1,29 @@
 package com.couriertracking.repository;
 
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.UUID;
 import com.couriertracking.model.Store;
 
 @Repository
 public interface StoreRepository extends JpaRepository<Store, UUID> {
-}
\ No newline at end of file
+
+    // Fetch the geofence in the same query to avoid one select per store
+    @Override
+    @EntityGraph(attributePaths = "geofence")
+    List<Store> findAll();
+
+    boolean existsByExternalId(String externalId);
+
+    @Query("SELECT MAX(s.updatedAt) FROM Store s")
+    LocalDateTime findLastUpdatedAt();
+
+    @EntityGraph(attributePaths = "geofence")
+    List<Store> findByExternalIdIn(Collection<String> externalIds);
+}
@@ -0,0 +1,12 @@
+package com.couriertracking.repository;
+
+import java.util.UUID;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import com.couriertracking.model.StoreVisit;
+
+@Repository
+public interface StoreVisitRepository extends JpaRepository<StoreVisit, UUID> {
+}
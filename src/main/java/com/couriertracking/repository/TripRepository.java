@@ -0,0 +1,40 @@
+package com.couriertracking.repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.couriertracking.model.Trip;
+import com.couriertracking.model.TripEndReason;
+
+@Repository
+public interface TripRepository extends JpaRepository<Trip, UUID> {
+
+    // Normally at most one; two instances racing on a courier's first fix can each open one
+    @Query("SELECT t FROM Trip t WHERE t.courier.id = :courierId AND t.endReason IS NULL ORDER BY t.startedAt DESC")
+    List<Trip> findOpenTrips(@Param("courierId") UUID courierId);
+
+    @Query("SELECT t FROM Trip t WHERE t.courier.id = :courierId ORDER BY t.startedAt DESC LIMIT 1")
+    Optional<Trip> findLatestTrip(@Param("courierId") UUID courierId);
+
+    @Query(value = "SELECT t FROM Trip t WHERE t.courier.id = :courierId ORDER BY t.startedAt DESC",
+           countQuery = "SELECT COUNT(t) FROM Trip t WHERE t.courier.id = :courierId")
+    Page<Trip> findByCourierId(@Param("courierId") UUID courierId, Pageable pageable);
+
+    /**
+     * Close every open trip whose newest fix is older than the cutoff
+     * @return number of trips closed
+     */
+    @Modifying
+    @Query("UPDATE Trip t SET t.endReason = :reason WHERE t.endReason IS NULL AND t.endedAt < :cutoff")
+    int closeTripsEndedBefore(@Param("cutoff") LocalDateTime cutoff, @Param("reason") TripEndReason reason);
+}
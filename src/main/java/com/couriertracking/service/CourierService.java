@@ -8,6 +8,7 @@ import com.couriertracking.repository.CourierRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.UUID;
 
@@ -30,6 +31,7 @@ public class CourierService {
         return mapToResponse(savedCourier);
     }
     
+    @Transactional(readOnly = true)
     public CourierResponse getCourierById(UUID courierId) {        
         Courier courier = courierRepository.findById(courierId)
             .orElseThrow(() -> new CourierNotFoundException("Courier not found with ID: " + courierId));
@@ -1,6 +1,9 @@
 package com.couriertracking.service;
 
 import com.couriertracking.cache.CourierDistanceCache;
+import com.couriertracking.cache.CourierDistanceReadGuard;
+import com.couriertracking.cache.RedisCourierState;
+import com.couriertracking.datasource.PrimaryRouting;
 import com.couriertracking.exception.CourierNotFoundException;
 import com.couriertracking.model.Courier;
 import com.couriertracking.model.CourierDistance;
@@ -8,6 +11,7 @@ import com.couriertracking.model.Location;
 import com.couriertracking.repository.CourierDistanceRepository;
 import com.couriertracking.repository.CourierRepository;
 import com.couriertracking.repository.LocationRepository;
+import com.couriertracking.state.TrackPoint;
 import com.couriertracking.util.DistanceUtils;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -15,8 +19,10 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.OptionalDouble;
 import java.util.UUID;
 
 @Service
@@ -30,21 +36,49 @@ public class DistanceCalculationService {
 
     private final DistanceUtils distanceUtils;
     private final CourierDistanceCache courierDistanceCache;
+    private final TrackReorderService trackReorderService;
+    private final DistanceWriteBehindService distanceWriteBehindService;
+    private final CourierDistanceReadGuard courierDistanceReadGuard;
+    private final RedisCourierState redisCourierState;
     
     public Double getTotalTravelDistance(UUID courierId) {        
-        if (!courierRepository.existsById(courierId)) {
+        if (courierDistanceReadGuard.isKnownUnknown(courierId)) {
             throw new CourierNotFoundException("Courier not found with ID: " + courierId);
         }
         
-        // Retrieve from cache first
+        if (isWriteBehindEnabled()) {
+            // The running total in memory is ahead of both the cache and the table
+            Optional<Double> liveDistance = distanceWriteBehindService.findLiveTotal(courierId);
+            if (liveDistance.isPresent()) {
+                return liveDistance.get();
+            }
+        }
+        
+        // Retrieve from cache first; only existing couriers are ever cached
         Optional<Double> cachedDistance = courierDistanceCache.getFromCache(courierId);
         if (cachedDistance.isPresent()) {
             log.info("Cache hit for courier {}: {} km", courierId, String.format("%.3f", cachedDistance.get()));
             return cachedDistance.get();
         }
 
-        // Cache miss - retrieve from DB
+        // Cache miss - concurrent readers of the same courier share one DB load
+        return courierDistanceReadGuard.load(courierId, () -> loadTotalTravelDistance(courierId));
+    }
+    
+    private Double loadTotalTravelDistance(UUID courierId) {
+        // Checked on the primary, so a courier not yet replicated is never remembered as unknown
+        if (!PrimaryRouting.call(() -> courierRepository.existsById(courierId))) {
+            courierDistanceReadGuard.rememberUnknown(courierId);
+            throw new CourierNotFoundException("Courier not found with ID: " + courierId);
+        }
+        
         log.info("Cache miss for courier {} - querying database", courierId);
+        if (isWriteBehindEnabled()) {
+            // Adds any locations received after the last flush
+            double totalDistance = distanceWriteBehindService.loadTotal(courierId);
+            courierDistanceCache.saveToCache(courierId, totalDistance);
+            return totalDistance;
+        }
         Optional<CourierDistance> courierDistance = courierDistanceRepository.findByCourierId(courierId);
         
         if (courierDistance.isPresent()) {
@@ -59,10 +93,67 @@ public class DistanceCalculationService {
         return 0.0;
     }
     
+    /**
+     * Whether a fix arrived too far out of order to be folded into the track
+     */
+    public boolean isBehindWatermark(UUID courierId, LocalDateTime timestamp) {
+        return isReorderEnabled() && trackReorderService.isTooLate(courierId, timestamp);
+    }
+    
+    // Both keep per-courier state on this node, which Redis state mode moves off it
+    private boolean isReorderEnabled() {
+        return trackReorderService.isEnabled() && !redisCourierState.isEnabled();
+    }
+    
+    private boolean isWriteBehindEnabled() {
+        return distanceWriteBehindService.isEnabled() && !redisCourierState.isEnabled();
+    }
+    
+    /**
+     * Add the new location's segment to the courier's total distance
+     * @return the distance added in kilometers (0.0 for the first location)
+     */
     @Transactional
-    public void updateDistanceForNewLocation(UUID courierId, Location newLocation) {        
+    public double updateDistanceForNewLocation(UUID courierId, Location newLocation) {        
+        if (redisCourierState.isEnabled()) {
+            Optional<RedisCourierState.Advance> advance = advanceInRedis(courierId, newLocation);
+            if (advance.isPresent()) {
+                return applyRedisAdvance(courierId, advance.get());
+            }
+            // Redis is unreachable; the hash is rebuilt from the table once it is back
+            redisCourierState.evict(courierId);
+        }
+        
+        if (isWriteBehindEnabled()) {
+            OptionalDouble delta = segmentDelta(courierId, newLocation);
+            // The first location is folded in too, so its receive time is flushed with the total;
+            // the total is only cached once the location has committed
+            distanceWriteBehindService.add(courierId, newLocation, delta.orElse(0.0),
+                newTotalDistance -> courierDistanceCache.saveToCache(courierId, newTotalDistance));
+            return delta.orElse(0.0);
+        }
+        
         CourierDistance courierDistance = courierDistanceRepository.findByCourierId(courierId)
-            .orElseGet(() -> initializeNewCourierDistance(courierId));
+            .orElseGet(() -> initializeNewCourierDistance(courierId, 0.0));
+        
+        OptionalDouble delta = segmentDelta(courierId, newLocation);
+        if (delta.isPresent()) {
+            applyDistanceChange(courierId, courierDistance, delta.getAsDouble());
+            return delta.getAsDouble();
+        }
+        
+        log.debug("First location for courier {}, distance remains 0.0", courierId);
+        return 0.0;
+    }
+    
+    /**
+     * Change to the total distance caused by the new location, or empty for the courier's first
+     */
+    private OptionalDouble segmentDelta(UUID courierId, Location newLocation) {
+        if (isReorderEnabled()) {
+            // Late fixes only recompute the segments around them
+            return trackReorderService.applyFix(courierId, newLocation);
+        }
         
         List<Location> recentLocations = locationRepository.findTop2ByCourierIdOrderByTimestampDesc(courierId);
         
@@ -72,33 +163,79 @@ public class DistanceCalculationService {
             Location currentLocation = recentLocations.get(0);  // Most recent (the new one)
             
             // Calculate distance for this segment only
-            double segmentDistance = distanceUtils.calculateDistanceInKilometers(
+            return OptionalDouble.of(distanceUtils.calculateDistanceInKilometers(
                 previousLocation.getLatitude(), previousLocation.getLongitude(),
                 currentLocation.getLatitude(), currentLocation.getLongitude()
-            );
-            
-            // Add to existing total distance
-            double newTotalDistance = courierDistance.getTotalDistance() + segmentDistance;
-            courierDistance.setTotalDistance(newTotalDistance);
-            courierDistanceRepository.save(courierDistance);
-            
-            // Update cache with new total distance
-            courierDistanceCache.saveToCache(courierId, newTotalDistance);
-
-            log.debug("Updated distance for courier {}: +{} km, total: {} km", 
-                courierId, String.format("%.3f", segmentDistance), String.format("%.3f", newTotalDistance));
-        } else {
-            log.debug("First location for courier {}, distance remains 0.0", courierId);
+            ));
         }
+        return OptionalDouble.empty();
+    }
+    
+    private Optional<RedisCourierState.Advance> advanceInRedis(UUID courierId, Location newLocation) {
+        Optional<RedisCourierState.Advance> advance = redisCourierState.advance(courierId, newLocation, null);
+        if (advance.isEmpty() || advance.get().status() != RedisCourierState.Status.MISSING) {
+            return advance;
+        }
+        
+        // First fix since the hash expired: seed it with the stored total and the fix before this one
+        double storedTotal = courierDistanceRepository.findByCourierId(courierId)
+            .map(CourierDistance::getTotalDistance)
+            .orElse(0.0);
+        TrackPoint previous = locationRepository
+            .findFirstByCourierIdAndTimestampBeforeOrderByTimestampDesc(courierId, newLocation.getTimestamp())
+            .map(location -> new TrackPoint(location.getTimestamp(), location.getLatitude(), location.getLongitude()))
+            .orElse(null);
+        return redisCourierState.advance(courierId, newLocation, new RedisCourierState.Seed(storedTotal, previous));
+    }
+    
+    private double applyRedisAdvance(UUID courierId, RedisCourierState.Advance advance) {
+        double newTotalDistance = advance.totalKilometers();
+        switch (advance.status()) {
+            case LATE -> {
+                // Behind the courier's last fix; the total is unchanged
+                return 0.0;
+            }
+            case FIRST -> {
+                if (!courierDistanceRepository.existsByCourierId(courierId)) {
+                    initializeNewCourierDistance(courierId, newTotalDistance);
+                }
+            }
+            default -> {
+                if (advance.segmentKilometers() > 0.0
+                        && courierDistanceRepository.raiseTotalDistance(courierId, newTotalDistance, LocalDateTime.now()) == 0
+                        && !courierDistanceRepository.existsByCourierId(courierId)) {
+                    initializeNewCourierDistance(courierId, newTotalDistance);
+                }
+            }
+        }
+        courierDistanceCache.saveToCache(courierId, newTotalDistance);
+        
+        log.debug("Updated distance for courier {} in Redis: {} km, total: {} km",
+            courierId, String.format("%+.3f", advance.segmentKilometers()), String.format("%.3f", newTotalDistance));
+        return advance.segmentKilometers();
+    }
+    
+    private void applyDistanceChange(UUID courierId, CourierDistance courierDistance, double segmentDistance) {
+        // Add to existing total distance
+        double newTotalDistance = courierDistance.getTotalDistance() + segmentDistance;
+        courierDistance.setTotalDistance(newTotalDistance);
+        courierDistance.setUpdatedAt(LocalDateTime.now());
+        courierDistanceRepository.save(courierDistance);
+        
+        // Update cache with new total distance
+        courierDistanceCache.saveToCache(courierId, newTotalDistance);
+
+        log.debug("Updated distance for courier {}: {} km, total: {} km", 
+            courierId, String.format("%+.3f", segmentDistance), String.format("%.3f", newTotalDistance));
     }
     
-    private CourierDistance initializeNewCourierDistance(UUID courierId) {
+    private CourierDistance initializeNewCourierDistance(UUID courierId, double totalDistance) {
         Courier courier = courierRepository.findById(courierId)
             .orElseThrow(() -> new CourierNotFoundException("Courier not found with ID: " + courierId));
         
         CourierDistance courierDistance = new CourierDistance();
         courierDistance.setCourier(courier);
-        courierDistance.setTotalDistance(0.0);
+        courierDistance.setTotalDistance(totalDistance);
         
         CourierDistance saved = courierDistanceRepository.save(courierDistance);
         log.debug("Initialized distance tracking for courier {}", courierId);
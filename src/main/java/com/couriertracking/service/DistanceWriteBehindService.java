@@ -0,0 +1,341 @@
+package com.couriertracking.service;
+
+import com.couriertracking.datasource.PrimaryRouting;
+import com.couriertracking.model.CourierDistance;
+import com.couriertracking.model.Location;
+import com.couriertracking.repository.CourierDistanceRepository;
+import com.couriertracking.repository.CourierRepository;
+import com.couriertracking.repository.LocationRepository;
+import com.couriertracking.state.CourierState;
+import com.couriertracking.state.CourierStateRegistry;
+import com.couriertracking.state.DistanceTally;
+import com.couriertracking.storage.LocationTrackReader;
+import com.couriertracking.util.DistanceUtils;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalDouble;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.DoubleConsumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Coalesces courier_distances writes. Running totals live in each courier's {@link DistanceTally}
+ * and are flushed in batches once a courier has N pending points or its oldest pending point is
+ * T seconds old. A flushed row's updatedAt is the receive time of the newest location it covers,
+ * so after a crash the lost points are rebuilt from the locations received after it.
+ * <p>
+ * A location's change only reaches the tally once its transaction has committed, so a flush never
+ * writes a total that includes a location which may still roll back.
+ */
+@Service
+@Slf4j
+public class DistanceWriteBehindService {
+
+    private final CourierStateRegistry courierStateRegistry;
+    private final CourierDistanceRepository courierDistanceRepository;
+    private final CourierRepository courierRepository;
+    private final LocationRepository locationRepository;
+    private final LocationTrackReader locationTrackReader;
+    private final DistanceUtils distanceUtils;
+    private final TransactionTemplate transactionTemplate;
+
+    private final Counter flushedRows;
+    private final Counter replayedLocations;
+    private final Timer flushTimer;
+
+    @Value("${courier-tracking.distance.write-behind.enabled:false}")
+    private boolean enabled;
+
+    @Value("${courier-tracking.distance.write-behind.flush-every-points:20}")
+    private int flushEveryPoints;
+
+    @Value("${courier-tracking.distance.write-behind.flush-interval-seconds:5}")
+    private long flushIntervalSeconds;
+
+    @Value("${courier-tracking.distance.write-behind.batch-size:500}")
+    private int batchSize;
+
+    public DistanceWriteBehindService(CourierStateRegistry courierStateRegistry,
+                                      CourierDistanceRepository courierDistanceRepository,
+                                      CourierRepository courierRepository,
+                                      LocationRepository locationRepository,
+                                      LocationTrackReader locationTrackReader,
+                                      DistanceUtils distanceUtils,
+                                      PlatformTransactionManager transactionManager,
+                                      MeterRegistry meterRegistry) {
+        this.courierStateRegistry = courierStateRegistry;
+        this.courierDistanceRepository = courierDistanceRepository;
+        this.courierRepository = courierRepository;
+        this.locationRepository = locationRepository;
+        this.locationTrackReader = locationTrackReader;
+        this.distanceUtils = distanceUtils;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.flushedRows = meterRegistry.counter("courier.distance.flush.rows");
+        this.replayedLocations = meterRegistry.counter("courier.distance.replayed.locations");
+        this.flushTimer = meterRegistry.timer("courier.distance.flush");
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Fold a saved location's change into the courier's running total once the surrounding
+     * transaction commits (immediately if there is none)
+     * @param onCommitted receives the new total in km after the change is applied
+     */
+    public void add(UUID courierId, Location location, double kilometers, DoubleConsumer onCommitted) {
+        DistanceTally tally = loadedTally(courierId, location.getId());
+        long epoch = tally.getEpoch();
+        afterCommit(() -> {
+            OptionalDouble total = tally.add(epoch, kilometers, location.getReceivedAt());
+            if (total.isPresent()) {
+                onCommitted.accept(total.getAsDouble());
+            }
+        });
+    }
+
+    /**
+     * Current total if the courier's tally is in memory
+     */
+    public Optional<Double> findLiveTotal(UUID courierId) {
+        return courierStateRegistry.find(courierId)
+            .map(CourierState::getDistanceTally)
+            .filter(DistanceTally::isLoaded)
+            .map(DistanceTally::getTotalKilometers);
+    }
+
+    /**
+     * Current total, rebuilt from the table and the location log if the tally is not in memory
+     */
+    public double loadTotal(UUID courierId) {
+        return loadedTally(courierId, null).getTotalKilometers();
+    }
+
+    @Scheduled(fixedDelayString = "${courier-tracking.distance.write-behind.check-interval-millis:500}")
+    public void flushDue() {
+        if (enabled) {
+            flush(false);
+        }
+    }
+
+    @PreDestroy
+    public void flushAll() {
+        if (enabled) {
+            flush(true);
+        }
+    }
+
+    /**
+     * Write one courier's pending total now, e.g. before its state is handed to another instance
+     * @return whether the table is up to date with the tally
+     */
+    public boolean flushCourier(UUID courierId) {
+        Optional<DistanceTally> tally = courierStateRegistry.find(courierId).map(CourierState::getDistanceTally);
+        DistanceTally.Pending pending = tally.map(DistanceTally::pending).orElse(null);
+        if (pending == null) {
+            return true;
+        }
+        try {
+            List<Flush> batch = List.of(new Flush(courierId, tally.get(), pending));
+            flushTimer.record(() -> writeBatch(batch));
+            tally.get().markFlushed(pending);
+            flushedRows.increment();
+            return true;
+        } catch (RuntimeException e) {
+            log.warn("Failed to flush distance of courier {}: {}", courierId, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Write the pending totals of every due courier, or of every courier if {@code all} is set
+     * @return number of rows written
+     */
+    int flush(boolean all) {
+        long now = System.nanoTime();
+        long maxAgeNanos = TimeUnit.SECONDS.toNanos(flushIntervalSeconds);
+        List<Flush> due = new ArrayList<>();
+        courierStateRegistry.forEach(state -> {
+            DistanceTally tally = state.getDistanceTally();
+            if (all || tally.isDue(flushEveryPoints, maxAgeNanos, now)) {
+                DistanceTally.Pending pending = tally.pending();
+                if (pending != null) {
+                    due.add(new Flush(state.getCourierId(), tally, pending));
+                }
+            }
+        });
+
+        int written = 0;
+        for (int from = 0; from < due.size(); from += batchSize) {
+            List<Flush> batch = due.subList(from, Math.min(due.size(), from + batchSize));
+            try {
+                flushTimer.record(() -> writeBatch(batch));
+                batch.forEach(flush -> flush.tally().markFlushed(flush.pending()));
+                written += batch.size();
+            } catch (RuntimeException e) {
+                // Totals stay pending and are retried on the next run
+                log.warn("Failed to flush {} courier distances: {}", batch.size(), e.getMessage());
+            }
+        }
+        flushedRows.increment(written);
+        if (written > 0) {
+            log.debug("Flushed {} courier distances", written);
+        }
+        return written;
+    }
+
+    private void writeBatch(List<Flush> batch) {
+        transactionTemplate.executeWithoutResult(status -> {
+            Map<UUID, CourierDistance> rows = courierDistanceRepository
+                .findByCourierIdIn(batch.stream().map(Flush::courierId).toList())
+                .stream()
+                .collect(Collectors.toMap(row -> row.getCourier().getId(), Function.identity()));
+
+            for (Flush flush : batch) {
+                CourierDistance row = rows.computeIfAbsent(flush.courierId(), courierId -> {
+                    CourierDistance created = new CourierDistance();
+                    created.setCourier(courierRepository.getReferenceById(courierId));
+                    return created;
+                });
+                row.setTotalDistance(flush.pending().totalKilometers());
+                row.setUpdatedAt(flush.pending().receivedThrough());
+            }
+            courierDistanceRepository.saveAll(rows.values());
+        });
+    }
+
+    private DistanceTally loadedTally(UUID courierId, UUID excludeLocationId) {
+        DistanceTally tally = courierStateRegistry.getOrCreate(courierId).getDistanceTally();
+        synchronized (tally) {
+            if (!tally.isLoaded()) {
+                // The tally becomes the courier's running total, so it must not start from stale rows
+                PrimaryRouting.run(() -> load(courierId, tally, excludeLocationId));
+            }
+        }
+        return tally;
+    }
+
+    /**
+     * Start from the persisted total and replay the locations received after it. The track is
+     * streamed once from the flushed fix before the earliest unflushed location, or from the start
+     * if nothing was flushed yet.
+     */
+    private void load(UUID courierId, DistanceTally tally, UUID excludeLocationId) {
+        Optional<CourierDistance> row = courierDistanceRepository.findByCourierId(courierId);
+        LocalDateTime flushedThrough = row.map(CourierDistance::getUpdatedAt).orElse(null);
+
+        TrackReplay replay = new TrackReplay(flushedThrough, excludeLocationId);
+        if (flushedThrough == null) {
+            locationTrackReader.forEach(courierId, null, null, replay);
+        } else {
+            Optional<LocalDateTime> earliest = locationRepository
+                .findByCourierIdAndReceivedAtAfter(courierId, flushedThrough)
+                .stream()
+                .filter(location -> !location.getId().equals(excludeLocationId))
+                .map(Location::getTimestamp)
+                .min(Comparator.naturalOrder());
+            if (earliest.isPresent()) {
+                LocalDateTime windowStart = locationRepository
+                    .findFirstByCourierIdAndTimestampBeforeOrderByTimestampDesc(courierId, earliest.get())
+                    .map(Location::getTimestamp)
+                    .orElse(earliest.get());
+                locationTrackReader.forEach(courierId, windowStart, null, replay);
+            }
+        }
+
+        double total = row.map(CourierDistance::getTotalDistance).orElse(0.0);
+        if (replay.unflushed > 0) {
+            total += replay.kilometers - replay.flushedKilometers;
+            flushedThrough = replay.receivedThrough;
+            replayedLocations.increment(replay.unflushed);
+            log.info("Replayed {} unflushed locations into the distance of courier {}", replay.unflushed, courierId);
+        }
+        tally.load(total, flushedThrough, replay.unflushed);
+    }
+
+    private void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        // A rolled-back location never reaches the tally, so there is nothing to undo
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    private record Flush(UUID courierId, DistanceTally tally, DistanceTally.Pending pending) {
+    }
+
+    /**
+     * Change to the track length from splicing the unflushed locations in, taken in one pass: the
+     * length with and without the locations received after the flush
+     */
+    private final class TrackReplay implements Consumer<Location> {
+
+        private final LocalDateTime flushedThrough;
+        private final UUID excludeLocationId;
+        private Location last;
+        private Location lastFlushed;
+        private double kilometers;
+        private double flushedKilometers;
+        private int unflushed;
+        private LocalDateTime receivedThrough;
+
+        TrackReplay(LocalDateTime flushedThrough, UUID excludeLocationId) {
+            this.flushedThrough = flushedThrough;
+            this.excludeLocationId = excludeLocationId;
+        }
+
+        @Override
+        public void accept(Location location) {
+            if (location.getId().equals(excludeLocationId)) {
+                return;
+            }
+            if (last != null) {
+                kilometers += kilometers(last, location);
+            }
+            last = location;
+            if (flushedThrough != null && !location.getReceivedAt().isAfter(flushedThrough)) {
+                if (lastFlushed != null) {
+                    flushedKilometers += kilometers(lastFlushed, location);
+                }
+                lastFlushed = location;
+                return;
+            }
+            unflushed++;
+            if (receivedThrough == null || location.getReceivedAt().isAfter(receivedThrough)) {
+                receivedThrough = location.getReceivedAt();
+            }
+        }
+
+        private double kilometers(Location from, Location to) {
+            return distanceUtils.calculateDistanceInKilometers(
+                from.getLatitude(), from.getLongitude(), to.getLatitude(), to.getLongitude());
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package com.couriertracking.service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.couriertracking.dto.ArchiveReport;
+import com.couriertracking.dto.RetentionReport;
+import com.couriertracking.storage.LocationArchive;
+import com.couriertracking.storage.TrackBlockCodec;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Location archiving. Once a day is closed, each courier's points for that day are encoded into
+ * one {@link TrackBlockCodec} block in {@code location_archive} and removed from {@code locations}
+ * with one range delete. Late fixes for an archived day are merged into its block on the next run.
+ * Every block is decoded back and compared before the rows are deleted. Runs on every location
+ * shard when sharding is enabled.
+ * <p>
+ * The range delete is bounded by the newest receive time read, and must remove exactly the rows
+ * read; a late fix committed between the read and the delete otherwise makes the day roll back
+ * and wait for the next run, so no row leaves {@code locations} without being archived.
+ */
+@Service
+@Slf4j
+@ConditionalOnProperty(name = "courier-tracking.archive.enabled", havingValue = "true")
+public class LocationArchiveService {
+
+    private final LocationArchive locationArchive;
+
+    private final Counter pointsArchived;
+    private final Counter rawBytes;
+    private final Counter encodedBytes;
+    private final DistributionSummary decodeThroughput;
+
+    // Days newer than this many, today included, stay in locations
+    @Value("${courier-tracking.archive.hot-days:1}")
+    private int hotDays;
+
+    @Value("${courier-tracking.archive.max-days-per-run:31}")
+    private int maxDaysPerRun;
+
+    public LocationArchiveService(LocationArchive locationArchive, MeterRegistry meterRegistry) {
+        this.locationArchive = locationArchive;
+        this.pointsArchived = meterRegistry.counter("courier.archive.points");
+        this.rawBytes = Counter.builder("courier.archive.bytes").tag("form", "raw").baseUnit("bytes").register(meterRegistry);
+        this.encodedBytes = Counter.builder("courier.archive.bytes").tag("form", "encoded").baseUnit("bytes").register(meterRegistry);
+        this.decodeThroughput = DistributionSummary.builder("courier.archive.decode.throughput")
+            .baseUnit("points/s")
+            .register(meterRegistry);
+    }
+
+    @Scheduled(cron = "${courier-tracking.archive.cron:0 0 3 * * *}")
+    public void scheduledRun() {
+        run(LocalDateTime.now());
+    }
+
+    /**
+     * Archive closed days on every location database
+     * @param now reference time for the hot window
+     */
+    public ArchiveReport run(LocalDateTime now) {
+        long started = System.currentTimeMillis();
+        ArchiveReport report = new ArchiveReport();
+        LocalDateTime cutoff = now.toLocalDate().minusDays(hotDays - 1L).atStartOfDay();
+        for (DataSource target : locationArchive.dataSources()) {
+            JdbcTemplate jdbcTemplate = new JdbcTemplate(target);
+            TransactionTemplate transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(target));
+            archiveClosedDays(jdbcTemplate, transactionTemplate, cutoff, report);
+        }
+        report.setDurationMillis(System.currentTimeMillis() - started);
+
+        pointsArchived.increment(report.getPointsArchived());
+        rawBytes.increment(report.getRawBytes());
+        encodedBytes.increment(report.getEncodedBytes());
+        if (report.getDecodeNanos() > 0) {
+            decodeThroughput.record(report.getDecodePointsPerSecond());
+        }
+        log.info("Location archive moved {} days into {} blocks ({} points): {} -> {} bytes ({}x), "
+                + "decoded at {} points/s, in {} ms",
+            report.getDaysArchived(), report.getBlocksWritten(), report.getPointsArchived(), report.getRawBytes(),
+            report.getEncodedBytes(), String.format("%.1f", report.getCompressionRatio()),
+            Math.round(report.getDecodePointsPerSecond()), report.getDurationMillis());
+        return report;
+    }
+
+    /**
+     * Archive each day before the cutoff, oldest first. A day is archived in one transaction, so a
+     * failed run leaves its rows in place.
+     */
+    private void archiveClosedDays(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+                                   LocalDateTime cutoff, ArchiveReport report) {
+        for (int days = 0; days < maxDaysPerRun; days++) {
+            LocalDateTime oldest = jdbcTemplate.queryForObject("SELECT MIN(timestamp) FROM locations", LocalDateTime.class);
+            if (oldest == null || !oldest.isBefore(cutoff)) {
+                return;
+            }
+            LocalDate day = oldest.toLocalDate();
+            ArchiveReport dayReport = new ArchiveReport();
+            if (!Boolean.TRUE.equals(transactionTemplate.execute(status -> archiveDay(jdbcTemplate, day, dayReport, status)))) {
+                return;
+            }
+            report.setDaysArchived(report.getDaysArchived() + 1);
+            report.setBlocksWritten(report.getBlocksWritten() + dayReport.getBlocksWritten());
+            report.setPointsArchived(report.getPointsArchived() + dayReport.getPointsArchived());
+            report.setRawBytes(report.getRawBytes() + dayReport.getRawBytes());
+            report.setEncodedBytes(report.getEncodedBytes() + dayReport.getEncodedBytes());
+            report.setDecodeNanos(report.getDecodeNanos() + dayReport.getDecodeNanos());
+        }
+    }
+
+    /**
+     * @return false if the day was rolled back because rows arrived while it was being archived
+     */
+    private boolean archiveDay(JdbcTemplate jdbcTemplate, LocalDate day, ArchiveReport report, TransactionStatus status) {
+        LocalDateTime dayStart = day.atStartOfDay();
+        LocalDateTime dayEnd = dayStart.plusDays(1);
+        List<TrackBlockCodec.Point> track = new ArrayList<>();
+        UUID[] courier = new UUID[1];
+        long[] rowsRead = new long[1];
+        LocalDateTime[] receivedThrough = new LocalDateTime[1];
+        // Rows come grouped by courier; each courier's block is written when the next courier starts
+        jdbcTemplate.query("SELECT courier_id, timestamp, latitude, longitude, received_at FROM locations "
+                + "WHERE timestamp >= ? AND timestamp < ? ORDER BY courier_id, timestamp",
+            (RowCallbackHandler) rs -> {
+                UUID courierId = rs.getObject(1, UUID.class);
+                if (!courierId.equals(courier[0])) {
+                    writeBlock(jdbcTemplate, courier[0], day, track, report);
+                    courier[0] = courierId;
+                    track.clear();
+                }
+                LocalDateTime receivedAt = rs.getObject(5, LocalDateTime.class);
+                track.add(TrackBlockCodec.Point.of(rs.getObject(2, LocalDateTime.class), rs.getDouble(3), rs.getDouble(4),
+                    receivedAt));
+                rowsRead[0]++;
+                if (receivedThrough[0] == null || receivedAt.isAfter(receivedThrough[0])) {
+                    receivedThrough[0] = receivedAt;
+                }
+            },
+            dayStart, dayEnd);
+        if (rowsRead[0] == 0) {
+            return true;
+        }
+        writeBlock(jdbcTemplate, courier[0], day, track, report);
+        // Rows received later are left for the next run; any other unread row shows up in the count
+        int deleted = jdbcTemplate.update("DELETE FROM locations WHERE timestamp >= ? AND timestamp < ? AND received_at <= ?",
+            dayStart, dayEnd, receivedThrough[0]);
+        if (deleted != rowsRead[0]) {
+            status.setRollbackOnly();
+            log.warn("Locations for {} changed while it was archived ({} read, {} deleted); retrying on the next run",
+                day, rowsRead[0], deleted);
+            return false;
+        }
+        return true;
+    }
+
+    private void writeBlock(JdbcTemplate jdbcTemplate, UUID courierId, LocalDate day, List<TrackBlockCodec.Point> track,
+                            ArchiveReport report) {
+        if (courierId == null || track.isEmpty()) {
+            return;
+        }
+        List<TrackBlockCodec.Point> points = new ArrayList<>(locationArchive.findPoints(jdbcTemplate, courierId, day));
+        points.addAll(track);
+        points.sort(Comparator.comparingLong(TrackBlockCodec.Point::timestampMillis));
+        byte[] block = TrackBlockCodec.encode(points);
+
+        long decodeStarted = System.nanoTime();
+        List<TrackBlockCodec.Point> decoded = TrackBlockCodec.decode(block);
+        report.setDecodeNanos(report.getDecodeNanos() + System.nanoTime() - decodeStarted);
+        if (!decoded.equals(points)) {
+            throw new IllegalStateException("Track block for courier " + courierId + " on " + day + " did not decode to its points");
+        }
+
+        locationArchive.saveBlock(jdbcTemplate, courierId, day, points, block);
+        report.setBlocksWritten(report.getBlocksWritten() + 1);
+        report.setPointsArchived(report.getPointsArchived() + points.size());
+        report.setRawBytes(report.getRawBytes() + (long) points.size() * RetentionReport.LOCATION_ROW_BYTES);
+        report.setEncodedBytes(report.getEncodedBytes() + block.length);
+    }
+}
@@ -0,0 +1,184 @@
+package com.couriertracking.service;
+
+import com.couriertracking.datasource.PrimaryRouting;
+import com.couriertracking.dto.IngestReceiptResponse;
+import com.couriertracking.dto.LocationUpdateRequest;
+import com.couriertracking.dto.LocationUpdateResponse;
+import com.couriertracking.exception.CourierNotFoundException;
+import com.couriertracking.exception.LocationTrackingException;
+import com.couriertracking.exception.ReceiptCapacityExceededException;
+import com.couriertracking.exception.ReceiptNotFoundException;
+import com.couriertracking.ingest.IngestDeduplicator;
+import com.couriertracking.ingest.IngestReceipt;
+import com.couriertracking.ingest.IngestReceiptStore;
+import com.couriertracking.ingest.ShardedCourierExecutor;
+import com.couriertracking.repository.CourierRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Entry point for location updates. Every update runs under the courier's lock in
+ * {@link ShardedCourierExecutor}, so updates for one courier never interleave. Sync updates run
+ * on the request thread by default, or are queued on the courier's shard and waited for with
+ * {@code ingest.sync-on-shard}; async updates are queued and callers poll their receipt.
+ * Retried updates are answered by {@link IngestDeduplicator} before any DB work.
+ */
+@Service
+@Slf4j
+public class LocationIngestService {
+
+    private final LocationTrackingService locationTrackingService;
+    private final CourierRepository courierRepository;
+    private final ShardedCourierExecutor shardedCourierExecutor;
+    private final IngestReceiptStore receiptStore;
+    private final IngestDeduplicator ingestDeduplicator;
+
+    // Queue sync updates on the shard and park the request thread until done, instead of running them inline
+    @Value("${courier-tracking.ingest.sync-on-shard:false}")
+    private boolean syncOnShard;
+
+    private final AtomicInteger pending = new AtomicInteger();
+    private final Counter acceptedCounter;
+    private final Counter completedCounter;
+    private final Counter failedCounter;
+    private final Timer queueWaitTimer;
+    private final Timer endToEndLagTimer;
+
+    public LocationIngestService(LocationTrackingService locationTrackingService,
+                                 CourierRepository courierRepository,
+                                 ShardedCourierExecutor shardedCourierExecutor,
+                                 IngestReceiptStore receiptStore,
+                                 IngestDeduplicator ingestDeduplicator,
+                                 MeterRegistry meterRegistry) {
+        this.locationTrackingService = locationTrackingService;
+        this.courierRepository = courierRepository;
+        this.shardedCourierExecutor = shardedCourierExecutor;
+        this.receiptStore = receiptStore;
+        this.ingestDeduplicator = ingestDeduplicator;
+
+        this.acceptedCounter = meterRegistry.counter("courier.ingest.async.accepted");
+        this.completedCounter = meterRegistry.counter("courier.ingest.async.completed");
+        this.failedCounter = meterRegistry.counter("courier.ingest.async.failed");
+        this.queueWaitTimer = meterRegistry.timer("courier.ingest.async.queue.wait");
+        this.endToEndLagTimer = meterRegistry.timer("courier.ingest.async.lag");
+        Gauge.builder("courier.ingest.async.pending", pending, AtomicInteger::get).register(meterRegistry);
+        Gauge.builder("courier.ingest.shard.queue.depth", shardedCourierExecutor, ShardedCourierExecutor::getQueueDepth)
+            .register(meterRegistry);
+    }
+
+    /**
+     * Process an update under the courier's lock and return the result.
+     */
+    public LocationUpdateResponse ingest(LocationUpdateRequest request, String idempotencyKey) {
+        Optional<LocationUpdateResponse> duplicate = ingestDeduplicator.reserve(request, idempotencyKey);
+        if (duplicate.isPresent()) {
+            return duplicate.get();
+        }
+
+        if (!syncOnShard) {
+            return shardedCourierExecutor.call(request.getCourierId(), () -> updateLocation(request, idempotencyKey));
+        }
+        try {
+            return shardedCourierExecutor
+                .submit(request.getCourierId(), () -> updateLocation(request, idempotencyKey))
+                .join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            log.error("Error processing location for courier {}: {}", request.getCourierId(), e.getMessage());
+            throw new LocationTrackingException("Failed to update courier location");
+        }
+    }
+
+    public IngestReceiptResponse accept(LocationUpdateRequest request, String idempotencyKey) {
+        UUID courierId = request.getCourierId();
+        Optional<LocationUpdateResponse> duplicate = ingestDeduplicator.reserve(request, idempotencyKey);
+        if (duplicate.isPresent()) {
+            IngestReceipt receipt = receiptStore.register(courierId);
+            receipt.complete(duplicate.get().getLocationId(), duplicate.get().getMessage());
+            return mapToResponse(receipt);
+        }
+
+        // A courier created a moment ago may not have reached the replica yet
+        if (!PrimaryRouting.call(() -> courierRepository.existsById(courierId))) {
+            ingestDeduplicator.forgetUnknownCourier(request, idempotencyKey);
+            throw new CourierNotFoundException("Courier not found with ID: " + courierId);
+        }
+
+        IngestReceipt receipt;
+        try {
+            receipt = receiptStore.register(courierId);
+        } catch (ReceiptCapacityExceededException e) {
+            ingestDeduplicator.release(request, idempotencyKey);
+            throw e;
+        }
+        pending.incrementAndGet();
+        acceptedCounter.increment();
+        shardedCourierExecutor.execute(courierId, () -> process(receipt, request, idempotencyKey));
+
+        log.debug("Accepted location update for courier {} with receipt {}", courierId, receipt.getReceiptId());
+        return mapToResponse(receipt);
+    }
+
+    public IngestReceiptResponse getReceipt(UUID receiptId) {
+        IngestReceipt receipt = receiptStore.find(receiptId)
+            .orElseThrow(() -> new ReceiptNotFoundException("Receipt not found with ID: " + receiptId));
+        return mapToResponse(receipt);
+    }
+
+    private void process(IngestReceipt receipt, LocationUpdateRequest request, String idempotencyKey) {
+        queueWaitTimer.record(System.nanoTime() - receipt.getAcceptedNanos(), TimeUnit.NANOSECONDS);
+        receipt.markProcessing();
+        try {
+            LocationUpdateResponse response = updateLocation(request, idempotencyKey);
+            receipt.complete(response.getLocationId(), response.getMessage());
+            completedCounter.increment();
+        } catch (Exception e) {
+            log.error("Async location update failed for receipt {}: {}", receipt.getReceiptId(), e.getMessage());
+            receipt.fail(e.getMessage());
+            failedCounter.increment();
+        } finally {
+            pending.decrementAndGet();
+            endToEndLagTimer.record(System.nanoTime() - receipt.getAcceptedNanos(), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private LocationUpdateResponse updateLocation(LocationUpdateRequest request, String idempotencyKey) {
+        try {
+            LocationUpdateResponse response = locationTrackingService.updateCourierLocation(request);
+            ingestDeduplicator.complete(request, idempotencyKey, response);
+            return response;
+        } catch (CourierNotFoundException e) {
+            ingestDeduplicator.forgetUnknownCourier(request, idempotencyKey);
+            throw e;
+        } catch (RuntimeException e) {
+            // Let the device's retry through
+            ingestDeduplicator.release(request, idempotencyKey);
+            throw e;
+        }
+    }
+
+    private IngestReceiptResponse mapToResponse(IngestReceipt receipt) {
+        return new IngestReceiptResponse(
+            receipt.getReceiptId(),
+            receipt.getCourierId(),
+            receipt.getStatus(),
+            receipt.getAcceptedAt(),
+            receipt.getCompletedAt(),
+            receipt.getLocationId(),
+            receipt.getMessage()
+        );
+    }
+}
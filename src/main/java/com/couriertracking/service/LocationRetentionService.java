@@ -0,0 +1,329 @@
+package com.couriertracking.service;
+
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.couriertracking.datasource.LocationShards;
+import com.couriertracking.dto.RetentionReport;
+import com.couriertracking.storage.LocationArchive;
+import com.couriertracking.storage.LocationHistory;
+import com.couriertracking.storage.TrackBlockCodec;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Location retention. Full-resolution fixes stay in {@code locations} for a number of days; each
+ * older day is then downsampled to one point per courier per interval into the month's
+ * {@code location_history_yyyyMM} table and removed from {@code locations} with one range delete.
+ * Days already moved to {@code location_archive} are downsampled from their blocks the same way.
+ * History tables are dropped whole once their month has expired. Runs on every location shard
+ * when sharding is enabled. History is read back through {@link LocationHistory}.
+ * <p>
+ * A downsampled day's range delete is bounded by the newest receive time read and must remove
+ * exactly the rows read, so a late fix committed in between rolls the day back to the next run
+ * instead of being deleted without reaching history.
+ */
+@Service
+@Slf4j
+public class LocationRetentionService {
+
+    private static final int INSERT_BATCH_SIZE = 1000;
+
+    private final DataSource dataSource;
+    private final ObjectProvider<LocationShards> locationShards;
+
+    private final Counter rowsReclaimed;
+    private final Counter bytesReclaimed;
+
+    @Value("${courier-tracking.retention.enabled:false}")
+    private boolean enabled;
+
+    @Value("${courier-tracking.retention.full-resolution-days:30}")
+    private int fullResolutionDays;
+
+    @Value("${courier-tracking.retention.history-days:365}")
+    private int historyDays;
+
+    @Value("${courier-tracking.retention.downsample-seconds:60}")
+    private int downsampleSeconds;
+
+    @Value("${courier-tracking.retention.max-days-per-run:31}")
+    private int maxDaysPerRun;
+
+    public LocationRetentionService(DataSource dataSource,
+                                    ObjectProvider<LocationShards> locationShards,
+                                    MeterRegistry meterRegistry) {
+        this.dataSource = dataSource;
+        this.locationShards = locationShards;
+        this.rowsReclaimed = meterRegistry.counter("courier.retention.rows.reclaimed");
+        this.bytesReclaimed = Counter.builder("courier.retention.bytes.reclaimed")
+            .baseUnit("bytes")
+            .register(meterRegistry);
+    }
+
+    @Scheduled(cron = "${courier-tracking.retention.cron:0 30 3 * * *}")
+    public void scheduledRun() {
+        if (enabled) {
+            run(LocalDateTime.now());
+        }
+    }
+
+    /**
+     * Compact expired days and drop expired history on every location database
+     * @param now reference time for both retention windows
+     */
+    public RetentionReport run(LocalDateTime now) {
+        long started = System.currentTimeMillis();
+        RetentionReport report = new RetentionReport();
+        for (DataSource target : targets()) {
+            JdbcTemplate jdbcTemplate = new JdbcTemplate(target);
+            TransactionTemplate transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(target));
+            List<String> tables = tables(jdbcTemplate);
+            compactExpiredDays(jdbcTemplate, transactionTemplate, now, report);
+            if (tables.stream().anyMatch(LocationArchive.TABLE::equalsIgnoreCase)) {
+                compactExpiredArchive(jdbcTemplate, transactionTemplate, now, report);
+            }
+            dropExpiredHistory(jdbcTemplate, tables, now, report);
+        }
+        report.setDurationMillis(System.currentTimeMillis() - started);
+
+        rowsReclaimed.increment(Math.max(0, report.getRowsReclaimed()));
+        bytesReclaimed.increment(Math.max(0, report.getBytesReclaimed()));
+        log.info("Location retention compacted {} days ({} rows kept of {}, {} archive blocks), dropped {} history "
+                + "partitions ({} rows); reclaimed {} rows, ~{} bytes in {} ms",
+            report.getDaysCompacted(), report.getHistoryRowsWritten(), report.getLocationRowsRemoved(),
+            report.getArchiveBlocksRemoved(), report.getPartitionsDropped(), report.getHistoryRowsDropped(), report.getRowsReclaimed(),
+            report.getBytesReclaimed(), report.getDurationMillis());
+        return report;
+    }
+
+    private List<DataSource> targets() {
+        LocationShards shards = locationShards.getIfAvailable();
+        return shards != null ? shards.dataSources() : List.of(dataSource);
+    }
+
+    /**
+     * Replace each day older than the full-resolution window, oldest first, by its downsampled
+     * points. A day is compacted in one transaction, so a failed run leaves it untouched.
+     */
+    private void compactExpiredDays(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+                                    LocalDateTime now, RetentionReport report) {
+        LocalDateTime fullResolutionCutoff = now.toLocalDate().minusDays(fullResolutionDays).atStartOfDay();
+        LocalDateTime historyCutoff = now.minusDays(historyDays);
+        for (int days = 0; days < maxDaysPerRun; days++) {
+            LocalDateTime oldest = jdbcTemplate.queryForObject("SELECT MIN(timestamp) FROM locations", LocalDateTime.class);
+            if (oldest == null || !oldest.isBefore(fullResolutionCutoff)) {
+                return;
+            }
+            LocalDateTime dayStart = oldest.toLocalDate().atStartOfDay();
+            LocalDateTime dayEnd = dayStart.plusDays(1);
+            long[] removed = new long[2];
+            boolean compacted = Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+                if (!dayEnd.isAfter(historyCutoff)) {
+                    // Past the history window too: nothing is kept, so any row in the range may go
+                    removed[0] = jdbcTemplate.update("DELETE FROM locations WHERE timestamp >= ? AND timestamp < ?",
+                        dayStart, dayEnd);
+                    return true;
+                }
+                Downsampled downsampled = downsample(jdbcTemplate, dayStart, dayEnd);
+                if (downsampled.rowsRead() == 0) {
+                    return true;
+                }
+                // Rows received later are left for the next run; any other unread row shows up in the count
+                int deleted = jdbcTemplate.update("DELETE FROM locations WHERE timestamp >= ? AND timestamp < ? "
+                    + "AND received_at <= ?", dayStart, dayEnd, downsampled.receivedThrough());
+                if (deleted != downsampled.rowsRead()) {
+                    status.setRollbackOnly();
+                    log.warn("Locations for {} changed while they were downsampled ({} read, {} deleted); "
+                        + "retrying on the next run", dayStart.toLocalDate(), downsampled.rowsRead(), deleted);
+                    return false;
+                }
+                removed[0] = deleted;
+                removed[1] = downsampled.rowsWritten();
+                return true;
+            }));
+            if (!compacted) {
+                return;
+            }
+            report.setLocationRowsRemoved(report.getLocationRowsRemoved() + removed[0]);
+            report.setHistoryRowsWritten(report.getHistoryRowsWritten() + removed[1]);
+            report.setDaysCompacted(report.getDaysCompacted() + 1);
+        }
+    }
+
+    /**
+     * Copy the first fix of each courier's downsample interval within the day to the month's history table
+     */
+    private Downsampled downsample(JdbcTemplate jdbcTemplate, LocalDateTime dayStart, LocalDateTime dayEnd) {
+        HistoryWriter history = new HistoryWriter(jdbcTemplate, dayStart);
+        long[] rowsRead = new long[1];
+        LocalDateTime[] receivedThrough = new LocalDateTime[1];
+        jdbcTemplate.query("SELECT courier_id, timestamp, latitude, longitude, received_at FROM locations "
+                + "WHERE timestamp >= ? AND timestamp < ? ORDER BY courier_id, timestamp",
+            (RowCallbackHandler) rs -> {
+                history.add(rs.getObject(1, UUID.class), rs.getObject(2, LocalDateTime.class),
+                    rs.getDouble(3), rs.getDouble(4));
+                LocalDateTime receivedAt = rs.getObject(5, LocalDateTime.class);
+                rowsRead[0]++;
+                if (receivedThrough[0] == null || receivedAt.isAfter(receivedThrough[0])) {
+                    receivedThrough[0] = receivedAt;
+                }
+            },
+            dayStart, dayEnd);
+        return new Downsampled(rowsRead[0], receivedThrough[0], history.finish());
+    }
+
+    private record Downsampled(long rowsRead, LocalDateTime receivedThrough, long rowsWritten) {
+    }
+
+    /**
+     * Replace each archived day older than the full-resolution window, oldest first, by the
+     * downsampled points of its blocks, one day per transaction
+     */
+    private void compactExpiredArchive(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+                                       LocalDateTime now, RetentionReport report) {
+        LocalDate fullResolutionCutoff = now.toLocalDate().minusDays(fullResolutionDays);
+        LocalDateTime historyCutoff = now.minusDays(historyDays);
+        for (int days = 0; days < maxDaysPerRun; days++) {
+            LocalDate oldest = jdbcTemplate.queryForObject("SELECT MIN(track_date) FROM " + LocationArchive.TABLE,
+                LocalDate.class);
+            if (oldest == null || !oldest.isBefore(fullResolutionCutoff)) {
+                return;
+            }
+            transactionTemplate.executeWithoutResult(status -> {
+                HistoryWriter history = oldest.plusDays(1).atStartOfDay().isAfter(historyCutoff)
+                    ? new HistoryWriter(jdbcTemplate, oldest.atStartOfDay())
+                    : null;
+                jdbcTemplate.query("SELECT courier_id, block FROM " + LocationArchive.TABLE
+                        + " WHERE track_date = ? ORDER BY courier_id",
+                    (RowCallbackHandler) rs -> {
+                        byte[] block = rs.getBytes(2);
+                        report.setArchiveBlocksRemoved(report.getArchiveBlocksRemoved() + 1);
+                        report.setArchiveBytesRemoved(report.getArchiveBytesRemoved() + block.length);
+                        if (history != null) {
+                            UUID courierId = rs.getObject(1, UUID.class);
+                            for (TrackBlockCodec.Point point : TrackBlockCodec.decode(block)) {
+                                history.add(courierId, point.timestamp(), point.latitude(), point.longitude());
+                            }
+                        }
+                    },
+                    oldest);
+                if (history != null) {
+                    report.setHistoryRowsWritten(report.getHistoryRowsWritten() + history.finish());
+                }
+                jdbcTemplate.update("DELETE FROM " + LocationArchive.TABLE + " WHERE track_date = ?", oldest);
+            });
+            report.setDaysCompacted(report.getDaysCompacted() + 1);
+        }
+    }
+
+    /**
+     * Drop each history table whose whole month lies outside the history window
+     */
+    private void dropExpiredHistory(JdbcTemplate jdbcTemplate, List<String> tables, LocalDateTime now,
+                                    RetentionReport report) {
+        LocalDateTime historyCutoff = now.minusDays(historyDays);
+        for (String table : tables) {
+            Optional<YearMonth> history = LocationHistory.month(table);
+            if (history.isEmpty()) {
+                continue;
+            }
+            YearMonth month = history.get();
+            if (month.plusMonths(1).atDay(1).atStartOfDay().isAfter(historyCutoff)) {
+                continue;
+            }
+            Long rows = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + table, Long.class);
+            jdbcTemplate.execute("DROP TABLE " + table);
+            report.setPartitionsDropped(report.getPartitionsDropped() + 1);
+            report.setHistoryRowsDropped(report.getHistoryRowsDropped() + (rows != null ? rows : 0));
+        }
+    }
+
+    private static List<String> tables(JdbcTemplate jdbcTemplate) {
+        return jdbcTemplate.execute((ConnectionCallback<List<String>>) connection -> {
+            List<String> tables = new ArrayList<>();
+            DatabaseMetaData metaData = connection.getMetaData();
+            try (ResultSet rs = metaData.getTables(connection.getCatalog(), connection.getSchema(), "%",
+                    new String[] { "TABLE" })) {
+                while (rs.next()) {
+                    tables.add(rs.getString("TABLE_NAME"));
+                }
+            }
+            return tables;
+        });
+    }
+
+    /**
+     * Writes the first fix of each courier's downsample interval to a month's history table, in
+     * batches. Fixes must arrive grouped by courier and in timestamp order.
+     */
+    private final class HistoryWriter {
+
+        private final JdbcTemplate jdbcTemplate;
+        private final String insert;
+        private final List<Object[]> batch = new ArrayList<>();
+        private UUID previousCourier;
+        private long previousInterval;
+        private long written;
+
+        HistoryWriter(JdbcTemplate jdbcTemplate, LocalDateTime month) {
+            String table = LocationHistory.table(YearMonth.from(month));
+            jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + table + " (courier_id UUID NOT NULL, "
+                + "timestamp TIMESTAMP(6) NOT NULL, latitude DOUBLE PRECISION NOT NULL, longitude DOUBLE PRECISION NOT NULL)");
+            jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS idx_" + table + " ON " + table + " (courier_id, timestamp)");
+            this.jdbcTemplate = jdbcTemplate;
+            this.insert = "INSERT INTO " + table + " (courier_id, timestamp, latitude, longitude) VALUES (?, ?, ?, ?)";
+        }
+
+        void add(UUID courierId, LocalDateTime timestamp, double latitude, double longitude) {
+            long interval = Math.floorDiv(timestamp.toEpochSecond(ZoneOffset.UTC), downsampleSeconds);
+            if (courierId.equals(previousCourier) && interval == previousInterval) {
+                return;
+            }
+            previousCourier = courierId;
+            previousInterval = interval;
+            batch.add(new Object[] { courierId, timestamp, latitude, longitude });
+            if (batch.size() >= INSERT_BATCH_SIZE) {
+                flush();
+            }
+        }
+
+        /**
+         * @return rows written
+         */
+        long finish() {
+            flush();
+            return written;
+        }
+
+        private void flush() {
+            if (!batch.isEmpty()) {
+                jdbcTemplate.batchUpdate(insert, batch);
+                written += batch.size();
+                batch.clear();
+            }
+        }
+    }
+}
@@ -26,6 +26,8 @@ public class LocationTrackingService {
     private final CourierRepository courierRepository;
     private final StoreEntranceService storeEntranceService;
     private final DistanceCalculationService distanceCalculationService;
+    private final ReportIntervalAdvisor reportIntervalAdvisor;
+    private final TripService tripService;
     
     @Transactional
     public LocationUpdateResponse updateCourierLocation(LocationUpdateRequest request) {        
@@ -34,6 +36,18 @@ public class LocationTrackingService {
             .orElseThrow(() -> new CourierNotFoundException(
                 "Courier not found with ID: " + request.getCourierId()));
         
+        if (distanceCalculationService.isBehindWatermark(courier.getId(), request.getTimestamp())) {
+            log.info("Discarded late location for courier {} at {}", courier.getId(), request.getTimestamp());
+            return new LocationUpdateResponse(
+                null,
+                courier.getId(),
+                request.getLatitude(),
+                request.getLongitude(),
+                request.getTimestamp(),
+                "Location discarded: older than the reorder watermark"
+            );
+        }
+        
         try {
             Location location = new Location();
             location.setCourier(courier);
@@ -44,16 +58,20 @@ public class LocationTrackingService {
             Location savedLocation = locationRepository.save(location);
             
             // Update distance incrementally
-            distanceCalculationService.updateDistanceForNewLocation(courier.getId(), savedLocation);
+            double segmentKilometers = distanceCalculationService.updateDistanceForNewLocation(courier.getId(), savedLocation);
             
             // Check for store entrances
             StoreEntrance storeEntrance = storeEntranceService.checkAndLogStoreEntrance(
                 courier, 
                 request.getLatitude(), 
                 request.getLongitude(), 
-                request.getTimestamp()
+                request.getTimestamp(),
+                segmentKilometers
             );
             
+            tripService.recordFix(courier, request.getLatitude(), request.getLongitude(), request.getTimestamp(),
+                segmentKilometers, storeEntrance != null);
+            
             String message = storeEntrance != null 
                 ? "Location updated successfully. Store entrance detected at: " + storeEntrance.getStore().getName()
                 : "Location updated successfully";
@@ -67,7 +85,9 @@ public class LocationTrackingService {
                 request.getLatitude(),
                 request.getLongitude(),
                 request.getTimestamp(),
-                message
+                message,
+                reportIntervalAdvisor.advise(
+                    courier.getId(), request.getLatitude(), request.getLongitude(), request.getTimestamp())
             );
             
         } catch (Exception e) {
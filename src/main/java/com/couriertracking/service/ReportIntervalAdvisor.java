@@ -0,0 +1,115 @@
+package com.couriertracking.service;
+
+import com.couriertracking.geo.StoreIndex;
+import com.couriertracking.state.CourierMotion;
+import com.couriertracking.state.CourierStateRegistry;
+import com.couriertracking.util.DistanceUtils;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Suggests when a device should send its next fix.
+ * The hint is a fraction of the time the courier needs to reach the nearest store's entrance radius
+ * at its recent speed: slow couriers far from every store report rarely, couriers closing in on a
+ * store report often.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ReportIntervalAdvisor {
+
+    private final CourierStateRegistry courierStateRegistry;
+    private final StoreIndex storeIndex;
+    private final DistanceUtils distanceUtils;
+
+    @Value("${courier-tracking.store.entrance-radius-meters:100}")
+    private int entranceRadiusMeters;
+
+    @Value("${courier-tracking.report-hint.enabled:true}")
+    private boolean enabled;
+
+    @Value("${courier-tracking.report-hint.min-seconds:5}")
+    private int minSeconds;
+
+    @Value("${courier-tracking.report-hint.max-seconds:120}")
+    private int maxSeconds;
+
+    // Assumed speed for couriers that are parked or crawling; they may start moving at any time
+    @Value("${courier-tracking.report-hint.speed-floor-mps:5.0}")
+    private double speedFloorMetersPerSecond;
+
+    @Value("${courier-tracking.report-hint.safety-factor:0.5}")
+    private double safetyFactor;
+
+    @Value("${courier-tracking.report-hint.speed-smoothing:0.3}")
+    private double speedSmoothing;
+
+    /**
+     * Update the courier's speed estimate with an accepted fix and return the next report hint in
+     * seconds, or null when hints are disabled. A late fix leaves the estimate alone and the hint is
+     * taken from the courier's latest position.
+     */
+    public Integer advise(UUID courierId, double latitude, double longitude, LocalDateTime timestamp) {
+        if (!enabled) {
+            return null;
+        }
+
+        CourierMotion motion = courierStateRegistry.getOrCreate(courierId).getMotion();
+        boolean late = motion.hasFix() && !timestamp.isAfter(motion.getLastTimestamp());
+        if (!late) {
+            restoreOnRollback(motion);
+            recordFix(motion, latitude, longitude, timestamp);
+        }
+
+        double gapMeters = Math.max(0, storeIndex.clearanceMeters(
+            motion.getLastLatitude(), motion.getLastLongitude(), entranceRadiusMeters));
+        double speed = Math.max(motion.getSpeedMetersPerSecond(), speedFloorMetersPerSecond);
+        double hint = safetyFactor * gapMeters / speed;
+        int seconds = (int) Math.max(minSeconds, Math.min(maxSeconds, hint));
+
+        log.debug("Next report hint for courier {}: {}s ({} m to the nearest entrance area, {} m/s)", courierId, seconds,
+            String.format("%.0f", gapMeters), String.format("%.1f", speed));
+        return seconds;
+    }
+
+    private void recordFix(CourierMotion motion, double latitude, double longitude, LocalDateTime timestamp) {
+        if (!motion.hasFix()) {
+            motion.record(timestamp, latitude, longitude, Double.NaN, speedSmoothing);
+            return;
+        }
+        long millis = Duration.between(motion.getLastTimestamp(), timestamp).toMillis();
+        if (millis <= 0) {
+            // Fixes under a millisecond apart would divide by zero
+            return;
+        }
+
+        double seconds = millis / 1000.0;
+        double meters = distanceUtils.calculateDistanceInMeters(
+            motion.getLastLatitude(), motion.getLastLongitude(), latitude, longitude);
+        motion.record(timestamp, latitude, longitude, meters / seconds, speedSmoothing);
+    }
+
+    private static void restoreOnRollback(CourierMotion motion) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        // The fix may not be stored; put the last fix and speed estimate back as they were
+        CourierMotion saved = motion.copy();
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    motion.restore(saved);
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,147 @@
+package com.couriertracking.service;
+
+import com.couriertracking.datasource.PrimaryRouting;
+import com.couriertracking.dto.StoreDto;
+import com.couriertracking.dto.StoreLoadReport;
+import com.couriertracking.model.GeoPoint;
+import com.couriertracking.model.Store;
+import com.couriertracking.repository.StoreRepository;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Upserts stores keyed by external ID. Catalogue files are read with Jackson's streaming parser
+ * and written in fixed-size chunks, so memory stays flat regardless of catalogue size.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class StoreCatalogImporter {
+
+    private final StoreRepository storeRepository;
+    private final ObjectMapper objectMapper;
+
+    @Value("${courier-tracking.store.load-batch-size:500}")
+    private int batchSize;
+
+    /**
+     * Stream a JSON array of stores and upsert it chunk by chunk
+     */
+    public StoreLoadReport importCatalogue(InputStream inputStream) throws IOException {
+        long start = System.nanoTime();
+        StoreLoadReport report = new StoreLoadReport();
+
+        try (JsonParser parser = objectMapper.getFactory().createParser(inputStream)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IOException("Store data must be a JSON array");
+            }
+
+            List<StoreDto> chunk = new ArrayList<>(batchSize);
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                chunk.add(objectMapper.readValue(parser, StoreDto.class));
+                if (chunk.size() == batchSize) {
+                    upsertChunk(chunk, report);
+                    chunk.clear();
+                }
+            }
+            upsertChunk(chunk, report);
+        }
+
+        report.setDurationMillis((System.nanoTime() - start) / 1_000_000);
+        return report;
+    }
+
+    /**
+     * Upsert an in-memory list of stores, chunk by chunk
+     */
+    public StoreLoadReport upsert(List<StoreDto> stores) {
+        return upsert(stores, saved -> { });
+    }
+
+    /**
+     * Upsert an in-memory list of stores, chunk by chunk, passing each saved chunk's inserted and
+     * updated stores to a listener
+     */
+    public StoreLoadReport upsert(List<StoreDto> stores, Consumer<List<Store>> savedListener) {
+        long start = System.nanoTime();
+        StoreLoadReport report = new StoreLoadReport();
+        for (int from = 0; from < stores.size(); from += batchSize) {
+            savedListener.accept(upsertChunk(stores.subList(from, Math.min(stores.size(), from + batchSize)), report));
+        }
+        report.setDurationMillis((System.nanoTime() - start) / 1_000_000);
+        return report;
+    }
+
+    private List<Store> upsertChunk(List<StoreDto> chunk, StoreLoadReport report) {
+        if (chunk.isEmpty()) {
+            return List.of();
+        }
+
+        List<String> externalIds = chunk.stream().map(StoreCatalogImporter::externalId).toList();
+        Map<String, Store> existing = PrimaryRouting.call(() -> storeRepository.findByExternalIdIn(externalIds))
+            .stream()
+            .collect(Collectors.toMap(Store::getExternalId, Function.identity()));
+
+        List<Store> changed = new ArrayList<>();
+        for (StoreDto dto : chunk) {
+            Store store = existing.get(externalId(dto));
+            if (store == null) {
+                store = new Store();
+                store.setExternalId(externalId(dto));
+                existing.put(store.getExternalId(), store);
+                report.setInserted(report.getInserted() + 1);
+            } else if (matches(store, dto)) {
+                report.setUnchanged(report.getUnchanged() + 1);
+                continue;
+            } else {
+                report.setUpdated(report.getUpdated() + 1);
+            }
+            apply(store, dto);
+            changed.add(store);
+        }
+
+        return storeRepository.saveAll(changed);
+    }
+
+    private static String externalId(StoreDto dto) {
+        return dto.getExternalId() != null ? dto.getExternalId() : dto.getName();
+    }
+
+    private static boolean matches(Store store, StoreDto dto) {
+        return Objects.equals(store.getName(), dto.getName())
+            && Objects.equals(store.getLatitude(), dto.getLat())
+            && Objects.equals(store.getLongitude(), dto.getLng())
+            && Objects.equals(store.getGeofence(), toGeofence(dto));
+    }
+
+    private static void apply(Store store, StoreDto dto) {
+        store.setName(dto.getName());
+        store.setLatitude(dto.getLat());
+        store.setLongitude(dto.getLng());
+        store.setGeofence(new ArrayList<>(toGeofence(dto)));
+    }
+
+    private static List<GeoPoint> toGeofence(StoreDto dto) {
+        if (dto.getGeofence() == null) {
+            return List.of();
+        }
+        return dto.getGeofence().stream()
+            .map(vertex -> new GeoPoint(vertex.get(0), vertex.get(1)))
+            .toList();
+    }
+}
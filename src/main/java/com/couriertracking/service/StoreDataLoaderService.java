@@ -1,10 +1,10 @@
 package com.couriertracking.service;
 
-import com.couriertracking.dto.StoreDto;
-import com.couriertracking.model.Store;
+import com.couriertracking.datasource.PrimaryRouting;
+import com.couriertracking.dto.StoreLoadReport;
+import com.couriertracking.geo.StoreIndex;
+import com.couriertracking.geo.StoreSnapshotFile;
 import com.couriertracking.repository.StoreRepository;
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
@@ -15,47 +15,54 @@ import org.springframework.stereotype.Service;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.List;
+import java.util.zip.CRC32;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class StoreDataLoaderService implements CommandLineRunner {
 
+    private final StoreCatalogImporter storeCatalogImporter;
     private final StoreRepository storeRepository;
     private final ResourceLoader resourceLoader;
-    private final ObjectMapper objectMapper;
+    private final StoreIndex storeIndex;
+    private final StoreSnapshotFile storeSnapshotFile;
 
     @Value("${courier-tracking.store.data-file}")
     private String storeDataFile;
 
+    @Value("${courier-tracking.store.snapshot.enabled:true}")
+    private boolean snapshotEnabled;
+
     @Override
     public void run(String... args) throws Exception {
-        loadStoreData();
-    }
+        long start = System.nanoTime();
+        Resource resource = resourceLoader.getResource(storeDataFile);
+        long sourceChecksum = checksum(resource);
 
-    private void loadStoreData() {
-        try {
-            if (storeRepository.count() > 0) {
-                log.debug("Store data already exists. Skipping data load.");
-                return;
-            }
-
-            Resource resource = resourceLoader.getResource(storeDataFile);
-            InputStream inputStream = resource.getInputStream();
+        // A valid snapshot means the database already holds this catalogue, unchanged since
+        if (snapshotEnabled && storeSnapshotFile.restore(sourceChecksum, PrimaryRouting.call(storeRepository::count),
+                PrimaryRouting.call(storeRepository::findLastUpdatedAt))) {
+            log.info("Stores ready from snapshot in {} ms", (System.nanoTime() - start) / 1_000_000);
+            return;
+        }
 
-            List<StoreDto> storeDtos = objectMapper.readValue(
-                inputStream, 
-                new TypeReference<List<StoreDto>>() {}
-            );
+        loadStoreData(resource);
+        storeIndex.refresh();
+        if (snapshotEnabled) {
+            storeSnapshotFile.write(sourceChecksum);
+        }
+        log.info("Stores ready from {} in {} ms", storeDataFile, (System.nanoTime() - start) / 1_000_000);
+    }
 
-            List<Store> stores = storeDtos.stream()
-                .map(this::convertToStore)
-                .toList();
+    private void loadStoreData(Resource resource) {
+        try (InputStream inputStream = resource.getInputStream()) {
+            // Upserts by external ID, so re-running against a populated database only applies changes
+            StoreLoadReport report = storeCatalogImporter.importCatalogue(inputStream);
 
-            storeRepository.saveAll(stores);
-            
-            log.info("Successfully loaded {} stores into database", stores.size());
+            log.info("Loaded {} stores from {} in {} ms ({} inserted, {} updated, {} unchanged)",
+                report.getTotal(), storeDataFile, report.getDurationMillis(),
+                report.getInserted(), report.getUpdated(), report.getUnchanged());
 
         } catch (IOException e) {
             log.error("Failed to load store data: {}", e.getMessage(), e);
@@ -63,11 +70,15 @@ public class StoreDataLoaderService implements CommandLineRunner {
         }
     }
 
-    private Store convertToStore(StoreDto dto) {
-        Store store = new Store();
-        store.setName(dto.getName());
-        store.setLatitude(dto.getLat());
-        store.setLongitude(dto.getLng());
-        return store;
+    private long checksum(Resource resource) throws IOException {
+        CRC32 crc = new CRC32();
+        byte[] chunk = new byte[64 * 1024];
+        try (InputStream inputStream = resource.getInputStream()) {
+            int read;
+            while ((read = inputStream.read(chunk)) != -1) {
+                crc.update(chunk, 0, read);
+            }
+        }
+        return crc.getValue();
     }
-}
\ No newline at end of file
+}
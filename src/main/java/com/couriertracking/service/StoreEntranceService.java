@@ -1,27 +1,58 @@
 package com.couriertracking.service;
 
+import com.couriertracking.cache.EntranceCooldownGate;
+import com.couriertracking.cache.RedisCourierState;
+import com.couriertracking.geo.GeoSegments;
+import com.couriertracking.geo.Geofence;
+import com.couriertracking.geo.StoreIndex;
+import com.couriertracking.ingest.ShardedCourierExecutor;
 import com.couriertracking.model.Courier;
 import com.couriertracking.model.Store;
 import com.couriertracking.model.StoreEntrance;
-import com.couriertracking.repository.StoreRepository;
+import com.couriertracking.model.StoreVisit;
 import com.couriertracking.repository.StoreEntranceRepository;
+import com.couriertracking.repository.StoreVisitRepository;
+import com.couriertracking.state.CourierState;
+import com.couriertracking.state.CourierStateRegistry;
+import com.couriertracking.state.EntranceBudget;
+import com.couriertracking.state.StoreVisitState;
+import com.couriertracking.state.TrackPoint;
 import com.couriertracking.util.DistanceUtils;
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
 
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class StoreEntranceService {
     
-    private final StoreRepository storeRepository;
+    private final StoreIndex storeIndex;
     private final StoreEntranceRepository storeEntranceRepository;
     private final DistanceUtils distanceUtils;
+    private final CourierStateRegistry courierStateRegistry;
+    private final EntranceCooldownGate entranceCooldownGate;
+    private final StoreVisitRepository storeVisitRepository;
+    private final ShardedCourierExecutor shardedCourierExecutor;
+    private final RedisCourierState redisCourierState;
+    
+    private final Counter checksSkipped;
+    private final Counter checksPerformed;
+    private final Counter repeatsSkipped;
+    private final Counter visitsClosed;
     
     @Value("${courier-tracking.store.entrance-radius-meters:100}")
     private int entranceRadiusMeters;
@@ -29,33 +60,297 @@ public class StoreEntranceService {
     @Value("${courier-tracking.store.entrance-cooldown-minutes:1}")
     private int entranceCooldownMinutes;
     
+    @Value("${courier-tracking.store.entrance-budget.enabled:true}")
+    private boolean budgetEnabled;
+    
+    @Value("${courier-tracking.store.swept-detection.enabled:true}")
+    private boolean sweptDetectionEnabled;
+    
+    @Value("${courier-tracking.store.visits.enabled:true}")
+    private boolean visitsEnabled;
+    
+    @Value("${courier-tracking.store.visits.exit-radius-meters:150}")
+    private int exitRadiusMeters;
+    
+    @Value("${courier-tracking.store.visits.exit-confirm-seconds:30}")
+    private int exitConfirmSeconds;
+    
+    @Value("${courier-tracking.store.visits.timeout-minutes:30}")
+    private int visitTimeoutMinutes;
+    
+    public StoreEntranceService(StoreIndex storeIndex,
+                                StoreEntranceRepository storeEntranceRepository,
+                                DistanceUtils distanceUtils,
+                                CourierStateRegistry courierStateRegistry,
+                                EntranceCooldownGate entranceCooldownGate,
+                                StoreVisitRepository storeVisitRepository,
+                                ShardedCourierExecutor shardedCourierExecutor,
+                                RedisCourierState redisCourierState,
+                                MeterRegistry meterRegistry) {
+        this.storeIndex = storeIndex;
+        this.storeEntranceRepository = storeEntranceRepository;
+        this.distanceUtils = distanceUtils;
+        this.courierStateRegistry = courierStateRegistry;
+        this.entranceCooldownGate = entranceCooldownGate;
+        this.storeVisitRepository = storeVisitRepository;
+        this.shardedCourierExecutor = shardedCourierExecutor;
+        this.redisCourierState = redisCourierState;
+        this.checksSkipped = meterRegistry.counter("courier.store.entrance.checks", "result", "skipped");
+        this.checksPerformed = meterRegistry.counter("courier.store.entrance.checks", "result", "performed");
+        this.repeatsSkipped = meterRegistry.counter("courier.store.entrance.repeats.skipped");
+        this.visitsClosed = meterRegistry.counter("courier.store.visits");
+    }
+    
+    /**
+     * Check for a store entrance unless the courier's safe-distance budget proves it cannot be
+     * inside any entrance radius yet. The whole segment from the previous fix is checked, so a
+     * courier passing through a radius between two fixes is still detected.
+     * <p>
+     * With visits enabled, an entrance opens a visit to the store. Crossings into that store are
+     * not logged again while the visit lasts, and the visit is written as one {@link StoreVisit}
+     * once the courier has stayed beyond the exit radius for the confirmation time, enters
+     * another store, or stops reporting for the visit timeout. Changes to the visit are undone if
+     * the fix's transaction rolls back.
+     * <p>
+     * The budget and the previous fix are kept on this node, so with Redis courier state, where
+     * other nodes handle the courier's fixes too, every fix is looked up on its own.
+     * @param movedKilometers length of the segment from the courier's previous fix
+     * @return StoreEntrance if entrance was logged, null otherwise
+     */
+    public StoreEntrance checkAndLogStoreEntrance(Courier courier, Double latitude, Double longitude,
+                                                  LocalDateTime timestamp, double movedKilometers) {
+        CourierState state = courierStateRegistry.getOrCreate(courier.getId());
+        // Node-local, so stale once Redis state mode spreads a courier's fixes over nodes
+        EntranceBudget budget = redisCourierState.isEnabled() ? null : state.getEntranceBudget();
+        TrackPoint fix = new TrackPoint(timestamp, latitude, longitude);
+        boolean late = budget != null && budget.isLate(fix);
+        TrackPoint previous = late || !sweptDetectionEnabled || budget == null ? null : budget.getLastFix();
+        StoreVisitState visit = visitsEnabled ? state.getStoreVisit() : null;
+        if (visit != null && !late) {
+            restoreOnRollback(visit);
+            // Before the budget, which skips checks exactly while the courier is away from every store
+            trackExit(courier, visit, fix);
+        }
+        
+        // Read before the lookup, so a snapshot swap during it voids the new budget
+        long indexGeneration = storeIndex.generation();
+        if (budget != null && budget.trySpend(fix, movedKilometers * 1000.0, indexGeneration) && budgetEnabled) {
+            checksSkipped.increment();
+            log.debug("Skipped entrance check for courier {}: {} m from the nearest entrance radius", 
+                courier.getId(), String.format("%.0f", budget.getRemainingMeters()));
+            return null;
+        }
+        
+        checksPerformed.increment();
+        StoreEntrance entrance = lookupAndLogEntrance(courier, previous, fix, visit);
+        if (visit != null && entrance != null && !late) {
+            if (visit.isOpen()) {
+                // Straight from one store into the next: the first visit ends where the second begins
+                closeVisit(courier, visit, entrance.getEntranceTime());
+            }
+            visit.enter(entrance.getStore(), entrance.getEntranceTime());
+        }
+        if (budget != null && !late) {
+            budget.reset(entrance != null ? 0 : distanceToNearestRadius(fix), indexGeneration);
+        }
+        return entrance;
+    }
+    
     /**
      * Check if courier is near any store and log entrance if applicable
      * @return StoreEntrance if entrance was logged, null otherwise
      */
     public StoreEntrance checkAndLogStoreEntrance(Courier courier, Double latitude, Double longitude, LocalDateTime timestamp) {
-        List<Store> allStores = storeRepository.findAll();
+        return lookupAndLogEntrance(courier, null, new TrackPoint(timestamp, latitude, longitude), null);
+    }
+    
+    private StoreEntrance lookupAndLogEntrance(Courier courier, TrackPoint previous, TrackPoint fix, StoreVisitState visit) {
+        TrackPoint from = previous != null ? previous : fix;
+        List<Store> candidates = storeIndex.storesAlong(
+            from.latitude(), from.longitude(), fix.latitude(), fix.longitude(), entranceRadiusMeters);
         
-        for (Store store : allStores) {
-            double distanceMeters = distanceUtils.calculateDistanceInMeters(
-                latitude, longitude,
-                store.getLatitude(), store.getLongitude()
-            );
-            
-            if (distanceMeters <= entranceRadiusMeters) {
-                // Check if entrance should be logged (cooldown check)
-                if (shouldLogEntrance(courier, store, timestamp)) {
-                    StoreEntrance entrance = saveStoreEntrance(courier, store, timestamp);
-                    log.info("Store entrance logged: Courier {} entered {}", courier.getId(), store.getName());
-                    return entrance;
-                }
+        List<Crossing> crossings = new ArrayList<>();
+        for (Store store : candidates) {
+            double fraction = entryFraction(previous, fix, store);
+            if (!Double.isNaN(fraction)) {
+                crossings.add(new Crossing(store, fraction));
+            }
+        }
+        crossings.sort(Comparator.comparingDouble(Crossing::fraction));
+        
+        for (Crossing crossing : crossings) {
+            LocalDateTime entranceTime = interpolate(from, fix, crossing.fraction());
+            if (visit != null && visit.isAt(crossing.store()) && !entranceTime.isBefore(visit.getEnteredAt())) {
+                // Jitter across the entrance radius during a visit; no row and no cooldown lookup
+                repeatsSkipped.increment();
+                continue;
+            }
+            // Check if entrance should be logged (cooldown check)
+            if (shouldLogEntrance(courier, crossing.store(), entranceTime)) {
+                StoreEntrance entrance = saveStoreEntrance(courier, crossing.store(), entranceTime);
+                log.info("Store entrance logged: Courier {} entered {}", courier.getId(), crossing.store().getName());
+                return entrance;
             }
         }
         
         return null; // No entrance detected or logged
     }
     
+    /**
+     * Fraction of the segment at which the courier entered the store's geofence, or its radius if
+     * it has none; NaN if it did not
+     */
+    private double entryFraction(TrackPoint previous, TrackPoint fix, Store store) {
+        Optional<Geofence> geofence = storeIndex.geofence(store);
+        if (geofence.isPresent()) {
+            TrackPoint from = previous != null ? previous : fix;
+            double fraction = geofence.get().entryFraction(
+                from.latitude(), from.longitude(), fix.latitude(), fix.longitude());
+            // A single point inside the polygon counts as entering at the fix itself
+            return previous == null && !Double.isNaN(fraction) ? 1.0 : fraction;
+        }
+        
+        if (previous != null) {
+            double fraction = GeoSegments.entryFraction(
+                previous.latitude(), previous.longitude(), fix.latitude(), fix.longitude(),
+                store.getLatitude(), store.getLongitude(), entranceRadiusMeters);
+            if (!Double.isNaN(fraction)) {
+                return fraction;
+            }
+        }
+        
+        double distanceMeters = distanceUtils.calculateDistanceInMeters(
+            fix.latitude(), fix.longitude(),
+            store.getLatitude(), store.getLongitude()
+        );
+        return distanceMeters <= entranceRadiusMeters ? 1.0 : Double.NaN;
+    }
+    
+    /**
+     * Close visits whose courier has sent no fix for the visit timeout; without this they would
+     * stay open until the courier's next fix, however late that is
+     */
+    @Scheduled(fixedDelayString = "${courier-tracking.store.visits.sweep-interval-millis:60000}")
+    public void closeTimedOutVisits() {
+        if (!visitsEnabled) {
+            return;
+        }
+        LocalDateTime cutoff = LocalDateTime.now().minusMinutes(visitTimeoutMinutes);
+        courierStateRegistry.forEach(state -> {
+            // Read off the ingest shard, so only a hint; checked again on the shard
+            if (isTimedOut(state.getStoreVisit(), cutoff)) {
+                UUID courierId = state.getCourierId();
+                shardedCourierExecutor.execute(courierId, () -> {
+                    if (isTimedOut(state.getStoreVisit(), cutoff)) {
+                        closeOpenVisit(courierId);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Close the courier's open visit at the last fix seen, for a courier whose state is dropped.
+     * Call on the courier's ingest shard.
+     */
+    public void closeOpenVisit(UUID courierId) {
+        StoreVisitState visit = courierStateRegistry.find(courierId).map(CourierState::getStoreVisit).orElse(null);
+        if (visit == null || !visit.isOpen()) {
+            return;
+        }
+        Courier courier = new Courier();
+        courier.setId(courierId);
+        try {
+            closeVisit(courier, visit, visit.exitTime());
+        } catch (DataAccessException e) {
+            log.warn("Could not close the store visit of courier {}", courierId, e);
+        }
+    }
+
+    private static boolean isTimedOut(StoreVisitState visit, LocalDateTime cutoff) {
+        LocalDateTime lastSeenAt = visit.getLastSeenAt();
+        return visit.isOpen() && lastSeenAt != null && lastSeenAt.isBefore(cutoff);
+    }
+
+    private static void restoreOnRollback(StoreVisitState visit) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        // The visit row or entrance may not be stored; put the visit back as it was before the fix
+        StoreVisitState saved = visit.copy();
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    visit.restore(saved);
+                }
+            }
+        });
+    }
+
+    /**
+     * Advance the open visit with an in-order fix, closing it on a confirmed exit or a timeout
+     */
+    private void trackExit(Courier courier, StoreVisitState visit, TrackPoint fix) {
+        if (!visit.isOpen()) {
+            return;
+        }
+        if (Duration.between(visit.getLastSeenAt(), fix.timestamp()).toMinutes() >= visitTimeoutMinutes) {
+            // No fix for too long to tell when the courier left; the visit ends at the last fix seen
+            closeVisit(courier, visit, visit.exitTime());
+            return;
+        }
+        if (visit.observe(fix.timestamp(), isBeyondExit(visit.getStore(), fix), Duration.ofSeconds(exitConfirmSeconds))) {
+            closeVisit(courier, visit, visit.exitTime());
+        }
+    }
+    
+    /**
+     * Whether the fix is outside both the store's geofence and its exit radius, which is wider
+     * than the entrance radius so that jitter around the entrance radius does not end a visit
+     */
+    private boolean isBeyondExit(Store store, TrackPoint fix) {
+        Optional<Geofence> geofence = storeIndex.geofence(store);
+        if (geofence.isPresent() && geofence.get().contains(fix.latitude(), fix.longitude())) {
+            return false;
+        }
+        return distanceUtils.calculateDistanceInMeters(fix.latitude(), fix.longitude(),
+            store.getLatitude(), store.getLongitude()) > exitRadiusMeters;
+    }
+    
+    private void closeVisit(Courier courier, StoreVisitState visit, LocalDateTime exitedAt) {
+        StoreVisit storeVisit = new StoreVisit();
+        storeVisit.setCourier(courier);
+        storeVisit.setStore(visit.getStore());
+        storeVisit.setEnteredAt(visit.getEnteredAt());
+        storeVisit.setExitedAt(exitedAt);
+        storeVisit.setDurationSeconds(Math.max(0, Duration.between(visit.getEnteredAt(), exitedAt).toSeconds()));
+        storeVisitRepository.save(storeVisit);
+        visitsClosed.increment();
+        log.info("Store visit closed: Courier {} left {} after {} s", courier.getId(), visit.getStore().getName(),
+            storeVisit.getDurationSeconds());
+        visit.clear();
+    }
+    
+    private LocalDateTime interpolate(TrackPoint from, TrackPoint to, double fraction) {
+        long nanos = Duration.between(from.timestamp(), to.timestamp()).toNanos();
+        return from.timestamp().plusNanos((long) (nanos * fraction));
+    }
+    
+    private double distanceToNearestRadius(TrackPoint fix) {
+        return storeIndex.clearanceMeters(fix.latitude(), fix.longitude(), entranceRadiusMeters);
+    }
+    
     private boolean shouldLogEntrance(Courier courier, Store store, LocalDateTime timestamp) {
+        if (entranceCooldownGate.isEnabled()) {
+            // One SET NX across all nodes; the table is only asked when Redis cannot answer
+            EntranceCooldownGate.Decision decision =
+                entranceCooldownGate.tryAcquire(courier.getId(), store.getId(), timestamp);
+            if (decision != EntranceCooldownGate.Decision.UNAVAILABLE) {
+                return decision == EntranceCooldownGate.Decision.ACQUIRED;
+            }
+        }
+        
         LocalDateTime cooldownThreshold = timestamp.minusMinutes(entranceCooldownMinutes);
         
         return !storeEntranceRepository.existsByCourierAndStoreAndEntranceTimeAfter(
@@ -71,4 +366,7 @@ public class StoreEntranceService {
         
         return storeEntranceRepository.save(entrance);
     }
-}
\ No newline at end of file
+    
+    private record Crossing(Store store, double fraction) {
+    }
+}
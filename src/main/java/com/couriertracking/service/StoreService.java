@@ -0,0 +1,167 @@
+package com.couriertracking.service;
+
+import com.couriertracking.datasource.PrimaryRouting;
+import com.couriertracking.dto.StoreDto;
+import com.couriertracking.dto.StoreLoadReport;
+import com.couriertracking.dto.StoreRequest;
+import com.couriertracking.dto.StoreResponse;
+import com.couriertracking.exception.StoreConflictException;
+import com.couriertracking.exception.StoreNotFoundException;
+import com.couriertracking.geo.StoreIndex;
+import com.couriertracking.geo.StoreSnapshotFile;
+import com.couriertracking.model.GeoPoint;
+import com.couriertracking.model.Store;
+import com.couriertracking.repository.StoreEntranceRepository;
+import com.couriertracking.repository.StoreRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * Store writes at runtime. Every change is persisted first, then applied to the {@link StoreIndex}
+ * as a new snapshot and queued for the store snapshot file, so the next start restores it.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class StoreService {
+
+    private final StoreRepository storeRepository;
+    private final StoreEntranceRepository storeEntranceRepository;
+    private final StoreCatalogImporter storeCatalogImporter;
+    private final StoreIndex storeIndex;
+    private final StoreSnapshotFile storeSnapshotFile;
+
+    public StoreResponse createStore(StoreRequest request) {
+        String externalId = externalId(request);
+        if (PrimaryRouting.call(() -> storeRepository.existsByExternalId(externalId))) {
+            throw new StoreConflictException("Store already exists with external ID: " + externalId);
+        }
+
+        Store store = new Store();
+        apply(store, request);
+        Store savedStore = save(store, externalId);
+        publish(List.of(savedStore), List.of());
+
+        log.info("Successfully created store with ID: {}", savedStore.getId());
+        return mapToResponse(savedStore);
+    }
+
+    @Transactional(readOnly = true)
+    public StoreResponse getStoreById(UUID storeId) {
+        return mapToResponse(findStore(storeId));
+    }
+
+    public StoreResponse updateStore(UUID storeId, StoreRequest request) {
+        Store store = PrimaryRouting.call(() -> findStore(storeId));
+        String externalId = externalId(request);
+        if (!Objects.equals(store.getExternalId(), externalId)
+                && PrimaryRouting.call(() -> storeRepository.existsByExternalId(externalId))) {
+            throw new StoreConflictException("Store already exists with external ID: " + externalId);
+        }
+
+        apply(store, request);
+        Store savedStore = save(store, externalId);
+        publish(List.of(savedStore), List.of());
+
+        log.info("Successfully updated store with ID: {}", storeId);
+        return mapToResponse(savedStore);
+    }
+
+    public void deleteStore(UUID storeId) {
+        Store store = PrimaryRouting.call(() -> findStore(storeId));
+        if (PrimaryRouting.call(() -> storeEntranceRepository.existsByStore(store))) {
+            throw new StoreConflictException("Store has logged entrances and cannot be deleted: " + storeId);
+        }
+
+        try {
+            storeRepository.delete(store);
+        } catch (DataIntegrityViolationException e) {
+            // An entrance was logged since the check above
+            throw new StoreConflictException("Store has logged entrances and cannot be deleted: " + storeId);
+        }
+        publish(List.of(), List.of(storeId));
+
+        log.info("Successfully deleted store with ID: {}", storeId);
+    }
+
+    /**
+     * Upsert stores by external ID, as the data file loader does. The index is updated once with
+     * every store that was saved, even if a later chunk fails.
+     */
+    public StoreLoadReport upsertStores(List<StoreRequest> requests) {
+        List<StoreDto> stores = requests.stream()
+            .map(request -> new StoreDto(externalId(request), request.getName(),
+                request.getLatitude(), request.getLongitude(), request.getGeofence()))
+            .toList();
+
+        List<Store> saved = new ArrayList<>();
+        try {
+            StoreLoadReport report = storeCatalogImporter.upsert(stores, saved::addAll);
+            log.info("Upserted {} stores in {} ms ({} inserted, {} updated, {} unchanged)",
+                report.getTotal(), report.getDurationMillis(),
+                report.getInserted(), report.getUpdated(), report.getUnchanged());
+            return report;
+        } finally {
+            publish(saved, List.of());
+        }
+    }
+
+    private Store save(Store store, String externalId) {
+        try {
+            return storeRepository.save(store);
+        } catch (DataIntegrityViolationException e) {
+            // Another request took the external ID since the check; the unique index caught it
+            throw new StoreConflictException("Store already exists with external ID: " + externalId);
+        }
+    }
+
+    private Store findStore(UUID storeId) {
+        return storeRepository.findById(storeId)
+            .orElseThrow(() -> new StoreNotFoundException("Store not found with ID: " + storeId));
+    }
+
+    private void publish(List<Store> upserted, List<UUID> removed) {
+        if (upserted.isEmpty() && removed.isEmpty()) {
+            return;
+        }
+        storeIndex.apply(upserted, removed);
+        storeSnapshotFile.rewrite();
+    }
+
+    private static String externalId(StoreRequest request) {
+        return request.getExternalId() != null ? request.getExternalId() : request.getName();
+    }
+
+    private static void apply(Store store, StoreRequest request) {
+        store.setExternalId(externalId(request));
+        store.setName(request.getName());
+        store.setLatitude(request.getLatitude());
+        store.setLongitude(request.getLongitude());
+        List<GeoPoint> geofence = new ArrayList<>();
+        if (request.getGeofence() != null) {
+            request.getGeofence().forEach(vertex -> geofence.add(new GeoPoint(vertex.get(0), vertex.get(1))));
+        }
+        store.setGeofence(geofence);
+    }
+
+    private StoreResponse mapToResponse(Store store) {
+        return new StoreResponse(
+            store.getId(),
+            store.getExternalId(),
+            store.getName(),
+            store.getLatitude(),
+            store.getLongitude(),
+            store.getGeofence().stream()
+                .map(vertex -> List.of(vertex.getLatitude(), vertex.getLongitude()))
+                .toList()
+        );
+    }
+}
@@ -0,0 +1,281 @@
+package com.couriertracking.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Locale;
+import java.util.UUID;
+
+import org.springframework.stereotype.Service;
+
+import com.couriertracking.exception.InvalidExportRequestException;
+import com.couriertracking.storage.LocationHistory;
+import com.couriertracking.storage.LocationTrackReader;
+import com.couriertracking.util.DistanceUtils;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Track export. A courier's track is written point by point as it is read: downsampled history
+ * first, then the full-resolution track from {@link LocationTrackReader}, so no track is held in memory.
+ * Points closer than the tolerance to the last written point are skipped; the final point is always kept.
+ */
+@Service
+@Slf4j
+public class TrackExportService {
+
+    public enum Format {
+        // Google encoded polyline, 1e-5 degree precision
+        POLYLINE("text/plain"),
+        // GeoJSON Feature with a LineString geometry, 1e-6 degree precision
+        GEOJSON("application/geo+json");
+
+        private final String contentType;
+
+        Format(String contentType) {
+            this.contentType = contentType;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public static Format from(String name) {
+            try {
+                return valueOf(name.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new InvalidExportRequestException("Unknown track format: " + name);
+            }
+        }
+    }
+
+    private final LocationHistory locationHistory;
+    private final LocationTrackReader locationTrackReader;
+    private final DistanceUtils distanceUtils;
+
+    public TrackExportService(LocationHistory locationHistory, LocationTrackReader locationTrackReader,
+                              DistanceUtils distanceUtils) {
+        this.locationHistory = locationHistory;
+        this.locationTrackReader = locationTrackReader;
+        this.distanceUtils = distanceUtils;
+    }
+
+    /**
+     * Write the courier's track within [from, to) to the stream
+     * @param toleranceMeters minimum distance between written points; 0 writes every point
+     * @return points written
+     */
+    public long export(UUID courierId, LocalDateTime from, LocalDateTime to, Format format, double toleranceMeters,
+                       OutputStream out) throws IOException {
+        validate(from, to, toleranceMeters);
+        Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+        TrackWriter trackWriter = format == Format.POLYLINE ? new PolylineWriter(writer) : new GeoJsonWriter(writer, courierId);
+        Simplifier simplifier = new Simplifier(trackWriter, toleranceMeters);
+        try {
+            trackWriter.start();
+            forEachPoint(courierId, from, to, simplifier);
+            simplifier.finish();
+            trackWriter.finish(simplifier.written);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        writer.flush();
+        log.debug("Exported {} of {} points of courier {} as {}", simplifier.written, simplifier.read, courierId, format);
+        return simplifier.written;
+    }
+
+    /**
+     * Reject export parameters up front, before a streamed response is committed
+     */
+    public void validate(LocalDateTime from, LocalDateTime to, double toleranceMeters) {
+        if (!from.isBefore(to)) {
+            throw new InvalidExportRequestException("Track export range is empty: " + from + " to " + to);
+        }
+        if (toleranceMeters < 0) {
+            throw new InvalidExportRequestException("Simplification tolerance must not be negative");
+        }
+    }
+
+    private void forEachPoint(UUID courierId, LocalDateTime from, LocalDateTime to, PointConsumer consumer) {
+        // Days past the full-resolution window survive only as downsampled history, older than anything below
+        locationHistory.forEachPoint(courierId, from, to, point -> consumer.accept(point.latitude(), point.longitude()));
+        locationTrackReader.forEach(courierId, from, to,
+            location -> consumer.accept(location.getLatitude(), location.getLongitude()));
+    }
+
+    @FunctionalInterface
+    private interface PointConsumer {
+        void accept(double latitude, double longitude);
+    }
+
+    /**
+     * Radial-distance simplification: a point is written only once it is at least the tolerance
+     * away from the last written one. Needs no lookahead, so it works on a stream.
+     */
+    private final class Simplifier implements PointConsumer {
+
+        private final TrackWriter writer;
+        private final double toleranceMeters;
+        private double lastLatitude;
+        private double lastLongitude;
+        private double pendingLatitude;
+        private double pendingLongitude;
+        private boolean pending;
+        private long read;
+        private long written;
+
+        Simplifier(TrackWriter writer, double toleranceMeters) {
+            this.writer = writer;
+            this.toleranceMeters = toleranceMeters;
+        }
+
+        @Override
+        public void accept(double latitude, double longitude) {
+            read++;
+            if (written == 0 || toleranceMeters == 0
+                    || distanceUtils.calculateDistanceInMeters(lastLatitude, lastLongitude, latitude, longitude) >= toleranceMeters) {
+                write(latitude, longitude);
+                return;
+            }
+            pendingLatitude = latitude;
+            pendingLongitude = longitude;
+            pending = true;
+        }
+
+        void finish() {
+            if (pending) {
+                write(pendingLatitude, pendingLongitude);
+            }
+        }
+
+        private void write(double latitude, double longitude) {
+            try {
+                writer.point(latitude, longitude);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            lastLatitude = latitude;
+            lastLongitude = longitude;
+            pending = false;
+            written++;
+        }
+    }
+
+    private interface TrackWriter {
+
+        void start() throws IOException;
+
+        void point(double latitude, double longitude) throws IOException;
+
+        void finish(long points) throws IOException;
+    }
+
+    /**
+     * Google encoded polyline: per point, latitude and longitude deltas in 1e-5 degrees as
+     * zig-zag 5-bit groups offset into printable ASCII
+     */
+    private static final class PolylineWriter implements TrackWriter {
+
+        private final Writer writer;
+        private long previousLatitude;
+        private long previousLongitude;
+
+        PolylineWriter(Writer writer) {
+            this.writer = writer;
+        }
+
+        @Override
+        public void start() {
+        }
+
+        @Override
+        public void point(double latitude, double longitude) throws IOException {
+            long latitudeE5 = Math.round(latitude * 1e5);
+            long longitudeE5 = Math.round(longitude * 1e5);
+            encode(latitudeE5 - previousLatitude);
+            encode(longitudeE5 - previousLongitude);
+            previousLatitude = latitudeE5;
+            previousLongitude = longitudeE5;
+        }
+
+        @Override
+        public void finish(long points) {
+        }
+
+        private void encode(long delta) throws IOException {
+            long value = delta < 0 ? ~(delta << 1) : delta << 1;
+            while (value >= 0x20) {
+                writer.write((int) ((0x20 | (value & 0x1f)) + 63));
+                value >>= 5;
+            }
+            writer.write((int) (value + 63));
+        }
+    }
+
+    /**
+     * GeoJSON Feature; the point count goes into the properties after the coordinates
+     */
+    private static final class GeoJsonWriter implements TrackWriter {
+
+        private final Writer writer;
+        private final UUID courierId;
+        private final StringBuilder number = new StringBuilder(16);
+        private boolean first = true;
+
+        GeoJsonWriter(Writer writer, UUID courierId) {
+            this.writer = writer;
+            this.courierId = courierId;
+        }
+
+        @Override
+        public void start() throws IOException {
+            writer.write("{\"type\":\"Feature\",\"geometry\":{\"type\":\"LineString\",\"coordinates\":[");
+        }
+
+        @Override
+        public void point(double latitude, double longitude) throws IOException {
+            number.setLength(0);
+            number.append(first ? "[" : ",[");
+            appendFixed(longitude);
+            number.append(',');
+            appendFixed(latitude);
+            number.append(']');
+            writer.append(number);
+            first = false;
+        }
+
+        @Override
+        public void finish(long points) throws IOException {
+            writer.write("]},\"properties\":{\"courierId\":\"" + courierId + "\",\"points\":" + points + "}}");
+        }
+
+        // Six decimals without trailing zeros; shorter than Double.toString and never in exponent form
+        private void appendFixed(double degrees) {
+            long micro = Math.round(degrees * 1e6);
+            if (micro < 0) {
+                number.append('-');
+                micro = -micro;
+            }
+            number.append(micro / 1_000_000);
+            long fraction = micro % 1_000_000;
+            if (fraction == 0) {
+                return;
+            }
+            number.append('.');
+            int digits = 6;
+            while (fraction % 10 == 0) {
+                fraction /= 10;
+                digits--;
+            }
+            String text = Long.toString(fraction);
+            for (int i = text.length(); i < digits; i++) {
+                number.append('0');
+            }
+            number.append(text);
+        }
+    }
+}
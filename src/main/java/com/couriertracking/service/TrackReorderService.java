@@ -0,0 +1,148 @@
+package com.couriertracking.service;
+
+import com.couriertracking.model.Location;
+import com.couriertracking.repository.LocationRepository;
+import com.couriertracking.state.CourierStateRegistry;
+import com.couriertracking.state.ReorderBuffer;
+import com.couriertracking.state.TrackPoint;
+import com.couriertracking.util.DistanceUtils;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.OptionalDouble;
+import java.util.UUID;
+
+/**
+ * Handles fixes that arrive out of timestamp order using a per-courier reorder buffer.
+ * A late fix within the watermark is spliced between its neighbours and only those segments are
+ * recomputed; a fix older than the watermark is dropped.
+ */
+@Service
+@Slf4j
+public class TrackReorderService {
+
+    private final CourierStateRegistry courierStateRegistry;
+    private final LocationRepository locationRepository;
+    private final DistanceUtils distanceUtils;
+
+    private final Counter reorderedCounter;
+    private final Counter droppedTooLateCounter;
+
+    @Value("${courier-tracking.distance.reorder.enabled:true}")
+    private boolean enabled;
+
+    @Value("${courier-tracking.distance.reorder.watermark-seconds:120}")
+    private long watermarkSeconds;
+
+    @Value("${courier-tracking.distance.reorder.buffer-size:32}")
+    private int bufferSize;
+
+    public TrackReorderService(CourierStateRegistry courierStateRegistry,
+                               LocationRepository locationRepository,
+                               DistanceUtils distanceUtils,
+                               MeterRegistry meterRegistry) {
+        this.courierStateRegistry = courierStateRegistry;
+        this.locationRepository = locationRepository;
+        this.distanceUtils = distanceUtils;
+        this.reorderedCounter = meterRegistry.counter("courier.distance.reorder.reordered");
+        this.droppedTooLateCounter = meterRegistry.counter("courier.distance.reorder.dropped.too.late");
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Whether the fix falls behind the courier's watermark (or out of the buffer) and must be dropped.
+     */
+    public boolean isTooLate(UUID courierId, LocalDateTime timestamp) {
+        ReorderBuffer buffer = seededBuffer(courierId, null);
+        if (buffer.isEmpty()) {
+            return false;
+        }
+
+        boolean behindWatermark = timestamp.isBefore(buffer.latestTimestamp().minusSeconds(watermarkSeconds));
+        boolean beforeBuffer = timestamp.isBefore(buffer.oldestTimestamp()) && !buffer.holdsTrackStart();
+        if (behindWatermark || beforeBuffer) {
+            droppedTooLateCounter.increment();
+            log.debug("Dropping late fix for courier {} at {} (latest {})", courierId, timestamp, buffer.latestTimestamp());
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Splice the fix into the buffer and return the resulting change to the total distance in km,
+     * or empty when it is the courier's first fix.
+     */
+    public OptionalDouble applyFix(UUID courierId, Location location) {
+        ReorderBuffer buffer = seededBuffer(courierId, location.getId());
+        TrackPoint point = new TrackPoint(location.getTimestamp(), location.getLatitude(), location.getLongitude());
+
+        TrackPoint previous = buffer.predecessor(point.timestamp());
+        TrackPoint next = buffer.successor(point.timestamp());
+        buffer.insert(point);
+        buffer.evict(buffer.latestTimestamp().minusSeconds(watermarkSeconds), bufferSize);
+        resetOnRollback(buffer);
+
+        if (previous == null && next == null) {
+            return OptionalDouble.empty();
+        }
+        if (next == null) {
+            return OptionalDouble.of(distance(previous, point));
+        }
+
+        // Late fix: replace previous -> next with previous -> point -> next
+        reorderedCounter.increment();
+        double delta = distance(point, next);
+        if (previous != null) {
+            delta += distance(previous, point) - distance(previous, next);
+        }
+        log.debug("Reordered late fix for courier {} at {}: {} km", courierId, point.timestamp(), String.format("%.3f", delta));
+        return OptionalDouble.of(delta);
+    }
+
+    private ReorderBuffer seededBuffer(UUID courierId, UUID excludeLocationId) {
+        ReorderBuffer buffer = courierStateRegistry.getOrCreate(courierId).getReorderBuffer();
+        if (!buffer.isSeeded()) {
+            // One-off warm-up after a restart; from then on the buffer is maintained in memory
+            List<TrackPoint> recent = locationRepository
+                .findByCourierIdOrderByTimestampDesc(courierId, PageRequest.of(0, bufferSize + 1))
+                .stream()
+                .filter(l -> !l.getId().equals(excludeLocationId))
+                .limit(bufferSize)
+                .map(l -> new TrackPoint(l.getTimestamp(), l.getLatitude(), l.getLongitude()))
+                .toList();
+            buffer.seed(recent, recent.size() < bufferSize);
+        }
+        return buffer;
+    }
+
+    private void resetOnRollback(ReorderBuffer buffer) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        // If the insert rolls back, the buffer no longer matches the table; re-seed on the next fix
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    buffer.reset();
+                }
+            }
+        });
+    }
+
+    private double distance(TrackPoint from, TrackPoint to) {
+        return distanceUtils.calculateDistanceInKilometers(
+            from.latitude(), from.longitude(), to.latitude(), to.longitude());
+    }
+}
@@ -0,0 +1,196 @@
+package com.couriertracking.service;
+
+import com.couriertracking.dto.TripPageResponse;
+import com.couriertracking.dto.TripResponse;
+import com.couriertracking.model.Courier;
+import com.couriertracking.model.Trip;
+import com.couriertracking.model.TripEndReason;
+import com.couriertracking.repository.TripRepository;
+import com.couriertracking.util.DistanceUtils;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Trip segmentation. Each fix extends the courier's open trip by the segment just added to its
+ * total distance, so a trip's distance is kept current with one row read and written per fix.
+ * A trip ends when no fix arrives for the idle gap, when the courier enters a store (the next trip
+ * starts at the entrance fix), or when the courier stays within the dwell radius for the dwell
+ * time; after a dwell, no trip is open until the courier leaves the radius. Couriers that stop
+ * reporting have their trip closed by a periodic sweep.
+ */
+@Service
+@Slf4j
+public class TripService {
+
+    private final TripRepository tripRepository;
+    private final DistanceUtils distanceUtils;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${courier-tracking.trips.enabled:true}")
+    private boolean enabled;
+
+    @Value("${courier-tracking.trips.idle-gap-minutes:10}")
+    private int idleGapMinutes;
+
+    @Value("${courier-tracking.trips.dwell-minutes:5}")
+    private int dwellMinutes;
+
+    @Value("${courier-tracking.trips.dwell-radius-meters:50}")
+    private int dwellRadiusMeters;
+
+    public TripService(TripRepository tripRepository, DistanceUtils distanceUtils, MeterRegistry meterRegistry) {
+        this.tripRepository = tripRepository;
+        this.distanceUtils = distanceUtils;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Fold a stored fix into the courier's trips
+     * @param segmentKilometers distance the fix added to the courier's total
+     * @param storeEntrance whether the fix logged a store entrance
+     * @return the courier's open trip after the fix, or null if none is open
+     */
+    @Transactional
+    public Trip recordFix(Courier courier, double latitude, double longitude, LocalDateTime timestamp,
+                          double segmentKilometers, boolean storeEntrance) {
+        if (!enabled) {
+            return null;
+        }
+        Trip trip = openTrip(courier.getId());
+        if (trip == null) {
+            Trip latest = tripRepository.findLatestTrip(courier.getId()).orElse(null);
+            if (latest != null && (timestamp.isBefore(latest.getEndedAt()) || isStillDwelling(latest, latitude, longitude))) {
+                return null;
+            }
+            return tripRepository.save(start(courier, latitude, longitude, timestamp));
+        }
+        if (timestamp.isBefore(trip.getStartedAt())) {
+            // Late fix from before the trip; closed trips are not reopened
+            return trip;
+        }
+        if (Duration.between(trip.getEndedAt(), timestamp).toMinutes() >= idleGapMinutes) {
+            close(trip, TripEndReason.IDLE_GAP);
+            return tripRepository.save(start(courier, latitude, longitude, timestamp));
+        }
+
+        trip.setPointCount(trip.getPointCount() + 1);
+        trip.setDistance(trip.getDistance() + segmentKilometers);
+        if (timestamp.isBefore(trip.getEndedAt())) {
+            // Late fix inside the trip: its distance change is already in the segment, its position is not the newest
+            return tripRepository.save(trip);
+        }
+        trip.setEndedAt(timestamp);
+        trip.setEndLatitude(latitude);
+        trip.setEndLongitude(longitude);
+
+        if (storeEntrance && timestamp.isAfter(trip.getStartedAt())) {
+            close(trip, TripEndReason.STORE_ENTRANCE);
+            return tripRepository.save(start(courier, latitude, longitude, timestamp));
+        }
+        if (distanceFromAnchor(trip, latitude, longitude) > dwellRadiusMeters) {
+            trip.setAnchorLatitude(latitude);
+            trip.setAnchorLongitude(longitude);
+            trip.setAnchorAt(timestamp);
+        } else if (Duration.between(trip.getAnchorAt(), timestamp).toMinutes() >= dwellMinutes) {
+            // The trip ended when the courier arrived at the dwell spot
+            trip.setEndedAt(trip.getAnchorAt());
+            trip.setEndLatitude(trip.getAnchorLatitude());
+            trip.setEndLongitude(trip.getAnchorLongitude());
+            close(trip, TripEndReason.DWELL);
+            return null;
+        }
+        return tripRepository.save(trip);
+    }
+
+    /**
+     * Close the trips of couriers who stopped reporting; otherwise they would stay open until the
+     * courier's next fix, however late that is
+     */
+    @Scheduled(fixedDelayString = "${courier-tracking.trips.idle-sweep-interval-millis:60000}")
+    @Transactional
+    public void closeIdleTrips() {
+        if (!enabled) {
+            return;
+        }
+        int closed = tripRepository.closeTripsEndedBefore(LocalDateTime.now().minusMinutes(idleGapMinutes),
+            TripEndReason.IDLE_GAP);
+        if (closed > 0) {
+            meterRegistry.counter("courier.trips.closed", "reason", TripEndReason.IDLE_GAP.name()).increment(closed);
+            log.debug("Closed {} trips idle for {} minutes", closed, idleGapMinutes);
+        }
+    }
+
+    /**
+     * The courier's trips, newest first
+     */
+    @Transactional(readOnly = true)
+    public TripPageResponse getTrips(UUID courierId, int page, int size) {
+        Page<Trip> trips = tripRepository.findByCourierId(courierId, PageRequest.of(page, size));
+        return new TripPageResponse(
+            trips.map(trip -> TripResponse.from(courierId, trip)).getContent(),
+            trips.getNumber(),
+            trips.getSize(),
+            trips.getTotalElements(),
+            trips.getTotalPages()
+        );
+    }
+
+    /**
+     * The courier's newest open trip. Older open trips can only come from two instances starting
+     * one at the same time; they are closed here so the next read sees a single trip again.
+     */
+    private Trip openTrip(UUID courierId) {
+        List<Trip> open = tripRepository.findOpenTrips(courierId);
+        if (open.isEmpty()) {
+            return null;
+        }
+        for (Trip duplicate : open.subList(1, open.size())) {
+            close(duplicate, TripEndReason.SUPERSEDED);
+        }
+        return open.get(0);
+    }
+
+    private boolean isStillDwelling(Trip latest, double latitude, double longitude) {
+        return latest.getEndReason() == TripEndReason.DWELL
+            && distanceFromAnchor(latest, latitude, longitude) <= dwellRadiusMeters;
+    }
+
+    private double distanceFromAnchor(Trip trip, double latitude, double longitude) {
+        return distanceUtils.calculateDistanceInMeters(trip.getAnchorLatitude(), trip.getAnchorLongitude(), latitude, longitude);
+    }
+
+    private void close(Trip trip, TripEndReason reason) {
+        trip.setEndReason(reason);
+        tripRepository.save(trip);
+        meterRegistry.counter("courier.trips.closed", "reason", reason.name()).increment();
+        log.debug("Closed trip {} of courier {} ({}): {} km over {} points", trip.getId(), trip.getCourier().getId(),
+            reason, String.format("%.3f", trip.getDistance()), trip.getPointCount());
+    }
+
+    private static Trip start(Courier courier, double latitude, double longitude, LocalDateTime timestamp) {
+        Trip trip = new Trip();
+        trip.setCourier(courier);
+        trip.setStartedAt(timestamp);
+        trip.setEndedAt(timestamp);
+        trip.setStartLatitude(latitude);
+        trip.setStartLongitude(longitude);
+        trip.setEndLatitude(latitude);
+        trip.setEndLongitude(longitude);
+        trip.setPointCount(1);
+        trip.setAnchorLatitude(latitude);
+        trip.setAnchorLongitude(longitude);
+        trip.setAnchorAt(timestamp);
+        return trip;
+    }
+}
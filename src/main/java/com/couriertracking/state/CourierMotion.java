@@ -0,0 +1,90 @@
+package com.couriertracking.state;
+
+import java.time.LocalDateTime;
+
+/**
+ * Last in-order fix of a courier and a smoothed (EWMA) estimate of its speed.
+ */
+public class CourierMotion {
+
+    private LocalDateTime lastTimestamp;
+    private double lastLatitude;
+    private double lastLongitude;
+    private double speedMetersPerSecond;
+    private boolean speedKnown;
+
+    public boolean hasFix() {
+        return lastTimestamp != null;
+    }
+
+    public LocalDateTime getLastTimestamp() {
+        return lastTimestamp;
+    }
+
+    public double getLastLatitude() {
+        return lastLatitude;
+    }
+
+    public double getLastLongitude() {
+        return lastLongitude;
+    }
+
+    public double getSpeedMetersPerSecond() {
+        return speedMetersPerSecond;
+    }
+
+    public boolean isSpeedKnown() {
+        return speedKnown;
+    }
+
+    /**
+     * Record a fix; {@code sampleSpeed} is the speed over the segment from the previous fix, or NaN
+     * for the first fix.
+     */
+    public void record(LocalDateTime timestamp, double latitude, double longitude, double sampleSpeed, double smoothing) {
+        if (!Double.isNaN(sampleSpeed)) {
+            speedMetersPerSecond = speedKnown
+                ? smoothing * sampleSpeed + (1 - smoothing) * speedMetersPerSecond
+                : sampleSpeed;
+            speedKnown = true;
+        }
+        lastTimestamp = timestamp;
+        lastLatitude = latitude;
+        lastLongitude = longitude;
+    }
+
+    /**
+     * Copy of the current state, to be put back with {@link #restore(CourierMotion)} if the fix
+     * that changes it is rolled back
+     */
+    public CourierMotion copy() {
+        CourierMotion copy = new CourierMotion();
+        copy.restore(this);
+        return copy;
+    }
+
+    public void restore(CourierMotion saved) {
+        lastTimestamp = saved.lastTimestamp;
+        lastLatitude = saved.lastLatitude;
+        lastLongitude = saved.lastLongitude;
+        speedMetersPerSecond = saved.speedMetersPerSecond;
+        speedKnown = saved.speedKnown;
+    }
+
+    /**
+     * Adopt the state handed over by another instance, unless a newer fix was already recorded
+     * here; {@code speed} is NaN if that instance had no estimate.
+     */
+    public void restore(LocalDateTime timestamp, double latitude, double longitude, double speed) {
+        if (lastTimestamp != null && !timestamp.isAfter(lastTimestamp)) {
+            return;
+        }
+        lastTimestamp = timestamp;
+        lastLatitude = latitude;
+        lastLongitude = longitude;
+        if (!Double.isNaN(speed)) {
+            speedMetersPerSecond = speed;
+            speedKnown = true;
+        }
+    }
+}
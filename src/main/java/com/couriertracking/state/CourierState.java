@@ -0,0 +1,26 @@
+package com.couriertracking.state;
+
+import java.util.UUID;
+
+import lombok.Getter;
+
+/**
+ * In-memory state for one courier.
+ * Only touched under the courier's lock in ShardedCourierExecutor, so it needs no locking of its own,
+ * except {@link RecentFixes} and {@link DistanceTally}, which are also used on request and flusher threads.
+ */
+@Getter
+public class CourierState {
+
+    private final UUID courierId;
+    private final ReorderBuffer reorderBuffer = new ReorderBuffer();
+    private final RecentFixes recentFixes = new RecentFixes();
+    private final CourierMotion motion = new CourierMotion();
+    private final EntranceBudget entranceBudget = new EntranceBudget();
+    private final DistanceTally distanceTally = new DistanceTally();
+    private final StoreVisitState storeVisit = new StoreVisitState();
+
+    public CourierState(UUID courierId) {
+        this.courierId = courierId;
+    }
+}
@@ -0,0 +1,35 @@
+package com.couriertracking.state;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+import org.springframework.stereotype.Component;
+
+@Component
+public class CourierStateRegistry {
+
+    private final Map<UUID, CourierState> states = new ConcurrentHashMap<>();
+
+    public CourierState getOrCreate(UUID courierId) {
+        return states.computeIfAbsent(courierId, CourierState::new);
+    }
+
+    public Optional<CourierState> find(UUID courierId) {
+        return Optional.ofNullable(states.get(courierId));
+    }
+
+    public void forEach(Consumer<CourierState> action) {
+        states.values().forEach(action);
+    }
+
+    public void remove(UUID courierId) {
+        states.remove(courierId);
+    }
+
+    public int size() {
+        return states.size();
+    }
+}
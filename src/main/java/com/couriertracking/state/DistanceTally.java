@@ -0,0 +1,102 @@
+package com.couriertracking.state;
+
+import java.time.LocalDateTime;
+import java.util.OptionalDouble;
+
+/**
+ * Running distance total for one courier while distance writes are coalesced. The total is ahead
+ * of the courier_distances row by the points not yet flushed.
+ * Shared by the courier's ingest shard, request threads and the flusher, so it is synchronized.
+ */
+public class DistanceTally {
+
+    private boolean loaded;
+    // Bumped on every load, so a flush that started before a reload cannot mark the new points flushed
+    private long epoch;
+    private double totalKilometers;
+    private LocalDateTime receivedThrough;
+    private int pendingPoints;
+    private long pendingSinceNanos;
+
+    public synchronized boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Start from the persisted total plus any replayed points, which count as pending
+     */
+    public synchronized void load(double totalKilometers, LocalDateTime receivedThrough, int pendingPoints) {
+        this.loaded = true;
+        this.epoch++;
+        this.totalKilometers = totalKilometers;
+        this.receivedThrough = receivedThrough;
+        this.pendingPoints = pendingPoints;
+        this.pendingSinceNanos = System.nanoTime();
+    }
+
+    public synchronized long getEpoch() {
+        return epoch;
+    }
+
+    /**
+     * Fold in one committed location's change to the total, computed against the given load
+     * @return the new total in km, or empty if the tally was reloaded since; it is then
+     *         invalidated, as the reload may or may not have seen the location
+     */
+    public synchronized OptionalDouble add(long loadEpoch, double kilometers, LocalDateTime receivedAt) {
+        if (!loaded) {
+            // The next load reads the committed location
+            return OptionalDouble.empty();
+        }
+        if (loadEpoch != epoch) {
+            invalidate();
+            return OptionalDouble.empty();
+        }
+        totalKilometers += kilometers;
+        if (receivedThrough == null || receivedAt.isAfter(receivedThrough)) {
+            receivedThrough = receivedAt;
+        }
+        if (pendingPoints++ == 0) {
+            pendingSinceNanos = System.nanoTime();
+        }
+        return OptionalDouble.of(totalKilometers);
+    }
+
+    public synchronized double getTotalKilometers() {
+        return totalKilometers;
+    }
+
+    public synchronized boolean isDue(int maxPoints, long maxAgeNanos, long nowNanos) {
+        return loaded && pendingPoints > 0
+            && (pendingPoints >= maxPoints || nowNanos - pendingSinceNanos >= maxAgeNanos);
+    }
+
+    /**
+     * @return the state to write, or null if nothing is pending
+     */
+    public synchronized Pending pending() {
+        if (!loaded || pendingPoints == 0) {
+            return null;
+        }
+        return new Pending(epoch, totalKilometers, receivedThrough, pendingPoints);
+    }
+
+    public synchronized void markFlushed(Pending flushed) {
+        if (!loaded || flushed.epoch() != epoch) {
+            return;
+        }
+        pendingPoints -= flushed.points();
+        pendingSinceNanos = System.nanoTime();
+    }
+
+    /**
+     * Forget the in-memory total; the next use reloads it from the table and the location log
+     */
+    public synchronized void invalidate() {
+        loaded = false;
+        pendingPoints = 0;
+    }
+
+    public record Pending(long epoch, double totalKilometers, LocalDateTime receivedThrough, int points) {
+    }
+}
@@ -0,0 +1,54 @@
+package com.couriertracking.state;
+
+/**
+ * Distance a courier can still travel before it could possibly be inside any store's entrance
+ * radius: nearest store distance minus the radius at the last real lookup, less every segment
+ * driven since. While it stays positive, entrance lookups can be skipped. A budget funded against
+ * an older store index generation is void, since a store may have opened nearby.
+ * Also remembers the courier's last in-order fix, the start of the next swept segment.
+ */
+public class EntranceBudget {
+
+    private TrackPoint lastFix;
+    private double remainingMeters;
+    private boolean funded;
+    private long indexGeneration;
+
+    public TrackPoint getLastFix() {
+        return lastFix;
+    }
+
+    public boolean isLate(TrackPoint fix) {
+        return lastFix != null && !fix.timestamp().isAfter(lastFix.timestamp());
+    }
+
+    /**
+     * Spend the distance moved since the previous fix.
+     * @return true if the budget still covers the new fix and the lookup can be skipped
+     */
+    public boolean trySpend(TrackPoint fix, double movedMeters, long currentIndexGeneration) {
+        if (isLate(fix)) {
+            // The budget says nothing about a late fix's position
+            return false;
+        }
+        lastFix = fix;
+        if (!funded || indexGeneration != currentIndexGeneration) {
+            return false;
+        }
+        remainingMeters -= movedMeters;
+        return remainingMeters > 0;
+    }
+
+    /**
+     * Restart the budget from a real lookup at the last in-order fix
+     */
+    public void reset(double remainingMeters, long indexGeneration) {
+        this.remainingMeters = remainingMeters;
+        this.funded = true;
+        this.indexGeneration = indexGeneration;
+    }
+
+    public double getRemainingMeters() {
+        return remainingMeters;
+    }
+}
@@ -0,0 +1,81 @@
+package com.couriertracking.state;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.couriertracking.dto.LocationUpdateResponse;
+
+/**
+ * Small bounded memory of a courier's recently accepted fixes, used to recognise device retries
+ * before any DB work. Checked on request threads and completed on the ingest shard, so unlike the
+ * rest of {@link CourierState} its methods are synchronized (on a per-courier, uncontended monitor).
+ */
+public class RecentFixes {
+
+    /** Marks a fix that has been reserved but whose original request is still being processed. */
+    public static final LocationUpdateResponse PENDING = new LocationUpdateResponse();
+
+    private static final int CAPACITY = 64;
+
+    private final Map<Long, LocationUpdateResponse> byFingerprint = boundedMap();
+    private final Map<String, LocationUpdateResponse> byIdempotencyKey = boundedMap();
+    private LocalDateTime lastAcceptedTimestamp;
+
+    /**
+     * Reserve the fix, or return the response of the earlier request it duplicates
+     * ({@link #PENDING} while that request is still in flight).
+     */
+    public synchronized LocationUpdateResponse reserve(long fingerprint, LocalDateTime timestamp, String idempotencyKey) {
+        if (idempotencyKey != null) {
+            LocationUpdateResponse prior = byIdempotencyKey.get(idempotencyKey);
+            if (prior != null) {
+                return prior;
+            }
+        }
+
+        // Anything newer than the last accepted fix cannot be a retry, so skip the lookup
+        boolean newer = lastAcceptedTimestamp == null || timestamp.isAfter(lastAcceptedTimestamp);
+        if (!newer) {
+            LocationUpdateResponse prior = byFingerprint.get(fingerprint);
+            if (prior != null) {
+                return prior;
+            }
+        }
+
+        byFingerprint.put(fingerprint, PENDING);
+        if (idempotencyKey != null) {
+            byIdempotencyKey.put(idempotencyKey, PENDING);
+        }
+        if (newer) {
+            lastAcceptedTimestamp = timestamp;
+        }
+        return null;
+    }
+
+    public synchronized void complete(long fingerprint, String idempotencyKey, LocationUpdateResponse response) {
+        byFingerprint.replace(fingerprint, PENDING, response);
+        if (idempotencyKey != null) {
+            byIdempotencyKey.replace(idempotencyKey, PENDING, response);
+        }
+    }
+
+    /**
+     * Forget a reservation whose request failed, so the device's retry is processed.
+     */
+    public synchronized void release(long fingerprint, String idempotencyKey) {
+        byFingerprint.remove(fingerprint, PENDING);
+        if (idempotencyKey != null) {
+            byIdempotencyKey.remove(idempotencyKey, PENDING);
+        }
+    }
+
+    private static <K> Map<K, LocationUpdateResponse> boundedMap() {
+        return new LinkedHashMap<>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, LocationUpdateResponse> eldest) {
+                return size() > CAPACITY;
+            }
+        };
+    }
+}
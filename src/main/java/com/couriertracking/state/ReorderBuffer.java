@@ -0,0 +1,103 @@
+package com.couriertracking.state;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Bounded window of a courier's most recent fixes, kept sorted by timestamp.
+ * Lets a late fix find its neighbours in memory so only the segments around it are recomputed.
+ * Not thread-safe: only used under the courier's lock in the ingest executor.
+ */
+public class ReorderBuffer {
+
+    private final List<TrackPoint> points = new ArrayList<>();
+    private boolean seeded;
+    // True while the buffer still holds the courier's very first fix
+    private boolean holdsTrackStart;
+
+    public boolean isSeeded() {
+        return seeded;
+    }
+
+    public void seed(List<TrackPoint> newestFirst, boolean wholeTrack) {
+        points.clear();
+        for (int i = newestFirst.size() - 1; i >= 0; i--) {
+            points.add(newestFirst.get(i));
+        }
+        holdsTrackStart = wholeTrack;
+        seeded = true;
+    }
+
+    public void reset() {
+        points.clear();
+        holdsTrackStart = false;
+        seeded = false;
+    }
+
+    public boolean isEmpty() {
+        return points.isEmpty();
+    }
+
+    public int size() {
+        return points.size();
+    }
+
+    public LocalDateTime latestTimestamp() {
+        return points.get(points.size() - 1).timestamp();
+    }
+
+    public LocalDateTime oldestTimestamp() {
+        return points.get(0).timestamp();
+    }
+
+    public boolean holdsTrackStart() {
+        return holdsTrackStart;
+    }
+
+    /**
+     * Last fix at or before the timestamp; ties go before the new point.
+     */
+    public TrackPoint predecessor(LocalDateTime timestamp) {
+        int index = insertionIndex(timestamp);
+        return index > 0 ? points.get(index - 1) : null;
+    }
+
+    /**
+     * First fix strictly after the timestamp.
+     */
+    public TrackPoint successor(LocalDateTime timestamp) {
+        int index = insertionIndex(timestamp);
+        return index < points.size() ? points.get(index) : null;
+    }
+
+    public void insert(TrackPoint point) {
+        points.add(insertionIndex(point.timestamp()), point);
+    }
+
+    /**
+     * Drop fixes that can no longer receive late neighbours, keeping one anchor before the
+     * watermark so a late fix right at the watermark still finds its predecessor.
+     */
+    public void evict(LocalDateTime watermark, int maxSize) {
+        while (points.size() > maxSize
+                || (points.size() > 1 && points.get(1).timestamp().isBefore(watermark))) {
+            points.remove(0);
+            holdsTrackStart = false;
+        }
+    }
+
+    private int insertionIndex(LocalDateTime timestamp) {
+        int low = 0;
+        int high = points.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (points.get(mid).timestamp().isAfter(timestamp)) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return low;
+    }
+}
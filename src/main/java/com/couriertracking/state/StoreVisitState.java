@@ -0,0 +1,95 @@
+package com.couriertracking.state;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+import com.couriertracking.model.Store;
+
+/**
+ * The store a courier is visiting, if any. A visit opens with a logged entrance and is only left
+ * once the courier has stayed beyond the exit boundary, which is wider than the entrance radius,
+ * for the confirmation time; GPS jitter around the radius therefore neither ends the visit nor
+ * logs repeated entrances. Fed in-order fixes only.
+ */
+public class StoreVisitState {
+
+    private Store store;
+    private LocalDateTime enteredAt;
+    private LocalDateTime lastSeenAt;
+    private LocalDateTime outsideSince;
+
+    public boolean isOpen() {
+        return store != null;
+    }
+
+    public boolean isAt(Store candidate) {
+        return store != null && store.getId().equals(candidate.getId());
+    }
+
+    public Store getStore() {
+        return store;
+    }
+
+    public LocalDateTime getEnteredAt() {
+        return enteredAt;
+    }
+
+    public LocalDateTime getLastSeenAt() {
+        return lastSeenAt;
+    }
+
+    public void enter(Store store, LocalDateTime enteredAt) {
+        this.store = store;
+        this.enteredAt = enteredAt;
+        this.lastSeenAt = enteredAt;
+        this.outsideSince = null;
+    }
+
+    /**
+     * Record a fix during the visit
+     * @param outside whether the fix is beyond the exit boundary
+     * @return true once the courier has been outside for the confirmation time
+     */
+    public boolean observe(LocalDateTime timestamp, boolean outside, Duration exitConfirmation) {
+        lastSeenAt = timestamp;
+        if (!outside) {
+            outsideSince = null;
+            return false;
+        }
+        if (outsideSince == null) {
+            outsideSince = timestamp;
+        }
+        return Duration.between(outsideSince, timestamp).compareTo(exitConfirmation) >= 0;
+    }
+
+    /**
+     * When the courier left: the first fix of the confirmed exit, or the last fix seen if none
+     */
+    public LocalDateTime exitTime() {
+        return outsideSince != null ? outsideSince : lastSeenAt;
+    }
+
+    /**
+     * Copy of the current state, to be put back with {@link #restore} if the fix that changes it
+     * is rolled back
+     */
+    public StoreVisitState copy() {
+        StoreVisitState copy = new StoreVisitState();
+        copy.restore(this);
+        return copy;
+    }
+
+    public void restore(StoreVisitState saved) {
+        store = saved.store;
+        enteredAt = saved.enteredAt;
+        lastSeenAt = saved.lastSeenAt;
+        outsideSince = saved.outsideSince;
+    }
+
+    public void clear() {
+        store = null;
+        enteredAt = null;
+        lastSeenAt = null;
+        outsideSince = null;
+    }
+}
@@ -0,0 +1,6 @@
+package com.couriertracking.state;
+
+import java.time.LocalDateTime;
+
+public record TrackPoint(LocalDateTime timestamp, double latitude, double longitude) {
+}
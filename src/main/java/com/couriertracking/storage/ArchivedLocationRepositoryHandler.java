@@ -0,0 +1,121 @@
+package com.couriertracking.storage;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+
+import com.couriertracking.model.Location;
+import com.couriertracking.repository.LocationRepository;
+
+/**
+ * Adds archived days to the courier history queries of a {@link LocationRepository}, so callers
+ * see one track whether points are still in {@code locations} or already in {@link LocationArchive}.
+ * Newest-first queries only read the archive when the hot table cannot fill the result on its own.
+ * All other calls go straight to the repository.
+ */
+final class ArchivedLocationRepositoryHandler implements InvocationHandler {
+
+    private static final Comparator<Location> NEWEST_FIRST = Comparator.comparing(Location::getTimestamp).reversed();
+
+    private final LocationRepository repository;
+    private final LocationArchive archive;
+
+    ArchivedLocationRepositoryHandler(LocationRepository repository, LocationArchive archive) {
+        this.repository = repository;
+        this.archive = archive;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        if (method.getDeclaringClass() == Object.class) {
+            return switch (method.getName()) {
+                case "equals" -> proxy == args[0];
+                case "hashCode" -> System.identityHashCode(proxy);
+                default -> repository + " with archived tracks";
+            };
+        }
+        return switch (method.getName()) {
+            case "findTop2ByCourierIdOrderByTimestampDesc" -> {
+                UUID courierId = (UUID) args[0];
+                yield newest(courierId, repository.findTop2ByCourierIdOrderByTimestampDesc(courierId), 2, null);
+            }
+            case "findByCourierIdOrderByTimestampDesc" -> newestPage((UUID) args[0], (Pageable) args[1]);
+            case "findFirstByCourierIdAndTimestampBeforeOrderByTimestampDesc" -> {
+                UUID courierId = (UUID) args[0];
+                LocalDateTime before = (LocalDateTime) args[1];
+                Optional<Location> hot = repository.findFirstByCourierIdAndTimestampBeforeOrderByTimestampDesc(courierId, before);
+                yield newest(courierId, hot.map(List::of).orElse(List.of()), 1, before).stream().findFirst();
+            }
+            case "findByCourierIdOrderByTimestampAsc" -> {
+                UUID courierId = (UUID) args[0];
+                yield oldestFirst(archive.track(courierId, null), repository.findByCourierIdOrderByTimestampAsc(courierId));
+            }
+            case "findByCourierIdAndTimestampGreaterThanEqualOrderByTimestampAsc" -> {
+                UUID courierId = (UUID) args[0];
+                LocalDateTime from = (LocalDateTime) args[1];
+                yield oldestFirst(archive.track(courierId, from),
+                    repository.findByCourierIdAndTimestampGreaterThanEqualOrderByTimestampAsc(courierId, from));
+            }
+            case "findByCourierIdAndReceivedAtAfter" -> {
+                UUID courierId = (UUID) args[0];
+                LocalDateTime receivedAt = (LocalDateTime) args[1];
+                List<Location> received = new ArrayList<>(archive.receivedAfter(courierId, receivedAt));
+                received.addAll(repository.findByCourierIdAndReceivedAtAfter(courierId, receivedAt));
+                yield received;
+            }
+            default -> delegate(method, args);
+        };
+    }
+
+    private List<Location> newestPage(UUID courierId, Pageable pageable) {
+        if (pageable.isUnpaged()) {
+            return newest(courierId, repository.findByCourierIdOrderByTimestampDesc(courierId, pageable), Integer.MAX_VALUE, null);
+        }
+        int offset = (int) pageable.getOffset();
+        int limit = offset + pageable.getPageSize();
+        List<Location> newest = newest(courierId,
+            repository.findByCourierIdOrderByTimestampDesc(courierId, PageRequest.of(0, limit)), limit, null);
+        return new ArrayList<>(newest.subList(Math.min(offset, newest.size()), newest.size()));
+    }
+
+    private List<Location> newest(UUID courierId, List<Location> hot, int limit, LocalDateTime before) {
+        if (hot.size() >= limit) {
+            Optional<LocalDateTime> archived = archive.lastTimestamp(courierId, before);
+            if (archived.isEmpty() || archived.get().isBefore(hot.get(limit - 1).getTimestamp())) {
+                return hot;
+            }
+        }
+        List<Location> merged = new ArrayList<>(hot);
+        merged.addAll(archive.newest(courierId, limit, before));
+        merged.sort(NEWEST_FIRST);
+        return merged.size() > limit ? new ArrayList<>(merged.subList(0, limit)) : merged;
+    }
+
+    private static List<Location> oldestFirst(List<Location> archived, List<Location> hot) {
+        if (archived.isEmpty()) {
+            return hot;
+        }
+        // Late fixes can leave hot points older than the newest archived day
+        List<Location> merged = new ArrayList<>(archived);
+        merged.addAll(hot);
+        merged.sort(Comparator.comparing(Location::getTimestamp));
+        return merged;
+    }
+
+    private Object delegate(Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(repository, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
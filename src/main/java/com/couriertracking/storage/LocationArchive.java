@@ -0,0 +1,216 @@
+package com.couriertracking.storage;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.couriertracking.datasource.LocationShards;
+import com.couriertracking.model.Courier;
+import com.couriertracking.model.Location;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Archived tracks: one {@link TrackBlockCodec} block per courier and day in
+ * {@code location_archive}, next to the {@code locations} table the day was taken from (on the
+ * courier's shard when sharding is enabled). Archived points are returned as {@link Location}s
+ * whose IDs are derived from the courier, day and position in the block.
+ */
+@Component
+public class LocationArchive {
+
+    public static final String TABLE = "location_archive";
+
+    private final DataSource dataSource;
+    private final ObjectProvider<LocationShards> locationShards;
+
+    public LocationArchive(DataSource dataSource, ObjectProvider<LocationShards> locationShards) {
+        this.dataSource = dataSource;
+        this.locationShards = locationShards;
+    }
+
+    @PostConstruct
+    public void createTables() {
+        for (DataSource target : dataSources()) {
+            JdbcTemplate jdbcTemplate = new JdbcTemplate(target);
+            jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + TABLE + " (courier_id UUID NOT NULL, "
+                + "track_date DATE NOT NULL, point_count INT NOT NULL, first_timestamp TIMESTAMP(6) NOT NULL, "
+                + "last_timestamp TIMESTAMP(6) NOT NULL, max_received_at TIMESTAMP(6) NOT NULL, "
+                + "block VARBINARY NOT NULL, PRIMARY KEY (courier_id, track_date))");
+        }
+    }
+
+    /**
+     * Databases holding locations, and so archive blocks
+     */
+    public List<DataSource> dataSources() {
+        LocationShards shards = locationShards.getIfAvailable();
+        return shards != null ? shards.dataSources() : List.of(dataSource);
+    }
+
+    /**
+     * Points already archived for the courier's day, in timestamp order
+     */
+    public List<TrackBlockCodec.Point> findPoints(JdbcTemplate jdbcTemplate, UUID courierId, LocalDate date) {
+        List<byte[]> blocks = jdbcTemplate.query("SELECT block FROM " + TABLE + " WHERE courier_id = ? AND track_date = ?",
+            (rs, rowNum) -> rs.getBytes(1), courierId, date);
+        return blocks.isEmpty() ? List.of() : TrackBlockCodec.decode(blocks.get(0));
+    }
+
+    /**
+     * Store the courier's day, replacing any block already archived for it
+     * @param points in timestamp order, as encoded in the block
+     */
+    public void saveBlock(JdbcTemplate jdbcTemplate, UUID courierId, LocalDate date, List<TrackBlockCodec.Point> points,
+                          byte[] block) {
+        long maxReceived = points.stream().mapToLong(TrackBlockCodec.Point::receivedMillis).max().orElseThrow();
+        jdbcTemplate.update("DELETE FROM " + TABLE + " WHERE courier_id = ? AND track_date = ?", courierId, date);
+        jdbcTemplate.update("INSERT INTO " + TABLE + " (courier_id, track_date, point_count, first_timestamp, "
+                + "last_timestamp, max_received_at, block) VALUES (?, ?, ?, ?, ?, ?, ?)",
+            courierId, date, points.size(), points.get(0).timestamp(), points.get(points.size() - 1).timestamp(),
+            TrackBlockCodec.fromMillis(maxReceived), block);
+    }
+
+    /**
+     * The courier's archived points at or after the given time (all if null), oldest first
+     */
+    public List<Location> track(UUID courierId, LocalDateTime from) {
+        LocalDateTime since = from != null ? from : LocalDateTime.MIN;
+        List<Location> track = new ArrayList<>();
+        jdbcTemplateFor(courierId).query("SELECT track_date, block FROM " + TABLE
+                + " WHERE courier_id = ? AND last_timestamp >= ? ORDER BY track_date",
+            rs -> {
+                List<TrackBlockCodec.Point> points = TrackBlockCodec.decode(rs.getBytes(2));
+                LocalDate date = rs.getObject(1, LocalDate.class);
+                for (int index = 0; index < points.size(); index++) {
+                    if (!points.get(index).timestamp().isBefore(since)) {
+                        track.add(toLocation(courierId, date, index, points.get(index)));
+                    }
+                }
+            },
+            courierId, since);
+        return track;
+    }
+
+    /**
+     * The courier's newest archived points before the given time (any if null), newest first
+     */
+    public List<Location> newest(UUID courierId, int limit, LocalDateTime before) {
+        LocalDateTime until = before != null ? before : LocalDateTime.MAX;
+        return jdbcTemplateFor(courierId).query("SELECT track_date, block FROM " + TABLE
+                + " WHERE courier_id = ? AND first_timestamp < ? ORDER BY track_date DESC",
+            rs -> {
+                // Days do not overlap, so reading days newest first yields points newest first
+                List<Location> newest = new ArrayList<>();
+                while (newest.size() < limit && rs.next()) {
+                    List<TrackBlockCodec.Point> points = TrackBlockCodec.decode(rs.getBytes(2));
+                    LocalDate date = rs.getObject(1, LocalDate.class);
+                    for (int index = points.size() - 1; index >= 0 && newest.size() < limit; index--) {
+                        if (points.get(index).timestamp().isBefore(until)) {
+                            newest.add(toLocation(courierId, date, index, points.get(index)));
+                        }
+                    }
+                }
+                return newest;
+            },
+            courierId, until);
+    }
+
+    /**
+     * Timestamp of the courier's newest archived point, counting only days starting before the given time
+     */
+    public Optional<LocalDateTime> lastTimestamp(UUID courierId, LocalDateTime before) {
+        return Optional.ofNullable(jdbcTemplateFor(courierId).queryForObject("SELECT MAX(last_timestamp) FROM " + TABLE
+                + " WHERE courier_id = ? AND first_timestamp < ?",
+            LocalDateTime.class, courierId, before != null ? before : LocalDateTime.MAX));
+    }
+
+    /**
+     * The courier's archived points received after the given time, in timestamp order
+     */
+    public List<Location> receivedAfter(UUID courierId, LocalDateTime receivedAt) {
+        List<Location> received = new ArrayList<>();
+        jdbcTemplateFor(courierId).query("SELECT track_date, block FROM " + TABLE
+                + " WHERE courier_id = ? AND max_received_at > ? ORDER BY track_date",
+            rs -> {
+                List<TrackBlockCodec.Point> points = TrackBlockCodec.decode(rs.getBytes(2));
+                LocalDate date = rs.getObject(1, LocalDate.class);
+                for (int index = 0; index < points.size(); index++) {
+                    if (points.get(index).receivedAt().isAfter(receivedAt)) {
+                        received.add(toLocation(courierId, date, index, points.get(index)));
+                    }
+                }
+            },
+            courierId, receivedAt);
+        return received;
+    }
+
+    /**
+     * Pass the courier's archived locations within [from, to) to the consumer in timestamp order,
+     * decoding one block at a time
+     * @param from null for the start of the track
+     * @param to null for the end of the track
+     */
+    public void forEachLocation(UUID courierId, LocalDateTime from, LocalDateTime to, Consumer<Location> consumer) {
+        LocalDateTime since = from != null ? from : LocalDateTime.MIN;
+        LocalDateTime until = to != null ? to : LocalDateTime.MAX;
+        jdbcTemplateFor(courierId).query("SELECT track_date, block FROM " + TABLE
+                + " WHERE courier_id = ? AND last_timestamp >= ? AND first_timestamp < ? ORDER BY track_date",
+            rs -> {
+                List<TrackBlockCodec.Point> points = TrackBlockCodec.decode(rs.getBytes(2));
+                LocalDate date = rs.getObject(1, LocalDate.class);
+                for (int index = 0; index < points.size(); index++) {
+                    TrackBlockCodec.Point point = points.get(index);
+                    if (!point.timestamp().isBefore(since) && point.timestamp().isBefore(until)) {
+                        consumer.accept(toLocation(courierId, date, index, point));
+                    }
+                }
+            },
+            courierId, since, until);
+    }
+
+    /**
+     * Database holding the courier's locations and archive blocks
+     */
+    public DataSource dataSourceFor(UUID courierId) {
+        LocationShards shards = locationShards.getIfAvailable();
+        return shards != null ? shards.get(shards.shardFor(courierId)).dataSource() : dataSource;
+    }
+
+    /**
+     * Read-only transaction on the database holding the courier's locations, so cursors opened in it
+     * stream with their fetch size and see one snapshot
+     */
+    public TransactionTemplate readOnlyTransactionFor(UUID courierId) {
+        LocationShards shards = locationShards.getIfAvailable();
+        TransactionTemplate transactionTemplate = shards != null
+            ? new TransactionTemplate(shards.get(shards.shardFor(courierId)).transactionTemplate().getTransactionManager())
+            : new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        transactionTemplate.setReadOnly(true);
+        return transactionTemplate;
+    }
+
+    private JdbcTemplate jdbcTemplateFor(UUID courierId) {
+        return new JdbcTemplate(dataSourceFor(courierId));
+    }
+
+    private static Location toLocation(UUID courierId, LocalDate date, int index, TrackBlockCodec.Point point) {
+        Courier courier = new Courier();
+        courier.setId(courierId);
+        UUID id = new UUID(courierId.getMostSignificantBits(),
+            courierId.getLeastSignificantBits() ^ (date.toEpochDay() << 32 | index));
+        return new Location(id, courier, point.latitude(), point.longitude(), point.timestamp(), point.receivedAt());
+    }
+}
@@ -0,0 +1,36 @@
+package com.couriertracking.storage;
+
+import java.lang.reflect.Proxy;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.couriertracking.repository.LocationRepository;
+
+/**
+ * Location archive reads. Location repositories, plain or sharded, are wrapped so courier
+ * history queries include days moved to {@link LocationArchive}. The location log engine keeps
+ * its own history and is left alone.
+ */
+@Configuration
+@ConditionalOnProperty(name = "courier-tracking.archive.enabled", havingValue = "true")
+public class LocationArchiveConfig {
+
+    @Bean
+    public static BeanPostProcessor archivedLocationRepositoryPostProcessor(ObjectProvider<LocationArchive> locationArchive) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (!(bean instanceof LocationRepository repository) || bean instanceof LocationLogRepository) {
+                    return bean;
+                }
+                return Proxy.newProxyInstance(LocationRepository.class.getClassLoader(),
+                    new Class<?>[] {LocationRepository.class},
+                    new ArchivedLocationRepositoryHandler(repository, locationArchive.getObject()));
+            }
+        };
+    }
+}
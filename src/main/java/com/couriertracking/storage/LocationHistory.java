@@ -0,0 +1,105 @@
+package com.couriertracking.storage;
+
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+
+import com.couriertracking.datasource.LocationShards;
+
+/**
+ * Downsampled history: one {@code location_history_yyyyMM} table per month, written by location
+ * retention once days leave the full-resolution window, next to the {@code locations} table they
+ * came from (on the courier's shard when sharding is enabled).
+ */
+@Component
+public class LocationHistory {
+
+    public static final String TABLE_PREFIX = "location_history_";
+    private static final Pattern TABLE = Pattern.compile(TABLE_PREFIX + "(\\d{6})", Pattern.CASE_INSENSITIVE);
+    private static final DateTimeFormatter MONTH = DateTimeFormatter.ofPattern("yyyyMM");
+
+    /**
+     * A downsampled point
+     */
+    public record Point(LocalDateTime timestamp, double latitude, double longitude) {
+    }
+
+    private final DataSource dataSource;
+    private final ObjectProvider<LocationShards> locationShards;
+
+    public LocationHistory(DataSource dataSource, ObjectProvider<LocationShards> locationShards) {
+        this.dataSource = dataSource;
+        this.locationShards = locationShards;
+    }
+
+    public static String table(YearMonth month) {
+        return TABLE_PREFIX + MONTH.format(month);
+    }
+
+    /**
+     * The month a history table holds, or empty if the table is not a history table
+     */
+    public static Optional<YearMonth> month(String table) {
+        Matcher matcher = TABLE.matcher(table);
+        return matcher.matches() ? Optional.of(YearMonth.parse(matcher.group(1), MONTH)) : Optional.empty();
+    }
+
+    /**
+     * Pass the courier's history points within [from, to) to the consumer in timestamp order,
+     * one month table at a time
+     */
+    public void forEachPoint(UUID courierId, LocalDateTime from, LocalDateTime to, Consumer<Point> consumer) {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSourceFor(courierId));
+        Set<YearMonth> months = months(jdbcTemplate);
+        if (months.isEmpty()) {
+            return;
+        }
+        YearMonth last = YearMonth.from(to.minusNanos(1));
+        for (YearMonth month = YearMonth.from(from); !month.isAfter(last); month = month.plusMonths(1)) {
+            if (!months.contains(month)) {
+                continue;
+            }
+            jdbcTemplate.query("SELECT timestamp, latitude, longitude FROM " + table(month)
+                    + " WHERE courier_id = ? AND timestamp >= ? AND timestamp < ? ORDER BY timestamp",
+                (RowCallbackHandler) rs -> consumer.accept(
+                    new Point(rs.getObject(1, LocalDateTime.class), rs.getDouble(2), rs.getDouble(3))),
+                courierId, from, to);
+        }
+    }
+
+    private DataSource dataSourceFor(UUID courierId) {
+        LocationShards shards = locationShards.getIfAvailable();
+        return shards != null ? shards.get(shards.shardFor(courierId)).dataSource() : dataSource;
+    }
+
+    private static Set<YearMonth> months(JdbcTemplate jdbcTemplate) {
+        return jdbcTemplate.execute((ConnectionCallback<Set<YearMonth>>) connection -> {
+            Set<YearMonth> months = new HashSet<>();
+            DatabaseMetaData metaData = connection.getMetaData();
+            try (ResultSet rs = metaData.getTables(connection.getCatalog(), connection.getSchema(), "%",
+                    new String[] { "TABLE" })) {
+                while (rs.next()) {
+                    month(rs.getString("TABLE_NAME")).ifPresent(months::add);
+                }
+            }
+            return months;
+        });
+    }
+}
@@ -0,0 +1,672 @@
+package com.couriertracking.storage;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import org.springframework.scheduling.annotation.Scheduled;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Append-only location log. Fixes are written as fixed-width records to memory-mapped segment
+ * files of equal size; a record's sequence number is its position in the log and never changes.
+ * Courier IDs are replaced by their index in a separate dictionary file. Each record points back
+ * to the courier's previous record, and each courier has a sparse in-memory index of blocks of
+ * its records (sequence range, timestamp and receive time bounds), so a history query follows
+ * only the courier's own records in the blocks that can match. The index is rebuilt by replaying
+ * the log on open; a torn record ends the log.
+ * <p>
+ * Records of a rolled-back transaction are flagged as discarded in place and skipped by reads.
+ * With a retention period, whole segments received before it are deleted, oldest first.
+ * <p>
+ * Record layout, 40 bytes: courier index (int, top bit set once discarded), timestamp epoch
+ * millis (long), latitude and longitude in 1e-7 degrees (int, int), receive time epoch millis
+ * (long), sequence of the courier's previous record or -1 (long), CRC32 of the first 36 bytes
+ * with the discard bit cleared (int). Timestamps are stored as UTC with millisecond precision.
+ */
+@Slf4j
+public class LocationLog implements AutoCloseable {
+
+    public static final int RECORD_BYTES = 40;
+    private static final int CHECKSUMMED_BYTES = 36;
+    private static final int PREVIOUS_OFFSET = 28;
+    private static final int DISCARDED = 0x80000000;
+    private static final int FORMAT_VERSION = 2;
+    private static final double FIXED_POINT_SCALE = 1e7;
+    private static final String COURIERS_FILE = "couriers.dat";
+    private static final String FORMAT_FILE = "format";
+    private static final Pattern SEGMENT_FILE = Pattern.compile("segment-(\\d{8})\\.log");
+
+    /**
+     * A fix as stored in the log
+     */
+    public record Entry(long sequence, UUID courierId, LocalDateTime timestamp, double latitude, double longitude,
+                        LocalDateTime receivedAt) {
+    }
+
+    private final Path directory;
+    private final int recordsPerSegment;
+    private final int blockRecords;
+    private final Duration retention;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final FileChannel courierChannel;
+    // Read without the lock while decoding records; only appended to under the write lock
+    private final List<UUID> courierIds = new CopyOnWriteArrayList<>();
+    // Deleted segments stay in place as null, so a sequence still maps to its segment number
+    private final List<MappedByteBuffer> segments = new CopyOnWriteArrayList<>();
+    private final List<SegmentStats> segmentStats = new ArrayList<>();
+    private final Map<UUID, CourierIndex> couriers = new HashMap<>();
+    // First sequence of the oldest segment still kept
+    private volatile long firstSequence;
+    private long nextSequence;
+
+    /**
+     * Open the log in the directory, replaying existing segments
+     * @param segmentBytes size of each segment file; rounded down to whole records
+     * @param blockRecords records per courier covered by one sparse index entry
+     */
+    public LocationLog(Path directory, int segmentBytes, int blockRecords) {
+        this(directory, segmentBytes, blockRecords, Duration.ZERO);
+    }
+
+    /**
+     * @param retention age by receive time after which whole segments are deleted; zero keeps everything
+     */
+    public LocationLog(Path directory, int segmentBytes, int blockRecords, Duration retention) {
+        this.directory = directory;
+        this.recordsPerSegment = segmentBytes / RECORD_BYTES;
+        this.blockRecords = blockRecords;
+        this.retention = retention;
+        if (recordsPerSegment < 1 || blockRecords < 1) {
+            throw new IllegalArgumentException("Segments must hold at least one record and blocks cover at least one");
+        }
+        try {
+            Files.createDirectories(directory);
+            this.courierChannel = FileChannel.open(directory.resolve(COURIERS_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            loadCouriers();
+            replay();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open location log in " + directory, e);
+        }
+    }
+
+    /**
+     * Append a fix
+     * @return its sequence number
+     */
+    public long append(UUID courierId, LocalDateTime timestamp, double latitude, double longitude,
+                       LocalDateTime receivedAt) {
+        lock.writeLock().lock();
+        try {
+            CourierIndex courier = couriers.get(courierId);
+            if (courier == null) {
+                courier = register(courierId);
+            }
+            long sequence = nextSequence;
+            int slot = (int) (sequence % recordsPerSegment);
+            if (slot == 0 && sequence / recordsPerSegment == segments.size()) {
+                segments.add(mapSegment(segments.size()));
+                segmentStats.add(new SegmentStats());
+            }
+            ByteBuffer segment = segments.get((int) (sequence / recordsPerSegment));
+            long timestampMillis = toMillis(timestamp);
+            long receivedMillis = toMillis(receivedAt);
+            write(segment, slot * RECORD_BYTES, courier.index, timestampMillis,
+                (int) Math.round(latitude * FIXED_POINT_SCALE), (int) Math.round(longitude * FIXED_POINT_SCALE),
+                receivedMillis, courier.lastSequence);
+            courier.add(sequence, timestampMillis, receivedMillis, blockRecords);
+            segmentStats.get((int) (sequence / recordsPerSegment)).add(receivedMillis);
+            nextSequence++;
+            return sequence;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Flag a record as discarded, for a fix whose transaction rolled back. Reads skip it from now
+     * on, and so does the replay after a restart.
+     */
+    public void discard(long sequence) {
+        lock.writeLock().lock();
+        try {
+            if (sequence < firstSequence || sequence >= nextSequence) {
+                return;
+            }
+            ByteBuffer segment = segments.get((int) (sequence / recordsPerSegment));
+            int offset = (int) (sequence % recordsPerSegment) * RECORD_BYTES;
+            int courierIndex = segment.getInt(offset);
+            if ((courierIndex & DISCARDED) == 0) {
+                // One int write, covered by the checksum either way, so a crash cannot tear the record
+                segment.putInt(offset, courierIndex | DISCARDED);
+                segmentStats.get((int) (sequence / recordsPerSegment)).live--;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Number of records kept and not discarded
+     */
+    public long size() {
+        lock.readLock().lock();
+        try {
+            long live = 0;
+            for (int number = (int) (firstSequence / recordsPerSegment); number < segmentStats.size(); number++) {
+                live += segmentStats.get(number).live;
+            }
+            return live;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * The record, or null if it does not exist, was discarded or fell out of retention
+     */
+    public Entry read(long sequence) {
+        lock.readLock().lock();
+        try {
+            if (sequence < firstSequence || sequence >= nextSequence || isDiscarded(sequence)) {
+                return null;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return decode(sequence);
+    }
+
+    /**
+     * Every record in log order
+     */
+    public void replayAll(Consumer<Entry> consumer) {
+        long start;
+        long end;
+        lock.readLock().lock();
+        try {
+            start = firstSequence;
+            end = nextSequence;
+        } finally {
+            lock.readLock().unlock();
+        }
+        for (long sequence = start; sequence < end; sequence++) {
+            if (sequence >= firstSequence && !isDiscarded(sequence)) {
+                consumer.accept(decode(sequence));
+            }
+        }
+    }
+
+    /**
+     * A courier's records, newest timestamp first
+     */
+    public List<Entry> newest(UUID courierId, int limit) {
+        return newestMatching(courierId, limit, Long.MAX_VALUE);
+    }
+
+    /**
+     * A courier's records with a timestamp before the given one, newest first
+     */
+    public List<Entry> newestBefore(UUID courierId, LocalDateTime before, int limit) {
+        return newestMatching(courierId, limit, toMillis(before));
+    }
+
+    /**
+     * A courier's records with a timestamp at or after the given one (all if null), oldest first
+     */
+    public List<Entry> trackFrom(UUID courierId, LocalDateTime from) {
+        List<Entry> track = new ArrayList<>();
+        forEachInRange(courierId, from, null, track::add);
+        return track;
+    }
+
+    /**
+     * Stream a courier's records with a timestamp in [from, to), oldest first; a null bound is open.
+     * Only blocks overlapping the range are read, in order of their earliest timestamp, and a
+     * block's records are held only until no block still to be read can hold an earlier one.
+     */
+    public void forEachInRange(UUID courierId, LocalDateTime from, LocalDateTime to, Consumer<Entry> consumer) {
+        long fromMillis = from != null ? toMillis(from) : Long.MIN_VALUE;
+        long untilMillis = to != null ? toMillis(to) : Long.MAX_VALUE;
+        List<Block> blocks = blocks(courierId);
+        blocks.removeIf(block -> block.maxTimestamp() < fromMillis || block.minTimestamp() >= untilMillis);
+        blocks.sort(Comparator.comparingLong(Block::minTimestamp));
+        Predicate<Entry> inRange = entry -> {
+            long timestamp = toMillis(entry.timestamp());
+            return timestamp >= fromMillis && timestamp < untilMillis;
+        };
+        PriorityQueue<Entry> pending = new PriorityQueue<>(Comparator.comparing(Entry::timestamp));
+        List<Entry> found = new ArrayList<>();
+        for (Block block : blocks) {
+            while (!pending.isEmpty() && toMillis(pending.peek().timestamp()) < block.minTimestamp()) {
+                consumer.accept(pending.poll());
+            }
+            readBlock(block, inRange, found);
+            pending.addAll(found);
+            found.clear();
+        }
+        while (!pending.isEmpty()) {
+            consumer.accept(pending.poll());
+        }
+    }
+
+    /**
+     * A courier's records received after the given time, in log order
+     */
+    public List<Entry> receivedAfter(UUID courierId, LocalDateTime receivedAt) {
+        long afterMillis = toMillis(receivedAt);
+        return scan(courierId, block -> block.maxReceived() > afterMillis,
+            entry -> toMillis(entry.receivedAt()) > afterMillis);
+    }
+
+    /**
+     * Force written records to disk
+     */
+    @Scheduled(fixedDelayString = "${courier-tracking.storage.log.force-interval-millis:1000}")
+    public void force() {
+        lock.readLock().lock();
+        try {
+            if (!segments.isEmpty()) {
+                segments.get(segments.size() - 1).force();
+            }
+            courierChannel.force(false);
+        } catch (IOException e) {
+            log.warn("Failed to force location log to disk: {}", e.getMessage());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Delete the oldest segments whose records were all received before the retention period.
+     * The segment being appended to is always kept.
+     */
+    @Scheduled(cron = "${courier-tracking.storage.log.retention-cron:0 45 3 * * *}")
+    public void applyRetention() {
+        if (retention.isZero()) {
+            return;
+        }
+        dropReceivedBefore(toMillis(LocalDateTime.now().minus(retention)));
+    }
+
+    /**
+     * Delete the oldest segments whose records were all received before the given time
+     * @return number of segments deleted
+     */
+    int dropReceivedBefore(long cutoffMillis) {
+        lock.writeLock().lock();
+        try {
+            int dropped = 0;
+            int number = (int) (firstSequence / recordsPerSegment);
+            while (number < segments.size() - 1 && segmentStats.get(number).maxReceived < cutoffMillis) {
+                Path file = segmentFile(number);
+                segments.set(number, null);
+                number++;
+                firstSequence = (long) number * recordsPerSegment;
+                dropped++;
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException e) {
+                    log.warn("Failed to delete expired location log segment {}: {}", file, e.getMessage());
+                }
+            }
+            if (dropped > 0) {
+                couriers.values().forEach(courier -> courier.dropBefore(firstSequence));
+                log.info("Deleted {} expired location log segments; the log now starts at record {}", dropped, firstSequence);
+            }
+            return dropped;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            segments.stream().filter(Objects::nonNull).forEach(MappedByteBuffer::force);
+            courierChannel.force(true);
+            courierChannel.close();
+        } catch (IOException e) {
+            log.warn("Failed to close location log: {}", e.getMessage());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Read blocks newest first, stopping once no remaining block can hold a newer match than the ones found
+     */
+    private List<Entry> newestMatching(UUID courierId, int limit, long beforeMillis) {
+        List<Block> blocks = blocks(courierId);
+        blocks.sort(Comparator.comparingLong(Block::maxTimestamp).reversed());
+        List<Entry> found = new ArrayList<>();
+        Comparator<Entry> newestFirst = Comparator.comparing(Entry::timestamp).reversed();
+        for (Block block : blocks) {
+            if (block.minTimestamp() >= beforeMillis) {
+                continue;
+            }
+            if (found.size() >= limit && block.maxTimestamp() < toMillis(found.get(limit - 1).timestamp())) {
+                break;
+            }
+            readBlock(block, entry -> toMillis(entry.timestamp()) < beforeMillis, found);
+            found.sort(newestFirst);
+        }
+        return found.size() > limit ? new ArrayList<>(found.subList(0, limit)) : found;
+    }
+
+    private List<Entry> scan(UUID courierId, Predicate<Block> blockFilter, Predicate<Entry> entryFilter) {
+        List<Entry> found = new ArrayList<>();
+        for (Block block : blocks(courierId)) {
+            if (blockFilter.test(block)) {
+                readBlock(block, entryFilter, found);
+            }
+        }
+        return found;
+    }
+
+    private List<Block> blocks(UUID courierId) {
+        lock.readLock().lock();
+        try {
+            CourierIndex courier = couriers.get(courierId);
+            return courier != null ? courier.snapshot() : new ArrayList<>();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Follow the courier's records back through the block, keeping the matching ones in log order.
+     * Only the courier's own records are touched, however many other couriers share the stretch.
+     */
+    private void readBlock(Block block, Predicate<Entry> filter, List<Entry> found) {
+        List<Entry> matching = new ArrayList<>();
+        for (long sequence = block.lastSequence(); sequence >= Math.max(block.firstSequence(), firstSequence); ) {
+            ByteBuffer segment = segments.get((int) (sequence / recordsPerSegment));
+            if (segment == null) {
+                // Deleted by retention while reading
+                break;
+            }
+            int offset = (int) (sequence % recordsPerSegment) * RECORD_BYTES;
+            if ((segment.getInt(offset) & DISCARDED) == 0) {
+                Entry entry = decode(sequence);
+                if (filter.test(entry)) {
+                    matching.add(entry);
+                }
+            }
+            sequence = segment.getLong(offset + PREVIOUS_OFFSET);
+        }
+        found.addAll(matching.reversed());
+    }
+
+    private boolean isDiscarded(long sequence) {
+        ByteBuffer segment = segments.get((int) (sequence / recordsPerSegment));
+        return (segment.getInt((int) (sequence % recordsPerSegment) * RECORD_BYTES) & DISCARDED) != 0;
+    }
+
+    private Entry decode(long sequence) {
+        ByteBuffer segment = segments.get((int) (sequence / recordsPerSegment));
+        int offset = (int) (sequence % recordsPerSegment) * RECORD_BYTES;
+        return new Entry(sequence,
+            courierIds.get(segment.getInt(offset) & ~DISCARDED),
+            fromMillis(segment.getLong(offset + 4)),
+            segment.getInt(offset + 12) / FIXED_POINT_SCALE,
+            segment.getInt(offset + 16) / FIXED_POINT_SCALE,
+            fromMillis(segment.getLong(offset + 20)));
+    }
+
+    private CourierIndex register(UUID courierId) {
+        ByteBuffer entry = ByteBuffer.allocate(16)
+            .putLong(courierId.getMostSignificantBits())
+            .putLong(courierId.getLeastSignificantBits())
+            .flip();
+        try {
+            courierChannel.write(entry, (long) courierIds.size() * 16);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to register courier " + courierId + " in location log", e);
+        }
+        CourierIndex courier = new CourierIndex(courierIds.size());
+        courierIds.add(courierId);
+        couriers.put(courierId, courier);
+        return courier;
+    }
+
+    private void loadCouriers() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) (courierChannel.size() / 16 * 16));
+        courierChannel.read(buffer, 0);
+        buffer.flip();
+        while (buffer.remaining() >= 16) {
+            UUID courierId = new UUID(buffer.getLong(), buffer.getLong());
+            couriers.put(courierId, new CourierIndex(courierIds.size()));
+            courierIds.add(courierId);
+        }
+    }
+
+    /**
+     * Refuse a log written with another record layout, and mark a new one with the current layout
+     */
+    private void checkFormat(boolean hasSegments) throws IOException {
+        Path file = directory.resolve(FORMAT_FILE);
+        if (!Files.exists(file)) {
+            if (hasSegments) {
+                throw new IllegalStateException("Location log in " + directory + " predates format version "
+                    + FORMAT_VERSION + "; move it away to start a new log");
+            }
+            Files.writeString(file, Integer.toString(FORMAT_VERSION));
+            return;
+        }
+        int version = Integer.parseInt(Files.readString(file).trim());
+        if (version != FORMAT_VERSION) {
+            throw new IllegalStateException("Location log in " + directory + " has format version " + version
+                + ", expected " + FORMAT_VERSION);
+        }
+    }
+
+    /**
+     * Rebuild the courier index from the segments and find the end of the log
+     */
+    private void replay() throws IOException {
+        List<Integer> segmentNumbers;
+        try (Stream<Path> files = Files.list(directory)) {
+            segmentNumbers = files
+                .map(file -> SEGMENT_FILE.matcher(file.getFileName().toString()))
+                .filter(Matcher::matches)
+                .map(matcher -> Integer.parseInt(matcher.group(1)))
+                .sorted()
+                .toList();
+        }
+        checkFormat(!segmentNumbers.isEmpty());
+        // Segments before the first one left were deleted by retention
+        int first = segmentNumbers.isEmpty() ? 0 : segmentNumbers.get(0);
+        for (int i = 0; i < segmentNumbers.size(); i++) {
+            if (segmentNumbers.get(i) != first + i) {
+                throw new IllegalStateException("Location log segment " + (first + i) + " is missing in " + directory);
+            }
+        }
+        for (int number = 0; number < first; number++) {
+            segments.add(null);
+            segmentStats.add(new SegmentStats());
+        }
+        firstSequence = (long) first * recordsPerSegment;
+        nextSequence = firstSequence;
+
+        long started = System.currentTimeMillis();
+        for (int number : segmentNumbers) {
+            MappedByteBuffer segment = mapSegment(number);
+            segments.add(segment);
+            SegmentStats stats = new SegmentStats();
+            segmentStats.add(stats);
+            for (int slot = 0; slot < recordsPerSegment; slot++) {
+                int offset = slot * RECORD_BYTES;
+                int courierIndex = segment.getInt(offset) & ~DISCARDED;
+                if (!isValid(segment, offset) || courierIndex >= courierIds.size()) {
+                    if (number != first + segmentNumbers.size() - 1) {
+                        throw new IllegalStateException("Location log segment " + number + " ends early in " + directory);
+                    }
+                    truncate(segment, slot, number);
+                    break;
+                }
+                couriers.get(courierIds.get(courierIndex)).add(nextSequence,
+                    segment.getLong(offset + 4), segment.getLong(offset + 20), blockRecords);
+                stats.add(segment.getLong(offset + 20));
+                if ((segment.getInt(offset) & DISCARDED) != 0) {
+                    stats.live--;
+                }
+                nextSequence++;
+            }
+        }
+        log.info("Replayed location log: records {} to {} of {} couriers in {} segments ({} ms)",
+            firstSequence, nextSequence, courierIds.size(), segmentNumbers.size(), System.currentTimeMillis() - started);
+    }
+
+    /**
+     * Clear a torn record and anything written after it, so it cannot resurface behind new appends
+     */
+    private void truncate(MappedByteBuffer segment, int fromSlot, int number) {
+        int cleared = 0;
+        for (int slot = fromSlot; slot < recordsPerSegment && !isEmpty(segment, slot * RECORD_BYTES); slot++) {
+            for (int offset = slot * RECORD_BYTES; offset < (slot + 1) * RECORD_BYTES; offset += 4) {
+                segment.putInt(offset, 0);
+            }
+            cleared++;
+        }
+        if (cleared > 0) {
+            log.warn("Location log segment {} ends with {} unreadable records at slot {}; discarded", number, cleared, fromSlot);
+        }
+    }
+
+    private Path segmentFile(int number) {
+        return directory.resolve(String.format("segment-%08d.log", number));
+    }
+
+    private MappedByteBuffer mapSegment(int number) {
+        Path file = segmentFile(number);
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) recordsPerSegment * RECORD_BYTES);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to map location log segment " + file, e);
+        }
+    }
+
+    private static void write(ByteBuffer segment, int offset, int courierIndex, long timestampMillis,
+                              int latitude, int longitude, long receivedMillis, long previousSequence) {
+        segment.putInt(offset, courierIndex);
+        segment.putLong(offset + 4, timestampMillis);
+        segment.putInt(offset + 12, latitude);
+        segment.putInt(offset + 16, longitude);
+        segment.putLong(offset + 20, receivedMillis);
+        segment.putLong(offset + PREVIOUS_OFFSET, previousSequence);
+        segment.putInt(offset + CHECKSUMMED_BYTES, checksum(segment, offset));
+    }
+
+    private static boolean isValid(ByteBuffer segment, int offset) {
+        return segment.getInt(offset + CHECKSUMMED_BYTES) == checksum(segment, offset) && !isEmpty(segment, offset);
+    }
+
+    private static boolean isEmpty(ByteBuffer segment, int offset) {
+        for (int position = offset; position < offset + RECORD_BYTES; position += 8) {
+            if (segment.getLong(position) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int checksum(ByteBuffer segment, int offset) {
+        CRC32 crc = new CRC32();
+        // Without the discard bit, so discarding a record leaves it valid
+        crc.update(ByteBuffer.allocate(4).putInt(0, segment.getInt(offset) & ~DISCARDED));
+        crc.update(segment.slice(offset + 4, CHECKSUMMED_BYTES - 4));
+        return (int) crc.getValue();
+    }
+
+    private static long toMillis(LocalDateTime time) {
+        return time.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    private static LocalDateTime fromMillis(long millis) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(millis, 1000), (int) Math.floorMod(millis, 1000) * 1_000_000,
+            ZoneOffset.UTC);
+    }
+
+    /**
+     * Sparse index entry: a run of one courier's records and the bounds of their times
+     */
+    record Block(int courierIndex, long firstSequence, long lastSequence, long minTimestamp, long maxTimestamp,
+                 long maxReceived) {
+    }
+
+    private static final class SegmentStats {
+
+        private long maxReceived = Long.MIN_VALUE;
+        private int live;
+
+        void add(long receivedMillis) {
+            maxReceived = Math.max(maxReceived, receivedMillis);
+            live++;
+        }
+    }
+
+    private static final class CourierIndex {
+
+        private final int index;
+        private final List<Block> blocks = new ArrayList<>();
+        private int recordsInLastBlock;
+        private long lastSequence = -1;
+
+        CourierIndex(int index) {
+            this.index = index;
+        }
+
+        void add(long sequence, long timestampMillis, long receivedMillis, int blockRecords) {
+            lastSequence = sequence;
+            if (blocks.isEmpty() || recordsInLastBlock == blockRecords) {
+                blocks.add(new Block(index, sequence, sequence, timestampMillis, timestampMillis, receivedMillis));
+                recordsInLastBlock = 1;
+                return;
+            }
+            Block last = blocks.get(blocks.size() - 1);
+            blocks.set(blocks.size() - 1, new Block(index, last.firstSequence(), sequence,
+                Math.min(last.minTimestamp(), timestampMillis), Math.max(last.maxTimestamp(), timestampMillis),
+                Math.max(last.maxReceived(), receivedMillis)));
+            recordsInLastBlock++;
+        }
+
+        void dropBefore(long sequence) {
+            blocks.removeIf(block -> block.lastSequence() < sequence);
+        }
+
+        List<Block> snapshot() {
+            return new ArrayList<>(blocks);
+        }
+    }
+}
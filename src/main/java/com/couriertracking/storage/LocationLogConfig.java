@@ -0,0 +1,41 @@
+package com.couriertracking.storage;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import com.couriertracking.repository.LocationRepository;
+
+/**
+ * Location log persistence. With {@code courier-tracking.storage.engine=log}, locations are
+ * appended to a memory-mapped log on local disk instead of the {@code locations} table. Store
+ * entrances, couriers and distances stay in the database.
+ */
+@Configuration
+@ConditionalOnProperty(name = "courier-tracking.storage.engine", havingValue = "log")
+public class LocationLogConfig {
+
+    @Bean
+    public LocationLog locationLog(
+            @Value("${courier-tracking.storage.log.directory}") String directory,
+            @Value("${courier-tracking.storage.log.segment-bytes:67108864}") int segmentBytes,
+            @Value("${courier-tracking.storage.log.index-block-records:64}") int blockRecords,
+            @Value("${courier-tracking.storage.log.retention-days:0}") int retentionDays,
+            @Value("${courier-tracking.storage.sharding.enabled:false}") boolean shardingEnabled) {
+        if (shardingEnabled) {
+            throw new IllegalStateException("The location log engine cannot be combined with location sharding");
+        }
+        return new LocationLog(Path.of(directory), segmentBytes, blockRecords, Duration.ofDays(retentionDays));
+    }
+
+    @Bean
+    @Primary
+    public LocationRepository logLocationRepository(LocationLog locationLog) {
+        return new LocationLogRepository(locationLog);
+    }
+}
@@ -0,0 +1,280 @@
+package com.couriertracking.storage;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Function;
+
+import org.springframework.data.domain.Example;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.repository.query.FluentQuery;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.couriertracking.model.Courier;
+import com.couriertracking.model.Location;
+import com.couriertracking.repository.LocationRepository;
+
+/**
+ * {@link LocationRepository} backed by the append-only {@link LocationLog} instead of JPA. Saved
+ * locations get IDs derived from their log sequence; locations read back carry a courier
+ * reference holding only its ID. Courier queries, lookups by ID and full replays are supported;
+ * the log is append-only, so deletes, example queries and sorting or paging across couriers are not.
+ */
+public class LocationLogRepository implements LocationRepository {
+
+    // Marks location IDs issued by the log; the low half is the record's sequence number
+    static final long ID_MOST_SIGNIFICANT_BITS = 0x6c6f636c6f670000L;
+
+    private final LocationLog locationLog;
+
+    public LocationLogRepository(LocationLog locationLog) {
+        this.locationLog = locationLog;
+    }
+
+    @Override
+    public <S extends Location> S save(S location) {
+        if (location.getId() != null) {
+            throw new UnsupportedOperationException("Location log is append-only; location " + location.getId() + " cannot be updated");
+        }
+        if (location.getReceivedAt() == null) {
+            location.setReceivedAt(LocalDateTime.now());
+        }
+        long sequence = locationLog.append(location.getCourier().getId(), location.getTimestamp(),
+            location.getLatitude(), location.getLongitude(), location.getReceivedAt());
+        discardOnRollback(sequence);
+        location.setId(new UUID(ID_MOST_SIGNIFICANT_BITS, sequence));
+        return location;
+    }
+
+    /**
+     * The append cannot join the caller's transaction, so undo it by flagging the record if that rolls back
+     */
+    private void discardOnRollback(long sequence) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    locationLog.discard(sequence);
+                }
+            }
+        });
+    }
+
+    @Override
+    public <S extends Location> List<S> saveAll(Iterable<S> locations) {
+        List<S> saved = new ArrayList<>();
+        locations.forEach(location -> saved.add(save(location)));
+        return saved;
+    }
+
+    @Override
+    public <S extends Location> S saveAndFlush(S location) {
+        return save(location);
+    }
+
+    @Override
+    public <S extends Location> List<S> saveAllAndFlush(Iterable<S> locations) {
+        return saveAll(locations);
+    }
+
+    @Override
+    public void flush() {
+        locationLog.force();
+    }
+
+    @Override
+    public List<Location> findTop2ByCourierIdOrderByTimestampDesc(UUID courierId) {
+        return toLocations(locationLog.newest(courierId, 2));
+    }
+
+    @Override
+    public List<Location> findByCourierIdOrderByTimestampDesc(UUID courierId, Pageable pageable) {
+        if (pageable.isUnpaged()) {
+            return toLocations(locationLog.newest(courierId, Integer.MAX_VALUE));
+        }
+        List<Location> newest = toLocations(locationLog.newest(courierId, (int) pageable.getOffset() + pageable.getPageSize()));
+        return newest.subList(Math.min((int) pageable.getOffset(), newest.size()), newest.size());
+    }
+
+    @Override
+    public List<Location> findByCourierIdAndReceivedAtAfter(UUID courierId, LocalDateTime receivedAt) {
+        return toLocations(locationLog.receivedAfter(courierId, receivedAt));
+    }
+
+    @Override
+    public List<Location> findByCourierIdOrderByTimestampAsc(UUID courierId) {
+        return toLocations(locationLog.trackFrom(courierId, null));
+    }
+
+    @Override
+    public Optional<Location> findFirstByCourierIdAndTimestampBeforeOrderByTimestampDesc(UUID courierId,
+                                                                                         LocalDateTime timestamp) {
+        return toLocations(locationLog.newestBefore(courierId, timestamp, 1)).stream().findFirst();
+    }
+
+    @Override
+    public List<Location> findByCourierIdAndTimestampGreaterThanEqualOrderByTimestampAsc(UUID courierId,
+                                                                                         LocalDateTime timestamp) {
+        return toLocations(locationLog.trackFrom(courierId, timestamp));
+    }
+
+    @Override
+    public Optional<Location> findById(UUID id) {
+        if (id.getMostSignificantBits() != ID_MOST_SIGNIFICANT_BITS) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(locationLog.read(id.getLeastSignificantBits())).map(LocationLogRepository::toLocation);
+    }
+
+    @Override
+    public boolean existsById(UUID id) {
+        return findById(id).isPresent();
+    }
+
+    @Override
+    public List<Location> findAllById(Iterable<UUID> ids) {
+        List<Location> found = new ArrayList<>();
+        ids.forEach(id -> findById(id).ifPresent(found::add));
+        return found;
+    }
+
+    @Override
+    public List<Location> findAll() {
+        List<Location> all = new ArrayList<>();
+        locationLog.replayAll(entry -> all.add(toLocation(entry)));
+        return all;
+    }
+
+    @Override
+    public long count() {
+        return locationLog.size();
+    }
+
+    @Override
+    public Location getReferenceById(UUID id) {
+        return findById(id).orElseThrow(() -> new IllegalArgumentException("No location " + id + " in the location log"));
+    }
+
+    @Override
+    @Deprecated
+    public Location getById(UUID id) {
+        return getReferenceById(id);
+    }
+
+    @Override
+    @Deprecated
+    public Location getOne(UUID id) {
+        return getReferenceById(id);
+    }
+
+    @Override
+    public List<Location> findAll(Sort sort) {
+        throw unsupported("sorted findAll");
+    }
+
+    @Override
+    public Page<Location> findAll(Pageable pageable) {
+        throw unsupported("paged findAll");
+    }
+
+    @Override
+    public void deleteById(UUID id) {
+        throw unsupported("delete");
+    }
+
+    @Override
+    public void delete(Location location) {
+        throw unsupported("delete");
+    }
+
+    @Override
+    public void deleteAllById(Iterable<? extends UUID> ids) {
+        throw unsupported("delete");
+    }
+
+    @Override
+    public void deleteAll(Iterable<? extends Location> locations) {
+        throw unsupported("delete");
+    }
+
+    @Override
+    public void deleteAll() {
+        throw unsupported("delete");
+    }
+
+    @Override
+    public void deleteAllInBatch(Iterable<Location> locations) {
+        throw unsupported("delete");
+    }
+
+    @Override
+    public void deleteAllByIdInBatch(Iterable<UUID> ids) {
+        throw unsupported("delete");
+    }
+
+    @Override
+    public void deleteAllInBatch() {
+        throw unsupported("delete");
+    }
+
+    @Override
+    public <S extends Location> Optional<S> findOne(Example<S> example) {
+        throw unsupported("query by example");
+    }
+
+    @Override
+    public <S extends Location> List<S> findAll(Example<S> example) {
+        throw unsupported("query by example");
+    }
+
+    @Override
+    public <S extends Location> List<S> findAll(Example<S> example, Sort sort) {
+        throw unsupported("query by example");
+    }
+
+    @Override
+    public <S extends Location> Page<S> findAll(Example<S> example, Pageable pageable) {
+        throw unsupported("query by example");
+    }
+
+    @Override
+    public <S extends Location> long count(Example<S> example) {
+        throw unsupported("query by example");
+    }
+
+    @Override
+    public <S extends Location> boolean exists(Example<S> example) {
+        throw unsupported("query by example");
+    }
+
+    @Override
+    public <S extends Location, R> R findBy(Example<S> example,
+                                            Function<FluentQuery.FetchableFluentQuery<S>, R> queryFunction) {
+        throw unsupported("query by example");
+    }
+
+    private static List<Location> toLocations(List<LocationLog.Entry> entries) {
+        List<Location> locations = new ArrayList<>(entries.size());
+        entries.forEach(entry -> locations.add(toLocation(entry)));
+        return locations;
+    }
+
+    static Location toLocation(LocationLog.Entry entry) {
+        Courier courier = new Courier();
+        courier.setId(entry.courierId());
+        return new Location(new UUID(ID_MOST_SIGNIFICANT_BITS, entry.sequence()), courier, entry.latitude(),
+            entry.longitude(), entry.timestamp(), entry.receivedAt());
+    }
+
+    private static UnsupportedOperationException unsupported(String operation) {
+        return new UnsupportedOperationException("The location log does not support " + operation);
+    }
+}
@@ -0,0 +1,109 @@
+package com.couriertracking.storage;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.jdbc.UncategorizedSQLException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import com.couriertracking.model.Courier;
+import com.couriertracking.model.Location;
+
+/**
+ * Streams a courier's full-resolution track oldest first without holding it in memory: from the
+ * {@link LocationLog} engine when it is enabled, otherwise archived days merged by timestamp with a
+ * {@code locations} cursor, both read in one read-only transaction.
+ */
+@Component
+public class LocationTrackReader {
+
+    // Rows fetched per round trip from the locations cursor
+    private static final int FETCH_SIZE = 1000;
+
+    private static final String HOT_LOCATIONS = "SELECT id, timestamp, latitude, longitude, received_at FROM locations "
+        + "WHERE courier_id = ? AND timestamp >= ? AND timestamp < ? ORDER BY timestamp";
+
+    private final LocationArchive locationArchive;
+    private final ObjectProvider<LocationLog> locationLog;
+
+    public LocationTrackReader(LocationArchive locationArchive, ObjectProvider<LocationLog> locationLog) {
+        this.locationArchive = locationArchive;
+        this.locationLog = locationLog;
+    }
+
+    /**
+     * Pass the courier's locations within [from, to) to the consumer in timestamp order
+     * @param from null for the start of the track
+     * @param to null for the end of the track
+     */
+    public void forEach(UUID courierId, LocalDateTime from, LocalDateTime to, Consumer<Location> consumer) {
+        LocationLog logEngine = locationLog.getIfAvailable();
+        if (logEngine != null) {
+            logEngine.forEachInRange(courierId, from, to, entry -> consumer.accept(LocationLogRepository.toLocation(entry)));
+            return;
+        }
+        Courier courier = new Courier();
+        courier.setId(courierId);
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(locationArchive.dataSourceFor(courierId));
+        // Late fixes for an archived day stay in locations until the next archive run, so both are merged by timestamp
+        locationArchive.readOnlyTransactionFor(courierId).executeWithoutResult(status ->
+            jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+                try (PreparedStatement statement = connection.prepareStatement(HOT_LOCATIONS)) {
+                    statement.setFetchSize(FETCH_SIZE);
+                    statement.setObject(1, courierId);
+                    statement.setObject(2, from != null ? from : LocalDateTime.MIN);
+                    statement.setObject(3, to != null ? to : LocalDateTime.MAX);
+                    try (ResultSet hot = statement.executeQuery()) {
+                        HotCursor cursor = new HotCursor(hot, courier, consumer);
+                        locationArchive.forEachLocation(courierId, from, to, location -> {
+                            cursor.emitBefore(location.getTimestamp());
+                            consumer.accept(location);
+                        });
+                        cursor.emitBefore(null);
+                    }
+                }
+                return null;
+            }));
+    }
+
+    /**
+     * The locations cursor, advanced only up to the next archived point
+     */
+    private static final class HotCursor {
+
+        private final ResultSet resultSet;
+        private final Courier courier;
+        private final Consumer<Location> consumer;
+        private boolean onRow;
+
+        HotCursor(ResultSet resultSet, Courier courier, Consumer<Location> consumer) throws SQLException {
+            this.resultSet = resultSet;
+            this.courier = courier;
+            this.consumer = consumer;
+            this.onRow = resultSet.next();
+        }
+
+        /**
+         * Pass on the rows before the given time; all remaining rows if null
+         */
+        void emitBefore(LocalDateTime timestamp) {
+            try {
+                while (onRow && (timestamp == null || resultSet.getObject(2, LocalDateTime.class).isBefore(timestamp))) {
+                    consumer.accept(new Location(resultSet.getObject(1, UUID.class), courier, resultSet.getDouble(3),
+                        resultSet.getDouble(4), resultSet.getObject(2, LocalDateTime.class),
+                        resultSet.getObject(5, LocalDateTime.class)));
+                    onRow = resultSet.next();
+                }
+            } catch (SQLException e) {
+                throw new UncategorizedSQLException("Reading courier track", HOT_LOCATIONS, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.couriertracking.storage;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Columnar encoding of one courier's track. Points are stored column by column: timestamps as
+ * delta-of-delta, then latitudes, longitudes (1e-7 degree fixed point) and receive delays as
+ * deltas, every value a zig-zag varint. Regular reporting intervals and short moves between fixes
+ * encode to one or two bytes per column. Timestamps keep millisecond precision.
+ * <p>
+ * Layout: version byte, point count, then the four columns.
+ */
+public final class TrackBlockCodec {
+
+    private static final byte VERSION = 1;
+    private static final double FIXED_POINT_SCALE = 1e7;
+
+    /**
+     * A point as held in a block
+     */
+    public record Point(long timestampMillis, int latitudeE7, int longitudeE7, long receivedMillis) {
+
+        public static Point of(LocalDateTime timestamp, double latitude, double longitude, LocalDateTime receivedAt) {
+            return new Point(toMillis(timestamp), (int) Math.round(latitude * FIXED_POINT_SCALE),
+                (int) Math.round(longitude * FIXED_POINT_SCALE), toMillis(receivedAt));
+        }
+
+        public LocalDateTime timestamp() {
+            return fromMillis(timestampMillis);
+        }
+
+        public LocalDateTime receivedAt() {
+            return fromMillis(receivedMillis);
+        }
+
+        public double latitude() {
+            return latitudeE7 / FIXED_POINT_SCALE;
+        }
+
+        public double longitude() {
+            return longitudeE7 / FIXED_POINT_SCALE;
+        }
+    }
+
+    private TrackBlockCodec() {
+    }
+
+    /**
+     * @param points in timestamp order
+     */
+    public static byte[] encode(List<Point> points) {
+        Writer writer = new Writer(points.size() * 6 + 8);
+        writer.buffer[writer.length++] = VERSION;
+        writer.varint(points.size());
+
+        long previous = 0;
+        long previousDelta = 0;
+        for (int i = 0; i < points.size(); i++) {
+            long timestamp = points.get(i).timestampMillis();
+            long delta = timestamp - previous;
+            writer.zigZag(i <= 1 ? delta : delta - previousDelta);
+            previousDelta = delta;
+            previous = timestamp;
+        }
+        long previousLatitude = 0;
+        for (Point point : points) {
+            writer.zigZag(point.latitudeE7() - previousLatitude);
+            previousLatitude = point.latitudeE7();
+        }
+        long previousLongitude = 0;
+        for (Point point : points) {
+            writer.zigZag(point.longitudeE7() - previousLongitude);
+            previousLongitude = point.longitudeE7();
+        }
+        long previousDelay = 0;
+        for (Point point : points) {
+            long delay = point.receivedMillis() - point.timestampMillis();
+            writer.zigZag(delay - previousDelay);
+            previousDelay = delay;
+        }
+        return Arrays.copyOf(writer.buffer, writer.length);
+    }
+
+    public static List<Point> decode(byte[] block) {
+        if (block.length == 0 || block[0] != VERSION) {
+            throw new IllegalArgumentException("Unsupported track block version");
+        }
+        Reader reader = new Reader(block);
+        int count = (int) reader.varint();
+
+        long[] timestamps = new long[count];
+        long previous = 0;
+        long previousDelta = 0;
+        for (int i = 0; i < count; i++) {
+            long value = reader.zigZag();
+            long delta = i <= 1 ? value : previousDelta + value;
+            timestamps[i] = previous + delta;
+            previousDelta = delta;
+            previous = timestamps[i];
+        }
+        int[] latitudes = new int[count];
+        long latitude = 0;
+        for (int i = 0; i < count; i++) {
+            latitude += reader.zigZag();
+            latitudes[i] = (int) latitude;
+        }
+        int[] longitudes = new int[count];
+        long longitude = 0;
+        for (int i = 0; i < count; i++) {
+            longitude += reader.zigZag();
+            longitudes[i] = (int) longitude;
+        }
+        List<Point> points = new ArrayList<>(count);
+        long delay = 0;
+        for (int i = 0; i < count; i++) {
+            delay += reader.zigZag();
+            points.add(new Point(timestamps[i], latitudes[i], longitudes[i], timestamps[i] + delay));
+        }
+        return points;
+    }
+
+    static long toMillis(LocalDateTime time) {
+        return time.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    static LocalDateTime fromMillis(long millis) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(millis, 1000), (int) Math.floorMod(millis, 1000) * 1_000_000,
+            ZoneOffset.UTC);
+    }
+
+    private static final class Writer {
+
+        private byte[] buffer;
+        private int length;
+
+        Writer(int capacity) {
+            this.buffer = new byte[Math.max(capacity, 16)];
+        }
+
+        void zigZag(long value) {
+            varint((value << 1) ^ (value >> 63));
+        }
+
+        void varint(long value) {
+            if (length + 10 > buffer.length) {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+            while ((value & ~0x7FL) != 0) {
+                buffer[length++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[length++] = (byte) value;
+        }
+    }
+
+    private static final class Reader {
+
+        private final byte[] buffer;
+        private int position = 1;
+
+        Reader(byte[] buffer) {
+            this.buffer = buffer;
+        }
+
+        long zigZag() {
+            long value = varint();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        long varint() {
+            long value = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte current = buffer[position++];
+                value |= (long) (current & 0x7F) << shift;
+                if (current >= 0) {
+                    return value;
+                }
+            }
+        }
+    }
+}
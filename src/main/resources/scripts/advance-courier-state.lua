@@ -0,0 +1,67 @@
+-- Advance one courier's hot state by a new fix and return the new running total.
+-- KEYS[1]  courier state hash: lat, lon, ts (epoch millis), total (km)
+-- ARGV[1]  latitude
+-- ARGV[2]  longitude
+-- ARGV[3]  timestamp in epoch millis
+-- ARGV[4]  distance algorithm: "haversine" or "euclidean"
+-- ARGV[5]  hash TTL in millis
+-- ARGV[6]  optional seed total, used when the hash is missing
+-- ARGV[7..9] optional seed previous fix (lat, lon, ts), used when the hash is missing
+-- Returns {status, total, segment}; status is first, moved, late or missing.
+-- Numbers are returned as strings, since Redis truncates Lua numbers to integers.
+
+local function format(value)
+    return string.format('%.17g', value)
+end
+
+local function distance(algorithm, lat1, lon1, lat2, lon2)
+    if algorithm == 'haversine' then
+        local rad = math.pi / 180
+        local deltaLat = (lat2 - lat1) * rad
+        local deltaLon = (lon2 - lon1) * rad
+        local a = math.sin(deltaLat / 2) ^ 2
+            + math.cos(lat1 * rad) * math.cos(lat2 * rad) * math.sin(deltaLon / 2) ^ 2
+        return 6371.0 * 2 * math.atan2(math.sqrt(a), math.sqrt(1 - a))
+    end
+    -- Must match EuclideanDistanceStrategy
+    local latMeters = (lat2 - lat1) * 111000.0
+    local lonMeters = (lon2 - lon1) * 85000.0
+    return math.sqrt(latMeters * latMeters + lonMeters * lonMeters) / 1000.0
+end
+
+local key = KEYS[1]
+local lat = tonumber(ARGV[1])
+local lon = tonumber(ARGV[2])
+local ts = tonumber(ARGV[3])
+local ttl = ARGV[5]
+
+local state = redis.call('HMGET', key, 'lat', 'lon', 'ts', 'total')
+if not state[1] then
+    if not ARGV[6] then
+        return {'missing', '0', '0'}
+    end
+    if not ARGV[7] then
+        redis.call('HSET', key, 'lat', ARGV[1], 'lon', ARGV[2], 'ts', ARGV[3], 'total', ARGV[6])
+        redis.call('PEXPIRE', key, ttl)
+        return {'first', ARGV[6], '0'}
+    end
+    state = {ARGV[7], ARGV[8], ARGV[9], ARGV[6]}
+end
+
+local previousLat = tonumber(state[1])
+local previousLon = tonumber(state[2])
+local previousTs = tonumber(state[3])
+local total = tonumber(state[4])
+
+if ts <= previousTs then
+    -- Out of order: the last fix stays, and the late fix adds nothing
+    redis.call('HSET', key, 'lat', state[1], 'lon', state[2], 'ts', state[3], 'total', state[4])
+    redis.call('PEXPIRE', key, ttl)
+    return {'late', format(total), '0'}
+end
+
+local segment = distance(ARGV[4], previousLat, previousLon, lat, lon)
+total = total + segment
+redis.call('HSET', key, 'lat', ARGV[1], 'lon', ARGV[2], 'ts', ARGV[3], 'total', format(total))
+redis.call('PEXPIRE', key, ttl)
+return {'moved', format(total), format(segment)}
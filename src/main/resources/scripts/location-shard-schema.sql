@@ -0,0 +1,22 @@
+-- Tables held by each location shard. Couriers and stores stay in the main database,
+-- so the courier_id and store_id columns carry no foreign keys here.
+CREATE TABLE IF NOT EXISTS locations (
+    id UUID NOT NULL PRIMARY KEY,
+    courier_id UUID NOT NULL,
+    latitude DOUBLE PRECISION NOT NULL,
+    longitude DOUBLE PRECISION NOT NULL,
+    timestamp TIMESTAMP(6) NOT NULL,
+    received_at TIMESTAMP(6) NOT NULL
+);
+CREATE INDEX IF NOT EXISTS idx_courier_timestamp ON locations (courier_id, timestamp);
+CREATE INDEX IF NOT EXISTS idx_courier_received_at ON locations (courier_id, received_at);
+CREATE INDEX IF NOT EXISTS idx_location_timestamp ON locations (timestamp);
+
+CREATE TABLE IF NOT EXISTS store_entrances (
+    id UUID NOT NULL PRIMARY KEY,
+    courier_id UUID NOT NULL,
+    store_id UUID NOT NULL,
+    entrance_time TIMESTAMP(6) NOT NULL
+);
+CREATE INDEX IF NOT EXISTS idx_store_entrance_courier_id ON store_entrances (courier_id);
+CREATE INDEX IF NOT EXISTS idx_store_entrance_store_id ON store_entrances (store_id);
@@ -1,10 +1,16 @@
 package com.couriertracking;
 
+import com.couriertracking.model.GeoPoint;
+import com.couriertracking.model.Store;
 import com.couriertracking.repository.StoreRepository;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 @SpringBootTest
@@ -23,5 +29,21 @@ class StoreDataLoaderServiceTest {
         // Verify specific store exists
         assertTrue(storeRepository.findAll().stream()
             .anyMatch(store -> "Ataşehir MMM Migros".equals(store.getName())));
+        assertNotNull(storeRepository.findLastUpdatedAt());
+    }
+
+    @Test
+    void shouldStampUpdatesThatOnlyChangeTheGeofence() {
+        Store store = storeRepository.findAll().get(0);
+        LocalDateTime before = store.getUpdatedAt();
+
+        store.setGeofence(new ArrayList<>(List.of(new GeoPoint(store.getLatitude(), store.getLongitude()),
+            new GeoPoint(store.getLatitude() + 0.001, store.getLongitude()),
+            new GeoPoint(store.getLatitude(), store.getLongitude() + 0.001))));
+        Store saved = storeRepository.save(store);
+
+        assertNotNull(before);
+        assertTrue(saved.getUpdatedAt().isAfter(before));
+        assertEquals(saved.getUpdatedAt(), storeRepository.findLastUpdatedAt());
     }
 }
\ No newline at end of file
@@ -0,0 +1,169 @@
+package com.couriertracking.benchmark;
+
+import com.couriertracking.geo.Geofence;
+import com.couriertracking.geo.StoreIndex;
+import com.couriertracking.model.GeoPoint;
+import com.couriertracking.model.Store;
+import com.couriertracking.repository.StoreRepository;
+import com.couriertracking.strategy.DistanceCalculationContext;
+import com.couriertracking.strategy.EuclideanDistanceStrategy;
+import com.couriertracking.strategy.HaversineDistanceStrategy;
+import com.couriertracking.util.DistanceUtils;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.UUID;
+import java.util.function.ToIntFunction;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Per-fix cost of entrance lookups over a city-sized store set where half the stores are large
+ * malls with complex (128-vertex, star-shaped) polygon geofences. Compares the original radius scan
+ * over every store with the grid-indexed radius and polygon lookups. Not part of the regular build;
+ * run with {@code mvn test -Dtest=GeofenceBenchmark}.
+ */
+class GeofenceBenchmark {
+
+    private static final int STORES = 2000;
+    private static final int POLYGON_VERTICES = 128;
+    private static final int QUERIES = 200_000;
+    private static final int ROUNDS = 5;
+    private static final double RADIUS_METERS = 100;
+
+    @Test
+    void compareEntranceLookups() {
+        Random random = new Random(7);
+        DistanceUtils distanceUtils = new DistanceUtils(new DistanceCalculationContext(
+            "euclidean", new EuclideanDistanceStrategy(), new HaversineDistanceStrategy()));
+
+        List<Store> plainStores = new ArrayList<>();
+        List<Store> mixedStores = new ArrayList<>();
+        for (int i = 0; i < STORES; i++) {
+            double latitude = 40.85 + random.nextDouble() * 0.3;
+            double longitude = 28.6 + random.nextDouble() * 0.8;
+            plainStores.add(new Store(UUID.randomUUID(), "Store " + i, latitude, longitude));
+            Store mixed = new Store(UUID.randomUUID(), "Store " + i, latitude, longitude);
+            if (i % 2 == 0) {
+                mixed.setGeofence(starPolygon(latitude, longitude, 150 + random.nextDouble() * 250, random));
+            }
+            mixedStores.add(mixed);
+        }
+        StoreIndex plainIndex = index(plainStores, distanceUtils);
+        StoreIndex mixedIndex = index(mixedStores, distanceUtils);
+
+        double[][] queries = new double[QUERIES][2];
+        for (int i = 0; i < QUERIES; i++) {
+            // Bias a third of the queries towards stores so hits are exercised too
+            if (i % 3 == 0) {
+                Store near = mixedStores.get(random.nextInt(STORES));
+                queries[i][0] = near.getLatitude() + (random.nextDouble() - 0.5) * 0.006;
+                queries[i][1] = near.getLongitude() + (random.nextDouble() - 0.5) * 0.008;
+            } else {
+                queries[i][0] = 40.85 + random.nextDouble() * 0.3;
+                queries[i][1] = 28.6 + random.nextDouble() * 0.8;
+            }
+        }
+
+        ToIntFunction<double[]> radiusScan = point -> {
+            int hits = 0;
+            for (Store store : plainStores) {
+                if (distanceUtils.calculateDistanceInMeters(
+                        point[0], point[1], store.getLatitude(), store.getLongitude()) <= RADIUS_METERS) {
+                    hits++;
+                }
+            }
+            return hits;
+        };
+        ToIntFunction<double[]> indexedRadius = point -> {
+            int hits = 0;
+            for (Store store : plainIndex.storesAlong(point[0], point[1], point[0], point[1], RADIUS_METERS)) {
+                if (distanceUtils.calculateDistanceInMeters(
+                        point[0], point[1], store.getLatitude(), store.getLongitude()) <= RADIUS_METERS) {
+                    hits++;
+                }
+            }
+            return hits;
+        };
+        ToIntFunction<double[]> indexedPolygon = point -> {
+            int hits = 0;
+            for (Store store : mixedIndex.storesAlong(point[0], point[1], point[0], point[1], RADIUS_METERS)) {
+                Optional<Geofence> geofence = mixedIndex.geofence(store);
+                boolean inside = geofence.isPresent()
+                    ? geofence.get().contains(point[0], point[1])
+                    : distanceUtils.calculateDistanceInMeters(
+                        point[0], point[1], store.getLatitude(), store.getLongitude()) <= RADIUS_METERS;
+                if (inside) {
+                    hits++;
+                }
+            }
+            return hits;
+        };
+        ToIntFunction<double[]> polygonScan = point -> {
+            int hits = 0;
+            for (Store store : mixedStores) {
+                Optional<Geofence> geofence = mixedIndex.geofence(store);
+                boolean inside = geofence.isPresent()
+                    ? geofence.get().contains(point[0], point[1])
+                    : distanceUtils.calculateDistanceInMeters(
+                        point[0], point[1], store.getLatitude(), store.getLongitude()) <= RADIUS_METERS;
+                if (inside) {
+                    hits++;
+                }
+            }
+            return hits;
+        };
+
+        System.out.println();
+        System.out.printf("%d stores, %d with %d-vertex polygons, %d queries%n",
+            STORES, STORES / 2, POLYGON_VERTICES, QUERIES);
+        System.out.printf("%-28s %12s %10s%n", "lookup", "ns/fix", "hits");
+        report("radius scan (original)", radiusScan, queries, QUERIES / 50);
+        report("polygon scan, no index", polygonScan, queries, QUERIES / 50);
+        report("indexed radius", indexedRadius, queries, QUERIES);
+        report("indexed polygon + radius", indexedPolygon, queries, QUERIES);
+    }
+
+    private void report(String name, ToIntFunction<double[]> lookup, double[][] queries, int queryCount) {
+        long hits = 0;
+        long bestNanos = Long.MAX_VALUE;
+        // First round is warm-up
+        for (int round = 0; round <= ROUNDS; round++) {
+            hits = 0;
+            long start = System.nanoTime();
+            for (int i = 0; i < queryCount; i++) {
+                hits += lookup.applyAsInt(queries[i]);
+            }
+            long elapsed = System.nanoTime() - start;
+            if (round > 0) {
+                bestNanos = Math.min(bestNanos, elapsed);
+            }
+        }
+        System.out.printf("%-28s %12.0f %10d%n", name, (double) bestNanos / queryCount, hits);
+    }
+
+    private static StoreIndex index(List<Store> stores, DistanceUtils distanceUtils) {
+        StoreRepository storeRepository = mock(StoreRepository.class);
+        when(storeRepository.findAll()).thenReturn(stores);
+        StoreIndex storeIndex = new StoreIndex(storeRepository, distanceUtils, new SimpleMeterRegistry());
+        storeIndex.refresh();
+        return storeIndex;
+    }
+
+    private static List<GeoPoint> starPolygon(double latitude, double longitude, double radiusMeters, Random random) {
+        List<GeoPoint> vertices = new ArrayList<>();
+        for (int i = 0; i < POLYGON_VERTICES; i++) {
+            double angle = 2 * Math.PI * i / POLYGON_VERTICES;
+            double reach = radiusMeters * (i % 2 == 0 ? 1.0 : 0.4 + random.nextDouble() * 0.4);
+            vertices.add(new GeoPoint(
+                latitude + reach * Math.cos(angle) / 111320.0,
+                longitude + reach * Math.sin(angle) / (111320.0 * Math.cos(Math.toRadians(latitude)))));
+        }
+        return vertices;
+    }
+}
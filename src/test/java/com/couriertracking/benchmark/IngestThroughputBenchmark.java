@@ -0,0 +1,131 @@
+package com.couriertracking.benchmark;
+
+import com.couriertracking.cache.CourierDistanceCache;
+import com.couriertracking.dto.CourierCreateRequest;
+import com.couriertracking.dto.LocationUpdateRequest;
+import com.couriertracking.service.CourierService;
+import com.couriertracking.service.DistanceCalculationService;
+import com.couriertracking.service.LocationIngestService;
+import com.couriertracking.service.LocationTrackingService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+/**
+ * Compares the unguarded transactional path with the default ingest path (inline under the
+ * courier's lock) and the sync-on-shard path (queued on the shard, request thread waits) under
+ * concurrent load.
+ * Each courier's fixes are submitted from several client threads at once, mimicking retries and
+ * parallel uploads. Not part of the regular build; run with
+ * {@code mvn test -Dtest=IngestThroughputBenchmark}.
+ */
+@SpringBootTest
+class IngestThroughputBenchmark {
+
+    private static final int COURIERS = 50;
+    private static final int FIXES_PER_COURIER = 40;
+    private static final int CLIENT_THREADS = 16;
+
+    @Autowired
+    private CourierService courierService;
+
+    @Autowired
+    private LocationTrackingService locationTrackingService;
+
+    @Autowired
+    private LocationIngestService locationIngestService;
+
+    @Autowired
+    private DistanceCalculationService distanceCalculationService;
+
+    @MockitoBean
+    private CourierDistanceCache courierDistanceCache;
+
+    @Test
+    void compareTransactionalAndShardedPaths() throws Exception {
+        when(courierDistanceCache.getFromCache(any())).thenReturn(Optional.empty());
+
+        // Warm up JIT, connection pool and Hibernate metadata
+        run("warmup", request -> locationIngestService.ingest(request, null));
+
+        Result direct = run("transactional", request -> locationTrackingService.updateCourierLocation(request));
+        Result inline = run("inline-lock", request -> locationIngestService.ingest(request, null));
+        ReflectionTestUtils.setField(locationIngestService, "syncOnShard", true);
+        Result sharded;
+        try {
+            sharded = run("sharded", request -> locationIngestService.ingest(request, null));
+        } finally {
+            ReflectionTestUtils.setField(locationIngestService, "syncOnShard", false);
+        }
+
+        System.out.printf("%-14s %10s %12s %18s%n", "path", "updates", "updates/s", "wrong totals");
+        for (Result result : List.of(direct, inline, sharded)) {
+            System.out.printf("%-14s %10d %12.0f %13d / %d%n",
+                result.name, result.updates, result.throughput, result.wrongTotals, COURIERS);
+        }
+        System.out.println("Inline and sharded wrong totals, if any, come from fixes arriving out of timestamp order, not from races.");
+    }
+
+    private Result run(String name, Consumer<LocationUpdateRequest> path) throws Exception {
+        List<UUID> couriers = new ArrayList<>();
+        for (int i = 0; i < COURIERS; i++) {
+            couriers.add(courierService.createCourier(new CourierCreateRequest(
+                "Bench " + name + " " + i, name + i + "@bench.com", "+90555" + (1000000 + i) + name.length())).getId());
+        }
+
+        // Every courier moves east in equal steps, so its exact total is known up front.
+        // A courier's fixes are submitted back to back, so several client threads handle them at once.
+        LocalDateTime start = LocalDateTime.now();
+        double stepDegrees = 0.001;
+        List<LocationUpdateRequest> requests = new ArrayList<>();
+        for (UUID courierId : couriers) {
+            for (int fix = 0; fix < FIXES_PER_COURIER; fix++) {
+                requests.add(new LocationUpdateRequest(
+                    courierId, 40.99, 29.10 + fix * stepDegrees, start.plusSeconds(fix * 10L)));
+            }
+        }
+
+        ExecutorService clients = Executors.newFixedThreadPool(CLIENT_THREADS);
+        long began = System.nanoTime();
+        List<Future<?>> futures = new ArrayList<>();
+        for (LocationUpdateRequest request : requests) {
+            futures.add(clients.submit(() -> path.accept(request)));
+        }
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (Exception ignored) {
+                // Lost updates show up as wrong totals below
+            }
+        }
+        double seconds = (System.nanoTime() - began) / 1_000_000_000.0;
+        clients.shutdown();
+
+        double expectedKm = (FIXES_PER_COURIER - 1) * stepDegrees * 85.0; // Euclidean: 85 km per degree longitude
+        int wrongTotals = 0;
+        for (UUID courierId : couriers) {
+            if (Math.abs(distanceCalculationService.getTotalTravelDistance(courierId) - expectedKm) > 1e-6) {
+                wrongTotals++;
+            }
+        }
+        return new Result(name, requests.size(), requests.size() / seconds, wrongTotals);
+    }
+
+    private record Result(String name, int updates, double throughput, int wrongTotals) {
+    }
+}
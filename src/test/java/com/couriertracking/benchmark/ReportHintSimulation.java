@@ -0,0 +1,171 @@
+package com.couriertracking.benchmark;
+
+import com.couriertracking.geo.StoreIndex;
+import com.couriertracking.model.Store;
+import com.couriertracking.repository.StoreRepository;
+import com.couriertracking.service.ReportIntervalAdvisor;
+import com.couriertracking.state.CourierStateRegistry;
+import com.couriertracking.strategy.DistanceCalculationContext;
+import com.couriertracking.strategy.EuclideanDistanceStrategy;
+import com.couriertracking.strategy.HaversineDistanceStrategy;
+import com.couriertracking.util.DistanceUtils;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Simulates a synthetic fleet for one hour and compares a fixed 5 s reporting rate with devices
+ * that follow the server's next-report hint. A store visit counts as detected when at least one
+ * report lands inside the entrance radius. Not part of the regular build; run with
+ * {@code mvn test -Dtest=ReportHintSimulation}.
+ */
+class ReportHintSimulation {
+
+    private static final int COURIERS = 200;
+    private static final int SIMULATED_SECONDS = 3600;
+    private static final int FIXED_INTERVAL_SECONDS = 5;
+    private static final int ENTRANCE_RADIUS_METERS = 100;
+    private static final double METERS_PER_DEGREE_LATITUDE = 111000.0;
+    private static final double METERS_PER_DEGREE_LONGITUDE = 85000.0;
+
+    private static final List<Store> STORES = List.of(
+        new Store(UUID.randomUUID(), "Ataşehir MMM Migros", 40.9923307, 29.1244229),
+        new Store(UUID.randomUUID(), "Novada MMM Migros", 40.986106, 29.1161293),
+        new Store(UUID.randomUUID(), "Beylikdüzü 5M Migros", 41.0066851, 28.6552262),
+        new Store(UUID.randomUUID(), "Ortaköy MMM Migros", 41.055783, 29.0210292),
+        new Store(UUID.randomUUID(), "Caddebostan MMM Migros", 40.9632463, 29.0630908)
+    );
+
+    @Test
+    void compareFixedAndHintedReporting() {
+        DistanceUtils distanceUtils = new DistanceUtils(new DistanceCalculationContext(
+            "euclidean", new EuclideanDistanceStrategy(), new HaversineDistanceStrategy()));
+        StoreRepository storeRepository = mock(StoreRepository.class);
+        when(storeRepository.findAll()).thenReturn(STORES);
+        ReportIntervalAdvisor advisor = new ReportIntervalAdvisor(
+            new CourierStateRegistry(), new StoreIndex(storeRepository, distanceUtils, new SimpleMeterRegistry()), distanceUtils);
+        ReflectionTestUtils.setField(advisor, "entranceRadiusMeters", ENTRANCE_RADIUS_METERS);
+        ReflectionTestUtils.setField(advisor, "enabled", true);
+        ReflectionTestUtils.setField(advisor, "minSeconds", FIXED_INTERVAL_SECONDS);
+        ReflectionTestUtils.setField(advisor, "maxSeconds", 120);
+        ReflectionTestUtils.setField(advisor, "speedFloorMetersPerSecond", 5.0);
+        ReflectionTestUtils.setField(advisor, "safetyFactor", 0.5);
+        ReflectionTestUtils.setField(advisor, "speedSmoothing", 0.3);
+
+        Random random = new Random(42);
+        LocalDateTime start = LocalDateTime.of(2025, 1, 1, 12, 0);
+        long fixedReports = 0;
+        long hintedReports = 0;
+        long visits = 0;
+        long fixedDetected = 0;
+        long hintedDetected = 0;
+
+        for (int c = 0; c < COURIERS; c++) {
+            UUID courierId = UUID.randomUUID();
+            SyntheticCourier courier = new SyntheticCourier(random);
+            int nextHintedReport = 0;
+            boolean inside = false;
+            boolean fixedSawVisit = false;
+            boolean hintedSawVisit = false;
+
+            for (int t = 0; t < SIMULATED_SECONDS; t++) {
+                courier.step(random);
+                boolean nowInside = courier.distanceToTarget() <= ENTRANCE_RADIUS_METERS;
+                if (nowInside && !inside) {
+                    visits++;
+                    fixedSawVisit = false;
+                    hintedSawVisit = false;
+                }
+                if (!nowInside && inside) {
+                    fixedDetected += fixedSawVisit ? 1 : 0;
+                    hintedDetected += hintedSawVisit ? 1 : 0;
+                }
+                inside = nowInside;
+
+                if (t % FIXED_INTERVAL_SECONDS == 0) {
+                    fixedReports++;
+                    fixedSawVisit |= nowInside;
+                }
+                if (t >= nextHintedReport) {
+                    hintedReports++;
+                    hintedSawVisit |= nowInside;
+                    nextHintedReport = t + advisor.advise(courierId, courier.latitude, courier.longitude, start.plusSeconds(t));
+                }
+            }
+            if (inside) {
+                fixedDetected += fixedSawVisit ? 1 : 0;
+                hintedDetected += hintedSawVisit ? 1 : 0;
+            }
+        }
+
+        System.out.println();
+        System.out.printf("%-8s %12s %12s %14s%n", "mode", "requests", "req/courier", "visits seen");
+        System.out.printf("%-8s %12d %12.1f %9d / %d%n", "fixed", fixedReports, (double) fixedReports / COURIERS, fixedDetected, visits);
+        System.out.printf("%-8s %12d %12.1f %9d / %d%n", "hinted", hintedReports, (double) hintedReports / COURIERS, hintedDetected, visits);
+        System.out.printf("request reduction: %.1f%%%n", 100.0 * (fixedReports - hintedReports) / fixedReports);
+    }
+
+    /**
+     * Drives between random stores at 5-15 m/s, waits 2-8 minutes at each, and sometimes parks
+     * somewhere on the way for a while.
+     */
+    private static final class SyntheticCourier {
+
+        private double latitude;
+        private double longitude;
+        private Store target;
+        private double speed;
+        private int waitSeconds;
+
+        SyntheticCourier(Random random) {
+            Store origin = STORES.get(random.nextInt(STORES.size()));
+            latitude = origin.getLatitude() + (random.nextDouble() - 0.5) * 0.1;
+            longitude = origin.getLongitude() + (random.nextDouble() - 0.5) * 0.1;
+            pickTarget(random);
+        }
+
+        void step(Random random) {
+            if (waitSeconds > 0) {
+                waitSeconds--;
+                return;
+            }
+            double remaining = distanceToTarget();
+            if (remaining <= 1) {
+                waitSeconds = 120 + random.nextInt(360);
+                pickTarget(random);
+                return;
+            }
+            if (random.nextInt(1800) == 0) {
+                // Traffic light, break, customer hand-off
+                waitSeconds = 30 + random.nextInt(300);
+                return;
+            }
+            double fraction = Math.min(1, speed / remaining);
+            latitude += (target.getLatitude() - latitude) * fraction;
+            longitude += (target.getLongitude() - longitude) * fraction;
+        }
+
+        double distanceToTarget() {
+            double dLat = (target.getLatitude() - latitude) * METERS_PER_DEGREE_LATITUDE;
+            double dLon = (target.getLongitude() - longitude) * METERS_PER_DEGREE_LONGITUDE;
+            return Math.sqrt(dLat * dLat + dLon * dLon);
+        }
+
+        private void pickTarget(Random random) {
+            Store next;
+            do {
+                next = STORES.get(random.nextInt(STORES.size()));
+            } while (next == target);
+            target = next;
+            speed = 5 + random.nextDouble() * 10;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.couriertracking.benchmark;
+
+import com.couriertracking.cache.CourierDistanceCache;
+import com.couriertracking.dto.StoreLoadReport;
+import com.couriertracking.geo.StoreIndex;
+import com.couriertracking.geo.StoreSnapshotFile;
+import com.couriertracking.repository.StoreRepository;
+import com.couriertracking.service.StoreCatalogImporter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Loads a synthetic national catalogue through the streaming importer: a cold load into an empty
+ * table, then a re-run where every store is unchanged. Then compares time-to-ready of a warm restart
+ * (database already populated) via the JSON path and via the binary store snapshot.
+ * Not part of the regular build; run with
+ * {@code mvn test -Dtest=StoreLoadBenchmark}.
+ */
+@SpringBootTest
+class StoreLoadBenchmark {
+
+    private static final int STORES = 100_000;
+
+    @Autowired
+    private StoreCatalogImporter storeCatalogImporter;
+
+    @Autowired
+    private StoreRepository storeRepository;
+
+    @Autowired
+    private StoreIndex storeIndex;
+
+    @MockitoBean
+    private CourierDistanceCache courierDistanceCache;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void loadLargeCatalogue() throws IOException {
+        Path catalogue = writeCatalogue(tempDir.resolve("stores.json"));
+        Runtime runtime = Runtime.getRuntime();
+
+        System.out.println();
+        System.out.printf("%d stores, %.1f MB of JSON%n", STORES, Files.size(catalogue) / 1_048_576.0);
+        System.out.printf("%-10s %10s %10s %10s %10s %12s%n", "run", "ms", "inserted", "updated", "unchanged", "heap MB");
+        for (String run : new String[]{"cold", "re-run"}) {
+            System.gc();
+            try (InputStream inputStream = Files.newInputStream(catalogue)) {
+                StoreLoadReport report = storeCatalogImporter.importCatalogue(inputStream);
+                System.out.printf("%-10s %10d %10d %10d %10d %12.0f%n", run, report.getDurationMillis(),
+                    report.getInserted(), report.getUpdated(), report.getUnchanged(),
+                    (runtime.totalMemory() - runtime.freeMemory()) / 1_048_576.0);
+            }
+        }
+
+        StoreSnapshotFile snapshotFile = new StoreSnapshotFile(storeIndex, tempDir.resolve("stores.snapshot").toString());
+        storeIndex.refresh();
+        snapshotFile.write(1L);
+        System.out.printf("%nwarm restart, time to ready (best of 3) - snapshot %.1f MB%n",
+            Files.size(snapshotFile.getPath()) / 1_048_576.0);
+        long jsonBest = Long.MAX_VALUE;
+        long snapshotBest = Long.MAX_VALUE;
+        for (int i = 0; i < 3; i++) {
+            long start = System.nanoTime();
+            try (InputStream inputStream = Files.newInputStream(catalogue)) {
+                storeCatalogImporter.importCatalogue(inputStream);
+            }
+            storeIndex.refresh();
+            jsonBest = Math.min(jsonBest, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            if (!snapshotFile.restore(1L, storeRepository.count(), storeRepository.findLastUpdatedAt())) {
+                throw new IllegalStateException("Snapshot not restored");
+            }
+            snapshotBest = Math.min(snapshotBest, System.nanoTime() - start);
+        }
+        System.out.printf("%-24s %10d ms%n", "JSON + index build", jsonBest / 1_000_000);
+        System.out.printf("%-24s %10d ms%n", "mapped snapshot", snapshotBest / 1_000_000);
+    }
+
+    private Path writeCatalogue(Path path) throws IOException {
+        Random random = new Random(1);
+        try (BufferedWriter writer = Files.newBufferedWriter(path)) {
+            writer.write("[\n");
+            for (int i = 0; i < STORES; i++) {
+                writer.write(String.format(Locale.ROOT, "{\"externalId\":\"bench-%d\",\"name\":\"Store %d\",\"lat\":%.7f,\"lng\":%.7f}%s%n",
+                    i, i, 36 + random.nextDouble() * 6, 26 + random.nextDouble() * 18, i + 1 < STORES ? "," : ""));
+            }
+            writer.write("]\n");
+        }
+        return path;
+    }
+}
@@ -0,0 +1,108 @@
+package com.couriertracking.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("CourierDistanceCache Tests")
+class CourierDistanceCacheTest {
+
+    @Mock
+    private StringRedisTemplate redis;
+
+    @Mock
+    private ValueOperations<String, String> valueOperations;
+
+    @Mock
+    private RedisOperations<String, String> pipelineOperations;
+
+    @Mock
+    private ValueOperations<String, String> pipelineValueOperations;
+
+    private SimpleMeterRegistry meterRegistry;
+    private CourierDistanceCache cache;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        cache = new CourierDistanceCache(redis, meterRegistry);
+    }
+
+    @Test
+    @DisplayName("Should write the total and its TTL in a single SET")
+    void shouldSetWithTtl() {
+        UUID courierId = UUID.randomUUID();
+        when(redis.opsForValue()).thenReturn(valueOperations);
+
+        cache.saveToCache(courierId, 4.5);
+
+        verify(valueOperations).set("courier:distance:" + courierId, "4.5", Duration.ofHours(24));
+        verify(redis, never()).expire(anyString(), any(Duration.class));
+    }
+
+    @Test
+    @DisplayName("Should keep only the latest total per courier and flush dirty entries in one pipeline")
+    @SuppressWarnings("unchecked")
+    void shouldCoalesceWritesIntoOnePipeline() {
+        ReflectionTestUtils.setField(cache, "coalescingEnabled", true);
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        when(pipelineOperations.opsForValue()).thenReturn(pipelineValueOperations);
+        when(redis.executePipelined(any(SessionCallback.class))).thenAnswer(invocation -> {
+            invocation.getArgument(0, SessionCallback.class).execute(pipelineOperations);
+            return null;
+        });
+
+        cache.saveToCache(first, 1.0);
+        cache.saveToCache(first, 2.0);
+        cache.saveToCache(first, 3.0);
+        cache.saveToCache(second, 7.0);
+
+        // Reads see the pending total before it reaches Redis
+        assertThat(cache.getFromCache(first)).contains(3.0);
+        verifyNoInteractions(valueOperations);
+
+        assertThat(cache.flush()).isEqualTo(2);
+        verify(redis, times(1)).executePipelined(any(SessionCallback.class));
+        verify(pipelineValueOperations).set("courier:distance:" + first, "3.0", Duration.ofHours(24));
+        verify(pipelineValueOperations).set("courier:distance:" + second, "7.0", Duration.ofHours(24));
+        assertThat(cache.dirtyCount()).isZero();
+        assertThat(meterRegistry.get("courier.cache.commands.saved").counter().count()).isEqualTo(2.0);
+        assertThat(meterRegistry.get("courier.cache.flush").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should keep entries dirty when the pipelined flush fails")
+    @SuppressWarnings("unchecked")
+    void shouldRetryFailedFlush() {
+        ReflectionTestUtils.setField(cache, "coalescingEnabled", true);
+        when(redis.executePipelined(any(SessionCallback.class))).thenThrow(new IllegalStateException("connection refused"));
+
+        cache.saveToCache(UUID.randomUUID(), 1.0);
+
+        assertThat(cache.flush()).isZero();
+        assertThat(cache.dirtyCount()).isEqualTo(1);
+    }
+}
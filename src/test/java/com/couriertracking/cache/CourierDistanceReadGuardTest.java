@@ -0,0 +1,117 @@
+package com.couriertracking.cache;
+
+import com.couriertracking.exception.CourierNotFoundException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("CourierDistanceReadGuard Tests")
+class CourierDistanceReadGuardTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private CourierDistanceReadGuard guard;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        guard = new CourierDistanceReadGuard(meterRegistry);
+        ReflectionTestUtils.setField(guard, "negativeTtlSeconds", 30L);
+        ReflectionTestUtils.setField(guard, "maxNegativeEntries", 2);
+    }
+
+    @Test
+    @DisplayName("Should run one load for concurrent misses on the same courier and share its result")
+    void shouldCoalesceConcurrentLoads() throws Exception {
+        UUID courierId = UUID.randomUUID();
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch loaderStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            Future<Double> leader = pool.submit(() -> guard.load(courierId, () -> {
+                loads.incrementAndGet();
+                loaderStarted.countDown();
+                await(release);
+                return 12.5;
+            }));
+            assertThat(loaderStarted.await(5, TimeUnit.SECONDS)).isTrue();
+
+            List<Future<Double>> followers = new ArrayList<>();
+            for (int i = 0; i < 7; i++) {
+                followers.add(pool.submit(() -> guard.load(courierId, () -> {
+                    loads.incrementAndGet();
+                    return -1.0;
+                })));
+            }
+            // Let every follower join the flight before the leader finishes
+            while (meterRegistry.get("courier.distance.read.coalesced").counter().count() < 7) {
+                Thread.onSpinWait();
+            }
+            release.countDown();
+
+            assertThat(leader.get(5, TimeUnit.SECONDS)).isEqualTo(12.5);
+            for (Future<Double> follower : followers) {
+                assertThat(follower.get(5, TimeUnit.SECONDS)).isEqualTo(12.5);
+            }
+            assertThat(loads).hasValue(1);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("Should rethrow the loader's exception to every waiter and allow a fresh load afterwards")
+    void shouldShareFailuresWithoutCachingThem() {
+        UUID courierId = UUID.randomUUID();
+
+        assertThatThrownBy(() -> guard.load(courierId, () -> {
+            throw new CourierNotFoundException("Courier not found");
+        })).isInstanceOf(CourierNotFoundException.class);
+
+        assertThat(guard.load(courierId, () -> 3.0)).isEqualTo(3.0);
+    }
+
+    @Test
+    @DisplayName("Should remember unknown couriers until the TTL expires and stay bounded")
+    void shouldExpireNegativeEntries() {
+        UUID unknown = UUID.randomUUID();
+        guard.rememberUnknown(unknown);
+        assertThat(guard.isKnownUnknown(unknown)).isTrue();
+        assertThat(meterRegistry.get("courier.distance.read.negative.hits").counter().count()).isEqualTo(1.0);
+
+        ReflectionTestUtils.setField(guard, "negativeTtlSeconds", 0L);
+        UUID expired = UUID.randomUUID();
+        guard.rememberUnknown(expired);
+        assertThat(guard.isKnownUnknown(expired)).isFalse();
+
+        // At capacity with nothing expired, the map is cleared instead of growing
+        ReflectionTestUtils.setField(guard, "negativeTtlSeconds", 30L);
+        guard.rememberUnknown(UUID.randomUUID());
+        guard.rememberUnknown(UUID.randomUUID());
+        guard.rememberUnknown(UUID.randomUUID());
+        assertThat(guard.isKnownUnknown(unknown)).isFalse();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.couriertracking.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("EntranceCooldownGate Tests")
+class EntranceCooldownGateTest {
+
+    @Mock
+    private StringRedisTemplate redis;
+
+    @Mock
+    private ValueOperations<String, String> valueOperations;
+
+    private SimpleMeterRegistry meterRegistry;
+    private EntranceCooldownGate gate;
+    private UUID courierId;
+    private UUID storeId;
+    private LocalDateTime entranceTime;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        gate = new EntranceCooldownGate(redis, meterRegistry);
+        ReflectionTestUtils.setField(gate, "entranceCooldownMinutes", 1);
+        courierId = UUID.randomUUID();
+        storeId = UUID.randomUUID();
+        entranceTime = LocalDateTime.of(2025, 1, 1, 12, 0);
+        when(redis.opsForValue()).thenReturn(valueOperations);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    @DisplayName("Should acquire the cooldown with one SET NX carrying the cooldown as its expiry")
+    void shouldAcquireWithSetNx() {
+        String key = "courier:entrance:cooldown:" + courierId + ":" + storeId;
+        when(valueOperations.setIfAbsent(key, entranceTime.toString(), Duration.ofMinutes(1))).thenReturn(true, false);
+
+        assertThat(gate.tryAcquire(courierId, storeId, entranceTime)).isEqualTo(EntranceCooldownGate.Decision.ACQUIRED);
+        assertThat(gate.tryAcquire(courierId, storeId, entranceTime)).isEqualTo(EntranceCooldownGate.Decision.HELD);
+        assertThat(meterRegistry.get("courier.store.entrance.cooldown").tag("result", "held").counter().count())
+            .isEqualTo(1.0);
+    }
+
+    @Test
+    @DisplayName("Should report Redis failures as unavailable")
+    void shouldReportUnavailable() {
+        when(valueOperations.setIfAbsent(anyString(), anyString(), any(Duration.class)))
+            .thenThrow(new RedisConnectionFailureException("connection refused"));
+
+        assertThat(gate.tryAcquire(courierId, storeId, entranceTime)).isEqualTo(EntranceCooldownGate.Decision.UNAVAILABLE);
+    }
+
+    @Test
+    @DisplayName("Should release the cooldown when the transaction that logged the entrance rolls back")
+    void shouldReleaseOnRollback() {
+        TransactionSynchronizationManager.initSynchronization();
+        when(valueOperations.setIfAbsent(anyString(), anyString(), any(Duration.class))).thenReturn(true);
+
+        gate.tryAcquire(courierId, storeId, entranceTime);
+        TransactionSynchronizationManager.getSynchronizations()
+            .forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+
+        verify(redis).delete(eq("courier:entrance:cooldown:" + courierId + ":" + storeId));
+    }
+}
@@ -0,0 +1,149 @@
+package com.couriertracking.cache;
+
+import com.couriertracking.model.Location;
+import com.couriertracking.state.TrackPoint;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("RedisCourierState Tests")
+class RedisCourierStateTest {
+
+    @Mock
+    private StringRedisTemplate redis;
+
+    private SimpleMeterRegistry meterRegistry;
+    private RedisCourierState state;
+    private UUID courierId;
+    private Location location;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        state = new RedisCourierState(redis, meterRegistry);
+        ReflectionTestUtils.setField(state, "ttlHours", 24L);
+        ReflectionTestUtils.setField(state, "algorithm", "Haversine");
+
+        courierId = UUID.randomUUID();
+        location = new Location();
+        location.setLatitude(40.986106);
+        location.setLongitude(29.1161293);
+        location.setTimestamp(LocalDateTime.of(2025, 1, 1, 12, 0, 30));
+    }
+
+    @Test
+    @DisplayName("Should advance the courier hash with one script call and parse the new total")
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    void shouldAdvanceInOneCall() {
+        when(redis.execute(any(RedisScript.class), eq(List.of("courier:state:" + courierId)), any(Object[].class)))
+            .thenReturn(List.of("moved", "12.75", "0.25"));
+
+        Optional<RedisCourierState.Advance> advance = state.advance(courierId, location, null);
+
+        assertThat(advance).contains(new RedisCourierState.Advance(RedisCourierState.Status.MOVED, 12.75, 0.25));
+        ArgumentCaptor<RedisScript> script = ArgumentCaptor.forClass(RedisScript.class);
+        ArgumentCaptor<Object[]> args = ArgumentCaptor.forClass(Object[].class);
+        verify(redis).execute(script.capture(), eq(List.of("courier:state:" + courierId)), args.capture());
+        assertThat(script.getValue().getScriptAsString()).contains("HMGET");
+        assertThat(args.getValue()).containsExactly(
+            "40.986106", "29.1161293", Long.toString(epochMillis(location.getTimestamp())), "haversine", "86400000");
+    }
+
+    @Test
+    @DisplayName("Should pass the seed total and previous fix when rebuilding a missing hash")
+    @SuppressWarnings("unchecked")
+    void shouldPassSeed() {
+        LocalDateTime previousAt = location.getTimestamp().minusSeconds(30);
+        when(redis.execute(any(RedisScript.class), any(List.class), any(Object[].class)))
+            .thenReturn(List.of("moved", "5.5", "0.5"));
+
+        state.advance(courierId, location,
+            new RedisCourierState.Seed(5.0, new TrackPoint(previousAt, 40.9923307, 29.1244229)));
+
+        ArgumentCaptor<Object[]> args = ArgumentCaptor.forClass(Object[].class);
+        verify(redis).execute(any(RedisScript.class), any(List.class), args.capture());
+        assertThat(args.getValue()).hasSize(9);
+        assertThat(args.getValue()).endsWith("5.0", "40.9923307", "29.1244229", Long.toString(epochMillis(previousAt)));
+        assertThat(meterRegistry.get("courier.distance.redis.seeds").counter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    @DisplayName("Should report an unreachable Redis as empty and count the fallback")
+    @SuppressWarnings("unchecked")
+    void shouldFallBackWhenRedisFails() {
+        when(redis.execute(any(RedisScript.class), any(List.class), any(Object[].class)))
+            .thenThrow(new RedisConnectionFailureException("connection refused"));
+
+        assertThat(state.advance(courierId, location, null)).isEmpty();
+        assertThat(meterRegistry.get("courier.distance.redis.fallbacks").counter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    @DisplayName("Should drop a hash left behind by a fallback before Redis is used for the courier again")
+    @SuppressWarnings("unchecked")
+    void shouldDropStaleHashAfterOutage() {
+        when(redis.delete(anyString())).thenThrow(new RedisConnectionFailureException("connection refused")).thenReturn(true);
+        when(redis.execute(any(RedisScript.class), any(List.class), any(Object[].class)))
+            .thenReturn(List.of("missing", "0", "0"));
+
+        assertThat(state.evict(courierId)).isFalse();
+        // Redis is back: the stale hash goes first, so the advance finds it missing and reseeds
+        assertThat(state.advance(courierId, location, null))
+            .contains(new RedisCourierState.Advance(RedisCourierState.Status.MISSING, 0.0, 0.0));
+
+        InOrder order = inOrder(redis);
+        order.verify(redis, times(2)).delete("courier:state:" + courierId);
+        order.verify(redis).execute(any(RedisScript.class), any(List.class), any(Object[].class));
+    }
+
+    @Test
+    @DisplayName("Should drop the hash when the ingest transaction that advanced it rolls back")
+    @SuppressWarnings("unchecked")
+    void shouldDropHashOnRollback() {
+        when(redis.execute(any(RedisScript.class), any(List.class), any(Object[].class)))
+            .thenReturn(List.of("moved", "12.75", "0.25"));
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            state.advance(courierId, location, null);
+            TransactionSynchronizationManager.getSynchronizations()
+                .forEach(synchronization -> synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        verify(redis).delete("courier:state:" + courierId);
+    }
+
+    private static long epochMillis(LocalDateTime timestamp) {
+        return timestamp.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+}
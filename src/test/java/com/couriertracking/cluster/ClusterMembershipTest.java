@@ -0,0 +1,74 @@
+package com.couriertracking.cluster;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("ClusterMembership Tests")
+class ClusterMembershipTest {
+
+    private static final String SELF = "http://localhost:8081/api";
+    private static final String OTHER = "http://localhost:8082/api";
+
+    @TempDir
+    Path tempDir;
+
+    private ClusterMembership membership;
+
+    @BeforeEach
+    void setUp() {
+        membership = new ClusterMembership();
+        ReflectionTestUtils.setField(membership, "enabled", true);
+        ReflectionTestUtils.setField(membership, "self", SELF + "/");
+        ReflectionTestUtils.setField(membership, "members", "");
+        ReflectionTestUtils.setField(membership, "membersFile", "");
+        ReflectionTestUtils.setField(membership, "virtualNodes", 64);
+    }
+
+    @Test
+    @DisplayName("Should build the ring from the static member list and always include this instance")
+    void shouldIncludeSelf() {
+        ReflectionTestUtils.setField(membership, "members", " " + OTHER + "/ ");
+
+        assertThat(membership.reload()).isTrue();
+        assertThat(membership.members()).containsExactlyInAnyOrder(SELF, OTHER);
+        assertThat(membership.reload()).isFalse();
+    }
+
+    @Test
+    @DisplayName("Should pick up changes to the members file and keep the ring when it cannot be read")
+    void shouldReloadMembersFile() throws IOException {
+        Path file = tempDir.resolve("members.txt");
+        Files.writeString(file, "# cluster\n" + SELF + "\n");
+        ReflectionTestUtils.setField(membership, "membersFile", file.toString());
+
+        assertThat(membership.reload()).isTrue();
+        UUID courierId = UUID.randomUUID();
+        assertThat(membership.isLocal(courierId)).isTrue();
+
+        Files.writeString(file, SELF + "\n" + OTHER + "\n");
+        assertThat(membership.reload()).isTrue();
+        assertThat(membership.members()).containsExactlyInAnyOrder(SELF, OTHER);
+
+        Files.delete(file);
+        assertThat(membership.reload()).isFalse();
+        assertThat(membership.members()).containsExactlyInAnyOrder(SELF, OTHER);
+    }
+
+    @Test
+    @DisplayName("Should own every courier while clustering is disabled")
+    void shouldOwnEverythingWhenDisabled() {
+        ReflectionTestUtils.setField(membership, "enabled", false);
+
+        assertThat(membership.isLocal(UUID.randomUUID())).isTrue();
+    }
+}
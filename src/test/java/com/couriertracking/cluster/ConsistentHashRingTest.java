@@ -0,0 +1,68 @@
+package com.couriertracking.cluster;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("ConsistentHashRing Tests")
+class ConsistentHashRingTest {
+
+    private static final List<String> THREE = List.of(
+        "http://localhost:8081/api", "http://localhost:8082/api", "http://localhost:8083/api");
+
+    private final List<UUID> couriers = IntStream.range(0, 30_000)
+        .mapToObj(i -> new UUID(0x5eedL, i * 0x9E3779B97F4A7C15L))
+        .toList();
+
+    @Test
+    @DisplayName("Should spread couriers evenly across members with virtual nodes")
+    void shouldSpreadCouriersEvenly() {
+        ConsistentHashRing ring = new ConsistentHashRing(THREE, 128);
+
+        Map<String, Integer> counts = new HashMap<>();
+        couriers.forEach(courierId -> counts.merge(ring.owner(courierId), 1, Integer::sum));
+
+        assertThat(counts).containsOnlyKeys(THREE);
+        // Each member owns a third, give or take a quarter of that
+        counts.values().forEach(count -> assertThat(count).isBetween(7_500, 12_500));
+    }
+
+    @Test
+    @DisplayName("Should move only the couriers taken over by a new member")
+    void shouldMoveOnlyCouriersOfNewMember() {
+        ConsistentHashRing before = new ConsistentHashRing(THREE, 128);
+        String added = "http://localhost:8084/api";
+        ConsistentHashRing after = new ConsistentHashRing(
+            List.of(THREE.get(0), THREE.get(1), THREE.get(2), added), 128);
+
+        long moved = 0;
+        for (UUID courierId : couriers) {
+            String from = before.owner(courierId);
+            String to = after.owner(courierId);
+            if (!from.equals(to)) {
+                assertThat(to).isEqualTo(added);
+                moved++;
+            }
+        }
+        // Roughly a quarter of all couriers move, all of them to the new member
+        assertThat(moved).isBetween(5_000L, 10_000L);
+    }
+
+    @Test
+    @DisplayName("Should give the same owner regardless of member order and nothing for an empty ring")
+    void shouldBeDeterministic() {
+        ConsistentHashRing ring = new ConsistentHashRing(THREE, 64);
+        ConsistentHashRing reversed = new ConsistentHashRing(List.of(THREE.get(2), THREE.get(1), THREE.get(0)), 64);
+
+        couriers.stream().limit(1_000).forEach(courierId ->
+            assertThat(reversed.owner(courierId)).isEqualTo(ring.owner(courierId)));
+        assertThat(new ConsistentHashRing(List.of(), 64).owner(UUID.randomUUID())).isNull();
+    }
+}
@@ -0,0 +1,111 @@
+package com.couriertracking.cluster;
+
+import com.couriertracking.dto.CourierHandoff;
+import com.couriertracking.ingest.ShardedCourierExecutor;
+import com.couriertracking.service.DistanceWriteBehindService;
+import com.couriertracking.service.StoreEntranceService;
+import com.couriertracking.state.CourierMotion;
+import com.couriertracking.state.CourierStateRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("CourierRebalancer Tests")
+class CourierRebalancerTest {
+
+    private static final String SELF = "http://localhost:8081/api";
+    private static final String OTHER = "http://localhost:8082/api";
+
+    @Mock
+    private ClusterMembership clusterMembership;
+
+    @Mock
+    private ClusterClient clusterClient;
+
+    @Mock
+    private DistanceWriteBehindService distanceWriteBehindService;
+
+    @Mock
+    private StoreEntranceService storeEntranceService;
+
+    private CourierStateRegistry courierStateRegistry;
+    private ShardedCourierExecutor shardedCourierExecutor;
+    private CourierRebalancer rebalancer;
+
+    @BeforeEach
+    void setUp() {
+        courierStateRegistry = new CourierStateRegistry();
+        shardedCourierExecutor = new ShardedCourierExecutor(2);
+        rebalancer = new CourierRebalancer(clusterMembership, clusterClient, courierStateRegistry,
+            shardedCourierExecutor, distanceWriteBehindService, storeEntranceService, new SimpleMeterRegistry());
+        lenient().when(clusterMembership.self()).thenReturn(SELF);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        shardedCourierExecutor.shutdown();
+    }
+
+    @Test
+    @DisplayName("Should flush, close the visit of, drop and send the state of couriers now owned by another instance")
+    @SuppressWarnings("unchecked")
+    void shouldHandOffForeignCouriers() {
+        UUID kept = UUID.randomUUID();
+        UUID moved = UUID.randomUUID();
+        LocalDateTime lastFix = LocalDateTime.of(2025, 1, 1, 12, 0);
+        courierStateRegistry.getOrCreate(kept);
+        courierStateRegistry.getOrCreate(moved).getMotion().record(lastFix, 40.99, 29.12, 6.5, 0.3);
+        when(clusterMembership.ownerOf(kept)).thenReturn(SELF);
+        when(clusterMembership.ownerOf(moved)).thenReturn(OTHER);
+        when(clusterMembership.isLocal(moved)).thenReturn(false);
+        when(distanceWriteBehindService.flushCourier(moved)).thenReturn(true);
+        when(clusterClient.sendHandoff(eq(OTHER), any())).thenReturn(true);
+
+        assertThat(rebalancer.handOffForeignCouriers()).isEqualTo(1);
+
+        ArgumentCaptor<List<CourierHandoff>> sent = ArgumentCaptor.forClass(List.class);
+        verify(clusterClient).sendHandoff(eq(OTHER), sent.capture());
+        assertThat(sent.getValue()).containsExactly(new CourierHandoff(moved, lastFix, 40.99, 29.12, 6.5));
+        verify(distanceWriteBehindService, never()).flushCourier(kept);
+        verify(storeEntranceService).closeOpenVisit(moved);
+        verify(storeEntranceService, never()).closeOpenVisit(kept);
+        assertThat(courierStateRegistry.find(moved)).isEmpty();
+        assertThat(courierStateRegistry.find(kept)).isPresent();
+    }
+
+    @Test
+    @DisplayName("Should adopt handed-over motion on the courier's shard unless a newer fix is already known")
+    void shouldAcceptHandoff() throws Exception {
+        UUID courierId = UUID.randomUUID();
+        LocalDateTime lastFix = LocalDateTime.of(2025, 1, 1, 12, 0);
+        when(clusterMembership.isLocal(courierId)).thenReturn(true);
+
+        rebalancer.accept(List.of(new CourierHandoff(courierId, lastFix, 40.99, 29.12, 6.5)));
+        rebalancer.accept(List.of(new CourierHandoff(courierId, lastFix.minusMinutes(1), 41.0, 29.0, 1.0)));
+        shardedCourierExecutor.submit(courierId, () -> null).get();
+
+        CourierMotion motion = courierStateRegistry.find(courierId).orElseThrow().getMotion();
+        assertThat(motion.getLastTimestamp()).isEqualTo(lastFix);
+        assertThat(motion.getLastLatitude()).isEqualTo(40.99);
+        assertThat(motion.getSpeedMetersPerSecond()).isEqualTo(6.5);
+    }
+}
@@ -2,9 +2,13 @@ package com.couriertracking.controller;
 
 import com.couriertracking.dto.CourierCreateRequest;
 import com.couriertracking.dto.CourierResponse;
+import com.couriertracking.dto.TripPageResponse;
+import com.couriertracking.dto.TripResponse;
 import com.couriertracking.exception.CourierNotFoundException;
 import com.couriertracking.service.CourierService;
 import com.couriertracking.service.DistanceCalculationService;
+import com.couriertracking.service.TrackExportService;
+import com.couriertracking.service.TripService;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -15,9 +19,17 @@ import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
+import java.io.ByteArrayInputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.util.List;
 import java.util.UUID;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
 
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
@@ -44,6 +56,12 @@ class CourierControllerTest {
     @MockitoBean
     private DistanceCalculationService distanceCalculationService;
 
+    @MockitoBean
+    private TrackExportService trackExportService;
+
+    @MockitoBean
+    private TripService tripService;
+
     private static final String API_KEY_HEADER = "X-API-Key";
     private static final String VALID_API_KEY = "CT-SECURE-API-KEY-12345";
 
@@ -234,4 +252,70 @@ class CourierControllerTest {
 
         verifyNoInteractions(courierService);
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("Should stream the track export gzip-compressed when the client accepts gzip")
+    void shouldStreamGzipTrackExport() throws Exception {
+        UUID courierId = UUID.randomUUID();
+        LocalDateTime from = LocalDateTime.of(2024, 5, 1, 0, 0);
+        doAnswer(invocation -> {
+            invocation.<OutputStream>getArgument(5).write("_p~iF~ps|U".getBytes(StandardCharsets.US_ASCII));
+            return 1L;
+        }).when(trackExportService).export(eq(courierId), eq(from), eq(from.plusDays(1)),
+                eq(TrackExportService.Format.POLYLINE), eq(5.0), any(OutputStream.class));
+
+        MvcResult result = mockMvc.perform(get("/couriers/{courierId}/track", courierId)
+                        .header(API_KEY_HEADER, VALID_API_KEY)
+                        .header("Accept-Encoding", "br;q=1.0, gzip;q=0.8")
+                        .param("from", "2024-05-01T00:00:00")
+                        .param("tolerance", "5"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        byte[] body = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Encoding", "gzip"))
+                .andExpect(header().string("Vary", "Accept-Encoding"))
+                .andExpect(content().contentTypeCompatibleWith("text/plain"))
+                .andReturn().getResponse().getContentAsByteArray();
+        try (GZIPInputStream gunzip = new GZIPInputStream(new ByteArrayInputStream(body))) {
+            assertThat(new String(gunzip.readAllBytes(), StandardCharsets.US_ASCII)).isEqualTo("_p~iF~ps|U");
+        }
+        verify(courierService).getCourierById(courierId);
+    }
+
+    @Test
+    @DisplayName("Should return 400 for an unknown track export format")
+    void shouldReturn400ForUnknownTrackFormat() throws Exception {
+        mockMvc.perform(get("/couriers/{courierId}/track", UUID.randomUUID())
+                        .header(API_KEY_HEADER, VALID_API_KEY)
+                        .param("format", "kml"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("INVALID_EXPORT_REQUEST"));
+
+        verifyNoInteractions(trackExportService);
+    }
+
+    @Test
+    @DisplayName("Should list a courier's trips a page at a time, clamping the page size")
+    void shouldGetTripsPaged() throws Exception {
+        UUID courierId = UUID.randomUUID();
+        LocalDateTime startedAt = LocalDateTime.of(2024, 5, 1, 9, 0);
+        TripResponse trip = new TripResponse(UUID.randomUUID(), courierId, startedAt, startedAt.plusMinutes(25),
+                40.99, 29.12, 41.01, 29.15, 3.4, "km", 26, "STORE_ENTRANCE");
+        when(tripService.getTrips(courierId, 1, 100)).thenReturn(new TripPageResponse(List.of(trip), 1, 100, 101, 2));
+
+        mockMvc.perform(get("/couriers/{courierId}/trips", courierId)
+                        .header(API_KEY_HEADER, VALID_API_KEY)
+                        .param("page", "1")
+                        .param("size", "500"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.trips[0].distance").value(3.4))
+                .andExpect(jsonPath("$.trips[0].pointCount").value(26))
+                .andExpect(jsonPath("$.trips[0].status").value("STORE_ENTRANCE"))
+                .andExpect(jsonPath("$.totalElements").value(101))
+                .andExpect(jsonPath("$.page").value(1));
+
+        verify(tripService).getTrips(courierId, 1, 100);
+    }
+}
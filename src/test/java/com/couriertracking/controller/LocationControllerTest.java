@@ -1,10 +1,16 @@
 package com.couriertracking.controller;
 
+import com.couriertracking.cluster.ClusterClient;
+import com.couriertracking.cluster.ClusterMembership;
+import com.couriertracking.dto.IngestReceiptResponse;
 import com.couriertracking.dto.LocationUpdateRequest;
 import com.couriertracking.dto.LocationUpdateResponse;
 import com.couriertracking.exception.CourierNotFoundException;
-import com.couriertracking.service.LocationTrackingService;
+import com.couriertracking.exception.ReceiptNotFoundException;
+import com.couriertracking.ingest.IngestReceiptStatus;
+import com.couriertracking.service.LocationIngestService;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -12,10 +18,13 @@ import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.context.annotation.Import;
 import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.test.web.servlet.MockMvc;
 
 import java.time.LocalDateTime;
+import java.util.Optional;
 import java.util.UUID;
 
 import static org.mockito.Mockito.*;
@@ -38,11 +47,22 @@ class LocationControllerTest {
     private ObjectMapper objectMapper;
 
     @MockitoBean
-    private LocationTrackingService locationTrackingService;
+    private LocationIngestService locationIngestService;
+
+    @MockitoBean
+    private ClusterMembership clusterMembership;
+
+    @MockitoBean
+    private ClusterClient clusterClient;
 
     private static final String API_KEY_HEADER = "X-API-Key";
     private static final String VALID_API_KEY = "CT-SECURE-API-KEY-12345";
 
+    @BeforeEach
+    void setUp() {
+        when(clusterMembership.isLocal(any())).thenReturn(true);
+    }
+
     @Test
     @DisplayName("Should update location successfully with valid request")
     void shouldUpdateLocationSuccessfully() throws Exception {
@@ -64,7 +84,7 @@ class LocationControllerTest {
                 "Location updated successfully"
         );
 
-        when(locationTrackingService.updateCourierLocation(any(LocationUpdateRequest.class)))
+        when(locationIngestService.ingest(any(LocationUpdateRequest.class), any()))
                 .thenReturn(response);
 
         mockMvc.perform(post("/locations")
@@ -79,7 +99,7 @@ class LocationControllerTest {
                 .andExpect(jsonPath("$.timestamp").exists())
                 .andExpect(jsonPath("$.message").value("Location updated successfully"));
 
-        verify(locationTrackingService).updateCourierLocation(any(LocationUpdateRequest.class));
+        verify(locationIngestService).ingest(any(LocationUpdateRequest.class), any());
     }
 
     @Test
@@ -98,7 +118,7 @@ class LocationControllerTest {
                         .content(objectMapper.writeValueAsString(request)))
                 .andExpect(status().isBadRequest());
 
-        verifyNoInteractions(locationTrackingService);
+        verifyNoInteractions(locationIngestService);
     }
 
     @Test
@@ -117,7 +137,7 @@ class LocationControllerTest {
                         .content(objectMapper.writeValueAsString(request)))
                 .andExpect(status().isBadRequest());
 
-        verifyNoInteractions(locationTrackingService);
+        verifyNoInteractions(locationIngestService);
     }
 
     @Test
@@ -136,7 +156,7 @@ class LocationControllerTest {
                         .content(objectMapper.writeValueAsString(request)))
                 .andExpect(status().isBadRequest());
 
-        verifyNoInteractions(locationTrackingService);
+        verifyNoInteractions(locationIngestService);
     }
 
 
@@ -156,7 +176,7 @@ class LocationControllerTest {
                         .content(objectMapper.writeValueAsString(request)))
                 .andExpect(status().isBadRequest());
 
-        verifyNoInteractions(locationTrackingService);
+        verifyNoInteractions(locationIngestService);
     }
 
 
@@ -171,7 +191,7 @@ class LocationControllerTest {
                 LocalDateTime.now()
         );
 
-        when(locationTrackingService.updateCourierLocation(any(LocationUpdateRequest.class)))
+        when(locationIngestService.ingest(any(LocationUpdateRequest.class), any()))
                 .thenThrow(new CourierNotFoundException("Courier not found with id: " + courierId));
 
         mockMvc.perform(post("/locations")
@@ -180,7 +200,7 @@ class LocationControllerTest {
                         .content(objectMapper.writeValueAsString(request)))
                 .andExpect(status().isNotFound());
 
-        verify(locationTrackingService).updateCourierLocation(any(LocationUpdateRequest.class));
+        verify(locationIngestService).ingest(any(LocationUpdateRequest.class), any());
     }
 
     @Test
@@ -198,7 +218,7 @@ class LocationControllerTest {
                         .content(objectMapper.writeValueAsString(request)))
                 .andExpect(status().isUnauthorized());
 
-        verifyNoInteractions(locationTrackingService);
+        verifyNoInteractions(locationIngestService);
     }
 
     @Test
@@ -217,6 +237,118 @@ class LocationControllerTest {
                         .content(objectMapper.writeValueAsString(request)))
                 .andExpect(status().isUnauthorized());
 
-        verifyNoInteractions(locationTrackingService);
+        verifyNoInteractions(locationIngestService);
+    }
+
+    @Test
+    @DisplayName("Should return 202 with receipt when client prefers async processing")
+    void shouldReturn202WhenClientPrefersAsync() throws Exception {
+        UUID courierId = UUID.randomUUID();
+        UUID receiptId = UUID.randomUUID();
+        LocationUpdateRequest request = new LocationUpdateRequest(
+                courierId,
+                40.9923307,
+                29.1244229,
+                LocalDateTime.now()
+        );
+
+        IngestReceiptResponse receipt = new IngestReceiptResponse(
+                receiptId, courierId, IngestReceiptStatus.ACCEPTED, LocalDateTime.now(), null, null, null);
+        when(locationIngestService.accept(any(LocationUpdateRequest.class), any())).thenReturn(receipt);
+
+        mockMvc.perform(post("/locations")
+                        .header(API_KEY_HEADER, VALID_API_KEY)
+                        .header("Prefer", "respond-async")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isAccepted())
+                .andExpect(header().string("Location", org.hamcrest.Matchers.endsWith("/locations/receipts/" + receiptId)))
+                .andExpect(jsonPath("$.receiptId").value(receiptId.toString()))
+                .andExpect(jsonPath("$.status").value("ACCEPTED"));
+
+        verify(locationIngestService).accept(any(LocationUpdateRequest.class), any());
+        verify(locationIngestService, never()).ingest(any(LocationUpdateRequest.class), any());
+    }
+
+    @Test
+    @DisplayName("Should return receipt status when polling")
+    void shouldReturnReceiptStatusWhenPolling() throws Exception {
+        UUID courierId = UUID.randomUUID();
+        UUID receiptId = UUID.randomUUID();
+        IngestReceiptResponse receipt = new IngestReceiptResponse(
+                receiptId, courierId, IngestReceiptStatus.COMPLETED, LocalDateTime.now(), LocalDateTime.now(),
+                UUID.randomUUID(), "Location updated successfully");
+        when(locationIngestService.getReceipt(receiptId)).thenReturn(receipt);
+
+        mockMvc.perform(get("/locations/receipts/{receiptId}", receiptId)
+                        .header(API_KEY_HEADER, VALID_API_KEY))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status").value("COMPLETED"))
+                .andExpect(jsonPath("$.message").value("Location updated successfully"));
+    }
+
+    @Test
+    @DisplayName("Should return 404 when polling unknown receipt")
+    void shouldReturn404WhenPollingUnknownReceipt() throws Exception {
+        UUID receiptId = UUID.randomUUID();
+        when(locationIngestService.getReceipt(receiptId))
+                .thenThrow(new ReceiptNotFoundException("Receipt not found with ID: " + receiptId));
+
+        mockMvc.perform(get("/locations/receipts/{receiptId}", receiptId)
+                        .header(API_KEY_HEADER, VALID_API_KEY))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    @DisplayName("Should forward the update to the instance owning the courier and relay its response")
+    void shouldForwardToOwningInstance() throws Exception {
+        UUID courierId = UUID.randomUUID();
+        LocationUpdateRequest request = new LocationUpdateRequest(courierId, 40.9923307, 29.1244229, LocalDateTime.now());
+        String owner = "http://localhost:8082/api";
+        when(clusterMembership.isLocal(courierId)).thenReturn(false);
+        when(clusterMembership.ownerOf(courierId)).thenReturn(owner);
+        when(clusterClient.forwardLocation(eq(owner), any(LocationUpdateRequest.class), isNull(), eq("retry-1")))
+                .thenReturn(Optional.of(ResponseEntity.ok()
+                        .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                        .body("{\"message\":\"Location updated successfully\"}")));
+
+        mockMvc.perform(post("/locations")
+                        .header(API_KEY_HEADER, VALID_API_KEY)
+                        .header("Idempotency-Key", "retry-1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.message").value("Location updated successfully"));
+
+        verifyNoInteractions(locationIngestService);
+    }
+
+    @Test
+    @DisplayName("Should handle forwarded updates locally and answer 503 when the owner is down")
+    void shouldHandleForwardedLocallyAndRejectWhenOwnerUnreachable() throws Exception {
+        UUID courierId = UUID.randomUUID();
+        LocationUpdateRequest request = new LocationUpdateRequest(courierId, 40.9923307, 29.1244229, LocalDateTime.now());
+        when(clusterMembership.isLocal(courierId)).thenReturn(false);
+        when(clusterMembership.ownerOf(courierId)).thenReturn("http://localhost:8082/api");
+        when(clusterClient.forwardLocation(any(), any(), any(), any())).thenReturn(Optional.empty());
+        when(locationIngestService.ingest(any(LocationUpdateRequest.class), any())).thenReturn(new LocationUpdateResponse());
+
+        mockMvc.perform(post("/locations")
+                        .header(API_KEY_HEADER, VALID_API_KEY)
+                        .header(ClusterClient.FORWARDED_BY_HEADER, "http://localhost:8081/api")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isOk());
+        verify(clusterClient, never()).forwardLocation(any(), any(), any(), any());
+
+        mockMvc.perform(post("/locations")
+                        .header(API_KEY_HEADER, VALID_API_KEY)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string(HttpHeaders.RETRY_AFTER, "1"))
+                .andExpect(jsonPath("$.error").value("OWNER_UNAVAILABLE"));
+        verify(clusterClient).forwardLocation(any(), any(), any(), any());
+        verify(locationIngestService, times(1)).ingest(any(LocationUpdateRequest.class), any());
     }
-}
\ No newline at end of file
+}
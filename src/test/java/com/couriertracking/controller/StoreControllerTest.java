@@ -0,0 +1,155 @@
+package com.couriertracking.controller;
+
+import com.couriertracking.dto.StoreBulkRequest;
+import com.couriertracking.dto.StoreLoadReport;
+import com.couriertracking.dto.StoreRequest;
+import com.couriertracking.dto.StoreResponse;
+import com.couriertracking.exception.StoreConflictException;
+import com.couriertracking.exception.StoreNotFoundException;
+import com.couriertracking.service.StoreService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(StoreController.class)
+@Import({com.couriertracking.security.SecurityConfig.class, com.couriertracking.security.ApiKeyAuthFilter.class})
+@TestPropertySource(properties = {
+    "courier-tracking.api.key=CT-SECURE-API-KEY-12345",
+    "courier-tracking.api.header-name=X-API-Key"
+})
+@DisplayName("Store Controller Tests")
+class StoreControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @MockitoBean
+    private StoreService storeService;
+
+    private static final String API_KEY_HEADER = "X-API-Key";
+    private static final String VALID_API_KEY = "CT-SECURE-API-KEY-12345";
+
+    @Test
+    @DisplayName("Should create store successfully with valid request")
+    void shouldCreateStoreSuccessfully() throws Exception {
+        StoreRequest request = new StoreRequest(null, "Kadıköy Migros", 40.990, 29.024, null);
+        UUID storeId = UUID.randomUUID();
+        when(storeService.createStore(any(StoreRequest.class)))
+                .thenReturn(new StoreResponse(storeId, "Kadıköy Migros", "Kadıköy Migros", 40.990, 29.024, List.of()));
+
+        mockMvc.perform(post("/stores")
+                        .header(API_KEY_HEADER, VALID_API_KEY)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.id").value(storeId.toString()))
+                .andExpect(jsonPath("$.externalId").value("Kadıköy Migros"));
+
+        verify(storeService).createStore(any(StoreRequest.class));
+    }
+
+    @Test
+    @DisplayName("Should return 400 when a geofence vertex is not a [lat, lng] pair")
+    void shouldReturn400ForMalformedGeofence() throws Exception {
+        StoreRequest request = new StoreRequest(null, "Kadıköy Migros", 40.990, 29.024,
+                List.of(List.of(40.98, 29.02), List.of(40.99), List.of(41.0, 29.03)));
+
+        mockMvc.perform(post("/stores")
+                        .header(API_KEY_HEADER, VALID_API_KEY)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("VALIDATION_ERROR"));
+
+        verifyNoInteractions(storeService);
+    }
+
+    @Test
+    @DisplayName("Should return 404 when updating non-existent store")
+    void shouldReturn404WhenUpdatingNonExistentStore() throws Exception {
+        UUID storeId = UUID.randomUUID();
+        StoreRequest request = new StoreRequest(null, "Kadıköy Migros", 40.990, 29.024, null);
+        when(storeService.updateStore(eq(storeId), any(StoreRequest.class)))
+                .thenThrow(new StoreNotFoundException("Store not found"));
+
+        mockMvc.perform(put("/stores/{storeId}", storeId)
+                        .header(API_KEY_HEADER, VALID_API_KEY)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    @DisplayName("Should return 409 when deleting a store with logged entrances")
+    void shouldReturn409WhenDeletingStoreInUse() throws Exception {
+        UUID storeId = UUID.randomUUID();
+        doThrow(new StoreConflictException("Store has logged entrances")).when(storeService).deleteStore(storeId);
+
+        mockMvc.perform(delete("/stores/{storeId}", storeId)
+                        .header(API_KEY_HEADER, VALID_API_KEY))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.error").value("STORE_CONFLICT"));
+    }
+
+    @Test
+    @DisplayName("Should return 204 after deleting a store")
+    void shouldDeleteStore() throws Exception {
+        UUID storeId = UUID.randomUUID();
+
+        mockMvc.perform(delete("/stores/{storeId}", storeId)
+                        .header(API_KEY_HEADER, VALID_API_KEY))
+                .andExpect(status().isNoContent());
+
+        verify(storeService).deleteStore(storeId);
+    }
+
+    @Test
+    @DisplayName("Should bulk upsert stores and return the load report")
+    void shouldBulkUpsertStores() throws Exception {
+        StoreBulkRequest request = new StoreBulkRequest(List.of(
+                new StoreRequest("kadikoy", "Kadıköy Migros", 40.990, 29.024, null),
+                new StoreRequest("moda", "Moda Migros", 40.983, 29.027, null)));
+        when(storeService.upsertStores(anyList())).thenReturn(new StoreLoadReport(1, 1, 0, 12));
+
+        mockMvc.perform(post("/stores/bulk")
+                        .header(API_KEY_HEADER, VALID_API_KEY)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.inserted").value(1))
+                .andExpect(jsonPath("$.updated").value(1))
+                .andExpect(jsonPath("$.total").value(2));
+    }
+
+    @Test
+    @DisplayName("Should return 400 when a bulk upsert entry is invalid")
+    void shouldReturn400ForInvalidBulkEntry() throws Exception {
+        StoreBulkRequest request = new StoreBulkRequest(List.of(
+                new StoreRequest("kadikoy", "Kadıköy Migros", 91.0, 29.024, null)));
+
+        mockMvc.perform(post("/stores/bulk")
+                        .header(API_KEY_HEADER, VALID_API_KEY)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isBadRequest());
+
+        verifyNoInteractions(storeService);
+    }
+}
@@ -0,0 +1,201 @@
+package com.couriertracking.datasource;
+
+import com.couriertracking.model.Courier;
+import com.couriertracking.model.Location;
+import com.couriertracking.model.Store;
+import com.couriertracking.model.StoreEntrance;
+import com.couriertracking.repository.LocationRepository;
+import com.couriertracking.repository.StoreEntranceRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.metamodel.EntityType;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernateProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernateSettings;
+import org.springframework.boot.autoconfigure.orm.jpa.JpaProperties;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("Location Sharding Tests")
+class LocationShardingTest {
+
+    private static final int SHARDS = 3;
+    private static final LocalDateTime START = LocalDateTime.of(2024, 1, 1, 12, 0);
+
+    private SimpleMeterRegistry meterRegistry;
+    private LocationShards locationShards;
+    private LocationRepository locationRepository;
+    private StoreEntranceRepository storeEntranceRepository;
+
+    @BeforeEach
+    void setUp() {
+        Map<String, Object> vendorProperties = new HibernateProperties()
+            .determineHibernateProperties(new JpaProperties().getProperties(), new HibernateSettings());
+        locationShards = new LocationShards(IntStream.range(0, SHARDS)
+            .mapToObj(index -> LocationShardConfig.shard(index, h2("shard" + index), vendorProperties))
+            .toList());
+        meterRegistry = new SimpleMeterRegistry();
+        locationRepository = locationShards.repository(LocationRepository.class, Location.class,
+            location -> location.getCourier().getId(), meterRegistry);
+        storeEntranceRepository = locationShards.repository(StoreEntranceRepository.class, StoreEntrance.class,
+            entrance -> entrance.getCourier().getId(), meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        locationShards.close();
+    }
+
+    @Test
+    @DisplayName("Should store each courier's locations on its own shard and query only that shard")
+    void shouldKeepEachCourierOnOneShard() {
+        List<Courier> couriers = IntStream.range(0, 8).mapToObj(i -> courier()).toList();
+        List<Location> locations = new ArrayList<>();
+        for (Courier courier : couriers) {
+            for (int second = 0; second < 3; second++) {
+                locations.add(location(courier, START.plusSeconds(second)));
+            }
+        }
+        locationRepository.saveAll(locations);
+
+        for (Courier courier : couriers) {
+            int owner = locationShards.shardFor(courier.getId());
+            for (int shard = 0; shard < SHARDS; shard++) {
+                assertThat(rowsOnShard(shard, courier.getId())).isEqualTo(shard == owner ? 3 : 0);
+            }
+            assertThat(locationRepository.findTop2ByCourierIdOrderByTimestampDesc(courier.getId()))
+                .extracting(Location::getTimestamp)
+                .containsExactly(START.plusSeconds(2), START.plusSeconds(1));
+        }
+        assertThat(meterRegistry.get("courier.storage.shard.calls")
+            .tags("repository", "LocationRepository", "scope", "scatter").counter().count()).isZero();
+    }
+
+    @Test
+    @DisplayName("Should read a location back through its shard with the courier as a plain ID")
+    void shouldReadLocationThroughShard() {
+        Courier courier = courier();
+        courier.setName("Kept in the main database");
+        Location saved = locationRepository.save(location(courier, START));
+
+        Location read = locationRepository.findById(saved.getId()).orElseThrow();
+        assertThat(read.getCourier().getId()).isEqualTo(courier.getId());
+        assertThat(read.getCourier().getName()).isNull();
+        assertThat(read.getTimestamp()).isEqualTo(START);
+        assertThat(read.getReceivedAt()).isNotNull();
+        assertThat(locationRepository.findByCourierIdOrderByTimestampDesc(courier.getId(), Pageable.unpaged()))
+            .extracting(Location::getId)
+            .containsExactly(saved.getId());
+        // Couriers and stores are not entities on a shard, which holds neither table
+        assertThat(locationShards.get(locationShards.shardFor(courier.getId())).entityManagerFactory()
+            .getMetamodel().getEntities())
+            .extracting(EntityType::getName)
+            .containsExactlyInAnyOrder("Location", "StoreEntrance");
+    }
+
+    @Test
+    @DisplayName("Should scatter fleet-wide queries to every shard and merge the results")
+    void shouldScatterFleetWideQueries() {
+        Store visited = store();
+        Store unvisited = store();
+        List<Courier> couriers = IntStream.range(0, 6).mapToObj(i -> courier()).toList();
+        couriers.forEach(courier -> locationRepository.save(location(courier, START)));
+        StoreEntrance entrance = new StoreEntrance(null, couriers.get(0), visited, START);
+        storeEntranceRepository.save(entrance);
+
+        assertThat(locationRepository.count()).isEqualTo(6);
+        assertThat(locationRepository.findAll()).hasSize(6);
+        assertThat(storeEntranceRepository.existsByStore(visited)).isTrue();
+        assertThat(storeEntranceRepository.existsByStore(unvisited)).isFalse();
+        assertThat(storeEntranceRepository.existsByCourierAndStoreAndEntranceTimeAfter(
+            couriers.get(0), visited, START.minusMinutes(1))).isTrue();
+        assertThat(meterRegistry.get("courier.storage.shard.calls")
+            .tags("repository", "LocationRepository", "scope", "scatter").counter().count()).isEqualTo(2.0);
+    }
+
+    @Test
+    @DisplayName("Should delete rows saved during a caller transaction that rolls back")
+    void shouldDeleteRolledBackSaves() {
+        Courier rolledBack = courier();
+        Courier committed = courier();
+
+        inCallerTransaction(() -> {
+            locationRepository.save(location(rolledBack, START));
+            storeEntranceRepository.save(new StoreEntrance(null, rolledBack, store(), START));
+            assertThat(locationRepository.findTop2ByCourierIdOrderByTimestampDesc(rolledBack.getId())).hasSize(1);
+        }, false);
+        inCallerTransaction(() -> locationRepository.save(location(committed, START)), true);
+
+        assertThat(rowsOnShard(locationShards.shardFor(rolledBack.getId()), rolledBack.getId())).isZero();
+        assertThat(storeEntranceRepository.count()).isZero();
+        assertThat(rowsOnShard(locationShards.shardFor(committed.getId()), committed.getId())).isEqualTo(1);
+        assertThat(meterRegistry.get("courier.storage.shard.rolled.back")
+            .tags("repository", "LocationRepository").counter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    @DisplayName("Should refuse sorted queries across shards")
+    void shouldRejectSortedScatter() {
+        assertThatThrownBy(() -> locationRepository.findAll(Sort.by("timestamp")))
+            .isInstanceOf(UnsupportedOperationException.class);
+    }
+
+    private static void inCallerTransaction(Runnable work, boolean commit) {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            work.run();
+            TransactionSynchronizationManager.getSynchronizations().forEach(synchronization -> synchronization.afterCompletion(
+                commit ? TransactionSynchronization.STATUS_COMMITTED : TransactionSynchronization.STATUS_ROLLED_BACK));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    private long rowsOnShard(int shard, UUID courierId) {
+        return new JdbcTemplate(locationShards.get(shard).dataSource())
+            .queryForObject("SELECT COUNT(*) FROM locations WHERE courier_id = ?", Long.class, courierId);
+    }
+
+    private static Courier courier() {
+        Courier courier = new Courier();
+        courier.setId(UUID.randomUUID());
+        return courier;
+    }
+
+    private static Store store() {
+        Store store = new Store();
+        store.setId(UUID.randomUUID());
+        return store;
+    }
+
+    private static Location location(Courier courier, LocalDateTime timestamp) {
+        Location location = new Location();
+        location.setCourier(courier);
+        location.setLatitude(40.99);
+        location.setLongitude(29.12);
+        location.setTimestamp(timestamp);
+        return location;
+    }
+
+    private static JdbcDataSource h2(String name) {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:" + name + "-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        return dataSource;
+    }
+}
@@ -0,0 +1,126 @@
+package com.couriertracking.datasource;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("ReplicaRoutingDataSource Tests")
+class ReplicaRoutingDataSourceTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private JdbcTemplate primary;
+    private JdbcTemplate replica;
+    private ReplicaLagMonitor lagMonitor;
+    private JdbcTemplate routed;
+    private TransactionTemplate readWrite;
+    private TransactionTemplate readOnly;
+
+    @BeforeEach
+    void setUp() {
+        DataSource primaryDataSource = h2("primary");
+        DataSource replicaDataSource = h2("replica");
+        primary = new JdbcTemplate(primaryDataSource);
+        primary.execute("CREATE TABLE node (name VARCHAR(16)); INSERT INTO node VALUES ('primary')");
+        replica = new JdbcTemplate(replicaDataSource);
+        replica.execute("CREATE TABLE node (name VARCHAR(16)); INSERT INTO node VALUES ('replica')");
+
+        meterRegistry = new SimpleMeterRegistry();
+        lagMonitor = new ReplicaLagMonitor(primaryDataSource, replicaDataSource, 5_000, meterRegistry);
+        DataSource routing = ReplicaDataSourceConfig.routingDataSource(
+            primaryDataSource, replicaDataSource, lagMonitor, meterRegistry);
+        routed = new JdbcTemplate(routing);
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(routing);
+        readWrite = new TransactionTemplate(transactionManager);
+        readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+    }
+
+    @Test
+    @DisplayName("Should send read-only transactions to a caught-up replica and everything else to the primary")
+    void shouldRouteByReadOnlyFlag() {
+        lagMonitor.check();
+        replicateHeartbeat(0);
+        lagMonitor.check();
+        assertThat(lagMonitor.isReplicaUsable()).isTrue();
+        // The lazy proxy probes the primary once for connection defaults
+        routed.execute("SELECT 1");
+        double primaryRoutes = primaryRoutes();
+
+        assertThat(nodeIn(readOnly)).isEqualTo("replica");
+        assertThat(nodeIn(readWrite)).isEqualTo("primary");
+        assertThat(PrimaryRouting.call(() -> nodeIn(readOnly))).isEqualTo("primary");
+
+        assertThat(meterRegistry.get("courier.datasource.routes").tag("route", "replica").counter().count()).isEqualTo(1.0);
+        assertThat(primaryRoutes() - primaryRoutes).isEqualTo(2.0);
+    }
+
+    @Test
+    @DisplayName("Should fall back to the primary while the replica lags or has no heartbeat")
+    void shouldFallBackWhenReplicaLags() {
+        lagMonitor.check();
+        assertThat(lagMonitor.isReplicaUsable()).isFalse();
+        assertThat(nodeIn(readOnly)).isEqualTo("primary");
+
+        replicateHeartbeat(60_000);
+        lagMonitor.check();
+        assertThat(lagMonitor.getLagMillis()).isGreaterThan(5_000);
+        assertThat(nodeIn(readOnly)).isEqualTo("primary");
+        assertThat(meterRegistry.get("courier.datasource.replica.fallbacks").counter().count()).isEqualTo(2.0);
+    }
+
+    @Test
+    @DisplayName("Should judge the replica by this instance's heartbeat, not a fresher one of another instance")
+    void shouldIgnoreOtherInstancesHeartbeats() {
+        ReplicaLagMonitor otherMonitor = new ReplicaLagMonitor(
+            primary.getDataSource(), replica.getDataSource(), 5_000, new SimpleMeterRegistry());
+        lagMonitor.check();
+        replicateHeartbeat(60_000);
+        otherMonitor.check();
+        replicateHeartbeat(otherMonitor.getInstanceId(), 0);
+
+        lagMonitor.check();
+        otherMonitor.check();
+
+        assertThat(lagMonitor.isReplicaUsable()).isFalse();
+        assertThat(otherMonitor.isReplicaUsable()).isTrue();
+    }
+
+    private double primaryRoutes() {
+        return meterRegistry.get("courier.datasource.routes").tag("route", "primary").counter().count();
+    }
+
+    private String nodeIn(TransactionTemplate transaction) {
+        return transaction.execute(status -> routed.queryForObject("SELECT name FROM node", String.class));
+    }
+
+    /**
+     * Copy the primary's heartbeat to the replica, as replication would, backdated by the given lag
+     */
+    private void replicateHeartbeat(long lagMillis) {
+        replicateHeartbeat(lagMonitor.getInstanceId(), lagMillis);
+    }
+
+    private void replicateHeartbeat(String instanceId, long lagMillis) {
+        Long primaryBeat = primary.queryForObject(
+            "SELECT beat_millis FROM replication_heartbeats WHERE instance_id = ?", Long.class, instanceId);
+        replica.execute("CREATE TABLE IF NOT EXISTS replication_heartbeats"
+            + " (instance_id VARCHAR(36) PRIMARY KEY, beat_millis BIGINT NOT NULL)");
+        replica.update("MERGE INTO replication_heartbeats KEY (instance_id) VALUES (?, ?)", instanceId, primaryBeat - lagMillis);
+    }
+
+    private static DataSource h2(String name) {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:" + name + "-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        return dataSource;
+    }
+}
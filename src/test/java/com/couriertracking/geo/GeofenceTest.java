@@ -0,0 +1,58 @@
+package com.couriertracking.geo;
+
+import com.couriertracking.model.GeoPoint;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+@DisplayName("Geofence Tests")
+class GeofenceTest {
+
+    private Geofence geofence;
+
+    @BeforeEach
+    void setUp() {
+        // L-shaped mall: a 2x2 square with the top-right quarter cut out
+        geofence = Geofence.of(List.of(
+                new GeoPoint(0.0, 0.0), new GeoPoint(0.0, 2.0), new GeoPoint(1.0, 2.0),
+                new GeoPoint(1.0, 1.0), new GeoPoint(2.0, 1.0), new GeoPoint(2.0, 0.0)), 0);
+    }
+
+    @Test
+    @DisplayName("Should tell points inside the polygon from points in its bounding box but outside it")
+    void shouldContainOnlyPointsInsidePolygon() {
+        assertThat(geofence.contains(0.5, 0.5)).isTrue();
+        assertThat(geofence.contains(0.5, 1.5)).isTrue();
+        assertThat(geofence.contains(1.5, 0.5)).isTrue();
+        assertThat(geofence.contains(1.5, 1.5)).isFalse(); // cut-out corner
+        assertThat(geofence.contains(3.0, 0.5)).isFalse();
+    }
+
+    @Test
+    @DisplayName("Should return the fraction at which a segment first enters the polygon")
+    void shouldReturnEntryFraction() {
+        assertThat(geofence.entryFraction(-1.0, 0.5, 3.0, 0.5)).isCloseTo(0.25, within(1e-9));
+        assertThat(geofence.entryFraction(0.5, 0.5, 0.5, 3.0)).isZero();
+    }
+
+    @Test
+    @DisplayName("Should return NaN for segments that miss the polygon")
+    void shouldReturnNaNForMissingSegments() {
+        // Crosses only the cut-out corner
+        assertThat(geofence.entryFraction(1.5, 1.2, 1.2, 1.5)).isNaN();
+        assertThat(geofence.entryFraction(3.0, 3.0, 4.0, 4.0)).isNaN();
+    }
+
+    @Test
+    @DisplayName("Should reject polygons with fewer than three vertices")
+    void shouldRejectDegeneratePolygons() {
+        assertThatThrownBy(() -> Geofence.of(List.of(new GeoPoint(0.0, 0.0), new GeoPoint(1.0, 1.0)), 0))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,167 @@
+package com.couriertracking.geo;
+
+import com.couriertracking.model.GeoPoint;
+import com.couriertracking.model.Store;
+import com.couriertracking.repository.StoreRepository;
+import com.couriertracking.strategy.DistanceCalculationContext;
+import com.couriertracking.strategy.EuclideanDistanceStrategy;
+import com.couriertracking.strategy.HaversineDistanceStrategy;
+import com.couriertracking.util.DistanceUtils;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("StoreIndex Tests")
+class StoreIndexTest {
+
+    @Mock
+    private StoreRepository storeRepository;
+
+    private SimpleMeterRegistry meterRegistry;
+    private StoreIndex storeIndex;
+    private Store atasehir;
+    private Store novada;
+    private Store beylikduzu;
+
+    @BeforeEach
+    void setUp() {
+        atasehir = new Store(UUID.randomUUID(), "Ataşehir MMM Migros", 40.9923307, 29.1244229);
+        novada = new Store(UUID.randomUUID(), "Novada MMM Migros", 40.986106, 29.1161293);
+        beylikduzu = new Store(UUID.randomUUID(), "Beylikdüzü 5M Migros", 41.0066851, 28.6552262);
+        when(storeRepository.findAll()).thenReturn(List.of(atasehir, novada, beylikduzu));
+
+        DistanceUtils distanceUtils = new DistanceUtils(new DistanceCalculationContext(
+                "haversine", new EuclideanDistanceStrategy(), new HaversineDistanceStrategy()));
+        meterRegistry = new SimpleMeterRegistry();
+        storeIndex = new StoreIndex(storeRepository, distanceUtils, meterRegistry);
+    }
+
+    @Test
+    @DisplayName("Should return only stores inside the widened bounding box of a segment")
+    void shouldReturnStoresAlongSegment() {
+        List<Store> stores = storeIndex.storesAlong(40.990, 29.120, 40.995, 29.125, 100);
+
+        assertThat(stores).containsExactly(atasehir);
+    }
+
+    @Test
+    @DisplayName("Should include stores within the margin of a single point")
+    void shouldIncludeStoresWithinMargin() {
+        // ~90m north of Ataşehir
+        assertThat(storeIndex.storesAlong(40.9931, 29.1244229, 40.9931, 29.1244229, 100)).containsExactly(atasehir);
+        assertThat(storeIndex.storesAlong(40.9931, 29.1244229, 40.9931, 29.1244229, 50)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Should compute clearance to the nearest entrance radius and load the snapshot only once")
+    void shouldComputeClearance() {
+        double clearance = storeIndex.clearanceMeters(41.0, 28.66, 100);
+        storeIndex.clearanceMeters(40.99, 29.12, 100);
+
+        // ~845m from Beylikdüzü, less the 100m radius
+        assertThat(clearance).isBetween(700.0, 800.0);
+        verify(storeRepository, times(1)).findAll();
+    }
+
+    @Test
+    @DisplayName("Should find the same clearance with the ring search as with a scan of every store")
+    void shouldMatchFullScanClearance() {
+        DistanceUtils distanceUtils = new DistanceUtils(new DistanceCalculationContext(
+                "haversine", new EuclideanDistanceStrategy(), new HaversineDistanceStrategy()));
+        List<Store> grid = new ArrayList<>();
+        for (int row = 0; row < 20; row++) {
+            for (int column = 0; column < 20; column++) {
+                grid.add(new Store(UUID.randomUUID(), "Grid " + row + "/" + column,
+                        40.80 + row * 0.013, 28.80 + column * 0.017));
+            }
+        }
+        storeIndex.apply(grid, List.of());
+
+        for (double[] point : new double[][] { { 40.9011, 28.9123 }, { 40.8047, 28.8012 }, { 41.3, 29.4 } }) {
+            double scanned = storeIndex.getStores().stream()
+                    .mapToDouble(store -> distanceUtils.calculateDistanceInMeters(
+                            point[0], point[1], store.getLatitude(), store.getLongitude()) - 100)
+                    .min().orElseThrow();
+            assertThat(storeIndex.clearanceMeters(point[0], point[1], 100)).isCloseTo(scanned, within(1e-6));
+        }
+    }
+
+    @Test
+    @DisplayName("Should search the next ring when the euclidean metric makes a store there nearer, near the equator")
+    void shouldFindNearerStoreInNextRingAtLowLatitude() {
+        DistanceUtils euclidean = new DistanceUtils(new DistanceCalculationContext(
+                "euclidean", new EuclideanDistanceStrategy(), new HaversineDistanceStrategy()));
+        StoreIndex equatorIndex = new StoreIndex(storeRepository, euclidean, new SimpleMeterRegistry());
+        // In the point's own cell, ~544 m north
+        Store sameCell = new Store(UUID.randomUUID(), "Same cell", 0.0099, 0.005);
+        // One cell east, ~468 m away at the euclidean 85 km per degree of longitude
+        Store nextCell = new Store(UUID.randomUUID(), "Next cell", 0.005, 0.0105);
+        equatorIndex.apply(List.of(sameCell, nextCell), List.of());
+
+        assertThat(equatorIndex.clearanceMeters(0.005, 0.005, 0))
+                .isCloseTo(euclidean.calculateDistanceInMeters(0.005, 0.005, 0.005, 0.0105), within(1e-6));
+    }
+
+    @Test
+    @DisplayName("Should index geofenced stores by their polygon and measure clearance to it")
+    void shouldIndexGeofencedStores() {
+        // ~2km wide square mall centred on Beylikdüzü
+        beylikduzu.setGeofence(List.of(
+                new GeoPoint(40.9977, 28.6433), new GeoPoint(40.9977, 28.6671),
+                new GeoPoint(41.0157, 28.6671), new GeoPoint(41.0157, 28.6433)));
+
+        // Inside the polygon but ~900m from the store's own position
+        assertThat(storeIndex.storesAlong(41.014, 28.666, 41.014, 28.666, 0)).containsExactly(beylikduzu);
+        assertThat(storeIndex.geofence(beylikduzu)).isPresent();
+        assertThat(storeIndex.geofence(atasehir)).isEmpty();
+        assertThat(storeIndex.clearanceMeters(41.014, 28.666, 100)).isLessThanOrEqualTo(0.0);
+    }
+
+    @Test
+    @DisplayName("Should apply store changes to a new snapshot without touching the one readers hold")
+    void shouldApplyChangesCopyOnWrite() {
+        StoreIndex.Snapshot before = storeIndex.snapshot();
+        long generation = storeIndex.generation();
+
+        Store moved = new Store(atasehir.getId(), "Ataşehir MMM Migros", 41.0066851, 28.6552262);
+        Store opened = new Store(UUID.randomUUID(), "Kadıköy Migros", 40.990, 29.024);
+        storeIndex.apply(List.of(moved, opened), List.of(novada.getId()));
+
+        assertThat(storeIndex.getStores()).containsExactlyInAnyOrder(moved, opened, beylikduzu);
+        assertThat(storeIndex.storesAlong(40.9923307, 29.1244229, 40.9923307, 29.1244229, 1000)).isEmpty();
+        assertThat(storeIndex.storesAlong(41.0066851, 28.6552262, 41.0066851, 28.6552262, 10))
+                .containsExactlyInAnyOrder(moved, beylikduzu);
+        assertThat(storeIndex.storesAlong(40.990, 29.024, 40.990, 29.024, 10)).containsExactly(opened);
+        assertThat(storeIndex.generation()).isGreaterThan(generation);
+
+        // The old snapshot is unchanged
+        assertThat(before.stores()).containsExactly(atasehir, novada, beylikduzu);
+        assertThat(before.query(40.98, 29.11, 41.0, 29.13)).containsExactlyInAnyOrder(atasehir, novada);
+        verify(storeRepository, times(1)).findAll();
+    }
+
+    @Test
+    @DisplayName("Should time full and incremental index rebuilds")
+    void shouldTimeRebuilds() {
+        storeIndex.refresh();
+        storeIndex.apply(List.of(), List.of(novada.getId()));
+
+        assertThat(meterRegistry.get("courier.store.index.rebuild").tag("kind", "full").timer().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("courier.store.index.rebuild").tag("kind", "incremental").timer().count()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,142 @@
+package com.couriertracking.geo;
+
+import com.couriertracking.model.GeoPoint;
+import com.couriertracking.model.Store;
+import com.couriertracking.repository.StoreRepository;
+import com.couriertracking.strategy.DistanceCalculationContext;
+import com.couriertracking.strategy.EuclideanDistanceStrategy;
+import com.couriertracking.strategy.HaversineDistanceStrategy;
+import com.couriertracking.util.DistanceUtils;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("StoreSnapshotFile Tests")
+class StoreSnapshotFileTest {
+
+    private static final long SOURCE_CHECKSUM = 0x1234L;
+    private static final LocalDateTime UPDATED_AT = LocalDateTime.of(2025, 3, 1, 10, 15, 30, 123_456_000);
+
+    @Mock
+    private StoreRepository storeRepository;
+
+    @TempDir
+    Path tempDir;
+
+    private DistanceUtils distanceUtils;
+    private Path snapshotPath;
+    private Store atasehir;
+    private Store novada;
+
+    @BeforeEach
+    void setUp() {
+        distanceUtils = new DistanceUtils(new DistanceCalculationContext(
+                "euclidean", new EuclideanDistanceStrategy(), new HaversineDistanceStrategy()));
+        snapshotPath = tempDir.resolve("stores.snapshot");
+
+        atasehir = new Store(UUID.randomUUID(), "Ataşehir MMM Migros", 40.9923307, 29.1244229);
+        atasehir.setExternalId("atasehir");
+        atasehir.setGeofence(List.of(new GeoPoint(40.9934, 29.1228), new GeoPoint(40.9936, 29.1262),
+                new GeoPoint(40.9912, 29.1264), new GeoPoint(40.9910, 29.1230)));
+        novada = new Store(UUID.randomUUID(), "Novada MMM Migros", 40.986106, 29.1161293);
+        atasehir.setUpdatedAt(UPDATED_AT.minusDays(1));
+        novada.setUpdatedAt(UPDATED_AT);
+    }
+
+    @Test
+    @DisplayName("Should restore the store index from a snapshot without touching the database")
+    void shouldRoundTripSnapshot() {
+        writeSnapshot();
+
+        StoreRepository emptyRepository = mock(StoreRepository.class);
+        StoreIndex restoredIndex = new StoreIndex(emptyRepository, distanceUtils, new SimpleMeterRegistry());
+        boolean restored = new StoreSnapshotFile(restoredIndex, snapshotPath.toString()).restore(SOURCE_CHECKSUM, 2, UPDATED_AT);
+
+        assertThat(restored).isTrue();
+        assertThat(restoredIndex.getStores()).extracting(Store::getId).containsExactly(atasehir.getId(), novada.getId());
+        assertThat(restoredIndex.getStores().get(0).getExternalId()).isEqualTo("atasehir");
+        assertThat(restoredIndex.getStores().get(1).getExternalId()).isNull();
+        assertThat(restoredIndex.getStores().get(1).getUpdatedAt()).isEqualTo(UPDATED_AT);
+        assertThat(restoredIndex.geofence(restoredIndex.getStores().get(0))).isPresent();
+        assertThat(restoredIndex.storesAlong(40.9935, 29.1260, 40.9935, 29.1260, 0))
+                .extracting(Store::getName).containsExactly("Ataşehir MMM Migros");
+        verifyNoInteractions(emptyRepository);
+    }
+
+    @Test
+    @DisplayName("Should treat the snapshot as stale when the source file, store count or newest update changed")
+    void shouldRejectStaleSnapshot() {
+        writeSnapshot();
+        StoreSnapshotFile snapshotFile = new StoreSnapshotFile(
+                new StoreIndex(mock(StoreRepository.class), distanceUtils, new SimpleMeterRegistry()), snapshotPath.toString());
+
+        assertThat(snapshotFile.restore(SOURCE_CHECKSUM + 1, 2, UPDATED_AT)).isFalse();
+        assertThat(snapshotFile.restore(SOURCE_CHECKSUM, 3, UPDATED_AT)).isFalse();
+        // Same count, but a store was edited elsewhere since the snapshot was written
+        assertThat(snapshotFile.restore(SOURCE_CHECKSUM, 2, UPDATED_AT.plusSeconds(5))).isFalse();
+        assertThat(snapshotFile.restore(SOURCE_CHECKSUM, 2, UPDATED_AT)).isTrue();
+    }
+
+    @Test
+    @DisplayName("Should coalesce runtime rewrites into one background write")
+    void shouldCoalesceRewrites() throws IOException {
+        when(storeRepository.findAll()).thenReturn(List.of(atasehir, novada));
+        StoreIndex storeIndex = new StoreIndex(storeRepository, distanceUtils, new SimpleMeterRegistry());
+        storeIndex.refresh();
+        StoreSnapshotFile snapshotFile = new StoreSnapshotFile(storeIndex, snapshotPath.toString());
+        snapshotFile.write(SOURCE_CHECKSUM);
+        Files.delete(snapshotPath);
+
+        snapshotFile.rewrite();
+        snapshotFile.rewrite();
+        assertThat(snapshotPath).doesNotExist();
+
+        snapshotFile.writePending();
+        assertThat(snapshotPath).exists();
+        Files.delete(snapshotPath);
+        snapshotFile.writePending();
+        assertThat(snapshotPath).doesNotExist();
+    }
+
+    @Test
+    @DisplayName("Should reject a corrupt or missing snapshot")
+    void shouldRejectCorruptSnapshot() throws IOException {
+        StoreSnapshotFile snapshotFile = new StoreSnapshotFile(
+                new StoreIndex(mock(StoreRepository.class), distanceUtils, new SimpleMeterRegistry()), snapshotPath.toString());
+        assertThat(snapshotFile.restore(SOURCE_CHECKSUM, 2, UPDATED_AT)).isFalse();
+
+        writeSnapshot();
+        try (RandomAccessFile file = new RandomAccessFile(snapshotPath.toFile(), "rw")) {
+            file.seek(file.length() - 1);
+            int last = file.read();
+            file.seek(file.length() - 1);
+            file.write(last ^ 0xFF);
+        }
+
+        assertThat(snapshotFile.restore(SOURCE_CHECKSUM, 2, UPDATED_AT)).isFalse();
+    }
+
+    private void writeSnapshot() {
+        when(storeRepository.findAll()).thenReturn(List.of(atasehir, novada));
+        StoreIndex storeIndex = new StoreIndex(storeRepository, distanceUtils, new SimpleMeterRegistry());
+        storeIndex.refresh();
+        new StoreSnapshotFile(storeIndex, snapshotPath.toString()).write(SOURCE_CHECKSUM);
+    }
+}
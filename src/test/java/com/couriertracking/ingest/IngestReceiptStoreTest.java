@@ -0,0 +1,68 @@
+package com.couriertracking.ingest;
+
+import com.couriertracking.exception.ReceiptCapacityExceededException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("IngestReceiptStore Tests")
+class IngestReceiptStoreTest {
+
+    private final IngestReceiptStore receiptStore = new IngestReceiptStore();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(receiptStore, "receiptRetentionMinutes", 10);
+        ReflectionTestUtils.setField(receiptStore, "maxReceipts", 3);
+    }
+
+    @Test
+    @DisplayName("Should evict the oldest finished receipt at the cap, skipping pending ones")
+    void shouldEvictOldestFinishedReceiptAtCap() {
+        IngestReceipt pending = receiptStore.register(UUID.randomUUID());
+        IngestReceipt oldestFinished = receiptStore.register(UUID.randomUUID());
+        IngestReceipt newerFinished = receiptStore.register(UUID.randomUUID());
+        oldestFinished.complete(UUID.randomUUID(), "ok");
+        newerFinished.fail("failed");
+
+        IngestReceipt added = receiptStore.register(UUID.randomUUID());
+
+        assertThat(receiptStore.size()).isEqualTo(3);
+        assertThat(receiptStore.find(oldestFinished.getReceiptId())).isEmpty();
+        assertThat(receiptStore.find(pending.getReceiptId())).contains(pending);
+        assertThat(receiptStore.find(newerFinished.getReceiptId())).contains(newerFinished);
+        assertThat(receiptStore.find(added.getReceiptId())).contains(added);
+    }
+
+    @Test
+    @DisplayName("Should reject a receipt at the cap while every receipt is pending")
+    void shouldRejectWhenAllReceiptsPending() {
+        for (int i = 0; i < 3; i++) {
+            receiptStore.register(UUID.randomUUID());
+        }
+
+        assertThatThrownBy(() -> receiptStore.register(UUID.randomUUID()))
+            .isInstanceOf(ReceiptCapacityExceededException.class);
+        assertThat(receiptStore.size()).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("Should purge only finished receipts past retention")
+    void shouldPurgeExpiredReceipts() {
+        IngestReceipt finished = receiptStore.register(UUID.randomUUID());
+        finished.complete(UUID.randomUUID(), "ok");
+        IngestReceipt pending = receiptStore.register(UUID.randomUUID());
+        ReflectionTestUtils.setField(receiptStore, "receiptRetentionMinutes", -1);
+
+        receiptStore.purgeExpired();
+
+        assertThat(receiptStore.find(finished.getReceiptId())).isEmpty();
+        assertThat(receiptStore.find(pending.getReceiptId())).contains(pending);
+    }
+}
@@ -0,0 +1,138 @@
+package com.couriertracking.ingest;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("ShardedCourierExecutor Tests")
+class ShardedCourierExecutorTest {
+
+    private final ShardedCourierExecutor executor = new ShardedCourierExecutor(4);
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        executor.shutdown();
+    }
+
+    @Test
+    @DisplayName("Should run updates for one courier in submission order")
+    void shouldRunUpdatesForOneCourierInOrder() throws InterruptedException {
+        UUID courierId = UUID.randomUUID();
+        List<Integer> executed = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(1000);
+
+        for (int i = 0; i < 1000; i++) {
+            final int sequence = i;
+            executor.execute(courierId, () -> {
+                executed.add(sequence);
+                done.countDown();
+            });
+        }
+
+        assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+        for (int i = 0; i < 1000; i++) {
+            assertThat(executed.get(i)).isEqualTo(i);
+        }
+    }
+
+    @Test
+    @DisplayName("Should never run two updates for the same courier concurrently")
+    void shouldNeverRunSameCourierConcurrently() throws InterruptedException {
+        UUID courierId = UUID.randomUUID();
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(400);
+
+        Runnable producer = () -> {
+            for (int i = 0; i < 100; i++) {
+                executor.execute(courierId, () -> {
+                    maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                    inFlight.decrementAndGet();
+                    done.countDown();
+                });
+            }
+        };
+        List<Thread> producers = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Thread thread = new Thread(producer);
+            producers.add(thread);
+            thread.start();
+        }
+        for (Thread thread : producers) {
+            thread.join();
+        }
+
+        assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(maxInFlight.get()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should not run an inline call while the courier's queued work runs")
+    void shouldExcludeInlineCallsFromQueuedWork() throws InterruptedException {
+        UUID courierId = UUID.randomUUID();
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(200);
+        Runnable work = () -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            Thread.yield();
+            inFlight.decrementAndGet();
+            done.countDown();
+        };
+
+        Thread caller = new Thread(() -> {
+            for (int i = 0; i < 100; i++) {
+                executor.call(courierId, () -> {
+                    work.run();
+                    return null;
+                });
+            }
+        });
+        caller.start();
+        for (int i = 0; i < 100; i++) {
+            executor.execute(courierId, work);
+        }
+        caller.join();
+
+        assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(maxInFlight.get()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should complete submitted future with task result or failure")
+    void shouldCompleteSubmittedFuture() {
+        UUID courierId = UUID.randomUUID();
+
+        CompletableFuture<String> success = executor.submit(courierId, () -> "done");
+        CompletableFuture<String> failure = executor.submit(courierId, () -> {
+            throw new IllegalStateException("boom");
+        });
+
+        assertThat(success.join()).isEqualTo("done");
+        assertThat(failure).failsWithin(5, TimeUnit.SECONDS)
+                .withThrowableOfType(java.util.concurrent.ExecutionException.class)
+                .withCauseInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    @DisplayName("Should always map a courier to the same shard")
+    void shouldMapCourierToStableShard() {
+        UUID courierId = UUID.randomUUID();
+
+        int shard = executor.shardFor(courierId);
+
+        assertThat(shard).isBetween(0, executor.getShardCount() - 1);
+        assertThat(executor.shardFor(courierId)).isEqualTo(shard);
+    }
+}
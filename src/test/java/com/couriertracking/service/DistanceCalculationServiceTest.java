@@ -1,6 +1,8 @@
 package com.couriertracking.service;
 
 import com.couriertracking.cache.CourierDistanceCache;
+import com.couriertracking.cache.CourierDistanceReadGuard;
+import com.couriertracking.cache.RedisCourierState;
 import com.couriertracking.exception.CourierNotFoundException;
 import com.couriertracking.model.Courier;
 import com.couriertracking.model.CourierDistance;
@@ -8,20 +10,26 @@ import com.couriertracking.model.Location;
 import com.couriertracking.repository.CourierDistanceRepository;
 import com.couriertracking.repository.CourierRepository;
 import com.couriertracking.repository.LocationRepository;
+import com.couriertracking.state.TrackPoint;
 import com.couriertracking.util.DistanceUtils;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.OptionalDouble;
 import java.util.UUID;
+import java.util.function.DoubleConsumer;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
@@ -47,6 +55,18 @@ class DistanceCalculationServiceTest {
     @Mock
     private CourierDistanceCache courierDistanceCache;
 
+    @Mock
+    private TrackReorderService trackReorderService;
+
+    @Mock
+    private DistanceWriteBehindService distanceWriteBehindService;
+
+    @Mock
+    private RedisCourierState redisCourierState;
+
+    @Spy
+    private CourierDistanceReadGuard courierDistanceReadGuard = new CourierDistanceReadGuard(new SimpleMeterRegistry());
+
     @InjectMocks
     private DistanceCalculationService distanceCalculationService;
 
@@ -123,13 +143,12 @@ class DistanceCalculationServiceTest {
     @Test
     @DisplayName("Should return cached distance when available in cache")
     void shouldReturnCachedDistanceWhenAvailable() {
-        when(courierRepository.existsById(courierId)).thenReturn(true);
         when(courierDistanceCache.getFromCache(courierId)).thenReturn(Optional.of(7.5)); // Cache hit
 
         Double result = distanceCalculationService.getTotalTravelDistance(courierId);
 
         assertThat(result).isEqualTo(7.5);
-        verify(courierRepository).existsById(courierId);
+        verify(courierRepository, never()).existsById(courierId); // Only cached if the courier exists
         verify(courierDistanceCache).getFromCache(courierId);
         verifyNoInteractions(courierDistanceRepository); // Should not query database
     }
@@ -186,4 +205,129 @@ class DistanceCalculationServiceTest {
         verify(courierDistanceRepository, never()).save(any());
         assertThat(courierDistance.getTotalDistance()).isEqualTo(5.0);
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("Should apply reorder buffer delta instead of querying newest locations")
+    void shouldApplyReorderBufferDeltaWhenEnabled() {
+        when(trackReorderService.isEnabled()).thenReturn(true);
+        when(courierDistanceRepository.findByCourierId(courierId))
+                .thenReturn(Optional.of(courierDistance));
+        when(trackReorderService.applyFix(courierId, location2)).thenReturn(OptionalDouble.of(-0.25));
+
+        distanceCalculationService.updateDistanceForNewLocation(courierId, location2);
+
+        verify(locationRepository, never()).findTop2ByCourierIdOrderByTimestampDesc(any());
+        verify(courierDistanceRepository).save(courierDistance);
+        verify(courierDistanceCache).saveToCache(courierId, 4.75);
+        assertThat(courierDistance.getTotalDistance()).isEqualTo(4.75);
+    }
+
+    @Test
+    @DisplayName("Should report fix behind watermark only when reordering is enabled")
+    void shouldReportBehindWatermarkOnlyWhenEnabled() {
+        LocalDateTime timestamp = LocalDateTime.now();
+        when(trackReorderService.isEnabled()).thenReturn(false);
+
+        assertThat(distanceCalculationService.isBehindWatermark(courierId, timestamp)).isFalse();
+        verify(trackReorderService, never()).isTooLate(any(), any());
+    }
+
+    @Test
+    @DisplayName("Should fold the segment into the in-memory total instead of writing the row when writes are coalesced")
+    void shouldCoalesceDistanceWrites() {
+        when(distanceWriteBehindService.isEnabled()).thenReturn(true);
+        when(locationRepository.findTop2ByCourierIdOrderByTimestampDesc(courierId))
+                .thenReturn(Arrays.asList(location2, location1));
+        when(distanceUtils.calculateDistanceInKilometers(anyDouble(), anyDouble(), anyDouble(), anyDouble()))
+                .thenReturn(1.5);
+        doAnswer(invocation -> {
+            invocation.<DoubleConsumer>getArgument(3).accept(6.5);
+            return null;
+        }).when(distanceWriteBehindService).add(eq(courierId), eq(location2), eq(1.5), any());
+
+        double segment = distanceCalculationService.updateDistanceForNewLocation(courierId, location2);
+
+        assertThat(segment).isEqualTo(1.5);
+        verify(courierDistanceCache).saveToCache(courierId, 6.5);
+        verifyNoInteractions(courierDistanceRepository);
+    }
+
+    @Test
+    @DisplayName("Should read the in-memory total ahead of the cache when writes are coalesced")
+    void shouldReadLiveTotalWhenWritesAreCoalesced() {
+        when(distanceWriteBehindService.isEnabled()).thenReturn(true);
+        when(distanceWriteBehindService.findLiveTotal(courierId)).thenReturn(Optional.of(8.25));
+
+        assertThat(distanceCalculationService.getTotalTravelDistance(courierId)).isEqualTo(8.25);
+        verifyNoInteractions(courierDistanceCache, courierDistanceRepository);
+    }
+
+    @Test
+    @DisplayName("Should remember unknown courier IDs and answer repeats without the database")
+    void shouldNegativeCacheUnknownCouriers() {
+        ReflectionTestUtils.setField(courierDistanceReadGuard, "negativeTtlSeconds", 30L);
+        ReflectionTestUtils.setField(courierDistanceReadGuard, "maxNegativeEntries", 100);
+        when(courierRepository.existsById(courierId)).thenReturn(false);
+
+        for (int i = 0; i < 3; i++) {
+            assertThatThrownBy(() -> distanceCalculationService.getTotalTravelDistance(courierId))
+                    .isInstanceOf(CourierNotFoundException.class);
+        }
+
+        verify(courierRepository, times(1)).existsById(courierId);
+        verify(courierDistanceCache, times(1)).getFromCache(courierId);
+    }
+
+    @Test
+    @DisplayName("Should take the segment and total from the Redis script instead of querying newest locations")
+    void shouldAdvanceInRedisWhenEnabled() {
+        when(redisCourierState.isEnabled()).thenReturn(true);
+        when(redisCourierState.advance(courierId, location2, null)).thenReturn(Optional.of(
+                new RedisCourierState.Advance(RedisCourierState.Status.MOVED, 6.5, 1.5)));
+        when(courierDistanceRepository.raiseTotalDistance(eq(courierId), eq(6.5), any())).thenReturn(1);
+
+        double segment = distanceCalculationService.updateDistanceForNewLocation(courierId, location2);
+
+        assertThat(segment).isEqualTo(1.5);
+        verify(courierDistanceCache).saveToCache(courierId, 6.5);
+        verifyNoInteractions(locationRepository, distanceUtils, trackReorderService);
+        verify(courierDistanceRepository, never()).save(any());
+    }
+
+    @Test
+    @DisplayName("Should seed a missing Redis hash from the stored total and the previous fix")
+    void shouldSeedMissingRedisState() {
+        when(redisCourierState.isEnabled()).thenReturn(true);
+        when(redisCourierState.advance(courierId, location2, null)).thenReturn(Optional.of(
+                new RedisCourierState.Advance(RedisCourierState.Status.MISSING, 0.0, 0.0)));
+        when(courierDistanceRepository.findByCourierId(courierId)).thenReturn(Optional.of(courierDistance));
+        when(locationRepository.findFirstByCourierIdAndTimestampBeforeOrderByTimestampDesc(courierId, location2.getTimestamp()))
+                .thenReturn(Optional.of(location1));
+        RedisCourierState.Seed seed = new RedisCourierState.Seed(5.0,
+                new TrackPoint(location1.getTimestamp(), location1.getLatitude(), location1.getLongitude()));
+        when(redisCourierState.advance(courierId, location2, seed)).thenReturn(Optional.of(
+                new RedisCourierState.Advance(RedisCourierState.Status.MOVED, 6.5, 1.5)));
+        when(courierDistanceRepository.raiseTotalDistance(eq(courierId), eq(6.5), any())).thenReturn(1);
+
+        assertThat(distanceCalculationService.updateDistanceForNewLocation(courierId, location2)).isEqualTo(1.5);
+        verify(courierDistanceCache).saveToCache(courierId, 6.5);
+    }
+
+    @Test
+    @DisplayName("Should fall back to the database path and drop the Redis hash when Redis is unreachable")
+    void shouldFallBackToDatabaseWhenRedisFails() {
+        when(redisCourierState.isEnabled()).thenReturn(true);
+        when(redisCourierState.advance(courierId, location2, null)).thenReturn(Optional.empty());
+        when(courierDistanceRepository.findByCourierId(courierId)).thenReturn(Optional.of(courierDistance));
+        when(locationRepository.findTop2ByCourierIdOrderByTimestampDesc(courierId))
+                .thenReturn(Arrays.asList(location2, location1));
+        when(distanceUtils.calculateDistanceInKilometers(anyDouble(), anyDouble(), anyDouble(), anyDouble()))
+                .thenReturn(1.5);
+
+        distanceCalculationService.updateDistanceForNewLocation(courierId, location2);
+
+        verify(redisCourierState).evict(courierId);
+        verify(courierDistanceRepository).save(courierDistance);
+        assertThat(courierDistance.getTotalDistance()).isEqualTo(6.5);
+    }
+}
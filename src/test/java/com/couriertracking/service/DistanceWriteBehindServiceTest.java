@@ -0,0 +1,226 @@
+package com.couriertracking.service;
+
+import com.couriertracking.model.Courier;
+import com.couriertracking.model.CourierDistance;
+import com.couriertracking.model.Location;
+import com.couriertracking.repository.CourierDistanceRepository;
+import com.couriertracking.repository.CourierRepository;
+import com.couriertracking.repository.LocationRepository;
+import com.couriertracking.state.CourierStateRegistry;
+import com.couriertracking.storage.LocationTrackReader;
+import com.couriertracking.strategy.DistanceCalculationContext;
+import com.couriertracking.strategy.EuclideanDistanceStrategy;
+import com.couriertracking.strategy.HaversineDistanceStrategy;
+import com.couriertracking.util.DistanceUtils;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("DistanceWriteBehindService Tests")
+class DistanceWriteBehindServiceTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2026, 1, 1, 12, 0);
+
+    @Mock
+    private CourierDistanceRepository courierDistanceRepository;
+
+    @Mock
+    private CourierRepository courierRepository;
+
+    @Mock
+    private LocationRepository locationRepository;
+
+    @Mock
+    private LocationTrackReader locationTrackReader;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private DistanceUtils distanceUtils;
+    private DistanceWriteBehindService service;
+
+    @BeforeEach
+    void setUp() {
+        distanceUtils = new DistanceUtils(new DistanceCalculationContext(
+                "haversine", new EuclideanDistanceStrategy(), new HaversineDistanceStrategy()));
+        service = new DistanceWriteBehindService(new CourierStateRegistry(), courierDistanceRepository,
+                courierRepository, locationRepository, locationTrackReader, distanceUtils, transactionManager, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(service, "enabled", true);
+        ReflectionTestUtils.setField(service, "flushEveryPoints", 20);
+        ReflectionTestUtils.setField(service, "flushIntervalSeconds", 3600L);
+        ReflectionTestUtils.setField(service, "batchSize", 500);
+    }
+
+    @Test
+    @DisplayName("Should flush only couriers with enough pending points, in one batch, stamped with the newest receive time")
+    @SuppressWarnings("unchecked")
+    void shouldFlushDueCouriersInBatches() {
+        UUID busyCourier = UUID.randomUUID();
+        UUID quietCourier = UUID.randomUUID();
+        when(courierDistanceRepository.findByCourierId(any())).thenReturn(Optional.empty());
+        lenient().when(courierRepository.getReferenceById(any())).thenAnswer(invocation -> courier(invocation.getArgument(0)));
+
+        for (int i = 0; i < 25; i++) {
+            service.add(busyCourier, location(i), 0.1, total -> { });
+        }
+        service.add(quietCourier, location(0), 0.0, total -> { });
+
+        assertThat(service.flush(false)).isEqualTo(1);
+        ArgumentCaptor<Iterable<CourierDistance>> saved = ArgumentCaptor.forClass(Iterable.class);
+        verify(courierDistanceRepository).saveAll(saved.capture());
+        CourierDistance row = saved.getValue().iterator().next();
+        assertThat(row.getCourier().getId()).isEqualTo(busyCourier);
+        assertThat(row.getTotalDistance()).isCloseTo(2.5, within(1e-9));
+        assertThat(row.getUpdatedAt()).isEqualTo(START.plusSeconds(24));
+
+        // Nothing left for the busy courier; shutdown flushes the quiet one
+        assertThat(service.flush(false)).isZero();
+        assertThat(service.flush(true)).isEqualTo(1);
+        verify(courierDistanceRepository, times(2)).saveAll(anyCollection());
+        assertThat(service.findLiveTotal(busyCourier)).hasValueSatisfying(live -> assertThat(live).isCloseTo(2.5, within(1e-9)));
+    }
+
+    @Test
+    @DisplayName("Should rebuild unflushed points, including a late fix, from locations received after the last flush")
+    void shouldReplayUnflushedLocations() {
+        UUID courierId = UUID.randomUUID();
+        Location p1 = location(0, 41.000, 29.000);
+        Location p3 = location(10, 41.010, 29.000);
+        Location p2late = location(5, 41.005, 29.010);
+        Location p4 = location(15, 41.020, 29.000);
+        p2late.setReceivedAt(START.plusSeconds(20));
+        p4.setReceivedAt(START.plusSeconds(21));
+
+        CourierDistance row = new CourierDistance();
+        row.setCourier(courier(courierId));
+        row.setTotalDistance(5.0);
+        row.setUpdatedAt(START.plusSeconds(10));
+        when(courierDistanceRepository.findByCourierId(courierId)).thenReturn(Optional.of(row));
+        when(locationRepository.findByCourierIdAndReceivedAtAfter(courierId, START.plusSeconds(10)))
+                .thenReturn(List.of(p2late, p4));
+        when(locationRepository.findFirstByCourierIdAndTimestampBeforeOrderByTimestampDesc(courierId, p2late.getTimestamp()))
+                .thenReturn(Optional.of(p1));
+        streamTrack(courierId, p1.getTimestamp(), p1, p2late, p3, p4);
+
+        double total = service.loadTotal(courierId);
+
+        double replayed = km(p1, p2late) + km(p2late, p3) + km(p3, p4) - km(p1, p3);
+        assertThat(total).isCloseTo(5.0 + replayed, within(1e-9));
+        assertThat(service.findLiveTotal(courierId)).isPresent();
+    }
+
+    @Test
+    @DisplayName("Should rebuild the total of a never flushed courier in one pass over its track, without the new location")
+    void shouldReplayWholeTrackWithoutRow() {
+        UUID courierId = UUID.randomUUID();
+        Location p1 = location(0, 41.000, 29.000);
+        Location p2 = location(5, 41.005, 29.010);
+        Location p3 = location(10, 41.010, 29.000);
+        Location saved = location(15, 41.020, 29.000);
+        when(courierDistanceRepository.findByCourierId(courierId)).thenReturn(Optional.empty());
+        streamTrack(courierId, null, p1, p2, p3, saved);
+
+        service.add(courierId, saved, 0.0, total -> { });
+
+        assertThat(service.findLiveTotal(courierId))
+                .hasValueSatisfying(total -> assertThat(total).isCloseTo(km(p1, p2) + km(p2, p3), within(1e-9)));
+        verify(locationRepository, never()).findByCourierIdOrderByTimestampAsc(any());
+    }
+
+    @Test
+    @DisplayName("Should fold a location into the total only after its transaction commits")
+    void shouldApplyChangesOnlyOnCommit() {
+        UUID courierId = UUID.randomUUID();
+        when(courierDistanceRepository.findByCourierId(courierId)).thenReturn(Optional.empty());
+        List<Double> cached = new ArrayList<>();
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            service.add(courierId, location(0), 1.0, cached::add);
+            service.add(courierId, location(1), 2.0, cached::add);
+            // Nothing uncommitted is flushable
+            assertThat(service.flush(true)).isZero();
+            assertThat(service.findLiveTotal(courierId)).contains(0.0);
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(synchronization -> synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        assertThat(service.findLiveTotal(courierId)).contains(0.0);
+        assertThat(cached).isEmpty();
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            service.add(courierId, location(2), 3.0, cached::add);
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        assertThat(service.findLiveTotal(courierId)).contains(3.0);
+        assertThat(cached).containsExactly(3.0);
+    }
+
+    private void streamTrack(UUID courierId, LocalDateTime from, Location... track) {
+        doAnswer(invocation -> {
+            Consumer<Location> consumer = invocation.getArgument(3);
+            Arrays.stream(track).forEach(consumer);
+            return null;
+        }).when(locationTrackReader).forEach(eq(courierId), eq(from), isNull(), any());
+    }
+
+    private double km(Location from, Location to) {
+        return distanceUtils.calculateDistanceInKilometers(
+                from.getLatitude(), from.getLongitude(), to.getLatitude(), to.getLongitude());
+    }
+
+    private static Location location(int second) {
+        return location(second, 41.0, 29.0);
+    }
+
+    private static Location location(int second, double latitude, double longitude) {
+        Location location = new Location();
+        location.setId(UUID.randomUUID());
+        location.setLatitude(latitude);
+        location.setLongitude(longitude);
+        location.setTimestamp(START.plusSeconds(second));
+        location.setReceivedAt(START.plusSeconds(second));
+        return location;
+    }
+
+    private static Courier courier(UUID courierId) {
+        Courier courier = new Courier();
+        courier.setId(courierId);
+        return courier;
+    }
+}
@@ -0,0 +1,150 @@
+package com.couriertracking.service;
+
+import com.couriertracking.datasource.LocationShards;
+import com.couriertracking.dto.ArchiveReport;
+import com.couriertracking.dto.RetentionReport;
+import com.couriertracking.model.Courier;
+import com.couriertracking.model.Location;
+import com.couriertracking.repository.LocationRepository;
+import com.couriertracking.storage.LocationArchive;
+import com.couriertracking.storage.LocationArchiveConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@DisplayName("LocationArchiveService Tests")
+class LocationArchiveServiceTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2024, 6, 15, 3, 0);
+    private static final LocalDateTime YESTERDAY = LocalDateTime.of(2024, 6, 14, 10, 0);
+
+    private JdbcTemplate jdbcTemplate;
+    private SimpleMeterRegistry meterRegistry;
+    private LocationArchive locationArchive;
+    private LocationArchiveService locationArchiveService;
+
+    private final UUID courierId = UUID.randomUUID();
+    private final UUID otherCourierId = UUID.randomUUID();
+
+    @BeforeEach
+    void setUp() {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:archive-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        new ResourceDatabasePopulator(new ClassPathResource("scripts/location-shard-schema.sql")).execute(dataSource);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+
+        locationArchive = new LocationArchive(dataSource, new StaticListableBeanFactory().getBeanProvider(LocationShards.class));
+        locationArchive.createTables();
+        meterRegistry = new SimpleMeterRegistry();
+        locationArchiveService = new LocationArchiveService(locationArchive, meterRegistry);
+        ReflectionTestUtils.setField(locationArchiveService, "hotDays", 1);
+        ReflectionTestUtils.setField(locationArchiveService, "maxDaysPerRun", 31);
+    }
+
+    @Test
+    @DisplayName("Should move closed days into one block per courier and day and report the compression")
+    void shouldArchiveClosedDays() {
+        for (int second = 0; second < 600; second += 5) {
+            insertLocation(courierId, YESTERDAY.plusSeconds(second), 40.99 + second * 1e-5);
+            insertLocation(courierId, YESTERDAY.minusDays(1).plusSeconds(second), 40.99);
+        }
+        insertLocation(otherCourierId, YESTERDAY, 41.01);
+        insertLocation(courierId, NOW, 40.99);
+
+        ArchiveReport report = locationArchiveService.run(NOW);
+
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM locations", Long.class)).isEqualTo(1);
+        assertThat(jdbcTemplate.queryForObject("SELECT SUM(point_count) FROM location_archive", Long.class)).isEqualTo(241);
+        assertThat(report.getDaysArchived()).isEqualTo(2);
+        assertThat(report.getBlocksWritten()).isEqualTo(3);
+        assertThat(report.getPointsArchived()).isEqualTo(241);
+        assertThat(report.getRawBytes()).isEqualTo(241L * RetentionReport.LOCATION_ROW_BYTES);
+        assertThat(report.getCompressionRatio()).isGreaterThan(8);
+        assertThat(report.getDecodePointsPerSecond()).isPositive();
+        assertThat(meterRegistry.get("courier.archive.points").counter().count()).isEqualTo(241.0);
+
+        // A late fix for an archived day is merged into the day's block on the next run
+        insertLocation(otherCourierId, YESTERDAY.minusMinutes(1), 41.0);
+        locationArchiveService.run(NOW);
+        assertThat(jdbcTemplate.queryForObject("SELECT point_count FROM location_archive WHERE courier_id = ?",
+            Integer.class, otherCourierId)).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Should answer courier history queries from archived blocks and hot rows together")
+    void shouldReadArchivedTracksTransparently() {
+        for (int minute = 0; minute < 5; minute++) {
+            insertLocation(courierId, YESTERDAY.plusMinutes(minute), 40.99 + minute * 1e-4);
+        }
+        locationArchiveService.run(NOW);
+        Location hot = location(NOW, NOW);
+
+        LocationRepository hotRepository = mock(LocationRepository.class);
+        when(hotRepository.findTop2ByCourierIdOrderByTimestampDesc(courierId)).thenReturn(List.of(hot));
+        when(hotRepository.findByCourierIdOrderByTimestampDesc(eq(courierId), any())).thenReturn(List.of(hot));
+        when(hotRepository.findByCourierIdOrderByTimestampAsc(courierId)).thenReturn(List.of(hot));
+        when(hotRepository.findFirstByCourierIdAndTimestampBeforeOrderByTimestampDesc(eq(courierId), any()))
+            .thenReturn(Optional.empty());
+        when(hotRepository.findByCourierIdAndReceivedAtAfter(eq(courierId), any())).thenReturn(List.of());
+        when(hotRepository.count()).thenReturn(1L);
+        LocationRepository repository = (LocationRepository) LocationArchiveConfig
+            .archivedLocationRepositoryPostProcessor(beanProvider(locationArchive))
+            .postProcessAfterInitialization(hotRepository, "locationRepository");
+
+        assertThat(repository.findTop2ByCourierIdOrderByTimestampDesc(courierId))
+            .extracting(Location::getTimestamp)
+            .containsExactly(NOW, YESTERDAY.plusMinutes(4));
+        assertThat(repository.findByCourierIdOrderByTimestampDesc(courierId, PageRequest.of(1, 2)))
+            .extracting(Location::getTimestamp)
+            .containsExactly(YESTERDAY.plusMinutes(3), YESTERDAY.plusMinutes(2));
+        assertThat(repository.findByCourierIdOrderByTimestampAsc(courierId))
+            .extracting(Location::getTimestamp)
+            .startsWith(YESTERDAY, YESTERDAY.plusMinutes(1))
+            .endsWith(NOW)
+            .hasSize(6);
+        assertThat(repository.findFirstByCourierIdAndTimestampBeforeOrderByTimestampDesc(courierId, YESTERDAY.plusSeconds(90)))
+            .map(Location::getLatitude)
+            .contains(40.9901);
+        assertThat(repository.findByCourierIdAndReceivedAtAfter(courierId, YESTERDAY.plusMinutes(3))).hasSize(1);
+        assertThat(repository.findTop2ByCourierIdOrderByTimestampDesc(courierId).get(1).getCourier().getId())
+            .isEqualTo(courierId);
+        assertThat(repository.count()).isEqualTo(1);
+    }
+
+    private void insertLocation(UUID courierId, LocalDateTime timestamp, double latitude) {
+        jdbcTemplate.update("INSERT INTO locations (id, courier_id, latitude, longitude, timestamp, received_at) "
+            + "VALUES (?, ?, ?, 29.12, ?, ?)", UUID.randomUUID(), courierId, latitude, timestamp, timestamp);
+    }
+
+    private Location location(LocalDateTime timestamp, LocalDateTime receivedAt) {
+        Courier courier = new Courier();
+        courier.setId(courierId);
+        return new Location(UUID.randomUUID(), courier, 40.99, 29.12, timestamp, receivedAt);
+    }
+
+    private static ObjectProvider<LocationArchive> beanProvider(LocationArchive archive) {
+        StaticListableBeanFactory beanFactory = new StaticListableBeanFactory();
+        beanFactory.addBean("locationArchive", archive);
+        return beanFactory.getBeanProvider(LocationArchive.class);
+    }
+}
@@ -0,0 +1,260 @@
+package com.couriertracking.service;
+
+import com.couriertracking.dto.IngestReceiptResponse;
+import com.couriertracking.dto.LocationUpdateRequest;
+import com.couriertracking.dto.LocationUpdateResponse;
+import com.couriertracking.exception.CourierNotFoundException;
+import com.couriertracking.exception.LocationTrackingException;
+import com.couriertracking.exception.ReceiptNotFoundException;
+import com.couriertracking.ingest.IngestDeduplicator;
+import com.couriertracking.ingest.IngestReceiptStatus;
+import com.couriertracking.ingest.IngestReceiptStore;
+import com.couriertracking.ingest.ShardedCourierExecutor;
+import com.couriertracking.repository.CourierRepository;
+import com.couriertracking.state.CourierStateRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("LocationIngestService Tests")
+class LocationIngestServiceTest {
+
+    @Mock
+    private LocationTrackingService locationTrackingService;
+
+    @Mock
+    private CourierRepository courierRepository;
+
+    @Mock
+    private ShardedCourierExecutor shardedCourierExecutor;
+
+    private SimpleMeterRegistry meterRegistry;
+    private CourierStateRegistry courierStateRegistry;
+    private LocationIngestService locationIngestService;
+    private LocationUpdateRequest request;
+    private UUID courierId;
+
+    @BeforeEach
+    void setUp() {
+        IngestReceiptStore receiptStore = new IngestReceiptStore();
+        ReflectionTestUtils.setField(receiptStore, "receiptRetentionMinutes", 10);
+        ReflectionTestUtils.setField(receiptStore, "maxReceipts", 1000);
+
+        meterRegistry = new SimpleMeterRegistry();
+        courierStateRegistry = new CourierStateRegistry();
+        IngestDeduplicator ingestDeduplicator = new IngestDeduplicator(courierStateRegistry, meterRegistry);
+        ReflectionTestUtils.setField(ingestDeduplicator, "enabled", true);
+        locationIngestService = new LocationIngestService(locationTrackingService, courierRepository,
+                shardedCourierExecutor, receiptStore, ingestDeduplicator, meterRegistry);
+
+        courierId = UUID.randomUUID();
+        request = new LocationUpdateRequest(courierId, 40.9923307, 29.1244229, LocalDateTime.now());
+    }
+
+    @Test
+    @DisplayName("Should enqueue update on courier shard and return accepted receipt")
+    void shouldEnqueueUpdateAndReturnAcceptedReceipt() {
+        when(courierRepository.existsById(courierId)).thenReturn(true);
+
+        IngestReceiptResponse receipt = locationIngestService.accept(request, null);
+
+        assertThat(receipt.getStatus()).isEqualTo(IngestReceiptStatus.ACCEPTED);
+        assertThat(receipt.getCourierId()).isEqualTo(courierId);
+        verify(shardedCourierExecutor).execute(eq(courierId), any(Runnable.class));
+        verifyNoInteractions(locationTrackingService);
+    }
+
+    @Test
+    @DisplayName("Should complete receipt once the shard processes the update")
+    void shouldCompleteReceiptWhenProcessed() {
+        UUID locationId = UUID.randomUUID();
+        when(courierRepository.existsById(courierId)).thenReturn(true);
+        doAnswer(invocation -> {
+            invocation.<Runnable>getArgument(1).run();
+            return null;
+        }).when(shardedCourierExecutor).execute(eq(courierId), any(Runnable.class));
+        when(locationTrackingService.updateCourierLocation(request)).thenReturn(new LocationUpdateResponse(
+                locationId, courierId, 40.9923307, 29.1244229, request.getTimestamp(), "Location updated successfully"));
+
+        IngestReceiptResponse accepted = locationIngestService.accept(request, null);
+        IngestReceiptResponse polled = locationIngestService.getReceipt(accepted.getReceiptId());
+
+        assertThat(polled.getStatus()).isEqualTo(IngestReceiptStatus.COMPLETED);
+        assertThat(polled.getLocationId()).isEqualTo(locationId);
+        assertThat(polled.getCompletedAt()).isNotNull();
+        assertThat(meterRegistry.counter("courier.ingest.async.completed").count()).isEqualTo(1.0);
+        assertThat(meterRegistry.timer("courier.ingest.async.lag").count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should mark receipt failed when processing throws")
+    void shouldMarkReceiptFailedWhenProcessingThrows() {
+        when(courierRepository.existsById(courierId)).thenReturn(true);
+        doAnswer(invocation -> {
+            invocation.<Runnable>getArgument(1).run();
+            return null;
+        }).when(shardedCourierExecutor).execute(eq(courierId), any(Runnable.class));
+        when(locationTrackingService.updateCourierLocation(request))
+                .thenThrow(new LocationTrackingException("Failed to update courier location"));
+
+        IngestReceiptResponse accepted = locationIngestService.accept(request, null);
+        IngestReceiptResponse polled = locationIngestService.getReceipt(accepted.getReceiptId());
+
+        assertThat(polled.getStatus()).isEqualTo(IngestReceiptStatus.FAILED);
+        assertThat(polled.getMessage()).isEqualTo("Failed to update courier location");
+        assertThat(meterRegistry.counter("courier.ingest.async.failed").count()).isEqualTo(1.0);
+    }
+
+    @Test
+    @DisplayName("Should reject update for unknown courier before enqueueing")
+    void shouldRejectUnknownCourierBeforeEnqueueing() {
+        when(courierRepository.existsById(courierId)).thenReturn(false);
+
+        assertThatThrownBy(() -> locationIngestService.accept(request, null))
+                .isInstanceOf(CourierNotFoundException.class)
+                .hasMessageContaining("Courier not found with ID: " + courierId);
+
+        verifyNoInteractions(shardedCourierExecutor);
+        assertThat(courierStateRegistry.size()).isZero();
+    }
+
+    @Test
+    @DisplayName("Should leave no courier state behind for a sync update of an unknown courier")
+    void shouldDropStateOfUnknownCourier() {
+        runShardInline();
+        when(locationTrackingService.updateCourierLocation(request))
+                .thenThrow(new CourierNotFoundException("Courier not found with ID: " + courierId));
+
+        assertThatThrownBy(() -> locationIngestService.ingest(request, null))
+                .isInstanceOf(CourierNotFoundException.class);
+
+        assertThat(courierStateRegistry.size()).isZero();
+    }
+
+    @Test
+    @DisplayName("Should throw ReceiptNotFoundException for unknown receipt")
+    void shouldThrowWhenReceiptUnknown() {
+        UUID receiptId = UUID.randomUUID();
+
+        assertThatThrownBy(() -> locationIngestService.getReceipt(receiptId))
+                .isInstanceOf(ReceiptNotFoundException.class);
+    }
+
+    @Test
+    @DisplayName("Should run sync update inline under the courier lock and return its response")
+    void shouldRunSyncUpdateUnderCourierLock() {
+        LocationUpdateResponse response = new LocationUpdateResponse(
+                UUID.randomUUID(), courierId, 40.9923307, 29.1244229, request.getTimestamp(), "Location updated successfully");
+        runShardInline();
+        when(locationTrackingService.updateCourierLocation(request)).thenReturn(response);
+
+        LocationUpdateResponse result = locationIngestService.ingest(request, null);
+
+        assertThat(result).isEqualTo(response);
+        verify(shardedCourierExecutor).call(eq(courierId), any());
+        verify(shardedCourierExecutor, never()).submit(any(), any());
+    }
+
+    @Test
+    @DisplayName("Should run sync update on the courier shard when configured and return its response")
+    void shouldRunSyncUpdateOnCourierShard() {
+        ReflectionTestUtils.setField(locationIngestService, "syncOnShard", true);
+        LocationUpdateResponse response = new LocationUpdateResponse(
+                UUID.randomUUID(), courierId, 40.9923307, 29.1244229, request.getTimestamp(), "Location updated successfully");
+        when(shardedCourierExecutor.submit(eq(courierId), any())).thenAnswer(invocation ->
+                CompletableFuture.completedFuture(invocation.<Supplier<LocationUpdateResponse>>getArgument(1).get()));
+        when(locationTrackingService.updateCourierLocation(request)).thenReturn(response);
+
+        LocationUpdateResponse result = locationIngestService.ingest(request, null);
+
+        assertThat(result).isEqualTo(response);
+        verify(shardedCourierExecutor).submit(eq(courierId), any());
+    }
+
+    @Test
+    @DisplayName("Should rethrow the original exception from a failed sync update")
+    void shouldRethrowOriginalExceptionFromSyncUpdate() {
+        ReflectionTestUtils.setField(locationIngestService, "syncOnShard", true);
+        when(shardedCourierExecutor.submit(eq(courierId), any())).thenReturn(
+                CompletableFuture.failedFuture(new CourierNotFoundException("Courier not found with ID: " + courierId)));
+
+        assertThatThrownBy(() -> locationIngestService.ingest(request, null))
+                .isInstanceOf(CourierNotFoundException.class)
+                .hasMessageContaining("Courier not found with ID: " + courierId);
+    }
+
+    @Test
+    @DisplayName("Should answer a retried fix from memory without touching the database")
+    void shouldSuppressRetriedFix() {
+        UUID locationId = UUID.randomUUID();
+        runShardInline();
+        when(locationTrackingService.updateCourierLocation(any())).thenReturn(new LocationUpdateResponse(
+                locationId, courierId, 40.9923307, 29.1244229, request.getTimestamp(), "Location updated successfully"));
+
+        locationIngestService.ingest(request, null);
+        LocationUpdateRequest retry = new LocationUpdateRequest(courierId, 40.9923307, 29.1244229, request.getTimestamp());
+        LocationUpdateResponse result = locationIngestService.ingest(retry, null);
+
+        assertThat(result.getLocationId()).isEqualTo(locationId);
+        assertThat(result.getMessage()).isEqualTo("Duplicate location update ignored");
+        verify(locationTrackingService, times(1)).updateCourierLocation(any());
+        verify(shardedCourierExecutor, times(1)).call(eq(courierId), any());
+        assertThat(meterRegistry.get("courier.ingest.duplicates.suppressed").tag("reason", "fingerprint").counter().count())
+                .isEqualTo(1.0);
+    }
+
+    @Test
+    @DisplayName("Should replay the original response for a repeated idempotency key")
+    void shouldReplayResponseForRepeatedIdempotencyKey() {
+        LocationUpdateResponse response = new LocationUpdateResponse(
+                UUID.randomUUID(), courierId, 40.9923307, 29.1244229, request.getTimestamp(), "Location updated successfully");
+        runShardInline();
+        when(locationTrackingService.updateCourierLocation(any())).thenReturn(response);
+
+        locationIngestService.ingest(request, "key-1");
+        LocationUpdateResponse replay = locationIngestService.ingest(
+                new LocationUpdateRequest(courierId, 41.0, 29.0, request.getTimestamp().plusSeconds(5)), "key-1");
+
+        assertThat(replay).isEqualTo(response);
+        verify(locationTrackingService, times(1)).updateCourierLocation(any());
+    }
+
+    @Test
+    @DisplayName("Should process a retry after the original update failed")
+    void shouldProcessRetryAfterFailure() {
+        runShardInline();
+        when(locationTrackingService.updateCourierLocation(any()))
+                .thenThrow(new LocationTrackingException("Failed to update courier location"))
+                .thenReturn(new LocationUpdateResponse(
+                        UUID.randomUUID(), courierId, 40.9923307, 29.1244229, request.getTimestamp(), "Location updated successfully"));
+
+        assertThatThrownBy(() -> locationIngestService.ingest(request, null))
+                .isInstanceOf(LocationTrackingException.class);
+        LocationUpdateResponse retried = locationIngestService.ingest(request, null);
+
+        assertThat(retried.getMessage()).isEqualTo("Location updated successfully");
+        verify(locationTrackingService, times(2)).updateCourierLocation(any());
+    }
+
+    private void runShardInline() {
+        when(shardedCourierExecutor.call(eq(courierId), any())).thenAnswer(invocation ->
+                invocation.<Supplier<LocationUpdateResponse>>getArgument(1).get());
+    }
+}
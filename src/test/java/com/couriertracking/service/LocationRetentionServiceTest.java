@@ -0,0 +1,132 @@
+package com.couriertracking.service;
+
+import com.couriertracking.datasource.LocationShards;
+import com.couriertracking.dto.RetentionReport;
+import com.couriertracking.storage.LocationArchive;
+import com.couriertracking.storage.LocationHistory;
+import com.couriertracking.storage.TrackBlockCodec;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("LocationRetentionService Tests")
+class LocationRetentionServiceTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2024, 6, 15, 3, 30);
+
+    private JdbcTemplate jdbcTemplate;
+    private SimpleMeterRegistry meterRegistry;
+    private LocationRetentionService locationRetentionService;
+
+    @BeforeEach
+    void setUp() {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:retention-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        new ResourceDatabasePopulator(new ClassPathResource("scripts/location-shard-schema.sql")).execute(dataSource);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+
+        meterRegistry = new SimpleMeterRegistry();
+        locationRetentionService = new LocationRetentionService(dataSource,
+            new StaticListableBeanFactory().getBeanProvider(LocationShards.class), meterRegistry);
+        ReflectionTestUtils.setField(locationRetentionService, "fullResolutionDays", 30);
+        ReflectionTestUtils.setField(locationRetentionService, "historyDays", 365);
+        ReflectionTestUtils.setField(locationRetentionService, "downsampleSeconds", 60);
+        ReflectionTestUtils.setField(locationRetentionService, "maxDaysPerRun", 31);
+    }
+
+    @Test
+    @DisplayName("Should downsample days past the full-resolution window into the month's history table")
+    void shouldDownsampleExpiredDays() {
+        UUID courierId = UUID.randomUUID();
+        LocalDateTime oldDay = NOW.minusDays(40).withHour(10).withMinute(0).withSecond(0);
+        for (int second = 0; second <= 120; second += 10) {
+            insertLocation(courierId, oldDay.plusSeconds(second));
+        }
+        insertLocation(courierId, NOW.minusDays(1));
+
+        RetentionReport report = locationRetentionService.run(NOW);
+
+        String historyTable = "location_history_" + DateTimeFormatter.ofPattern("yyyyMM").format(oldDay);
+        assertThat(jdbcTemplate.queryForList("SELECT timestamp FROM " + historyTable + " ORDER BY timestamp",
+            LocalDateTime.class)).containsExactly(oldDay, oldDay.plusSeconds(60), oldDay.plusSeconds(120));
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM locations", Long.class)).isEqualTo(1);
+        assertThat(report.getDaysCompacted()).isEqualTo(1);
+        assertThat(report.getLocationRowsRemoved()).isEqualTo(13);
+        assertThat(report.getHistoryRowsWritten()).isEqualTo(3);
+        assertThat(report.getRowsReclaimed()).isEqualTo(10);
+        assertThat(report.getBytesReclaimed())
+            .isEqualTo(13L * RetentionReport.LOCATION_ROW_BYTES - 3L * RetentionReport.HISTORY_ROW_BYTES);
+        assertThat(meterRegistry.get("courier.retention.rows.reclaimed").counter().count()).isEqualTo(10.0);
+
+        List<LocalDateTime> history = new ArrayList<>();
+        new LocationHistory(jdbcTemplate.getDataSource(), new StaticListableBeanFactory().getBeanProvider(LocationShards.class))
+            .forEachPoint(courierId, oldDay.minusMonths(2), NOW, point -> history.add(point.timestamp()));
+        assertThat(history).containsExactly(oldDay, oldDay.plusSeconds(60), oldDay.plusSeconds(120));
+    }
+
+    @Test
+    @DisplayName("Should drop history partitions whose month has expired and skip history for expired days")
+    void shouldDropExpiredHistory() {
+        jdbcTemplate.execute("CREATE TABLE location_history_202301 (courier_id UUID NOT NULL, "
+            + "timestamp TIMESTAMP(6) NOT NULL, latitude DOUBLE PRECISION NOT NULL, longitude DOUBLE PRECISION NOT NULL)");
+        jdbcTemplate.update("INSERT INTO location_history_202301 VALUES (?, ?, 40.99, 29.12), (?, ?, 40.99, 29.12)",
+            UUID.randomUUID(), LocalDateTime.of(2023, 1, 5, 10, 0), UUID.randomUUID(), LocalDateTime.of(2023, 1, 6, 10, 0));
+        insertLocation(UUID.randomUUID(), NOW.minusDays(400));
+
+        RetentionReport report = locationRetentionService.run(NOW);
+
+        assertThat(jdbcTemplate.queryForObject(
+            "SELECT COUNT(*) FROM INFORMATION_SCHEMA.TABLES WHERE TABLE_NAME LIKE 'LOCATION_HISTORY_%'", Long.class))
+            .isZero();
+        assertThat(report.getPartitionsDropped()).isEqualTo(1);
+        assertThat(report.getHistoryRowsDropped()).isEqualTo(2);
+        assertThat(report.getLocationRowsRemoved()).isEqualTo(1);
+        assertThat(report.getHistoryRowsWritten()).isZero();
+    }
+
+    @Test
+    @DisplayName("Should downsample archived days past the full-resolution window and delete their blocks")
+    void shouldCompactExpiredArchiveBlocks() {
+        LocationArchive locationArchive = new LocationArchive(jdbcTemplate.getDataSource(),
+            new StaticListableBeanFactory().getBeanProvider(LocationShards.class));
+        locationArchive.createTables();
+        UUID courierId = UUID.randomUUID();
+        LocalDateTime oldDay = NOW.minusDays(40).withHour(10).withMinute(0).withSecond(0);
+        List<TrackBlockCodec.Point> points = new ArrayList<>();
+        for (int second = 0; second <= 120; second += 10) {
+            points.add(TrackBlockCodec.Point.of(oldDay.plusSeconds(second), 40.99, 29.12, oldDay.plusSeconds(second)));
+        }
+        byte[] block = TrackBlockCodec.encode(points);
+        locationArchive.saveBlock(jdbcTemplate, courierId, oldDay.toLocalDate(), points, block);
+
+        RetentionReport report = locationRetentionService.run(NOW);
+
+        String historyTable = "location_history_" + DateTimeFormatter.ofPattern("yyyyMM").format(oldDay);
+        assertThat(jdbcTemplate.queryForList("SELECT timestamp FROM " + historyTable + " ORDER BY timestamp",
+            LocalDateTime.class)).containsExactly(oldDay, oldDay.plusSeconds(60), oldDay.plusSeconds(120));
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM location_archive", Long.class)).isZero();
+        assertThat(report.getDaysCompacted()).isEqualTo(1);
+        assertThat(report.getArchiveBlocksRemoved()).isEqualTo(1);
+        assertThat(report.getBytesReclaimed()).isEqualTo(block.length - 3L * RetentionReport.HISTORY_ROW_BYTES);
+    }
+
+    private void insertLocation(UUID courierId, LocalDateTime timestamp) {
+        jdbcTemplate.update("INSERT INTO locations (id, courier_id, latitude, longitude, timestamp, received_at) "
+            + "VALUES (?, ?, 40.99, 29.12, ?, ?)", UUID.randomUUID(), courierId, timestamp, timestamp);
+    }
+}
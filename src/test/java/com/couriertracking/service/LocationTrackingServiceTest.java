@@ -25,6 +25,7 @@ import java.util.UUID;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
@@ -44,6 +45,12 @@ class LocationTrackingServiceTest {
     @Mock
     private DistanceCalculationService distanceCalculationService;
 
+    @Mock
+    private ReportIntervalAdvisor reportIntervalAdvisor;
+
+    @Mock
+    private TripService tripService;
+
     @InjectMocks
     private LocationTrackingService locationTrackingService;
 
@@ -84,7 +91,7 @@ class LocationTrackingServiceTest {
         when(courierRepository.findById(courierId)).thenReturn(Optional.of(courier));
         when(locationRepository.save(any(Location.class))).thenReturn(savedLocation);
         when(storeEntranceService.checkAndLogStoreEntrance(
-                eq(courier), eq(40.9923307), eq(29.1244229), eq(timestamp)))
+                eq(courier), eq(40.9923307), eq(29.1244229), eq(timestamp), anyDouble()))
                 .thenReturn(null); // No store entrance
 
         LocationUpdateResponse response = locationTrackingService.updateCourierLocation(validRequest);
@@ -101,7 +108,7 @@ class LocationTrackingServiceTest {
         verify(locationRepository).save(any(Location.class));
         verify(distanceCalculationService).updateDistanceForNewLocation(courierId, savedLocation);
         verify(storeEntranceService).checkAndLogStoreEntrance(
-                courier, 40.9923307, 29.1244229, timestamp);
+                eq(courier), eq(40.9923307), eq(29.1244229), eq(timestamp), anyDouble());
     }
 
     @Test
@@ -120,7 +127,7 @@ class LocationTrackingServiceTest {
         when(courierRepository.findById(courierId)).thenReturn(Optional.of(courier));
         when(locationRepository.save(any(Location.class))).thenReturn(savedLocation);
         when(storeEntranceService.checkAndLogStoreEntrance(
-                eq(courier), eq(40.9923307), eq(29.1244229), eq(timestamp)))
+                eq(courier), eq(40.9923307), eq(29.1244229), eq(timestamp), anyDouble()))
                 .thenReturn(storeEntrance);
 
         LocationUpdateResponse response = locationTrackingService.updateCourierLocation(validRequest);
@@ -135,7 +142,8 @@ class LocationTrackingServiceTest {
         verify(locationRepository).save(any(Location.class));
         verify(distanceCalculationService).updateDistanceForNewLocation(courierId, savedLocation);
         verify(storeEntranceService).checkAndLogStoreEntrance(
-                courier, 40.9923307, 29.1244229, timestamp);
+                eq(courier), eq(40.9923307), eq(29.1244229), eq(timestamp), anyDouble());
+        verify(tripService).recordFix(courier, 40.9923307, 29.1244229, timestamp, 0.0, true);
     }
 
     @Test
@@ -166,7 +174,7 @@ class LocationTrackingServiceTest {
             return savedLocation;
         });
         when(storeEntranceService.checkAndLogStoreEntrance(
-                eq(courier), eq(40.9923307), eq(29.1244229), eq(timestamp)))
+                eq(courier), eq(40.9923307), eq(29.1244229), eq(timestamp), anyDouble()))
                 .thenReturn(null);
 
         LocationUpdateResponse response = locationTrackingService.updateCourierLocation(validRequest);
@@ -174,4 +182,31 @@ class LocationTrackingServiceTest {
         assertThat(response).isNotNull();
         verify(locationRepository).save(any(Location.class));
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("Should discard location older than the reorder watermark without saving it")
+    void shouldDiscardLocationBehindWatermark() {
+        when(courierRepository.findById(courierId)).thenReturn(Optional.of(courier));
+        when(distanceCalculationService.isBehindWatermark(courierId, timestamp)).thenReturn(true);
+
+        LocationUpdateResponse response = locationTrackingService.updateCourierLocation(validRequest);
+
+        assertThat(response.getLocationId()).isNull();
+        assertThat(response.getMessage()).isEqualTo("Location discarded: older than the reorder watermark");
+        verifyNoInteractions(locationRepository);
+        verifyNoInteractions(storeEntranceService);
+        verify(distanceCalculationService, never()).updateDistanceForNewLocation(any(), any());
+    }
+
+    @Test
+    @DisplayName("Should return the next report hint with the response")
+    void shouldReturnNextReportHint() {
+        when(courierRepository.findById(courierId)).thenReturn(Optional.of(courier));
+        when(locationRepository.save(any(Location.class))).thenReturn(savedLocation);
+        when(reportIntervalAdvisor.advise(courierId, 40.9923307, 29.1244229, timestamp)).thenReturn(60);
+
+        LocationUpdateResponse response = locationTrackingService.updateCourierLocation(validRequest);
+
+        assertThat(response.getNextReportAfterSeconds()).isEqualTo(60);
+    }
+}
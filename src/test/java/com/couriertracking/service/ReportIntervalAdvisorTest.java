@@ -0,0 +1,160 @@
+package com.couriertracking.service;
+
+import com.couriertracking.geo.StoreIndex;
+import com.couriertracking.model.Store;
+import com.couriertracking.repository.StoreRepository;
+import com.couriertracking.state.CourierMotion;
+import com.couriertracking.state.CourierStateRegistry;
+import com.couriertracking.strategy.DistanceCalculationContext;
+import com.couriertracking.strategy.EuclideanDistanceStrategy;
+import com.couriertracking.strategy.HaversineDistanceStrategy;
+import com.couriertracking.util.DistanceUtils;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.lenient;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("ReportIntervalAdvisor Tests")
+class ReportIntervalAdvisorTest {
+
+    // ~1 km of latitude with the euclidean strategy
+    private static final double ONE_KM_LAT = 1000.0 / 111000.0;
+
+    @Mock
+    private StoreRepository storeRepository;
+
+    private CourierStateRegistry courierStateRegistry;
+    private ReportIntervalAdvisor reportIntervalAdvisor;
+    private UUID courierId;
+    private LocalDateTime start;
+    private double storeLatitude = 40.9923307;
+    private double storeLongitude = 29.1244229;
+
+    @BeforeEach
+    void setUp() {
+        DistanceUtils distanceUtils = new DistanceUtils(new DistanceCalculationContext(
+                "euclidean", new EuclideanDistanceStrategy(), new HaversineDistanceStrategy()));
+        Store store = new Store(UUID.randomUUID(), "Ataşehir MMM Migros", storeLatitude, storeLongitude);
+        lenient().when(storeRepository.findAll()).thenReturn(List.of(store));
+
+        courierStateRegistry = new CourierStateRegistry();
+        reportIntervalAdvisor = new ReportIntervalAdvisor(
+                courierStateRegistry, new StoreIndex(storeRepository, distanceUtils, new SimpleMeterRegistry()), distanceUtils);
+        ReflectionTestUtils.setField(reportIntervalAdvisor, "entranceRadiusMeters", 100);
+        ReflectionTestUtils.setField(reportIntervalAdvisor, "enabled", true);
+        ReflectionTestUtils.setField(reportIntervalAdvisor, "minSeconds", 5);
+        ReflectionTestUtils.setField(reportIntervalAdvisor, "maxSeconds", 120);
+        ReflectionTestUtils.setField(reportIntervalAdvisor, "speedFloorMetersPerSecond", 5.0);
+        ReflectionTestUtils.setField(reportIntervalAdvisor, "safetyFactor", 0.5);
+        ReflectionTestUtils.setField(reportIntervalAdvisor, "speedSmoothing", 0.3);
+
+        courierId = UUID.randomUUID();
+        start = LocalDateTime.of(2025, 1, 1, 12, 0);
+    }
+
+    @Test
+    @DisplayName("Should hint the maximum interval for a slow courier far from every store")
+    void shouldHintMaxIntervalWhenFarAndSlow() {
+        Integer first = reportIntervalAdvisor.advise(courierId, storeLatitude + 5 * ONE_KM_LAT, storeLongitude, start);
+        Integer second = reportIntervalAdvisor.advise(courierId, storeLatitude + 5 * ONE_KM_LAT, storeLongitude, start.plusSeconds(30));
+
+        assertThat(first).isEqualTo(120);
+        assertThat(second).isEqualTo(120);
+    }
+
+    @Test
+    @DisplayName("Should shorten the interval as a fast courier approaches a store")
+    void shouldShortenIntervalWhenApproachingStore() {
+        // 15 m/s straight towards the store
+        reportIntervalAdvisor.advise(courierId, storeLatitude + 2 * ONE_KM_LAT, storeLongitude, start);
+        Integer farHint = reportIntervalAdvisor.advise(
+                courierId, storeLatitude + 1.7 * ONE_KM_LAT, storeLongitude, start.plusSeconds(20));
+        Integer nearHint = reportIntervalAdvisor.advise(
+                courierId, storeLatitude + 0.5 * ONE_KM_LAT, storeLongitude, start.plusSeconds(100));
+
+        assertThat(farHint).isBetween(40, 60);
+        assertThat(nearHint).isLessThan(farHint);
+        assertThat(nearHint).isBetween(5, 15);
+    }
+
+    @Test
+    @DisplayName("Should ignore a fix less than a millisecond after the previous one")
+    void shouldIgnoreSubMillisecondFix() {
+        reportIntervalAdvisor.advise(courierId, storeLatitude + 2 * ONE_KM_LAT, storeLongitude, start);
+        Integer hint = reportIntervalAdvisor.advise(
+                courierId, storeLatitude + 1.9 * ONE_KM_LAT, storeLongitude, start.plusNanos(500_000));
+
+        // Still at the speed floor rather than an infinite speed
+        assertThat(hint).isGreaterThan(5);
+    }
+
+    @Test
+    @DisplayName("Should take the hint of a late fix from the latest position and keep the speed estimate")
+    void shouldIgnoreLateFix() {
+        reportIntervalAdvisor.advise(courierId, storeLatitude + 2 * ONE_KM_LAT, storeLongitude, start);
+        Integer hint = reportIntervalAdvisor.advise(
+                courierId, storeLatitude + 1.7 * ONE_KM_LAT, storeLongitude, start.plusSeconds(20));
+        CourierMotion motion = courierStateRegistry.getOrCreate(courierId).getMotion();
+        double speed = motion.getSpeedMetersPerSecond();
+
+        // Recorded ten seconds before the latest fix, next to the store
+        Integer lateHint = reportIntervalAdvisor.advise(courierId, storeLatitude, storeLongitude, start.plusSeconds(10));
+
+        assertThat(lateHint).isEqualTo(hint);
+        assertThat(motion.getSpeedMetersPerSecond()).isEqualTo(speed);
+        assertThat(motion.getLastTimestamp()).isEqualTo(start.plusSeconds(20));
+    }
+
+    @Test
+    @DisplayName("Should put the last fix and speed estimate back when the fix is rolled back")
+    void shouldRestoreMotionOnRollback() {
+        reportIntervalAdvisor.advise(courierId, storeLatitude + 2 * ONE_KM_LAT, storeLongitude, start);
+        reportIntervalAdvisor.advise(courierId, storeLatitude + 1.7 * ONE_KM_LAT, storeLongitude, start.plusSeconds(20));
+        CourierMotion motion = courierStateRegistry.getOrCreate(courierId).getMotion();
+        double speed = motion.getSpeedMetersPerSecond();
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            reportIntervalAdvisor.advise(courierId, storeLatitude, storeLongitude, start.plusSeconds(40));
+            assertThat(motion.getLastTimestamp()).isEqualTo(start.plusSeconds(40));
+            TransactionSynchronizationManager.getSynchronizations()
+                .forEach(s -> s.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertThat(motion.getLastTimestamp()).isEqualTo(start.plusSeconds(20));
+        assertThat(motion.getLastLatitude()).isEqualTo(storeLatitude + 1.7 * ONE_KM_LAT);
+        assertThat(motion.getSpeedMetersPerSecond()).isEqualTo(speed);
+    }
+
+    @Test
+    @DisplayName("Should hint the minimum interval inside the entrance radius")
+    void shouldHintMinIntervalInsideEntranceRadius() {
+        Integer hint = reportIntervalAdvisor.advise(courierId, storeLatitude, storeLongitude, start);
+
+        assertThat(hint).isEqualTo(5);
+    }
+
+    @Test
+    @DisplayName("Should return no hint when disabled")
+    void shouldReturnNoHintWhenDisabled() {
+        ReflectionTestUtils.setField(reportIntervalAdvisor, "enabled", false);
+
+        assertThat(reportIntervalAdvisor.advise(courierId, storeLatitude, storeLongitude, start)).isNull();
+    }
+}
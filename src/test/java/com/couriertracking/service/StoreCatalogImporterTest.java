@@ -0,0 +1,115 @@
+package com.couriertracking.service;
+
+import com.couriertracking.dto.StoreDto;
+import com.couriertracking.dto.StoreLoadReport;
+import com.couriertracking.model.Store;
+import com.couriertracking.repository.StoreRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("StoreCatalogImporter Tests")
+class StoreCatalogImporterTest {
+
+    @Mock
+    private StoreRepository storeRepository;
+
+    private StoreCatalogImporter storeCatalogImporter;
+
+    @BeforeEach
+    void setUp() {
+        storeCatalogImporter = new StoreCatalogImporter(storeRepository, new ObjectMapper());
+        ReflectionTestUtils.setField(storeCatalogImporter, "batchSize", 2);
+    }
+
+    @Test
+    @DisplayName("Should stream the catalogue and save it in chunks")
+    void shouldStreamCatalogueInChunks() throws IOException {
+        String json = """
+                [
+                  {"name": "A", "lat": 40.1, "lng": 29.1},
+                  {"name": "B", "lat": 40.2, "lng": 29.2},
+                  {"name": "C", "lat": 40.3, "lng": 29.3, "geofence": [[40.3, 29.3], [40.31, 29.3], [40.31, 29.31]]}
+                ]
+                """;
+
+        StoreLoadReport report = storeCatalogImporter.importCatalogue(stream(json));
+
+        assertThat(report.getInserted()).isEqualTo(3);
+        assertThat(report.getTotal()).isEqualTo(3);
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Store>> saved = ArgumentCaptor.forClass(List.class);
+        verify(storeRepository, times(2)).saveAll(saved.capture());
+        assertThat(saved.getAllValues()).extracting(List::size).containsExactly(2, 1);
+        Store last = saved.getAllValues().get(1).get(0);
+        assertThat(last.getExternalId()).isEqualTo("C");
+        assertThat(last.getGeofence()).hasSize(3);
+    }
+
+    @Test
+    @DisplayName("Should update changed stores and skip unchanged ones by external ID")
+    void shouldUpsertByExternalId() throws IOException {
+        Store unchanged = new Store(UUID.randomUUID(), "Same", 40.1, 29.1);
+        unchanged.setExternalId("store-1");
+        Store moved = new Store(UUID.randomUUID(), "Moved", 40.2, 29.2);
+        moved.setExternalId("store-2");
+        when(storeRepository.findByExternalIdIn(anyCollection())).thenReturn(List.of(unchanged, moved));
+
+        String json = """
+                [
+                  {"externalId": "store-1", "name": "Same", "lat": 40.1, "lng": 29.1},
+                  {"externalId": "store-2", "name": "Moved", "lat": 40.25, "lng": 29.25}
+                ]
+                """;
+
+        StoreLoadReport report = storeCatalogImporter.importCatalogue(stream(json));
+
+        assertThat(report.getUnchanged()).isEqualTo(1);
+        assertThat(report.getUpdated()).isEqualTo(1);
+        assertThat(report.getInserted()).isZero();
+        verify(storeRepository).saveAll(List.of(moved));
+        assertThat(moved.getLatitude()).isEqualTo(40.25);
+    }
+
+    @Test
+    @DisplayName("Should upsert an in-memory list of stores")
+    void shouldUpsertList() {
+        StoreLoadReport report = storeCatalogImporter.upsert(List.of(
+                new StoreDto("x", "X", 40.0, 29.0, null),
+                new StoreDto("y", "Y", 40.0, 29.0, null),
+                new StoreDto("z", "Z", 40.0, 29.0, null)));
+
+        assertThat(report.getInserted()).isEqualTo(3);
+        verify(storeRepository, times(2)).saveAll(any());
+    }
+
+    @Test
+    @DisplayName("Should reject a catalogue that is not a JSON array")
+    void shouldRejectNonArrayCatalogue() {
+        assertThatThrownBy(() -> storeCatalogImporter.importCatalogue(stream("{\"name\": \"A\"}")))
+                .isInstanceOf(IOException.class);
+    }
+
+    private ByteArrayInputStream stream(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+}
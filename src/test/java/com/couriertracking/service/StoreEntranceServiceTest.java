@@ -1,27 +1,40 @@
 package com.couriertracking.service;
 
+import com.couriertracking.cache.EntranceCooldownGate;
+import com.couriertracking.cache.RedisCourierState;
+import com.couriertracking.geo.Geofence;
+import com.couriertracking.geo.StoreIndex;
+import com.couriertracking.ingest.ShardedCourierExecutor;
 import com.couriertracking.model.Courier;
+import com.couriertracking.model.GeoPoint;
 import com.couriertracking.model.Store;
 import com.couriertracking.model.StoreEntrance;
+import com.couriertracking.model.StoreVisit;
 import com.couriertracking.repository.StoreEntranceRepository;
-import com.couriertracking.repository.StoreRepository;
+import com.couriertracking.repository.StoreVisitRepository;
+import com.couriertracking.state.CourierStateRegistry;
 import com.couriertracking.util.DistanceUtils;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
@@ -30,7 +43,7 @@ import static org.mockito.Mockito.*;
 class StoreEntranceServiceTest {
 
     @Mock
-    private StoreRepository storeRepository;
+    private StoreIndex storeIndex;
 
     @Mock
     private StoreEntranceRepository storeEntranceRepository;
@@ -38,8 +51,21 @@ class StoreEntranceServiceTest {
     @Mock
     private DistanceUtils distanceUtils;
 
-    @InjectMocks
+    @Mock
+    private EntranceCooldownGate entranceCooldownGate;
+
+    @Mock
+    private StoreVisitRepository storeVisitRepository;
+
+    @Mock
+    private ShardedCourierExecutor shardedCourierExecutor;
+
+    @Mock
+    private RedisCourierState redisCourierState;
+
     private StoreEntranceService storeEntranceService;
+    private CourierStateRegistry courierStateRegistry;
+    private SimpleMeterRegistry meterRegistry;
 
     private Courier courier;
     private Store nearbyStore;
@@ -50,6 +76,13 @@ class StoreEntranceServiceTest {
 
     @BeforeEach
     void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        courierStateRegistry = new CourierStateRegistry();
+        storeEntranceService = new StoreEntranceService(
+                storeIndex, storeEntranceRepository, distanceUtils, courierStateRegistry, entranceCooldownGate,
+                storeVisitRepository, shardedCourierExecutor, redisCourierState, meterRegistry);
+        ReflectionTestUtils.setField(storeEntranceService, "budgetEnabled", true);
+        ReflectionTestUtils.setField(storeEntranceService, "sweptDetectionEnabled", true);
         ReflectionTestUtils.setField(storeEntranceService, "entranceRadiusMeters", 100);
         ReflectionTestUtils.setField(storeEntranceService, "entranceCooldownMinutes", 1);
 
@@ -80,7 +113,7 @@ class StoreEntranceServiceTest {
     @DisplayName("Should log store entrance when courier is within radius and no recent entrance")
     void shouldLogStoreEntranceWhenWithinRadiusAndNoCooldown() {
         List<Store> stores = Arrays.asList(nearbyStore, farStore);
-        when(storeRepository.findAll()).thenReturn(stores);
+        when(storeIndex.storesAlong(anyDouble(), anyDouble(), anyDouble(), anyDouble(), anyDouble())).thenReturn(stores);
         when(distanceUtils.calculateDistanceInMeters(
                 courierLatitude, courierLongitude,
                 nearbyStore.getLatitude(), nearbyStore.getLongitude()))
@@ -106,7 +139,7 @@ class StoreEntranceServiceTest {
         assertThat(result.getStore()).isEqualTo(nearbyStore);
         assertThat(result.getEntranceTime()).isEqualTo(timestamp);
 
-        verify(storeRepository).findAll();
+        verify(storeIndex).storesAlong(anyDouble(), anyDouble(), anyDouble(), anyDouble(), anyDouble());
         verify(distanceUtils).calculateDistanceInMeters(
                 courierLatitude, courierLongitude,
                 nearbyStore.getLatitude(), nearbyStore.getLongitude());
@@ -119,7 +152,7 @@ class StoreEntranceServiceTest {
     @DisplayName("Should not log entrance when courier is outside radius")
     void shouldNotLogEntranceWhenOutsideRadius() {
         List<Store> stores = Arrays.asList(farStore);
-        when(storeRepository.findAll()).thenReturn(stores);
+        when(storeIndex.storesAlong(anyDouble(), anyDouble(), anyDouble(), anyDouble(), anyDouble())).thenReturn(stores);
         when(distanceUtils.calculateDistanceInMeters(
                 courierLatitude, courierLongitude,
                 farStore.getLatitude(), farStore.getLongitude()))
@@ -136,7 +169,7 @@ class StoreEntranceServiceTest {
     @DisplayName("Should not log entrance when recent entrance exists (cooldown period)")
     void shouldNotLogEntranceWhenInCooldownPeriod() {
         List<Store> stores = Arrays.asList(nearbyStore);
-        when(storeRepository.findAll()).thenReturn(stores);
+        when(storeIndex.storesAlong(anyDouble(), anyDouble(), anyDouble(), anyDouble(), anyDouble())).thenReturn(stores);
         when(distanceUtils.calculateDistanceInMeters(
                 courierLatitude, courierLongitude,
                 nearbyStore.getLatitude(), nearbyStore.getLongitude()))
@@ -150,7 +183,310 @@ class StoreEntranceServiceTest {
 
         assertThat(result).isNull();
 
-        verify(storeRepository).findAll();
+        verify(storeIndex).storesAlong(anyDouble(), anyDouble(), anyDouble(), anyDouble(), anyDouble());
         verify(storeEntranceRepository, never()).save(any());
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("Should skip entrance lookups while the courier is within its safe-distance budget")
+    void shouldSkipLookupsWithinSafeDistanceBudget() {
+        when(storeIndex.storesAlong(anyDouble(), anyDouble(), anyDouble(), anyDouble(), anyDouble())).thenReturn(List.of(farStore));
+        when(distanceUtils.calculateDistanceInMeters(anyDouble(), anyDouble(), anyDouble(), anyDouble()))
+                .thenReturn(1100.0);
+        when(storeIndex.clearanceMeters(anyDouble(), anyDouble(), anyDouble())).thenReturn(1000.0); // 1000m budget
+
+        storeEntranceService.checkAndLogStoreEntrance(courier, courierLatitude, courierLongitude, timestamp, 0.0);
+        StoreEntrance second = storeEntranceService.checkAndLogStoreEntrance(
+                courier, courierLatitude, courierLongitude, timestamp.plusSeconds(30), 0.4);
+        StoreEntrance third = storeEntranceService.checkAndLogStoreEntrance(
+                courier, courierLatitude, courierLongitude, timestamp.plusSeconds(60), 0.5);
+
+        assertThat(second).isNull();
+        assertThat(third).isNull();
+        verify(storeIndex, times(1)).storesAlong(anyDouble(), anyDouble(), anyDouble(), anyDouble(), anyDouble());
+        assertThat(meterRegistry.get("courier.store.entrance.checks").tag("result", "skipped").counter().count())
+                .isEqualTo(2.0);
+        assertThat(meterRegistry.get("courier.store.entrance.checks").tag("result", "performed").counter().count())
+                .isEqualTo(1.0);
+    }
+
+    @Test
+    @DisplayName("Should look up every fix on its own, without budget or swept segment, with Redis courier state")
+    void shouldIgnoreNodeLocalBudgetWithRedisState() {
+        when(redisCourierState.isEnabled()).thenReturn(true);
+        when(storeIndex.storesAlong(anyDouble(), anyDouble(), anyDouble(), anyDouble(), anyDouble())).thenReturn(List.of(farStore));
+        when(distanceUtils.calculateDistanceInMeters(anyDouble(), anyDouble(), anyDouble(), anyDouble()))
+                .thenReturn(1100.0);
+
+        storeEntranceService.checkAndLogStoreEntrance(courier, courierLatitude, courierLongitude, timestamp, 0.0);
+        storeEntranceService.checkAndLogStoreEntrance(
+                courier, courierLatitude + 0.01, courierLongitude, timestamp.plusSeconds(30), 0.4);
+
+        // Each lookup covers only its own fix, not a segment from a fix another node may have superseded
+        verify(storeIndex).storesAlong(courierLatitude, courierLongitude, courierLatitude, courierLongitude, 100);
+        verify(storeIndex).storesAlong(courierLatitude + 0.01, courierLongitude, courierLatitude + 0.01, courierLongitude, 100);
+        verify(storeIndex, never()).clearanceMeters(anyDouble(), anyDouble(), anyDouble());
+        assertThat(meterRegistry.get("courier.store.entrance.checks").tag("result", "performed").counter().count())
+                .isEqualTo(2.0);
+    }
+
+    @Test
+    @DisplayName("Should look up entrances again once the budget is exhausted")
+    void shouldLookUpAgainWhenBudgetExhausted() {
+        when(storeIndex.storesAlong(anyDouble(), anyDouble(), anyDouble(), anyDouble(), anyDouble())).thenReturn(List.of(nearbyStore));
+        when(distanceUtils.calculateDistanceInMeters(anyDouble(), anyDouble(), anyDouble(), anyDouble()))
+                .thenReturn(400.0, 50.0); // outside, then inside the radius
+        when(storeIndex.clearanceMeters(anyDouble(), anyDouble(), anyDouble())).thenReturn(300.0); // 300m budget
+        when(storeEntranceRepository.existsByCourierAndStoreAndEntranceTimeAfter(
+                eq(courier), eq(nearbyStore), any(LocalDateTime.class)))
+                .thenReturn(false);
+        when(storeEntranceRepository.save(any(StoreEntrance.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        storeEntranceService.checkAndLogStoreEntrance(courier, courierLatitude, courierLongitude, timestamp, 0.0);
+        StoreEntrance result = storeEntranceService.checkAndLogStoreEntrance(
+                courier, courierLatitude, courierLongitude, timestamp.plusSeconds(30), 0.35);
+
+        assertThat(result).isNotNull();
+        assertThat(result.getStore()).isEqualTo(nearbyStore);
+        verify(storeIndex, times(2)).storesAlong(anyDouble(), anyDouble(), anyDouble(), anyDouble(), anyDouble());
+    }
+
+    @Test
+    @DisplayName("Should always look up entrances for late fixes")
+    void shouldAlwaysLookUpLateFixes() {
+        when(storeIndex.storesAlong(anyDouble(), anyDouble(), anyDouble(), anyDouble(), anyDouble())).thenReturn(List.of(farStore));
+        when(distanceUtils.calculateDistanceInMeters(anyDouble(), anyDouble(), anyDouble(), anyDouble()))
+                .thenReturn(5000.0);
+        when(storeIndex.clearanceMeters(anyDouble(), anyDouble(), anyDouble())).thenReturn(4900.0);
+
+        storeEntranceService.checkAndLogStoreEntrance(courier, courierLatitude, courierLongitude, timestamp, 0.0);
+        storeEntranceService.checkAndLogStoreEntrance(
+                courier, courierLatitude, courierLongitude, timestamp.minusSeconds(30), 0.1);
+
+        verify(storeIndex, times(2)).storesAlong(anyDouble(), anyDouble(), anyDouble(), anyDouble(), anyDouble());
+    }
+
+    @Test
+    @DisplayName("Should detect a courier passing through a store radius between two fixes")
+    void shouldDetectEntranceBetweenTwoFixes() {
+        // Fixes ~1 km south and ~1 km north of the store, two minutes apart
+        double southLatitude = nearbyStore.getLatitude() - 0.009;
+        double northLatitude = nearbyStore.getLatitude() + 0.009;
+        when(storeIndex.storesAlong(anyDouble(), anyDouble(), anyDouble(), anyDouble(), anyDouble()))
+                .thenReturn(List.of(nearbyStore));
+        when(distanceUtils.calculateDistanceInMeters(anyDouble(), anyDouble(), anyDouble(), anyDouble()))
+                .thenReturn(1000.0);
+        when(storeIndex.clearanceMeters(anyDouble(), anyDouble(), anyDouble())).thenReturn(900.0);
+        when(storeEntranceRepository.existsByCourierAndStoreAndEntranceTimeAfter(
+                eq(courier), eq(nearbyStore), any(LocalDateTime.class)))
+                .thenReturn(false);
+        when(storeEntranceRepository.save(any(StoreEntrance.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        StoreEntrance first = storeEntranceService.checkAndLogStoreEntrance(
+                courier, southLatitude, nearbyStore.getLongitude(), timestamp, 0.0);
+        StoreEntrance second = storeEntranceService.checkAndLogStoreEntrance(
+                courier, northLatitude, nearbyStore.getLongitude(), timestamp.plusSeconds(120), 2.0);
+
+        assertThat(first).isNull();
+        assertThat(second).isNotNull();
+        assertThat(second.getStore()).isEqualTo(nearbyStore);
+        // Entered the 100m radius ~54s in, not at either fix
+        assertThat(second.getEntranceTime()).isBetween(timestamp.plusSeconds(53), timestamp.plusSeconds(55));
+    }
+
+    @Test
+    @DisplayName("Should not report an entrance for a segment passing beside a store")
+    void shouldNotDetectEntranceForSegmentPassingBeside() {
+        // Parallel to the store, ~300m east of it
+        double eastLongitude = nearbyStore.getLongitude() + 0.0036;
+        when(storeIndex.storesAlong(anyDouble(), anyDouble(), anyDouble(), anyDouble(), anyDouble()))
+                .thenReturn(List.of(nearbyStore));
+        when(distanceUtils.calculateDistanceInMeters(anyDouble(), anyDouble(), anyDouble(), anyDouble()))
+                .thenReturn(1000.0);
+        when(storeIndex.clearanceMeters(anyDouble(), anyDouble(), anyDouble())).thenReturn(50.0);
+
+        storeEntranceService.checkAndLogStoreEntrance(
+                courier, nearbyStore.getLatitude() - 0.009, eastLongitude, timestamp, 0.0);
+        StoreEntrance result = storeEntranceService.checkAndLogStoreEntrance(
+                courier, nearbyStore.getLatitude() + 0.009, eastLongitude, timestamp.plusSeconds(120), 2.0);
+
+        assertThat(result).isNull();
+        verifyNoInteractions(storeEntranceRepository);
+    }
+
+    @Test
+    @DisplayName("Should use a store's polygon geofence instead of its radius")
+    void shouldUsePolygonGeofence() {
+        // Mall polygon reaching ~300m north of the store's own position
+        Geofence mall = Geofence.of(List.of(
+                new GeoPoint(40.9915, 29.1230), new GeoPoint(40.9915, 29.1260),
+                new GeoPoint(40.9950, 29.1260), new GeoPoint(40.9950, 29.1230)), 300);
+        when(storeIndex.storesAlong(anyDouble(), anyDouble(), anyDouble(), anyDouble(), anyDouble()))
+                .thenReturn(List.of(nearbyStore));
+        when(storeIndex.geofence(nearbyStore)).thenReturn(Optional.of(mall));
+        when(storeEntranceRepository.existsByCourierAndStoreAndEntranceTimeAfter(
+                eq(courier), eq(nearbyStore), any(LocalDateTime.class)))
+                .thenReturn(false);
+        when(storeEntranceRepository.save(any(StoreEntrance.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        StoreEntrance inside = storeEntranceService.checkAndLogStoreEntrance(courier, 40.9945, 29.1245, timestamp);
+        StoreEntrance outside = storeEntranceService.checkAndLogStoreEntrance(courier, 40.9960, 29.1245, timestamp);
+
+        assertThat(inside).isNotNull();
+        assertThat(inside.getStore()).isEqualTo(nearbyStore);
+        assertThat(outside).isNull();
+        verifyNoInteractions(distanceUtils);
+    }
+
+    @Test
+    @DisplayName("Should decide the cooldown with the Redis gate without querying the database")
+    void shouldUseCooldownGateBeforeDatabase() {
+        when(entranceCooldownGate.isEnabled()).thenReturn(true);
+        when(storeIndex.storesAlong(anyDouble(), anyDouble(), anyDouble(), anyDouble(), anyDouble()))
+                .thenReturn(List.of(nearbyStore));
+        when(distanceUtils.calculateDistanceInMeters(anyDouble(), anyDouble(), anyDouble(), anyDouble())).thenReturn(50.0);
+        when(entranceCooldownGate.tryAcquire(courier.getId(), nearbyStore.getId(), timestamp))
+                .thenReturn(EntranceCooldownGate.Decision.ACQUIRED, EntranceCooldownGate.Decision.HELD);
+        when(storeEntranceRepository.save(any(StoreEntrance.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        assertThat(storeEntranceService.checkAndLogStoreEntrance(courier, courierLatitude, courierLongitude, timestamp))
+                .isNotNull();
+        assertThat(storeEntranceService.checkAndLogStoreEntrance(courier, courierLatitude, courierLongitude, timestamp))
+                .isNull();
+
+        verify(storeEntranceRepository, times(1)).save(any(StoreEntrance.class));
+        verify(storeEntranceRepository, never()).existsByCourierAndStoreAndEntranceTimeAfter(any(), any(), any());
+    }
+
+    @Test
+    @DisplayName("Should fall back to the database cooldown check when Redis is unavailable")
+    void shouldFallBackToDatabaseCooldownCheck() {
+        when(entranceCooldownGate.isEnabled()).thenReturn(true);
+        when(storeIndex.storesAlong(anyDouble(), anyDouble(), anyDouble(), anyDouble(), anyDouble()))
+                .thenReturn(List.of(nearbyStore));
+        when(distanceUtils.calculateDistanceInMeters(anyDouble(), anyDouble(), anyDouble(), anyDouble())).thenReturn(50.0);
+        when(entranceCooldownGate.tryAcquire(courier.getId(), nearbyStore.getId(), timestamp))
+                .thenReturn(EntranceCooldownGate.Decision.UNAVAILABLE);
+        when(storeEntranceRepository.existsByCourierAndStoreAndEntranceTimeAfter(
+                eq(courier), eq(nearbyStore), any(LocalDateTime.class)))
+                .thenReturn(true);
+
+        assertThat(storeEntranceService.checkAndLogStoreEntrance(courier, courierLatitude, courierLongitude, timestamp))
+                .isNull();
+        verify(storeEntranceRepository, never()).save(any());
+    }
+
+    @Test
+    @DisplayName("Should log one entrance per visit and write the visit with its duration on a confirmed exit")
+    void shouldWriteOneVisitPerStay() {
+        enableVisits();
+        when(storeEntranceRepository.existsByCourierAndStoreAndEntranceTimeAfter(
+                eq(courier), eq(nearbyStore), any(LocalDateTime.class)))
+                .thenReturn(false);
+        when(storeEntranceRepository.save(any(StoreEntrance.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        visitFix(0, 0, 0.0);      // at the store: entrance, visit opens
+        visitFix(120, 30, 0.12);  // beyond the entrance radius, inside the exit radius
+        visitFix(20, 60, 0.1);    // back inside the entrance radius: a repeat, not a new entrance
+        visitFix(300, 90, 0.28);  // beyond the exit radius
+        visitFix(300, 110, 0.0);  // not yet confirmed
+        visitFix(350, 120, 0.05); // outside for 30s: the courier left at the first fix outside
+
+        verify(storeEntranceRepository, times(1)).save(any(StoreEntrance.class));
+        verify(storeEntranceRepository, times(1)).existsByCourierAndStoreAndEntranceTimeAfter(any(), any(), any());
+        ArgumentCaptor<StoreVisit> visit = ArgumentCaptor.forClass(StoreVisit.class);
+        verify(storeVisitRepository).save(visit.capture());
+        assertThat(visit.getValue().getStore()).isEqualTo(nearbyStore);
+        assertThat(visit.getValue().getEnteredAt()).isEqualTo(timestamp);
+        assertThat(visit.getValue().getExitedAt()).isEqualTo(timestamp.plusSeconds(90));
+        assertThat(visit.getValue().getDurationSeconds()).isEqualTo(90L);
+        assertThat(meterRegistry.get("courier.store.entrance.repeats.skipped").counter().count()).isPositive();
+        assertThat(meterRegistry.get("courier.store.visits").counter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    @DisplayName("Should close a visit at the last fix seen when the courier stops reporting")
+    void shouldCloseVisitOnTimeout() {
+        enableVisits();
+        when(storeEntranceRepository.existsByCourierAndStoreAndEntranceTimeAfter(
+                eq(courier), eq(nearbyStore), any(LocalDateTime.class)))
+                .thenReturn(false);
+        when(storeEntranceRepository.save(any(StoreEntrance.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        visitFix(0, 0, 0.0);
+        visitFix(20, 60, 0.02);
+        visitFix(1000, 60 + 40 * 60, 1.0); // 40 minutes later and far away
+
+        ArgumentCaptor<StoreVisit> visit = ArgumentCaptor.forClass(StoreVisit.class);
+        verify(storeVisitRepository).save(visit.capture());
+        assertThat(visit.getValue().getExitedAt()).isEqualTo(timestamp.plusSeconds(60));
+        assertThat(visit.getValue().getDurationSeconds()).isEqualTo(60L);
+    }
+
+    @Test
+    @DisplayName("Should close a visit from the sweep when the courier sends no further fix")
+    void shouldSweepTimedOutVisits() {
+        enableVisits();
+        when(storeEntranceRepository.existsByCourierAndStoreAndEntranceTimeAfter(
+                eq(courier), eq(nearbyStore), any(LocalDateTime.class)))
+                .thenReturn(false);
+        when(storeEntranceRepository.save(any(StoreEntrance.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        doAnswer(invocation -> {
+            invocation.<Runnable>getArgument(1).run();
+            return null;
+        }).when(shardedCourierExecutor).execute(eq(courier.getId()), any(Runnable.class));
+
+        visitFix(0, -45 * 60, 0.0);
+        visitFix(20, -40 * 60, 0.02);
+        storeEntranceService.closeTimedOutVisits();
+
+        ArgumentCaptor<StoreVisit> visit = ArgumentCaptor.forClass(StoreVisit.class);
+        verify(storeVisitRepository).save(visit.capture());
+        assertThat(visit.getValue().getCourier().getId()).isEqualTo(courier.getId());
+        assertThat(visit.getValue().getExitedAt()).isEqualTo(timestamp.minusMinutes(40));
+        assertThat(courierStateRegistry.getOrCreate(courier.getId()).getStoreVisit().isOpen()).isFalse();
+    }
+
+    @Test
+    @DisplayName("Should undo visit changes when the fix's transaction rolls back")
+    void shouldRestoreVisitOnRollback() {
+        enableVisits();
+        when(storeEntranceRepository.existsByCourierAndStoreAndEntranceTimeAfter(
+                eq(courier), eq(nearbyStore), any(LocalDateTime.class)))
+                .thenReturn(false);
+        when(storeEntranceRepository.save(any(StoreEntrance.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            visitFix(0, 0, 0.0);
+            assertThat(courierStateRegistry.getOrCreate(courier.getId()).getStoreVisit().isOpen()).isTrue();
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(synchronization -> synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        // The entrance was not stored, so the retried fix logs it again
+        assertThat(courierStateRegistry.getOrCreate(courier.getId()).getStoreVisit().isOpen()).isFalse();
+        visitFix(0, 0, 0.0);
+        verify(storeEntranceRepository, times(2)).save(any(StoreEntrance.class));
+    }
+
+    private void enableVisits() {
+        ReflectionTestUtils.setField(storeEntranceService, "visitsEnabled", true);
+        ReflectionTestUtils.setField(storeEntranceService, "exitRadiusMeters", 150);
+        ReflectionTestUtils.setField(storeEntranceService, "exitConfirmSeconds", 30);
+        ReflectionTestUtils.setField(storeEntranceService, "visitTimeoutMinutes", 30);
+        when(storeIndex.storesAlong(anyDouble(), anyDouble(), anyDouble(), anyDouble(), anyDouble()))
+                .thenReturn(List.of(nearbyStore));
+        // ~111 km per degree of latitude north of the store
+        when(distanceUtils.calculateDistanceInMeters(anyDouble(), anyDouble(), anyDouble(), anyDouble()))
+                .thenAnswer(invocation -> Math.abs((double) invocation.getArgument(0) - (double) invocation.getArgument(2)) * 111_000);
+        lenient().when(storeIndex.clearanceMeters(anyDouble(), anyDouble(), anyDouble())).thenReturn(0.0);
+    }
+
+    private void visitFix(double metersNorth, long second, double movedKilometers) {
+        storeEntranceService.checkAndLogStoreEntrance(courier, nearbyStore.getLatitude() + metersNorth / 111_000,
+                nearbyStore.getLongitude(), timestamp.plusSeconds(second), movedKilometers);
+    }
+}
@@ -0,0 +1,153 @@
+package com.couriertracking.service;
+
+import com.couriertracking.dto.StoreLoadReport;
+import com.couriertracking.dto.StoreRequest;
+import com.couriertracking.dto.StoreResponse;
+import com.couriertracking.exception.StoreConflictException;
+import com.couriertracking.exception.StoreNotFoundException;
+import com.couriertracking.geo.StoreIndex;
+import com.couriertracking.geo.StoreSnapshotFile;
+import com.couriertracking.model.Store;
+import com.couriertracking.repository.StoreEntranceRepository;
+import com.couriertracking.repository.StoreRepository;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("StoreService Tests")
+class StoreServiceTest {
+
+    @Mock
+    private StoreRepository storeRepository;
+
+    @Mock
+    private StoreEntranceRepository storeEntranceRepository;
+
+    @Mock
+    private StoreCatalogImporter storeCatalogImporter;
+
+    @Mock
+    private StoreIndex storeIndex;
+
+    @Mock
+    private StoreSnapshotFile storeSnapshotFile;
+
+    @InjectMocks
+    private StoreService storeService;
+
+    @Test
+    @DisplayName("Should persist a new store, add it to the index and rewrite the snapshot")
+    void shouldCreateStore() {
+        StoreRequest request = new StoreRequest(null, "Kadıköy Migros", 40.990, 29.024,
+                List.of(List.of(40.989, 29.023), List.of(40.989, 29.025), List.of(40.991, 29.024)));
+        when(storeRepository.existsByExternalId("Kadıköy Migros")).thenReturn(false);
+        when(storeRepository.save(any(Store.class))).thenAnswer(invocation -> {
+            Store store = invocation.getArgument(0);
+            store.setId(UUID.randomUUID());
+            return store;
+        });
+
+        StoreResponse response = storeService.createStore(request);
+
+        assertThat(response.getExternalId()).isEqualTo("Kadıköy Migros");
+        assertThat(response.getGeofence()).hasSize(3);
+        verify(storeIndex).apply(anyList(), any());
+        verify(storeSnapshotFile).rewrite();
+    }
+
+    @Test
+    @DisplayName("Should reject a store whose external ID is taken")
+    void shouldRejectDuplicateExternalId() {
+        when(storeRepository.existsByExternalId("kadikoy")).thenReturn(true);
+
+        assertThatThrownBy(() -> storeService.createStore(new StoreRequest("kadikoy", "Kadıköy Migros", 40.990, 29.024, null)))
+                .isInstanceOf(StoreConflictException.class);
+        verifyNoInteractions(storeIndex);
+    }
+
+    @Test
+    @DisplayName("Should answer a conflict when a concurrent create takes the external ID first")
+    void shouldRejectConcurrentDuplicateExternalId() {
+        when(storeRepository.existsByExternalId("kadikoy")).thenReturn(false);
+        when(storeRepository.save(any(Store.class))).thenThrow(new DataIntegrityViolationException("idx_store_external_id"));
+
+        assertThatThrownBy(() -> storeService.createStore(new StoreRequest("kadikoy", "Kadıköy Migros", 40.990, 29.024, null)))
+                .isInstanceOf(StoreConflictException.class);
+        verifyNoInteractions(storeIndex, storeSnapshotFile);
+    }
+
+    @Test
+    @DisplayName("Should throw when updating a non-existent store")
+    void shouldThrowWhenUpdatingMissingStore() {
+        UUID storeId = UUID.randomUUID();
+        when(storeRepository.findById(storeId)).thenReturn(Optional.empty());
+
+        assertThatThrownBy(() -> storeService.updateStore(storeId, new StoreRequest(null, "Kadıköy Migros", 40.990, 29.024, null)))
+                .isInstanceOf(StoreNotFoundException.class);
+    }
+
+    @Test
+    @DisplayName("Should refuse to delete a store with logged entrances")
+    void shouldRefuseToDeleteStoreInUse() {
+        Store store = new Store(UUID.randomUUID(), "Ataşehir MMM Migros", 40.9923307, 29.1244229);
+        when(storeRepository.findById(store.getId())).thenReturn(Optional.of(store));
+        when(storeEntranceRepository.existsByStore(store)).thenReturn(true);
+
+        assertThatThrownBy(() -> storeService.deleteStore(store.getId()))
+                .isInstanceOf(StoreConflictException.class);
+        verify(storeRepository, never()).delete(any());
+        verifyNoInteractions(storeIndex);
+    }
+
+    @Test
+    @DisplayName("Should remove a deleted store from the index")
+    void shouldDeleteStore() {
+        Store store = new Store(UUID.randomUUID(), "Ataşehir MMM Migros", 40.9923307, 29.1244229);
+        when(storeRepository.findById(store.getId())).thenReturn(Optional.of(store));
+
+        storeService.deleteStore(store.getId());
+
+        verify(storeRepository).delete(store);
+        verify(storeIndex).apply(List.of(), List.of(store.getId()));
+    }
+
+    @Test
+    @DisplayName("Should apply every saved store of a bulk upsert to the index in one swap")
+    @SuppressWarnings("unchecked")
+    void shouldApplyBulkUpsertOnce() {
+        Store first = new Store(UUID.randomUUID(), "Kadıköy Migros", 40.990, 29.024);
+        Store second = new Store(UUID.randomUUID(), "Moda Migros", 40.983, 29.027);
+        when(storeCatalogImporter.upsert(anyList(), any(Consumer.class))).thenAnswer(invocation -> {
+            Consumer<List<Store>> listener = invocation.getArgument(1);
+            listener.accept(List.of(first));
+            listener.accept(List.of(second));
+            return new StoreLoadReport(2, 0, 0, 5);
+        });
+
+        StoreLoadReport report = storeService.upsertStores(List.of(
+                new StoreRequest(null, "Kadıköy Migros", 40.990, 29.024, null),
+                new StoreRequest(null, "Moda Migros", 40.983, 29.027, null)));
+
+        assertThat(report.getInserted()).isEqualTo(2);
+        verify(storeIndex).apply(List.of(first, second), List.of());
+    }
+}
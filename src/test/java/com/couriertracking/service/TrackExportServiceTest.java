@@ -0,0 +1,157 @@
+package com.couriertracking.service;
+
+import com.couriertracking.datasource.LocationShards;
+import com.couriertracking.storage.LocationArchive;
+import com.couriertracking.storage.LocationHistory;
+import com.couriertracking.storage.LocationLog;
+import com.couriertracking.storage.LocationTrackReader;
+import com.couriertracking.strategy.DistanceCalculationContext;
+import com.couriertracking.strategy.EuclideanDistanceStrategy;
+import com.couriertracking.strategy.HaversineDistanceStrategy;
+import com.couriertracking.util.DistanceUtils;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("TrackExportService Tests")
+class TrackExportServiceTest {
+
+    private static final LocalDateTime DAY = LocalDateTime.of(2024, 5, 1, 0, 0);
+
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule())
+        .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+    private JdbcTemplate jdbcTemplate;
+    private LocationArchive locationArchive;
+    private LocationHistory locationHistory;
+    private TrackExportService trackExportService;
+
+    private final UUID courierId = UUID.randomUUID();
+
+    @BeforeEach
+    void setUp() {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:export-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        new ResourceDatabasePopulator(new ClassPathResource("scripts/location-shard-schema.sql")).execute(dataSource);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+
+        locationArchive = new LocationArchive(dataSource, new StaticListableBeanFactory().getBeanProvider(LocationShards.class));
+        locationArchive.createTables();
+        DistanceUtils distanceUtils = new DistanceUtils(new DistanceCalculationContext(
+            "haversine", new EuclideanDistanceStrategy(), new HaversineDistanceStrategy()));
+        locationHistory = new LocationHistory(dataSource, new StaticListableBeanFactory().getBeanProvider(LocationShards.class));
+        trackExportService = new TrackExportService(locationHistory, new LocationTrackReader(locationArchive,
+            new StaticListableBeanFactory().getBeanProvider(LocationLog.class)), distanceUtils);
+    }
+
+    @Test
+    @DisplayName("Should encode the track as a Google polyline, archived days before hot rows")
+    void shouldExportEncodedPolyline() throws IOException {
+        insertLocation(DAY.plusHours(8), 38.5, -120.2);
+        insertLocation(DAY.plusHours(9), 40.7, -120.95);
+        insertLocation(DAY.plusDays(1).plusHours(8), 43.252, -126.453);
+        LocationArchiveService locationArchiveService = new LocationArchiveService(locationArchive, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(locationArchiveService, "hotDays", 1);
+        ReflectionTestUtils.setField(locationArchiveService, "maxDaysPerRun", 31);
+        locationArchiveService.run(DAY.plusDays(1).plusHours(12));
+
+        // The reference example from Google's polyline algorithm documentation
+        assertThat(export(DAY, DAY.plusDays(2), TrackExportService.Format.POLYLINE, 0))
+            .isEqualTo("_p~iF~ps|U_ulLnnqC_mqNvxq`@");
+        assertThat(export(DAY.plusHours(9), DAY.plusDays(1), TrackExportService.Format.POLYLINE, 0))
+            .isEqualTo("_flwFn`faV");
+    }
+
+    @Test
+    @DisplayName("Should merge a late fix for an archived day into the day by timestamp")
+    void shouldMergeLateFixIntoArchivedDay() throws IOException {
+        insertLocation(DAY.plusHours(8), 38.5, -120.2);
+        insertLocation(DAY.plusHours(10), 43.252, -126.453);
+        LocationArchiveService locationArchiveService = new LocationArchiveService(locationArchive, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(locationArchiveService, "hotDays", 1);
+        ReflectionTestUtils.setField(locationArchiveService, "maxDaysPerRun", 31);
+        locationArchiveService.run(DAY.plusDays(1).plusHours(12));
+        // Arrives after the day was archived and stays in locations until the next run
+        insertLocation(DAY.plusHours(9), 40.7, -120.95);
+
+        assertThat(export(DAY, DAY.plusDays(1), TrackExportService.Format.POLYLINE, 0))
+            .isEqualTo("_p~iF~ps|U_ulLnnqC_mqNvxq`@");
+    }
+
+    @Test
+    @DisplayName("Should start the track with the downsampled history of days past retention")
+    void shouldExportHistoryBeforeArchivedAndHotPoints() throws IOException {
+        jdbcTemplate.execute("CREATE TABLE location_history_202404 (courier_id UUID NOT NULL, "
+            + "timestamp TIMESTAMP(6) NOT NULL, latitude DOUBLE PRECISION NOT NULL, longitude DOUBLE PRECISION NOT NULL)");
+        jdbcTemplate.update("INSERT INTO location_history_202404 VALUES (?, ?, 38.5, -120.2), (?, ?, 40.7, -120.95)",
+            courierId, DAY.minusDays(2), UUID.randomUUID(), DAY.minusDays(2));
+        insertLocation(DAY.plusHours(9), 40.7, -120.95);
+        insertLocation(DAY.plusHours(10), 43.252, -126.453);
+
+        assertThat(export(DAY.minusMonths(1), DAY.plusDays(1), TrackExportService.Format.POLYLINE, 0))
+            .isEqualTo("_p~iF~ps|U_ulLnnqC_mqNvxq`@");
+    }
+
+    @Test
+    @DisplayName("Should simplify a day's GeoJSON track to an order of magnitude below the JSON location list")
+    void shouldExportSimplifiedGeoJson() throws IOException {
+        List<Map<String, Object>> verbose = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            // About 4.4 m between fixes
+            double latitude = 40.99 + i * 0.00004;
+            insertLocation(DAY.plusSeconds(i * 5L), latitude, 29.12);
+            verbose.add(Map.of("courierId", courierId, "latitude", latitude, "longitude", 29.12,
+                "timestamp", DAY.plusSeconds(i * 5L)));
+        }
+
+        JsonNode full = objectMapper.readTree(export(DAY, DAY.plusDays(1), TrackExportService.Format.GEOJSON, 0));
+        String simplifiedText = export(DAY, DAY.plusDays(1), TrackExportService.Format.GEOJSON, 20);
+        JsonNode simplified = objectMapper.readTree(simplifiedText);
+
+        assertThat(full.at("/geometry/type").asText()).isEqualTo("LineString");
+        assertThat(full.at("/geometry/coordinates")).hasSize(1000);
+        assertThat(full.at("/geometry/coordinates/1/1").asDouble()).isEqualTo(40.99004);
+        assertThat(full.at("/geometry/coordinates/1/0").asDouble()).isEqualTo(29.12);
+        assertThat(simplified.at("/properties/points").asInt()).isBetween(200, 230);
+        // The last fix is kept even when closer than the tolerance
+        assertThat(simplified.at("/geometry/coordinates").get(simplified.at("/properties/points").asInt() - 1).get(1).asDouble())
+            .isEqualTo(40.99 + 999 * 0.00004, org.assertj.core.data.Offset.offset(1e-6));
+        assertThat(simplifiedText.length() * 10).isLessThan(objectMapper.writeValueAsBytes(verbose).length);
+        assertThat(export(DAY, DAY.plusDays(1), TrackExportService.Format.POLYLINE, 0).length() * 10)
+            .isLessThan(objectMapper.writeValueAsBytes(verbose).length);
+    }
+
+    private String export(LocalDateTime from, LocalDateTime to, TrackExportService.Format format, double tolerance)
+            throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        trackExportService.export(courierId, from, to, format, tolerance, out);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    private void insertLocation(LocalDateTime timestamp, double latitude, double longitude) {
+        jdbcTemplate.update("INSERT INTO locations (id, courier_id, latitude, longitude, timestamp, received_at) "
+            + "VALUES (?, ?, ?, ?, ?, ?)", UUID.randomUUID(), courierId, latitude, longitude, timestamp, timestamp);
+    }
+}
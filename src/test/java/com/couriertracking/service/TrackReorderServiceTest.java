@@ -0,0 +1,129 @@
+package com.couriertracking.service;
+
+import com.couriertracking.model.Location;
+import com.couriertracking.repository.LocationRepository;
+import com.couriertracking.state.CourierStateRegistry;
+import com.couriertracking.util.DistanceUtils;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.OptionalDouble;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("TrackReorderService Tests")
+class TrackReorderServiceTest {
+
+    @Mock
+    private LocationRepository locationRepository;
+
+    @Mock
+    private DistanceUtils distanceUtils;
+
+    private SimpleMeterRegistry meterRegistry;
+    private TrackReorderService trackReorderService;
+    private UUID courierId;
+    private LocalDateTime start;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        trackReorderService = new TrackReorderService(
+                new CourierStateRegistry(), locationRepository, distanceUtils, meterRegistry);
+        ReflectionTestUtils.setField(trackReorderService, "enabled", true);
+        ReflectionTestUtils.setField(trackReorderService, "watermarkSeconds", 120L);
+        ReflectionTestUtils.setField(trackReorderService, "bufferSize", 32);
+
+        courierId = UUID.randomUUID();
+        start = LocalDateTime.of(2025, 1, 1, 12, 0);
+
+        // Points on a line: distance is the absolute difference of longitudes, in km
+        lenient().when(distanceUtils.calculateDistanceInKilometers(anyDouble(), anyDouble(), anyDouble(), anyDouble()))
+                .thenAnswer(invocation -> Math.abs(invocation.<Double>getArgument(3) - invocation.<Double>getArgument(1)));
+        lenient().when(locationRepository.findByCourierIdOrderByTimestampDesc(eq(courierId), any(Pageable.class)))
+                .thenReturn(List.of());
+    }
+
+    @Test
+    @DisplayName("Should return empty delta for the first fix and segment length for in-order fixes")
+    void shouldReturnSegmentLengthForInOrderFixes() {
+        assertThat(trackReorderService.applyFix(courierId, location(0, 0.0))).isEmpty();
+        assertThat(trackReorderService.applyFix(courierId, location(10, 2.0))).hasValue(2.0);
+        assertThat(trackReorderService.applyFix(courierId, location(20, 5.0))).hasValue(3.0);
+        assertThat(meterRegistry.counter("courier.distance.reorder.reordered").count()).isZero();
+    }
+
+    @Test
+    @DisplayName("Should recompute only neighbouring segments when a late fix arrives")
+    void shouldRecomputeNeighbouringSegmentsForLateFix() {
+        trackReorderService.applyFix(courierId, location(0, 0.0));
+        trackReorderService.applyFix(courierId, location(20, 2.0));
+
+        // Late fix between them takes a detour: 0 -> 5 -> 2 instead of 0 -> 2
+        OptionalDouble delta = trackReorderService.applyFix(courierId, location(10, 5.0));
+
+        assertThat(delta).hasValue(5.0 + 3.0 - 2.0);
+        assertThat(meterRegistry.counter("courier.distance.reorder.reordered").count()).isEqualTo(1.0);
+    }
+
+    @Test
+    @DisplayName("Should give the same total regardless of arrival order within the watermark")
+    void shouldGiveSameTotalRegardlessOfArrivalOrder() {
+        double total = 0.0;
+        int[] arrivalOrder = {0, 2, 1, 4, 3, 5};
+        double[] longitudes = {0.0, 1.0, 3.0, 2.0, 6.0, 7.0};
+        for (int index : arrivalOrder) {
+            total += trackReorderService.applyFix(courierId, location(index * 10L, longitudes[index])).orElse(0.0);
+        }
+
+        assertThat(total).isEqualTo(1.0 + 2.0 + 1.0 + 4.0 + 1.0);
+    }
+
+    @Test
+    @DisplayName("Should drop fixes older than the watermark")
+    void shouldDropFixesOlderThanWatermark() {
+        trackReorderService.applyFix(courierId, location(0, 0.0));
+        trackReorderService.applyFix(courierId, location(600, 1.0));
+
+        assertThat(trackReorderService.isTooLate(courierId, start.plusSeconds(300))).isTrue();
+        assertThat(trackReorderService.isTooLate(courierId, start.plusSeconds(500))).isFalse();
+        assertThat(meterRegistry.counter("courier.distance.reorder.dropped.too.late").count()).isEqualTo(1.0);
+    }
+
+    @Test
+    @DisplayName("Should warm up the buffer from the database once after a restart")
+    void shouldWarmUpBufferFromDatabaseOnce() {
+        Location stored = location(0, 0.0);
+        when(locationRepository.findByCourierIdOrderByTimestampDesc(eq(courierId), any(Pageable.class)))
+                .thenReturn(List.of(stored));
+
+        assertThat(trackReorderService.applyFix(courierId, location(10, 4.0))).hasValue(4.0);
+        assertThat(trackReorderService.applyFix(courierId, location(20, 5.0))).hasValue(1.0);
+
+        verify(locationRepository, times(1)).findByCourierIdOrderByTimestampDesc(eq(courierId), any(Pageable.class));
+    }
+
+    private Location location(long secondsFromStart, double longitude) {
+        Location location = new Location();
+        location.setId(UUID.randomUUID());
+        location.setLatitude(40.99);
+        location.setLongitude(longitude);
+        location.setTimestamp(start.plusSeconds(secondsFromStart));
+        return location;
+    }
+}
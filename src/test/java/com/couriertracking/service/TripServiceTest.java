@@ -0,0 +1,166 @@
+package com.couriertracking.service;
+
+import com.couriertracking.model.Courier;
+import com.couriertracking.model.Trip;
+import com.couriertracking.model.TripEndReason;
+import com.couriertracking.repository.TripRepository;
+import com.couriertracking.strategy.DistanceCalculationContext;
+import com.couriertracking.strategy.EuclideanDistanceStrategy;
+import com.couriertracking.strategy.HaversineDistanceStrategy;
+import com.couriertracking.util.DistanceUtils;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@DisplayName("TripService Tests")
+class TripServiceTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2024, 5, 1, 9, 0);
+    // About 111 m of latitude
+    private static final double STEP = 0.001;
+
+    private final List<Trip> trips = new ArrayList<>();
+    private TripRepository tripRepository;
+    private SimpleMeterRegistry meterRegistry;
+    private TripService tripService;
+    private Courier courier;
+
+    @BeforeEach
+    void setUp() {
+        // Backed by a list so trips read back are the ones last saved
+        tripRepository = mock(TripRepository.class);
+        when(tripRepository.save(any(Trip.class))).thenAnswer(invocation -> {
+            Trip trip = invocation.getArgument(0);
+            if (trips.stream().noneMatch(saved -> saved == trip)) {
+                trips.add(trip);
+            }
+            return trip;
+        });
+        when(tripRepository.findOpenTrips(any())).thenAnswer(invocation -> trips.stream()
+            .filter(Trip::isOpen)
+            .sorted(Comparator.comparing(Trip::getStartedAt).reversed())
+            .toList());
+        when(tripRepository.findLatestTrip(any()))
+            .thenAnswer(invocation -> trips.stream().max(Comparator.comparing(Trip::getStartedAt)));
+
+        meterRegistry = new SimpleMeterRegistry();
+        DistanceUtils distanceUtils = new DistanceUtils(new DistanceCalculationContext(
+            "haversine", new EuclideanDistanceStrategy(), new HaversineDistanceStrategy()));
+        tripService = new TripService(tripRepository, distanceUtils, meterRegistry);
+        ReflectionTestUtils.setField(tripService, "enabled", true);
+        ReflectionTestUtils.setField(tripService, "idleGapMinutes", 10);
+        ReflectionTestUtils.setField(tripService, "dwellMinutes", 5);
+        ReflectionTestUtils.setField(tripService, "dwellRadiusMeters", 50);
+
+        courier = new Courier();
+        courier.setId(UUID.randomUUID());
+    }
+
+    @Test
+    @DisplayName("Should keep a running distance per trip and start a new trip after an idle gap")
+    void shouldSplitTripsOnIdleGap() {
+        for (int minute = 0; minute < 5; minute++) {
+            tripService.recordFix(courier, 40.99 + minute * STEP, 29.12, START.plusMinutes(minute), minute == 0 ? 0 : 0.111, false);
+        }
+        // Late fix inside the trip: counted, but the trip's end stays at the newest fix
+        tripService.recordFix(courier, 40.9915, 29.12, START.plusSeconds(90), 0.002, false);
+
+        Trip next = tripService.recordFix(courier, 41.1, 29.2, START.plusMinutes(20), 12.0, false);
+
+        assertThat(trips).hasSize(2);
+        Trip first = trips.get(0);
+        assertThat(first.getEndReason()).isEqualTo(TripEndReason.IDLE_GAP);
+        assertThat(first.getPointCount()).isEqualTo(6);
+        assertThat(first.getDistance()).isCloseTo(4 * 0.111 + 0.002, within(1e-9));
+        assertThat(first.getEndedAt()).isEqualTo(START.plusMinutes(4));
+        assertThat(first.getEndLatitude()).isCloseTo(40.994, within(1e-9));
+        // The jump across the gap belongs to neither trip
+        assertThat(next.isOpen()).isTrue();
+        assertThat(next.getDistance()).isZero();
+        assertThat(next.getStartedAt()).isEqualTo(START.plusMinutes(20));
+        assertThat(meterRegistry.get("courier.trips.closed").tag("reason", "IDLE_GAP").counter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    @DisplayName("Should keep only the newest open trip when two were started concurrently")
+    void shouldCloseDuplicateOpenTrips() {
+        tripService.recordFix(courier, 40.99, 29.12, START, 0, false);
+        // A second instance opened its own trip for the same courier a moment later
+        Trip racing = new Trip();
+        racing.setCourier(courier);
+        racing.setStartedAt(START.plusSeconds(1));
+        racing.setEndedAt(START.plusSeconds(1));
+        racing.setStartLatitude(40.99);
+        racing.setStartLongitude(29.12);
+        racing.setEndLatitude(40.99);
+        racing.setEndLongitude(29.12);
+        racing.setPointCount(1);
+        racing.setAnchorLatitude(40.99);
+        racing.setAnchorLongitude(29.12);
+        racing.setAnchorAt(START.plusSeconds(1));
+        trips.add(racing);
+
+        Trip open = tripService.recordFix(courier, 40.99 + STEP, 29.12, START.plusMinutes(1), 0.111, false);
+
+        assertThat(open).isSameAs(racing);
+        assertThat(trips.get(0).getEndReason()).isEqualTo(TripEndReason.SUPERSEDED);
+        assertThat(trips.stream().filter(Trip::isOpen)).containsExactly(racing);
+    }
+
+    @Test
+    @DisplayName("Should close the trips of couriers idle for longer than the gap")
+    void shouldSweepIdleTrips() {
+        when(tripRepository.closeTripsEndedBefore(any(), any())).thenReturn(3);
+        LocalDateTime before = LocalDateTime.now().minusMinutes(10);
+
+        tripService.closeIdleTrips();
+
+        ArgumentCaptor<LocalDateTime> cutoff = ArgumentCaptor.forClass(LocalDateTime.class);
+        verify(tripRepository).closeTripsEndedBefore(cutoff.capture(), eq(TripEndReason.IDLE_GAP));
+        assertThat(cutoff.getValue()).isBetween(before, LocalDateTime.now().minusMinutes(10));
+        assertThat(meterRegistry.get("courier.trips.closed").tag("reason", "IDLE_GAP").counter().count()).isEqualTo(3.0);
+    }
+
+    @Test
+    @DisplayName("Should end trips at store entrances and after dwelling, and stay closed while the courier waits")
+    void shouldSplitTripsOnStoreEntranceAndDwell() {
+        tripService.recordFix(courier, 40.99, 29.12, START, 0, false);
+        tripService.recordFix(courier, 40.99 + STEP, 29.12, START.plusMinutes(1), 0.111, false);
+        Trip afterEntrance = tripService.recordFix(courier, 40.99 + 2 * STEP, 29.12, START.plusMinutes(2), 0.111, true);
+
+        assertThat(trips.get(0).getEndReason()).isEqualTo(TripEndReason.STORE_ENTRANCE);
+        assertThat(trips.get(0).getPointCount()).isEqualTo(3);
+        assertThat(afterEntrance.getStartedAt()).isEqualTo(START.plusMinutes(2));
+        assertThat(afterEntrance.getStartLatitude()).isCloseTo(40.992, within(1e-9));
+
+        // Waiting at the store within the dwell radius
+        for (int minute = 3; minute <= 7; minute++) {
+            tripService.recordFix(courier, 40.99 + 2 * STEP + 0.0001, 29.12, START.plusMinutes(minute), 0.011, false);
+        }
+        assertThat(afterEntrance.getEndReason()).isEqualTo(TripEndReason.DWELL);
+        assertThat(afterEntrance.getEndedAt()).isEqualTo(START.plusMinutes(2));
+        assertThat(tripService.recordFix(courier, 40.99 + 2 * STEP, 29.12, START.plusMinutes(30), 0.011, false)).isNull();
+        assertThat(trips).hasSize(2);
+
+        Trip delivery = tripService.recordFix(courier, 40.99 + 4 * STEP, 29.12, START.plusMinutes(31), 0.222, false);
+        assertThat(delivery.isOpen()).isTrue();
+        assertThat(trips).hasSize(3);
+    }
+}
@@ -0,0 +1,218 @@
+package com.couriertracking.storage;
+
+import com.couriertracking.model.Courier;
+import com.couriertracking.model.Location;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+@DisplayName("LocationLogRepository Tests")
+class LocationLogRepositoryTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2024, 1, 1, 12, 0);
+    // Small segments and blocks so a few records span several of each
+    private static final int SEGMENT_BYTES = 8 * LocationLog.RECORD_BYTES;
+    private static final int BLOCK_RECORDS = 3;
+
+    @TempDir
+    Path directory;
+
+    private LocationLog locationLog;
+    private LocationLogRepository locationRepository;
+
+    private final Courier courier = courier();
+    private final Courier otherCourier = courier();
+
+    @BeforeEach
+    void setUp() {
+        open();
+    }
+
+    @AfterEach
+    void tearDown() {
+        locationLog.close();
+    }
+
+    @Test
+    @DisplayName("Should answer courier queries by timestamp, including late fixes, across segments")
+    void shouldQueryCourierTrack() {
+        for (int second = 0; second < 10; second++) {
+            save(courier, START.plusSeconds(second * 10L), START.plusSeconds(second * 10L));
+            save(otherCourier, START.plusSeconds(second * 10L), START.plusSeconds(second * 10L));
+        }
+        // Late fix: received last, timestamped between the first two
+        save(courier, START.plusSeconds(5), START.plusSeconds(200));
+
+        assertThat(locationRepository.findTop2ByCourierIdOrderByTimestampDesc(courier.getId()))
+            .extracting(Location::getTimestamp)
+            .containsExactly(START.plusSeconds(90), START.plusSeconds(80));
+        assertThat(locationRepository.findByCourierIdOrderByTimestampDesc(courier.getId(), PageRequest.of(1, 3)))
+            .extracting(Location::getTimestamp)
+            .containsExactly(START.plusSeconds(60), START.plusSeconds(50), START.plusSeconds(40));
+        assertThat(locationRepository.findFirstByCourierIdAndTimestampBeforeOrderByTimestampDesc(courier.getId(), START.plusSeconds(10)))
+            .map(Location::getTimestamp)
+            .contains(START.plusSeconds(5));
+        assertThat(locationRepository.findByCourierIdAndTimestampGreaterThanEqualOrderByTimestampAsc(courier.getId(), START))
+            .extracting(Location::getTimestamp)
+            .startsWith(START, START.plusSeconds(5), START.plusSeconds(10))
+            .hasSize(11);
+        assertThat(locationRepository.findByCourierIdAndReceivedAtAfter(courier.getId(), START.plusSeconds(90)))
+            .extracting(Location::getTimestamp)
+            .containsExactly(START.plusSeconds(5));
+        assertThat(locationRepository.count()).isEqualTo(21);
+        assertThat(Files.exists(directory.resolve("segment-00000002.log"))).isTrue();
+    }
+
+    @Test
+    @DisplayName("Should stream a courier's records within both bounds in timestamp order")
+    void shouldStreamRangeInTimestampOrder() {
+        for (int second = 0; second < 10; second++) {
+            save(courier, START.plusSeconds(second * 10L), START.plusSeconds(second * 10L));
+            save(otherCourier, START.plusSeconds(second * 10L), START.plusSeconds(second * 10L));
+        }
+        // Late fixes land in the last block but belong between earlier ones
+        save(courier, START.plusSeconds(25), START.plusSeconds(200));
+        save(courier, START.plusSeconds(95), START.plusSeconds(200));
+
+        List<LocalDateTime> track = new ArrayList<>();
+        locationLog.forEachInRange(courier.getId(), START.plusSeconds(20), START.plusSeconds(50),
+            entry -> track.add(entry.timestamp()));
+
+        assertThat(track).containsExactly(
+            START.plusSeconds(20), START.plusSeconds(25), START.plusSeconds(30), START.plusSeconds(40));
+    }
+
+    @Test
+    @DisplayName("Should store coordinates as fixed-point and find locations by their log ID")
+    void shouldRoundTripLocations() {
+        Location saved = save(courier, START, START);
+
+        Location found = locationRepository.findById(saved.getId()).orElseThrow();
+        assertThat(found.getCourier().getId()).isEqualTo(courier.getId());
+        assertThat(found.getLatitude()).isCloseTo(40.9923307, within(1e-7));
+        assertThat(found.getLongitude()).isCloseTo(29.1244229, within(1e-7));
+        assertThat(found.getTimestamp()).isEqualTo(START);
+        assertThat(locationRepository.findById(UUID.randomUUID())).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Should rebuild the index on reopen and discard a torn record at the end")
+    void shouldRecoverAfterRestart() throws IOException {
+        for (int second = 0; second < 5; second++) {
+            save(courier, START.plusSeconds(second), START.plusSeconds(second));
+        }
+        locationLog.close();
+        // Corrupt the checksum at the end of the last record, as if the process died while writing it
+        try (FileChannel segment = FileChannel.open(directory.resolve("segment-00000000.log"), StandardOpenOption.WRITE)) {
+            segment.write(ByteBuffer.allocate(4).putInt(0, 42), 5L * LocationLog.RECORD_BYTES - 4);
+        }
+
+        open();
+
+        assertThat(locationRepository.count()).isEqualTo(4);
+        assertThat(locationRepository.findTop2ByCourierIdOrderByTimestampDesc(courier.getId()))
+            .extracting(Location::getTimestamp)
+            .containsExactly(START.plusSeconds(3), START.plusSeconds(2));
+        Location next = save(courier, START.plusSeconds(10), START.plusSeconds(10));
+        assertThat(next.getId().getLeastSignificantBits()).isEqualTo(4);
+        assertThat(locationRepository.findByCourierIdOrderByTimestampAsc(courier.getId())).hasSize(5);
+    }
+
+    @Test
+    @DisplayName("Should discard fixes of a rolled-back transaction, also after reopen")
+    void shouldDiscardRolledBackFixes() {
+        save(courier, START, START);
+        TransactionSynchronizationManager.initSynchronization();
+        Location rolledBack;
+        try {
+            rolledBack = save(courier, START.plusSeconds(10), START.plusSeconds(10));
+            TransactionSynchronizationManager.getSynchronizations()
+                .forEach(synchronization -> synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        save(courier, START.plusSeconds(20), START.plusSeconds(20));
+
+        assertThat(locationRepository.findById(rolledBack.getId())).isEmpty();
+        assertThat(locationRepository.findByCourierIdOrderByTimestampAsc(courier.getId()))
+            .extracting(Location::getTimestamp)
+            .containsExactly(START, START.plusSeconds(20));
+
+        locationLog.close();
+        open();
+
+        assertThat(locationRepository.count()).isEqualTo(2);
+        assertThat(locationRepository.findTop2ByCourierIdOrderByTimestampDesc(courier.getId()))
+            .extracting(Location::getTimestamp)
+            .containsExactly(START.plusSeconds(20), START);
+    }
+
+    @Test
+    @DisplayName("Should delete whole segments past retention and keep the rest readable after reopen")
+    void shouldDropExpiredSegments() {
+        for (int second = 0; second < 10; second++) {
+            save(courier, START.plusSeconds(second), START.plusSeconds(second));
+            save(otherCourier, START.plusSeconds(second), START.plusSeconds(second));
+        }
+
+        // Records 0-7 and 8-15 fill the first two segments; 16-19 are in the current one
+        assertThat(locationLog.dropReceivedBefore(START.plusSeconds(8).toInstant(ZoneOffset.UTC).toEpochMilli())).isEqualTo(2);
+
+        assertThat(Files.exists(directory.resolve("segment-00000000.log"))).isFalse();
+        assertThat(locationRepository.count()).isEqualTo(4);
+        assertThat(locationRepository.findByCourierIdOrderByTimestampAsc(courier.getId()))
+            .extracting(Location::getTimestamp)
+            .containsExactly(START.plusSeconds(8), START.plusSeconds(9));
+
+        locationLog.close();
+        open();
+
+        assertThat(locationRepository.count()).isEqualTo(4);
+        assertThat(locationRepository.findByCourierIdOrderByTimestampAsc(otherCourier.getId()))
+            .extracting(Location::getTimestamp)
+            .containsExactly(START.plusSeconds(8), START.plusSeconds(9));
+        Location next = save(courier, START.plusSeconds(10), START.plusSeconds(10));
+        assertThat(next.getId().getLeastSignificantBits()).isEqualTo(20);
+    }
+
+    private void open() {
+        locationLog = new LocationLog(directory, SEGMENT_BYTES, BLOCK_RECORDS);
+        locationRepository = new LocationLogRepository(locationLog);
+    }
+
+    private Location save(Courier courier, LocalDateTime timestamp, LocalDateTime receivedAt) {
+        Location location = new Location();
+        location.setCourier(courier);
+        location.setLatitude(40.9923307);
+        location.setLongitude(29.1244229);
+        location.setTimestamp(timestamp);
+        location.setReceivedAt(receivedAt);
+        return locationRepository.save(location);
+    }
+
+    private static Courier courier() {
+        Courier courier = new Courier();
+        courier.setId(UUID.randomUUID());
+        return courier;
+    }
+}
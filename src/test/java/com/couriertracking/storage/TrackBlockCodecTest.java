@@ -0,0 +1,53 @@
+package com.couriertracking.storage;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("TrackBlockCodec Tests")
+class TrackBlockCodecTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2024, 3, 10, 8, 0);
+
+    @Test
+    @DisplayName("Should round-trip a track with irregular intervals, backwards moves and late receipts")
+    void shouldRoundTripTrack() {
+        List<TrackBlockCodec.Point> points = List.of(
+            TrackBlockCodec.Point.of(START, 40.9923307, 29.1244229, START.plusNanos(250_000_000)),
+            TrackBlockCodec.Point.of(START.plusSeconds(5), 40.9924001, 29.1243001, START.plusSeconds(6)),
+            TrackBlockCodec.Point.of(START.plusSeconds(5), 40.9924001, 29.1243001, START.plusSeconds(6)),
+            TrackBlockCodec.Point.of(START.plusSeconds(47).plusNanos(3_000_000), -33.8688197, 151.2092955, START.plusHours(2)),
+            TrackBlockCodec.Point.of(START.plusHours(1), 40.9923307, 29.1244229, START.plusSeconds(30)));
+
+        List<TrackBlockCodec.Point> decoded = TrackBlockCodec.decode(TrackBlockCodec.encode(points));
+
+        assertThat(decoded).isEqualTo(points);
+        assertThat(decoded.get(3).timestamp()).isEqualTo(START.plusSeconds(47).plusNanos(3_000_000));
+        assertThat(decoded.get(3).latitude()).isEqualTo(-33.8688197);
+        assertThat(decoded.get(4).receivedAt()).isEqualTo(START.plusSeconds(30));
+        assertThat(TrackBlockCodec.decode(TrackBlockCodec.encode(List.of()))).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Should encode a regularly reporting courier in a few bytes per point")
+    void shouldEncodeRegularTrackCompactly() {
+        List<TrackBlockCodec.Point> points = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            LocalDateTime timestamp = START.plusSeconds(i * 5L);
+            points.add(TrackBlockCodec.Point.of(timestamp, 40.99 + i * 0.00004, 29.12 - i * 0.00003, timestamp.plusNanos(400_000_000)));
+        }
+
+        byte[] block = TrackBlockCodec.encode(points);
+
+        // Timestamp and delay columns shrink to one byte per point, coordinate deltas to two or three
+        assertThat(block.length).isLessThan(points.size() * 8);
+        assertThat(TrackBlockCodec.decode(block)).isEqualTo(points);
+        assertThatThrownBy(() -> TrackBlockCodec.decode(new byte[] { 9 })).isInstanceOf(IllegalArgumentException.class);
+    }
+}